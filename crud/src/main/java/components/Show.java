@@ -14,10 +14,13 @@ package components;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import components.interfaces.DateFormatter;
 import components.interfaces.Register;
+import crud.core.security.FieldCipher;
+import crud.core.types.FieldType;
 
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
@@ -38,6 +41,21 @@ public class Show extends Register<Show> implements DateFormatter {
     */
    public static int MAX_REGISTER_SIZE = 500;
 
+   /**
+    * The fields written by toByteArray, in order, with their types.
+    */
+   public static final LinkedHashMap<String, FieldType> layout = new LinkedHashMap<String, FieldType>(){{
+      put("id", FieldType.Int);
+      put("type", FieldType.Text);
+      put("title", FieldType.Cipher);
+      put("directors", FieldType.Text);
+      put("dateAdded", FieldType.Date);
+      put("releaseYear", FieldType.Short);
+      put("duration", FieldType.Text);
+      put("listedIn", FieldType.Text);
+      put("description", FieldType.Text);
+   }};
+
    /**
     * A map of properties and their comparators for Show objects.
     */
@@ -58,6 +76,7 @@ public class Show extends Register<Show> implements DateFormatter {
    private Integer id = -1; // -1 means that the id is not set
    private String type; // Movie or TV Show
    private String title; // The title of the show
+   private String cipherTitle = null; // The encrypted title, until it is read and decrypted
    private String directors; // The directors of the show
    private Date dateAdded; // The date the show was added to Netflix
    private Short releaseYear = -1; // The release year of the show
@@ -127,6 +146,11 @@ public class Show extends Register<Show> implements DateFormatter {
     * @return The title of the show.
     */
    public String getTitle() {
+      if(cipherTitle != null) {
+         title = cipher.decrypt(cipherTitle);
+         cipherTitle = null;
+      }
+
       return title;
    }
 
@@ -247,6 +271,16 @@ public class Show extends Register<Show> implements DateFormatter {
       return new String[] {"title", "type", "duration"};
    }
 
+   /**
+    * Get the fields written by toByteArray, in order, with their types.
+    *
+    * @return A map of the fields and their types (the title is encrypted).
+    */
+   @Override
+   public LinkedHashMap<String, FieldType> getLayout() {
+      return layout;
+   }
+
    // Setters
 
    /**
@@ -275,6 +309,7 @@ public class Show extends Register<Show> implements DateFormatter {
     */
    public void setTitle(String title) {
       this.title = title;
+      this.cipherTitle = null;
    }
 
    /**
@@ -468,7 +503,7 @@ public class Show extends Register<Show> implements DateFormatter {
       switch(key) {
          case "id": this.setId((int)value); break;
          case "type": this.setType((String)value); break;
-         case "title": this.setTitle(this.rsa.encrypt((String)value)); break;
+         case "title": this.setTitle(this.cipher.encrypt((String)value)); break;
          case "directors": this.setDirectors((String)value); break;
          case "dateAdded": this.setDateAdded((Date)value); break;
          case "releaseYear": this.setReleaseYear((short)value); break;
@@ -488,13 +523,13 @@ public class Show extends Register<Show> implements DateFormatter {
    public Show encrypt() {
       Show encryptedShow = this.clone();
       encryptedShow.id = this.id; 
-      encryptedShow.title = this.rsa.encrypt(this.title.replaceAll(",", "")); 
+      encryptedShow.setTitle(this.cipher.encrypt(this.getTitle().replaceAll(",", ""))); 
       
       return encryptedShow;
    }
 
    /**
-    * Decrypt the Show object.
+    * Decrypt the Show object. The title is only decrypted when it is first read.
     *
     * @return A new Show object with decrypted attributes.
     */
@@ -502,11 +537,46 @@ public class Show extends Register<Show> implements DateFormatter {
    public Show decript() {
       Show decryptedShow = this.clone();
       decryptedShow.id = this.id; 
-      decryptedShow.title = this.rsa.decrypt(this.title);
+      decryptedShow.decriptInPlace();
       
       return decryptedShow;
    }
 
+   /**
+    * Decrypt the Show object in place. The title is only decrypted when it is first read,
+    * so a title that is still pending is left as it is.
+    */
+   @Override
+   public void decriptInPlace() {
+      if(this.cipherTitle == null && this.title != null) {
+         this.cipherTitle = this.title;
+         this.title = null;
+      }
+   }
+
+   /**
+    * Set the cipher of the Show object. A title that was not read yet is decrypted
+    * first, with the cipher it was encrypted with.
+    *
+    * @param cipher The cipher to use.
+    */
+   @Override
+   public void setCipher(FieldCipher cipher) {
+      this.getTitle();
+      super.setCipher(cipher);
+   }
+
+   /**
+    * Decrypt the title, if it was not read yet, before it is compared.
+    *
+    * @param key The key of the field.
+    */
+   @Override
+   protected void resolveField(String key) {
+      if(key.equals("title"))
+         this.getTitle();
+   }
+
    
 
    /**
@@ -529,7 +599,7 @@ public class Show extends Register<Show> implements DateFormatter {
    public Show clone() {
       Show show = new Show(
          this.getType(), 
-         this.getTitle(), 
+         this.title, 
          this.getDirectors(), 
          this.getDateAdded(), 
          this.getReleaseYear(), 
@@ -538,6 +608,8 @@ public class Show extends Register<Show> implements DateFormatter {
          this.getDescription()
       );
       show.setId(this.getId());
+      show.setCipher(this.getCipher());
+      show.cipherTitle = this.cipherTitle;
       return show;
    }
 }
@@ -0,0 +1,136 @@
+/**
+ * A registry of field accessors for the registers.
+ *
+ * <p>
+ * The accessors of a class are built once, the first time one of its
+ * instances is compared, and shared by every instance of the class.
+ * </p>
+ *
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @version 1.0.0
+ */
+
+package components.interfaces;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+
+/**
+ * The method handles reading and writing the instance fields of a class, by field name.
+ */
+public final class FieldAccessors {
+
+   // Variables
+
+   /**
+    * The accessors of every class, built on first use.
+    */
+   private static final ClassValue<FieldAccessors> accessors = new ClassValue<FieldAccessors>() {
+      @Override
+      protected FieldAccessors computeValue(Class<?> type) {
+         return new FieldAccessors(type);
+      }
+   };
+
+   /**
+    * The getters of the fields, typed as (Object)Object.
+    */
+   private final HashMap<String, MethodHandle> getters = new HashMap<String, MethodHandle>();
+
+   /**
+    * The setters of the fields, typed as (Object, Object)void.
+    */
+   private final HashMap<String, MethodHandle> setters = new HashMap<String, MethodHandle>();
+
+   // Constructor
+
+   /**
+    * Build the accessors of the instance fields declared by a class.
+    *
+    * @param type The class.
+    */
+   private FieldAccessors(Class<?> type) {
+      try {
+         MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+
+         for(Field field : type.getDeclaredFields()) {
+            if(Modifier.isStatic(field.getModifiers()))
+               continue;
+
+            this.getters.put(field.getName(), lookup.unreflectGetter(field).asType(MethodType.methodType(Object.class, Object.class)));
+
+            if(!Modifier.isFinal(field.getModifiers()))
+               this.setters.put(field.getName(), lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, Object.class)));
+         }
+      } catch(IllegalAccessException e) {
+         System.out.println("It is not possible to access the fields of the class " + type.getName());
+         e.printStackTrace();
+      }
+   }
+
+   // Methods
+
+   /**
+    * Get the accessors of a class.
+    *
+    * @param type The class.
+    * @return The accessors of the class.
+    */
+   public static FieldAccessors of(Class<?> type) {
+      return accessors.get(type);
+   }
+
+   /**
+    * Check if the class declares a field.
+    *
+    * @param key The name of the field.
+    * @return True if the field has an accessor, false otherwise.
+    */
+   public boolean has(String key) {
+      return this.getters.containsKey(key);
+   }
+
+   /**
+    * Get the value of a field of an object.
+    *
+    * @param obj The object.
+    * @param key The name of the field.
+    * @return The value of the field.
+    */
+   public Object get(Object obj, String key) {
+      MethodHandle getter = this.getters.get(key);
+      if(getter == null)
+         throw new IllegalArgumentException("Invalid key: " + key);
+
+      try {
+         return (Object)getter.invokeExact(obj);
+      } catch(Throwable e) {
+         throw new IllegalStateException("It is not possible to read the field " + key, e);
+      }
+   }
+
+   /**
+    * Set the value of a field of an object.
+    *
+    * @param obj   The object.
+    * @param key   The name of the field.
+    * @param value The value to set.
+    */
+   public void set(Object obj, String key, Object value) {
+      MethodHandle setter = this.setters.get(key);
+      if(setter == null)
+         throw new IllegalArgumentException("Invalid key: " + key);
+
+      try {
+         setter.invokeExact(obj, value);
+      } catch(ClassCastException e) {
+         throw e;
+      } catch(Throwable e) {
+         throw new IllegalStateException("It is not possible to write the field " + key, e);
+      }
+   }
+}
@@ -20,12 +20,14 @@
 package components.interfaces;
 
 import java.io.IOException;
-import java.lang.reflect.Field;
 import java.math.BigInteger;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+import crud.core.security.FieldCipher;
 import crud.core.security.RSA;
+import crud.core.types.FieldType;
 
 /**
  * An abstract meta class representing a generic register.
@@ -41,6 +43,12 @@ public abstract class Register<T> {
     */
    protected RSA rsa; 
 
+   /**
+    * The cipher used to encript and decript the fields of the register, the RSA object
+    * unless the table of the register has its own key.
+    */
+   protected FieldCipher cipher;
+
    /**
     * The maximum size of the register.
     */
@@ -50,6 +58,7 @@ public abstract class Register<T> {
 
    public Register() {
       rsa = new RSA(1024); // ou qualquer outro tamanho de bit desejado
+      cipher = rsa;
    }
 
    // Methods
@@ -115,7 +124,8 @@ public abstract class Register<T> {
    public abstract Map<String, Comparator<T>> getProperties();
 
    /**
-    * Get the B+ tree attribute.
+    * Get the B+ tree attribute. It can name an integer attribute, as the ID, or a text
+    * field of the layout, as a title, whose B+ tree keeps variable-length string keys.
     *
     * @return The B+ tree attribute.
     */
@@ -135,6 +145,16 @@ public abstract class Register<T> {
     */
    public abstract String[] getInvertedIndexAttributes();
 
+   /**
+    * Get the fields written by {@link #toByteArray()}, in the order they are written, with
+    * their types. It lets the scans compare the fields without decoding the records.
+    *
+    * @return A map of the fields and their types, or null if the layout is not known.
+    */
+   public LinkedHashMap<String, FieldType> getLayout() {
+      return null;
+   }
+
    /**
     * Encript the appropriate attributes of the register.
     *
@@ -149,6 +169,34 @@ public abstract class Register<T> {
     */
    public abstract T decript();
 
+   /**
+    * Decript the appropriate attributes of the register in place, without making a copy.
+    * Registers should override it, since the default decripts a copy and decodes it back.
+    *
+    * @throws IOException If an I/O error occurs.
+    */
+   public void decriptInPlace() throws IOException {
+      this.fromByteArray(((Register<?>)this.decript()).toByteArray());
+   }
+
+   /**
+    * Get the cipher used to encript and decript the fields of the register.
+    *
+    * @return The cipher of the register.
+    */
+   public FieldCipher getCipher() {
+      return cipher;
+   }
+
+   /**
+    * Set the cipher used to encript and decript the fields of the register.
+    *
+    * @param cipher The cipher to use.
+    */
+   public void setCipher(FieldCipher cipher) {
+      this.cipher = cipher;
+   }
+
    /**
     * Get the public exponent of the RSA object.
     *
@@ -177,7 +225,8 @@ public abstract class Register<T> {
    }
 
    /**
-    * Compare the register based on a specified key and an object.
+    * Compare the register based on a specified key and an object. The field is read
+    * through the accessors of the class, built once by {@link FieldAccessors}.
     *
     * @param key The key to compare.
     * @param obj The object to compare against.
@@ -185,22 +234,24 @@ public abstract class Register<T> {
     */
    @SuppressWarnings("unchecked")
    public int compare(String key, Object obj) {
-      int res = (obj instanceof Integer) ? this.getId() - (int)obj : -1;
-
-      try {
-         Field field = this.getClass().getDeclaredField(key);
-         field.setAccessible(true);
-         
-         res = ((Comparable<Object>)field.get(this)).compareTo(obj);
-      } catch(IllegalAccessException e) {
-         System.out.println("It is not possible to access the field " + key + " of the class " + this.getClass().getName());
-         e.printStackTrace();
-      } catch(NoSuchFieldException e) {
+      FieldAccessors accessors = FieldAccessors.of(this.getClass());
+
+      if(!accessors.has(key)) {
          System.out.println("The field " + key + " does not exist in the class " + this.getClass().getName());
-         e.printStackTrace();
+         return (obj instanceof Integer) ? this.getId() - (int)obj : -1;
       }
 
-      return res;
+      this.resolveField(key);
+      return ((Comparable<Object>)accessors.get(this, key)).compareTo(obj);
+   }
+
+   /**
+    * Make sure a field holds its value before it is read through the accessors. Registers
+    * that decrypt a field on first access override it to decrypt the field.
+    *
+    * @param key The key of the field.
+    */
+   protected void resolveField(String key) {
    }
 
    /**
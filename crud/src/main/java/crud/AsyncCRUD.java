@@ -0,0 +1,300 @@
+package crud;
+
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import components.interfaces.Register;
+import crud.core.types.FieldPredicate;
+import logic.SystemSpecification;
+
+/**
+ * <strong> An asynchronous facade over a {@link CRUD}. </strong>
+ *
+ * <p>
+ * Every operation is submitted to an executor and returns a {@link CompletableFuture}
+ * right away, so independent lookups overlap their I/O instead of waiting for each other.
+ * The futures complete exceptionally with a {@link CompletionException} holding the
+ * exception thrown by the CRUD. The operations themselves follow the locking of the CRUD:
+ * the reads run together and the writes run one at a time.
+ * </p>
+ *
+ * <p>
+ * The default executor starts a virtual thread per operation when the Java runtime has them
+ * (Java 21 or newer), and otherwise uses {@code ASYNC_IO_THREADS} daemon threads. Point reads
+ * for the same key and value that are in flight at the same time are coalesced: the later
+ * ones wait for the read already running, and every caller gets its own copy of the record.
+ * A write made through the facade stops the reads in flight from being shared once it ends.
+ * </p>
+ *
+ * <pre>{@code
+ * AsyncCRUD<Show> async = new AsyncCRUD<Show>(crud);
+ * CompletableFuture<Show> a = async.read("id", 1);
+ * CompletableFuture<Show> b = async.read("id", 2);
+ * CompletableFuture.allOf(a, b).join();
+ * }</pre>
+ *
+ * @param <T> Type of the records
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.CRUD
+ * @version 1.0.0
+ */
+public class AsyncCRUD<T extends Register<T>> implements SystemSpecification, AutoCloseable {
+
+    // Attributes
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger(); // Number of threads started by the default executors
+
+    private final CRUD<T> crud; // CRUD the operations run on
+    private final Executor executor; // Executor running the operations
+    private final boolean owned; // If the executor was created by the facade and must be shut down with it
+    private final ConcurrentHashMap<Lookup, CompletableFuture<T>> reads = new ConcurrentHashMap<>(); // Point reads in flight
+
+    /**
+     * Key and value of a point read.
+     */
+    private static class Lookup {
+        final String key; // Key searched for
+        final Object value; // Value searched for
+
+        Lookup(String key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof Lookup))
+                return false;
+
+            Lookup other = (Lookup)obj;
+            return this.key.equals(other.key) && Objects.equals(this.value, other.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.key.hashCode() + Objects.hashCode(this.value);
+        }
+    }
+
+    // Constructors
+
+    /**
+     * Creates a facade over the given CRUD running on the default executor.
+     *
+     * @param crud The CRUD the operations run on.
+     */
+    public AsyncCRUD(CRUD<T> crud) {
+        this(crud, AsyncCRUD.__defaultExecutor(), true);
+    }
+
+    /**
+     * Creates a facade over the given CRUD running on the given executor, which is not shut down by {@link #close()}.
+     *
+     * @param crud     The CRUD the operations run on.
+     * @param executor The executor running the operations.
+     */
+    public AsyncCRUD(CRUD<T> crud, Executor executor) {
+        this(crud, executor, false);
+    }
+
+    /**
+     * Creates a facade over the given CRUD running on the given executor.
+     *
+     * @param crud     The CRUD the operations run on.
+     * @param executor The executor running the operations.
+     * @param owned    True if the executor must be shut down by {@link #close()}.
+     */
+    private AsyncCRUD(CRUD<T> crud, Executor executor, boolean owned) {
+        this.crud = Objects.requireNonNull(crud);
+        this.executor = Objects.requireNonNull(executor);
+        this.owned = owned;
+    }
+
+    // Public Methods
+
+    /**
+     * Returns the CRUD the operations run on.
+     *
+     * @return The CRUD.
+     */
+    public CRUD<T> getCRUD() {
+        return this.crud;
+    }
+
+    /**
+     * Reads a record with the specified key and value. A read for the same key and value
+     * already in flight is shared instead of being run again.
+     *
+     * @param key   The key to search for.
+     * @param value The value to search for.
+     * @return A future of the record matching the key and value, or of `null` if not found.
+     */
+    public CompletableFuture<T> read(String key, Object value) {
+        Lookup lookup = new Lookup(key, value);
+        CompletableFuture<T> created = new CompletableFuture<T>();
+        CompletableFuture<T> running = this.reads.putIfAbsent(lookup, created);
+
+        if(running == null) {
+            running = created;
+
+            try {
+                this.executor.execute(() -> {
+                    try {
+                        T obj = this.crud.read(key, value);
+                        this.reads.remove(lookup, created);
+                        created.complete(obj);
+                    } catch(Throwable e) {
+                        this.reads.remove(lookup, created);
+                        created.completeExceptionally(new CompletionException(e));
+                    }
+                });
+            } catch(RuntimeException e) {
+                this.reads.remove(lookup, created);
+                created.completeExceptionally(e);
+            }
+        }
+
+        return running.thenApply(obj -> obj != null ? obj.clone() : null);
+    }
+
+    /**
+     * Reads all records with the specified key and value.
+     *
+     * @param key   The key to search for.
+     * @param value The value to search for.
+     * @return A future of the records matching the key and value.
+     */
+    public CompletableFuture<T[]> readAllObj(String key, Object value) {
+        return this.__supply(() -> this.crud.readAllObj(key, value));
+    }
+
+    /**
+     * Reads all records matching every given predicate.
+     *
+     * @param predicates The predicates to match.
+     * @return A future of the records matching the predicates.
+     */
+    public CompletableFuture<T[]> readAllObj(FieldPredicate... predicates) {
+        return this.__supply(() -> this.crud.readAllObj(predicates));
+    }
+
+    /**
+     * Creates a new record.
+     *
+     * @param obj The record to create.
+     * @return A future of `true` if the creation is successful.
+     */
+    public CompletableFuture<Boolean> create(T obj) {
+        return this.__write(() -> this.crud.create(obj));
+    }
+
+    /**
+     * Updates a record with the given ID.
+     *
+     * @param id  The ID of the record to update.
+     * @param obj The updated record.
+     * @return A future of `true` if the update is successful, `false` otherwise.
+     */
+    public CompletableFuture<Boolean> update(int id, T obj) {
+        return this.__write(() -> this.crud.update(id, obj));
+    }
+
+    /**
+     * Updates a field of the record with the given ID.
+     *
+     * @param id    The ID of the record to update.
+     * @param key   The key to update.
+     * @param value The new value for the key.
+     * @return A future of `true` if the update is successful, `false` otherwise.
+     */
+    public CompletableFuture<Boolean> update(int id, String key, Object value) {
+        return this.__write(() -> this.crud.update(id, key, value));
+    }
+
+    /**
+     * Deletes a record with the given ID.
+     *
+     * @param id The ID of the record to delete.
+     * @return A future of `true` if the delete is successful, `false` otherwise.
+     */
+    public CompletableFuture<Boolean> delete(int id) {
+        return this.__write(() -> this.crud.delete(id));
+    }
+
+    /**
+     * Shuts down the default executor, letting the operations already submitted end.
+     * The CRUD is left open, and an executor given to the constructor is left running.
+     */
+    @Override
+    public void close() {
+        if(this.owned && this.executor instanceof ExecutorService)
+            ((ExecutorService)this.executor).shutdown();
+    }
+
+    // Private Methods
+
+    /**
+     * Runs an operation on the executor.
+     *
+     * @param operation The operation.
+     * @return A future of the result of the operation.
+     */
+    private <R> CompletableFuture<R> __supply(Callable<R> operation) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return operation.call();
+            } catch(RuntimeException e) {
+                throw e;
+            } catch(Exception e) {
+                throw new CompletionException(e);
+            }
+        }, this.executor);
+    }
+
+    /**
+     * Runs a write on the executor. When it ends, the point reads in flight are no longer
+     * shared, so a read made after the write is not given a record read before it.
+     *
+     * @param operation The write.
+     * @return A future of the result of the write.
+     */
+    private <R> CompletableFuture<R> __write(Callable<R> operation) {
+        return this.__supply(() -> {
+            try {
+                return operation.call();
+            } finally {
+                this.reads.clear();
+            }
+        });
+    }
+
+    /**
+     * Creates the default executor: a virtual thread per task when the runtime has virtual
+     * threads, or a fixed number of daemon threads otherwise.
+     *
+     * @return The executor.
+     */
+    private static ExecutorService __defaultExecutor() {
+        try {
+            return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(ReflectiveOperationException e) {
+            // Virtual threads are not available before Java 21
+        }
+
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "AsyncCRUD " + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        return Executors.newFixedThreadPool(ASYNC_IO_THREADS, factory);
+    }
+}
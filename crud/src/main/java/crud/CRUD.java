@@ -2,26 +2,49 @@ package crud;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 import components.interfaces.Register;
+import crud.base.BufferPool;
+import crud.base.Snapshot;
 import crud.base.StructureValidation;
+import crud.core.Compactor;
 import crud.core.DataBase;
 import crud.core.Trash;
+import crud.core.WriteAheadLog;
+import crud.core.security.AESCipher;
+import crud.core.security.RSA;
 import crud.core.pattern_matching.BoyerMoore;
 import crud.core.pattern_matching.KMP;
 import crud.core.pattern_matching.Matcher;
 import crud.core.pattern_matching.RabinKarp;
+import crud.core.types.FieldPredicate;
+import crud.core.types.FieldType;
 import crud.core.types.IndexType;
+import crud.core.types.LogEntry;
+import crud.core.types.LogType;
 import crud.core.types.PatternMatchingType;
 import crud.core.types.Response;
 import crud.core.types.SortType;
 import crud.indexes.hash.ExtensibleHash;
 import crud.indexes.query.InvertedIndex;
 import crud.indexes.trees.BPlusTree;
+import crud.indexes.trees.StringBPlusTree;
 import crud.indexes.types.NNode;
 import crud.indexes.types.SNode;
 import crud.sorts.SortedFile;
@@ -35,24 +58,66 @@ import utils.csv.CSVManager;
 import utils.helpers.WatchTime;
 
 /**
+ * <strong> Thread safety </strong>
+ *
+ * <p>
+ * A CRUD can be shared by several threads. The queries ({@code contains}, {@code read} by key,
+ * {@code readAllObj}, {@code count} and the like) hold a read lock, so they run together, and
+ * every operation that writes the archive, the trash or an index holds the write lock, so it
+ * runs alone. The queries keep their position in local cursors and the indexes are only read
+ * by them, so readers never step on each other.
+ * </p>
+ *
+ * <p>
+ * The sequential reading done by {@link #read()}, {@link #isEOF()} and {@link #reset()} moves a
+ * single position shared by every thread. Those calls are safe, but the position is only
+ * meaningful to a single reader; concurrent scans should use one of the queries instead.
+ * </p>
+ *
+ * <p>
+ * The long scans ({@code readAllObj} by predicates, {@code toJsonFile} and the streams) read a
+ * {@link Snapshot} of the archive instead of holding the read lock, so the writes go on while
+ * they run and the scans still see every record once, as it was when they started.
+ * </p>
+ *
+ * <p>
+ * Several writes can be made atomically with {@link #transaction(Transaction.Body)}, which
+ * holds the write lock for all of them and syncs the write-ahead log once at the end.
+ * </p>
+ *
+ * <strong> B+ Tree on a string attribute </strong>
+ *
+ * <p>
+ * When {@link Register#getBPlusTreeAttribute()} names a text field of the layout of the
+ * records, as the title, the B+ Tree is a {@link StringBPlusTree}, which keeps the whole
+ * value of the attribute and allows several records with the same value. It serves
+ * {@code read} and {@code readAllObj} by that attribute, and the ordered reads of
+ * {@link #readRange(String, String, String)} and {@link #readPrefix(String, String)}.
+ * </p>
+ *
  * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
  * @version 1.0.0
  */
-public class CRUD<T extends Register<T>> implements SystemSpecification {
+public class CRUD<T extends Register<T>> implements SystemSpecification, AutoCloseable {
     
     // Attributes
 
-    private static int FILE_COUNT = 0; // Number of files created.
+    private static final AtomicInteger FILE_COUNT = new AtomicInteger(); // Number of files created.
     private final String filePath; // File name for the CRUD system.
     private final String fileName; // File name for the CRUD system.
     private final DataBase<T> archive; // Database for storing records.
     private final Trash<T> trash; // Trash for deleted records.
+    private final WriteAheadLog log; // Write-ahead log of the operations not yet checkpointed.
     private final Constructor<T> constructor; // Constructor for creating record instances.
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(); // Shared by the queries, exclusive for the writes.
 
     private BPlusTree<NNode> tree = null; // B+ Tree index for records.
+    private StringBPlusTree stringTree = null; // B+ Tree index for records, when it indexes a string attribute.
     private ExtensibleHash<NNode> hash = null; // Extensible Hash index for records.
     private InvertedIndex invertedIndex = null; // Inverted Index for records.
     private IndexType[] indexTypes = null; // Array of index types used in the CRUD system.
+    private Compactor<T> compactor = null; // Compaction of the main archive running in the background.
+    private Transaction<T> transaction = null; // Transaction being run, whose operations are committed together.
 
     private int numberOfBranches = -1; // Number of branches for sorting records.
     private int numberOfRegistersPerBlock = -1; // Number of registers per block for sorting records.
@@ -76,6 +141,10 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
         this.indexTypes = indexTypes;
 
         StructureValidation.verifyDirectoryStructure();
+
+        this.log = new WriteAheadLog(this.filePath + WAL_FILES_EXTENSION);
+        this.archive.setLog(this.log);
+        BufferPool.getInstance().addBarrier(this.log);
         
         if(indexTypes.length > 0) {
             ArrayList<IndexType> indexTypesList = new ArrayList<>();
@@ -90,8 +159,10 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
             }
                 
             for(IndexType indexType : indexTypesList) {
-                if(indexType.equals(IndexType.BPlusTree) && this.tree == null) {
-                    this.tree = new BPlusTree<NNode>(8, this.fileName + "_BplusTree.db", NNode.class.getConstructor());
+                if(indexType.equals(IndexType.BPlusTree) && this.__isStringAttribute(constructor.newInstance().getBPlusTreeAttribute())) {
+                    this.stringTree = new StringBPlusTree(this.fileName + "_BplusTree.db");
+                } else if(indexType.equals(IndexType.BPlusTree) && this.tree == null) {
+                    this.tree = new BPlusTree<NNode>(this.fileName + "_BplusTree.db", NNode.class.getConstructor());
                 } else if(indexType.equals(IndexType.Hash) && this.hash == null) {
                     this.hash = new ExtensibleHash<NNode>(this.fileName + "_Hash.db", NNode.class.getConstructor());
                 } else if(indexType.equals(IndexType.InvertedIndex) && this.invertedIndex == null) {
@@ -101,6 +172,11 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
                 }
             }
         }
+
+        this.__recover();
+
+        if((this.tree != null && this.tree.wasFormatted()) || (this.stringTree != null && this.stringTree.wasFormatted()))
+            this.rebuildIndex(IndexType.BPlusTree);
     }
 
     // Public Methods
@@ -119,7 +195,12 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws IOException if an I/O error occurs.
      */
     public long length() throws IOException {
-        return this.archive.length();
+        this.lock.readLock().lock();
+        try {
+            return this.archive.length();
+        } finally {
+            this.lock.readLock().unlock();
+        }
     }
 
     /**
@@ -129,62 +210,74 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws IOException if an I/O error occurs.
      */
     public void populateAll(String CSVpath) throws Exception {
-        CSVManager manager = new CSVManager(CSV_FILES_DIRECTORY + CSVpath);
-        this.clear();
-
+        this.lock.writeLock().lock();
         try {
-            String[] arr = manager.readNext();
-            while(arr != null) {
-                T obj = this.constructor.newInstance();
-                obj.from(arr);
-                this.create(obj);
-                arr = manager.readNext();
+            CSVManager manager = new CSVManager(CSV_FILES_DIRECTORY + CSVpath);
+            this.clear();
+
+            ArrayList<T> objs = new ArrayList<T>();
+
+            try {
+                String[] arr = manager.readNext();
+                while(arr != null) {
+                    T obj = this.constructor.newInstance();
+                    obj.from(arr);
+                    objs.add(obj);
+                    arr = manager.readNext();
+                }
+            } catch(Exception e) {
+                System.err.println("The file " + this.filePath + " has a register that is not from the given type at line .");
+                e.printStackTrace();
             }
-        } catch(Exception e) {
-            System.err.println("The file " + this.filePath + " has a register that is not from the given type at line .");
-            e.printStackTrace();
-        }
 
-        this.archive.reset();
-        manager.close();
+            this.createAll(objs);
+
+            this.archive.reset();
+            manager.close();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
     }
 
     /**
-     * Rebuilds the specified indexes for the CRUD system.
+     * Rebuilds the specified indexes for the CRUD system. The records are decoded in
+     * parallel and only the key of each index is kept with its address, not the records.
+     * The B+ Tree is bulk loaded from its sorted keys instead of inserting them one by one.
      *
      * @param indexTypes The index types to be rebuilt.
      * @throws Exception if an error occurs during index rebuilding.
      */
     public void rebuildIndex(IndexType... indexTypes) throws Exception {
-        for(IndexType index : indexTypes) {
-            if(index.equals(IndexType.BPlusTree) && this.tree != null) {
-                this.tree.clear();
-
-                this.archive.reset();
-                while(!this.archive.isEOF()) {
-                    Response<T> response = this.archive.readObj();
-                    T obj = response.body;
-                    this.tree.insert(obj.get(obj.getBPlusTreeAttribute()), response.currentAddress);
-                }
-            } else if(index.equals(IndexType.Hash) && this.hash != null) {
-                this.hash.clear();
-
-                this.archive.reset();
-                while(!this.archive.isEOF()) {
-                    Response<T> response = this.archive.readObj();
-                    T obj = response.body;
-                    this.hash.insert(obj.get(obj.getExtensibleHashAttribute()), response.currentAddress);
-                }
-            } else if(index.equals(IndexType.InvertedIndex) && this.invertedIndex != null) {
-                this.invertedIndex.clear();
-
-                this.archive.reset();
-                while(!this.archive.isEOF()) {
-                    Response<T> response = this.archive.readObj();
-                    T obj = response.body;
-                    this.invertedIndex.insert((String)obj.get(obj.getInvertedIndexAttributes()[0]), response.currentAddress);
+        this.lock.writeLock().lock();
+        try {
+            for(IndexType index : indexTypes) {
+                if(index.equals(IndexType.BPlusTree) && this.tree != null) {
+                    List<NNode> nodes = this.__keys(obj -> obj.get(obj.getBPlusTreeAttribute()), (key, address) -> {
+                        NNode node = new NNode();
+                        node.setKey(key);
+                        node.setValue(address);
+                        return node;
+                    });
+
+                    int repeated = this.tree.bulkLoad(nodes);
+                    if(repeated > 0)
+                        System.err.println("The B+ Tree of " + this.filePath + " left out " + repeated + " records with repeated keys.");
+                } else if(index.equals(IndexType.BPlusTree) && this.stringTree != null) {
+                    this.stringTree.bulkLoad(this.__keys(obj -> (String)obj.get(obj.getBPlusTreeAttribute()), Map::entry));
+                } else if(index.equals(IndexType.Hash) && this.hash != null) {
+                    this.hash.clear();
+
+                    for(Map.Entry<Object, Long> entry : this.__keys(obj -> obj.get(obj.getExtensibleHashAttribute()), Map::entry))
+                        this.hash.insert(entry.getKey(), entry.getValue());
+                } else if(index.equals(IndexType.InvertedIndex) && this.invertedIndex != null) {
+                    this.invertedIndex.clear();
+
+                    for(Map.Entry<String, Long> entry : this.__keys(obj -> (String)obj.get(obj.getInvertedIndexAttributes()[0]), Map::entry))
+                        this.invertedIndex.insert(entry.getKey(), entry.getValue());
                 }
             }
+        } finally {
+            this.lock.writeLock().unlock();
         }
     }
 
@@ -194,13 +287,7 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws IOException if an I/O error occurs during JSON file generation.
      */
     public void toJsonFile() throws IOException {
-        String path = JSON_FILES_DIRECTORY + this.fileName + (++FILE_COUNT) + ".json";
-        this.archive.toJsonFile(path);
-
-        path = JSON_TRASH_FILES_DIRECTORY + this.fileName + FILE_COUNT + ".trash.json";
-        this.trash.toJsonFile(path);
-
-        this.indexesToJsonFile();
+        this.__toJsonFile(this.fileName + FILE_COUNT.incrementAndGet());
     }
 
     /**
@@ -210,13 +297,36 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws IOException if an I/O error occurs during JSON file generation.
      */
     public void toJsonFile(int fileIndex) throws IOException {
-        String path = JSON_FILES_DIRECTORY + this.fileName + fileIndex + ".json";
-        this.archive.toJsonFile(path);
+        this.__toJsonFile(this.fileName + fileIndex);
+    }
 
-        path = JSON_TRASH_FILES_DIRECTORY + this.fileName + fileIndex + ".trash.json";
-        this.trash.toJsonFile(path);
+    /**
+     * Opens a snapshot of the main archive. The records read through it are the ones the
+     * archive has now, even while other threads create, update or delete records, and the
+     * scans through it do not hold any lock. The snapshot must be closed, and the archive
+     * waits for it to be closed before it is cleared, compacted or closed.
+     *
+     * @return The snapshot.
+     * @throws IOException if an I/O error occurs while opening the snapshot.
+     */
+    public Snapshot snapshot() throws IOException {
+        this.lock.readLock().lock();
+        try {
+            return this.archive.snapshot();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
 
-        this.indexesToJsonFile();
+    /**
+     * Streams the records seen by a snapshot of the main archive, decrypted, with their addresses.
+     *
+     * @param snapshot The snapshot, opened by {@link #snapshot()}.
+     * @return A stream of responses holding the records and their addresses.
+     * @throws IOException if an I/O error occurs while starting the stream.
+     */
+    public Stream<Response<T>> stream(Snapshot snapshot) throws IOException {
+        return this.archive.stream(snapshot);
     }
 
     /**
@@ -228,42 +338,57 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws Exception if an error occurs during the search.
      */
     public Response<T> contains(String key, Object value) throws Exception {
-        T inst = this.constructor.newInstance();
-        Response<T> response = new Response<T>();
-
-        if(this.tree != null && inst.getBPlusTreeAttribute().equals(key)) {
-            NNode node = this.tree.search(value);
-
-            if(node != null) {
-                response.success = true;
-                response.message = "The key \"" + value + "\" was found in the hash index.";
-                response.currentAddress = (long)node.getValue();
-            } else {
-                response.message = "The key \"" + value + "\" was not found in the hash index.";
-            }
-        } else if(this.hash != null && inst.getExtensibleHashAttribute().equals(key)) {
-            NNode node = this.hash.search(value);
-
-            if(node != null) {
-                response.success = true;
-                response.message = "The key \"" + value + "\" was found in the hash index.";
-                response.currentAddress = (long)node.getValue();
+        this.lock.readLock().lock();
+        try {
+            T inst = this.constructor.newInstance();
+            Response<T> response = new Response<T>();
+
+            if(this.tree != null && inst.getBPlusTreeAttribute().equals(key)) {
+                NNode node = this.tree.search(value);
+
+                if(node != null) {
+                    response.success = true;
+                    response.message = "The key \"" + value + "\" was found in the hash index.";
+                    response.currentAddress = (long)node.getValue();
+                } else {
+                    response.message = "The key \"" + value + "\" was not found in the hash index.";
+                }
+            } else if(this.stringTree != null && inst.getBPlusTreeAttribute().equals(key)) {
+                Long address = this.stringTree.search((String)value);
+
+                if(address != null) {
+                    response.success = true;
+                    response.message = "The key \"" + value + "\" was found in the B+ Tree index.";
+                    response.currentAddress = address;
+                } else {
+                    response.message = "The key \"" + value + "\" was not found in the B+ Tree index.";
+                }
+            } else if(this.hash != null && inst.getExtensibleHashAttribute().equals(key)) {
+                NNode node = this.hash.search(value);
+
+                if(node != null) {
+                    response.success = true;
+                    response.message = "The key \"" + value + "\" was found in the hash index.";
+                    response.currentAddress = (long)node.getValue();
+                } else {
+                    response.message = "The key \"" + value + "\" was not found in the hash index.";
+                }
             } else {
-                response.message = "The key \"" + value + "\" was not found in the hash index.";
+                long address = this.archive.search(key, value);
+
+                if(address != -1) {
+                    response.success = true;
+                    response.message = "The key \"" + value + "\" was found in the archive.";
+                    response.currentAddress = address;
+                } else {
+                    response.message = "The key \"" + value + "\" was not found in the archive.";
+                }
             }
-        } else {
-            long address = this.archive.search(key, value);
 
-            if(address != -1) {
-                response.success = true;
-                response.message = "The key \"" + value + "\" was found in the archive.";
-                response.currentAddress = address;
-            } else {
-                response.message = "The key \"" + value + "\" was not found in the archive.";
-            }
+            return response;
+        } finally {
+            this.lock.readLock().unlock();
         }
-
-        return response;
     }
 
     /**
@@ -274,16 +399,56 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws Exception if an error occurs during record creation.
      */
     public boolean create(T obj) throws Exception {
-        long address = this.archive.create(obj).currentAddress;
-
-        if(this.tree != null) 
-            this.tree.insert(obj.get(obj.getBPlusTreeAttribute()), address);
-        if(this.hash != null)
-            this.hash.insert(obj.get(obj.getExtensibleHashAttribute()), address);
-        if(this.invertedIndex != null) 
-            this.invertedIndex.insert((String)obj.get(obj.getInvertedIndexAttributes()[0]), address);
+        this.lock.writeLock().lock();
+        try {
+            this._create(obj);
+            return true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
 
-        return true;
+    /**
+     * Creates a batch of records in the CRUD system. The records are appended to the
+     * archive in a single sequential write and then inserted in each index, one index
+     * at a time, so the pages of every index stay hot while it is being filled.
+     *
+     * @param objs The records to create.
+     * @return `true` if the records creation is successful, `false` otherwise.
+     * @throws Exception if an error occurs during records creation.
+     */
+    public boolean createAll(Iterable<T> objs) throws Exception {
+        this.lock.writeLock().lock();
+        try {
+            ArrayList<T> list = new ArrayList<T>();
+            for(T obj : objs) 
+                list.add(obj);
+
+            ArrayList<Response<T>> responses = this.archive.appendBatch(list);
+
+            // The records as written carry the IDs given by the archive
+            list.clear();
+            for(Response<T> response : responses)
+                list.add(response.body.decript());
+
+            if(this.tree != null) 
+                for(int i = 0; i < responses.size(); i++)
+                    this.tree.insert(list.get(i).get(list.get(i).getBPlusTreeAttribute()), responses.get(i).currentAddress);
+            if(this.stringTree != null) 
+                for(int i = 0; i < responses.size(); i++)
+                    this.stringTree.insert((String)list.get(i).get(list.get(i).getBPlusTreeAttribute()), responses.get(i).currentAddress);
+            if(this.hash != null)
+                for(int i = 0; i < responses.size(); i++)
+                    this.hash.insert(list.get(i).get(list.get(i).getExtensibleHashAttribute()), responses.get(i).currentAddress);
+            if(this.invertedIndex != null) 
+                for(int i = 0; i < responses.size(); i++)
+                    this.invertedIndex.insert((String)list.get(i).get(list.get(i).getInvertedIndexAttributes()[0]), responses.get(i).currentAddress);
+
+            this.__commit();
+            return true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -293,11 +458,16 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws IOException if an I/O error occurs during record reading.
      */
     public T read() throws IOException {
-        return this.archive.readObj().body;
+        this.lock.writeLock().lock();
+        try {
+            return this.archive.readObj().body;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
     }
 
     /**
-     * Reads a range of records from the CRUD system.
+     * Reads a range of records from the CRUD system. The IDs without a record are read as `null`.
      *
      * @param startId The starting ID of the range.
      * @param lastId  The ending ID of the range.
@@ -305,13 +475,150 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws Exception if an error occurs during record reading.
      */
     public List<T> read(int startId, int lastId) throws Exception {
-        List<T> list = new ArrayList<>();
+        this.lock.readLock().lock();
+        try {
+            List<T> list = new ArrayList<>();
 
-        int range = lastId - startId + 1;
-        for(int i = 0; i < range; i++) 
-            list.add(this.read("id", startId + i));
+            int range = lastId - startId + 1;
+            if(this.__isTreeById()) {
+                for(int i = 0; i < range; i++)
+                    list.add(null);
 
-        return list;
+                Iterator<NNode> nodes = this.tree.range(startId, lastId);
+                while(nodes.hasNext()) {
+                    NNode node = nodes.next();
+                    list.set((int)node.getKey() - startId, this.archive.readObj((long)node.getValue()));
+                }
+
+                return list;
+            }
+
+            for(int i = 0; i < range; i++) 
+                list.add(this.read("id", startId + i));
+
+            return list;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the records whose IDs are within a range, in the order of the IDs. With a B+ Tree
+     * on the IDs, the records are found by walking its leaves instead of searching every ID.
+     *
+     * @param startId The starting ID of the range.
+     * @param lastId  The ending ID of the range.
+     * @return A list of the records within the specified range.
+     * @throws Exception if an error occurs during record reading.
+     */
+    public List<T> readRange(int startId, int lastId) throws Exception {
+        this.lock.readLock().lock();
+        try {
+            List<T> list = new ArrayList<>();
+
+            if(this.__isTreeById()) {
+                Iterator<NNode> nodes = this.tree.range(startId, lastId);
+                while(nodes.hasNext())
+                    list.add(this.archive.readObj((long)nodes.next().getValue()));
+
+                return list;
+            }
+
+            for(int i = startId; i <= lastId; i++) {
+                T obj = this.read("id", i);
+                if(obj != null) list.add(obj);
+            }
+
+            return list;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads a page of records by keyset pagination: the records with the smallest IDs
+     * after the given one. The next page starts after the ID of the last record read.
+     *
+     * <pre>{@code
+     * List<Show> page = crud.readAfter(0, 50);
+     * while(!page.isEmpty())
+     *     page = crud.readAfter(page.get(page.size() - 1).getId(), 50);
+     * }</pre>
+     *
+     * @param afterId The ID after which the page starts, or 0 for the first page.
+     * @param limit   The maximum number of records of the page.
+     * @return A list of at most {@code limit} records, in the order of the IDs.
+     * @throws Exception if an error occurs during record reading.
+     */
+    public List<T> readAfter(int afterId, int limit) throws Exception {
+        this.lock.readLock().lock();
+        try {
+            List<T> list = new ArrayList<>();
+
+            if(this.__isTreeById()) {
+                Iterator<NNode> nodes = this.tree.range(afterId + 1, null);
+                while(list.size() < limit && nodes.hasNext())
+                    list.add(this.archive.readObj((long)nodes.next().getValue()));
+
+                return list;
+            }
+
+            int lastId = this.archive.getLastId();
+            for(int i = afterId + 1; list.size() < limit && i <= lastId; i++) {
+                T obj = this.read("id", i);
+                if(obj != null) list.add(obj);
+            }
+
+            return list;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the records whose value of a text attribute is within a range, in the order of
+     * the values. With a B+ Tree on the attribute, the records are found by walking its
+     * leaves; otherwise the archive is scanned and the records are sorted.
+     *
+     * @param key  The text attribute.
+     * @param from The first value of the range, included, or null to start at the smallest value.
+     * @param to   The last value of the range, included, or null to go to the largest value.
+     * @return A list of the records within the specified range.
+     * @throws Exception if an error occurs during record reading.
+     */
+    public List<T> readRange(String key, String from, String to) throws Exception {
+        this.lock.readLock().lock();
+        try {
+            if(this.stringTree != null && this.constructor.newInstance().getBPlusTreeAttribute().equals(key))
+                return this.__readAll(this.stringTree.range(from, to));
+
+            return this.__readSorted(key, (value) -> (from == null || value.compareTo(from) >= 0) && (to == null || value.compareTo(to) <= 0));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the records whose value of a text attribute starts with a prefix, in the order
+     * of the values. With a B+ Tree on the attribute, the records are found by walking its
+     * leaves from the first value with the prefix; otherwise the archive is scanned and the
+     * records are sorted.
+     *
+     * @param key    The text attribute.
+     * @param prefix The prefix of the values.
+     * @return A list of the records whose value starts with the prefix.
+     * @throws Exception if an error occurs during record reading.
+     */
+    public List<T> readPrefix(String key, String prefix) throws Exception {
+        this.lock.readLock().lock();
+        try {
+            if(this.stringTree != null && this.constructor.newInstance().getBPlusTreeAttribute().equals(key))
+                return this.__readAll(this.stringTree.prefix(prefix));
+
+            return this.__readSorted(key, (value) -> value.startsWith(prefix));
+        } finally {
+            this.lock.readLock().unlock();
+        }
     }
 
     /**
@@ -323,17 +630,25 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws Exception if an error occurs during record reading.
      */
     public T read(String key, Object value) throws Exception {
-        T inst = this.constructor.newInstance();
+        this.lock.readLock().lock();
+        try {
+            T inst = this.constructor.newInstance();
+
+            if(this.tree != null && inst.getBPlusTreeAttribute().equals(key)) {
+                NNode node = this.tree.search(value);
+                return node != null ? this.archive.readObj((long)node.getValue()) : null;
+            } else if(this.stringTree != null && inst.getBPlusTreeAttribute().equals(key)) {
+                Long address = this.stringTree.search((String)value);
+                return (address != null) ? this.archive.readObj(address) : null;
+            } else if(this.hash != null && inst.getExtensibleHashAttribute().equals(key)) {
+                NNode node = this.hash.search(value);
+                return (node != null) ? this.archive.readObj((long)node.getValue()) : null;
+            }
 
-        if(this.tree != null && inst.getBPlusTreeAttribute().equals(key)) {
-            NNode node = this.tree.search(value);
-            return node != null ? this.archive.readObj((long)node.getValue()) : null;
-        } else if(this.hash != null && inst.getExtensibleHashAttribute().equals(key)) {
-            NNode node = this.hash.search(value);
-            return (node != null) ? this.archive.readObj((long)node.getValue()) : null;
+            return this.archive.readObj(key, value).body;
+        } finally {
+            this.lock.readLock().unlock();
         }
-
-        return this.archive.readObj(key, value).body;
     }
 
     /**
@@ -346,19 +661,58 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      */
     @SuppressWarnings("unchecked")
     public T[] readAllObj(String key, Object value) throws Exception {
-        if(this.invertedIndex != null && this.constructor.newInstance().getInvertedIndexAttributes()[0].equals(key)) {
-            SNode[] nodes = this.invertedIndex.search(((String)value));
-            T[] res = (T[])new Register[nodes.length];
+        this.lock.readLock().lock();
+        try {
+            if(this.invertedIndex != null && this.constructor.newInstance().getInvertedIndexAttributes()[0].equals(key)) {
+                SNode[] nodes = this.invertedIndex.search(((String)value));
+                T[] res = (T[])new Register[nodes.length];
+
+                for(int i = 0; i < nodes.length; i++) {
+                    long address = (long)nodes[i].getValue();
+                    if(address != -1L) res[i] = this.archive.readObj(address);
+                }
 
-            for(int i = 0; i < nodes.length; i++) {
-                long address = (long)nodes[i].getValue();
-                if(address != -1L) res[i] = this.archive.readObj(address);
+                return res;
+            } else if(this.stringTree != null && this.constructor.newInstance().getBPlusTreeAttribute().equals(key)) {
+                List<T> list = this.__readAll(this.stringTree.range((String)value, (String)value));
+                return list.toArray((T[])Array.newInstance(this.constructor.getDeclaringClass(), list.size()));
             }
 
-            return res;
-        } 
+            return this.archive.readAllObj(key, value);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads all records matching every given predicate from the CRUD system. The predicates
+     * on fields that are not encrypted are evaluated without decoding the records.
+     * The records are read from a snapshot, unless the calling thread holds the write lock,
+     * as in a transaction, so no write can happen meanwhile.
+     *
+     * @param predicates The predicates to match.
+     * @return An array of records matching the predicates.
+     * @throws Exception if an error occurs during record reading.
+     */
+    public T[] readAllObj(FieldPredicate... predicates) throws Exception {
+        if(this.lock.isWriteLockedByCurrentThread())
+            return this.readAllObj((Snapshot)null, predicates);
 
-        return this.archive.readAllObj(key, value);
+        try(Snapshot snapshot = this.snapshot()) {
+            return this.readAllObj(snapshot, predicates);
+        }
+    }
+
+    /**
+     * Reads all records seen by a snapshot of the main archive matching every given predicate.
+     *
+     * @param snapshot   The snapshot, opened by {@link #snapshot()}.
+     * @param predicates The predicates to match.
+     * @return An array of records matching the predicates.
+     * @throws Exception if an error occurs during record reading.
+     */
+    public T[] readAllObj(Snapshot snapshot, FieldPredicate... predicates) throws Exception {
+        return this.archive.readAllObj(snapshot, predicates);
     }
 
     /**
@@ -370,18 +724,28 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws Exception if an error occurs during record updating.
      */
     public boolean update(int id, T obj) throws Exception {
-        Response<T> response = this.archive.update(id, obj);
+        this.lock.writeLock().lock();
+        try {
+            String oldKey = this.__stringKey(id);
+            Response<T> response = this.archive.update(id, obj);
         
-        if(response.success) {
-            if(this.tree != null)
-                this.tree.update(id, response.currentAddress);
-            else if(this.hash != null)
-                this.hash.update(id, response.currentAddress);
-            else if(this.invertedIndex != null)
-                this.invertedIndex.update((String)obj.get(obj.getInvertedIndexAttributes()[0]), response.oldAddress, response.currentAddress);
-        }
+            if(response.success) {
+                if(this.tree != null)
+                    this.tree.update(id, response.currentAddress);
+                else if(this.stringTree != null)
+                    this.__updateStringTree(oldKey, response.oldAddress, (String)obj.get(obj.getBPlusTreeAttribute()), response.currentAddress);
+                else if(this.hash != null)
+                    this.hash.update(id, response.currentAddress);
+                else if(this.invertedIndex != null)
+                    this.invertedIndex.update((String)obj.get(obj.getInvertedIndexAttributes()[0]), response.oldAddress, response.currentAddress);
+
+                this.__commit();
+            }
         
-        return response.success;
+            return response.success;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -394,18 +758,28 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws Exception if an error occurs during record updating.
      */
     public boolean update(int id, String key, Object value) throws Exception {
-        Response<T> response = this.archive.update(id, key, value);
+        this.lock.writeLock().lock();
+        try {
+            String oldKey = this.__stringKey(id);
+            Response<T> response = this.archive.update(id, key, value);
+
+            if(response.success) {
+                if(this.tree != null)
+                    this.tree.update(id, response.currentAddress);
+                else if(this.stringTree != null)
+                    this.__updateStringTree(oldKey, response.oldAddress, this.constructor.newInstance().getBPlusTreeAttribute().equals(key) ? (String)value : oldKey, response.currentAddress);
+                else if(this.hash != null)
+                    this.hash.update(id, response.currentAddress);
+                else if(this.invertedIndex != null && this.constructor.newInstance().getInvertedIndexAttributes()[0].equals(key))
+                    this.invertedIndex.update((String)value, response.oldAddress, response.currentAddress);
+
+                this.__commit();
+            }
 
-        if(response.success) {
-            if(this.tree != null)
-                this.tree.update(id, response.currentAddress);
-            else if(this.hash != null)
-                this.hash.update(id, response.currentAddress);
-            else if(this.invertedIndex != null && this.constructor.newInstance().getInvertedIndexAttributes()[0].equals(key))
-                this.invertedIndex.update((String)value, response.oldAddress, response.currentAddress);
+            return response.success;
+        } finally {
+            this.lock.writeLock().unlock();
         }
-
-        return response.success;
     }
 
     /**
@@ -416,19 +790,104 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws Exception if an error occurs during record deletion.
      */
     public boolean delete(int id) throws Exception {
-        boolean value = true;
-        this.trash.create(this.read("id", id));
+        this.lock.writeLock().lock();
+        try {
+            boolean value = true;
+            Response<T> found = this.contains("id", id);
+            long address = found.success ? found.currentAddress : this.archive.search("id", id);
 
-        if(this.tree != null) 
-            value &= this.tree.delete(id);
-        else if(this.hash != null)
-            value &= this.hash.delete(id);
-        else if(this.invertedIndex != null) {
-            Response<T> response = this.archive.readObj("id", id);
-            value &= this.invertedIndex.delete((String)response.body.get(response.body.getInvertedIndexAttributes()[0]), response.currentAddress);
+            if(address == -1)
+                return false;
+
+            T stored = this.archive.readStoredObj(address);
+            this.log.append(LogType.Delete, id, address, address, stored.toByteArray());
+
+            T obj = stored.decript();
+            this.trash.create(obj);
+
+            if(this.tree != null) 
+                value &= this.tree.delete(id);
+            else if(this.stringTree != null)
+                value &= this.stringTree.delete((String)obj.get(obj.getBPlusTreeAttribute()), address);
+            else if(this.hash != null)
+                value &= this.hash.delete(id);
+            else if(this.invertedIndex != null) 
+                value &= this.invertedIndex.delete((String)obj.get(obj.getInvertedIndexAttributes()[0]), address);
+
+            value &= this.archive.deleteAt(address);
+            this.__commit();
+            return value;
+        } finally {
+            this.lock.writeLock().unlock();
         }
+    }
+
+    /**
+     * Runs several operations as a single transaction. The operations are made through the
+     * given transaction while the write lock is held, and are committed together with a
+     * single sync of the write-ahead log when the body returns, instead of one sync every
+     * {@code WAL_SYNC_INTERVAL} operations.
+     *
+     * <p>
+     * The pages written by the transaction are held in the buffer pool until it is committed,
+     * so after a crash either every operation is replayed from the log or none was written.
+     * If the body throws, the operations already made are undone in the reverse order before
+     * the exception is thrown again. A transaction must fit in the buffer pool, and a
+     * transaction started inside another one joins it.
+     * </p>
+     *
+     * <pre>{@code
+     * crud.transaction(tx -> {
+     *     tx.update(1, show);
+     *     tx.delete(2);
+     *     tx.create(other);
+     * });
+     * }</pre>
+     *
+     * @param body The operations of the transaction.
+     * @throws Exception if an operation fails, after the transaction is undone.
+     */
+    public void transaction(Transaction.Body<T> body) throws Exception {
+        this.lock.writeLock().lock();
+        try {
+            if(this.transaction != null) {
+                body.run(this.transaction);
+                return;
+            }
+
+            ArrayList<String> paths = this.__paths();
+            for(String path : paths)
+                BufferPool.getInstance().holdWrites(path);
+
+            try {
+                this.transaction = new Transaction<T>(this);
+                this.log.append(LogType.Begin, -1, -1L, -1L, new byte[0]);
+
+                try {
+                    body.run(this.transaction);
+                } catch(Exception e) {
+                    try {
+                        this.transaction.rollback();
+                    } catch(Exception r) {
+                        e.addSuppressed(r);
+                    }
 
-        return this.archive.delete(id) && value;
+                    throw e;
+                } finally {
+                    this.transaction.end();
+                    this.transaction = null;
+                    this.log.append(LogType.Commit, -1, -1L, -1L, new byte[0]);
+                    this.log.flush();
+                }
+            } finally {
+                for(String path : paths)
+                    BufferPool.getInstance().releaseWrites(path);
+            }
+
+            this.__commit();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -466,19 +925,24 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws Exception if an error occurs during compression.
      */
     public MenuCompressionResponse compress() throws Exception {
-        String fileName = new Date().toString().replaceAll("\s", "_") + "_" + this.fileName + ".db";
-        MenuCompressionResponse response = new MenuCompressionResponse(fileName);
-
-        WatchTime watch = new WatchTime();
-        watch.start();
-        this.archive.compressLZW(LZW_FILES_DIRECTORY + fileName);
-        response.timeLZW = watch.stop();
-        watch.reset();
-        watch.start();
-        this.archive.compressHuffman(HUFFMAN_FILES_DIRECTORY + fileName);
-        response.timeHuffman = watch.stop();
+        this.lock.writeLock().lock();
+        try {
+            String fileName = new Date().toString().replaceAll("\s", "_") + "_" + this.fileName + ".db";
+            MenuCompressionResponse response = new MenuCompressionResponse(fileName);
+
+            WatchTime watch = new WatchTime();
+            watch.start();
+            this.archive.compressLZW(LZW_FILES_DIRECTORY + fileName);
+            response.timeLZW = watch.stop();
+            watch.reset();
+            watch.start();
+            this.archive.compressHuffman(HUFFMAN_FILES_DIRECTORY + fileName);
+            response.timeHuffman = watch.stop();
         
-        return response;
+            return response;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -489,17 +953,25 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws Exception if an error occurs during decompression.
      */
     public MenuCompressionResponse decompress(String filePath) throws Exception {
-        MenuCompressionResponse response = new MenuCompressionResponse(filePath);
-        WatchTime watch = new WatchTime();
-        watch.start();
-        this.archive.decompressHuffman(HUFFMAN_FILES_DIRECTORY + filePath);
-        response.timeHuffman = watch.stop();
-        watch.reset();
-        watch.start();
-        this.archive.decompressLZW(LZW_FILES_DIRECTORY + filePath);
-        response.timeLZW = watch.stop();
-
-        return response;
+        this.lock.writeLock().lock();
+        try {
+            MenuCompressionResponse response = new MenuCompressionResponse(filePath);
+            WatchTime watch = new WatchTime();
+            this.__cancelCompaction();
+            this.checkpoint();
+            watch.start();
+            this.archive.decompressHuffman(HUFFMAN_FILES_DIRECTORY + filePath);
+            response.timeHuffman = watch.stop();
+            watch.reset();
+            watch.start();
+            this.archive.decompressLZW(LZW_FILES_DIRECTORY + filePath);
+            response.timeLZW = watch.stop();
+            this.checkpoint();
+
+            return response;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -571,21 +1043,30 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws Exception if an error occurs during record restoration.
      */
     public boolean restore(int id) throws Exception {
-        if(this.trash.search("id", id) == -1)
-            return false;
-
-        Response<T> response = this.archive.restore(id);
-        if(!response.success) 
-            response = this.archive.create(this.trash.readObj("id", id), true);
-
-        if(this.tree != null) 
-            this.tree.insert(response.body.get(response.body.getBPlusTreeAttribute()), response.currentAddress);
-        if(this.hash != null)
-            this.hash.insert(response.body.get(response.body.getExtensibleHashAttribute()), response.currentAddress);
-        if(this.invertedIndex != null) 
-            this.invertedIndex.insert((String)response.body.get(response.body.getInvertedIndexAttributes()[0]), response.currentAddress);
-
-        return this.trash.delete(id);
+        this.lock.writeLock().lock();
+        try {
+            if(this.trash.search("id", id) == -1)
+                return false;
+
+            Response<T> response = this.archive.restore(id);
+            if(!response.success) 
+                response = this.archive.create(this.trash.readObj("id", id), true);
+
+            if(this.tree != null) 
+                this.tree.insert(response.body.get(response.body.getBPlusTreeAttribute()), response.currentAddress);
+            if(this.stringTree != null) 
+                this.stringTree.insert((String)response.body.decript().get(response.body.getBPlusTreeAttribute()), response.currentAddress);
+            if(this.hash != null)
+                this.hash.insert(response.body.get(response.body.getExtensibleHashAttribute()), response.currentAddress);
+            if(this.invertedIndex != null) 
+                this.invertedIndex.insert((String)response.body.decript().get(response.body.getInvertedIndexAttributes()[0]), response.currentAddress);
+
+            boolean value = this.trash.delete(id);
+            this.__commit();
+            return value;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -597,25 +1078,33 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws Exception if an error occurs during sorting.
      */
     public boolean orderBy(String key, SortType algorithm) throws Exception {
-        SortedFile<T> sorted;
-
-        if(algorithm.equals(SortType.FixedBlocks)) {
-            sorted = new SortedFileFirst<T>(this.filePath, T.MAX_REGISTER_SIZE, this.constructor);
-        } else if(algorithm.equals(SortType.VariableBlocks)) {
-            sorted = new SortedFileSecond<T>(this.filePath, T.MAX_REGISTER_SIZE, this.constructor);
-        } else if(algorithm.equals(SortType.Heap)) {
-            sorted = new SortedFileHeap<T>(this.filePath, T.MAX_REGISTER_SIZE, this.constructor);
-        } else throw new IllegalArgumentException("The argument \"" + algorithm + "\" is not a valid algorithm.");
+        this.lock.writeLock().lock();
+        try {
+            SortedFile<T> sorted;
+
+            if(algorithm.equals(SortType.FixedBlocks)) {
+                sorted = new SortedFileFirst<T>(this.filePath, T.MAX_REGISTER_SIZE, this.constructor);
+            } else if(algorithm.equals(SortType.VariableBlocks)) {
+                sorted = new SortedFileSecond<T>(this.filePath, T.MAX_REGISTER_SIZE, this.constructor);
+            } else if(algorithm.equals(SortType.Heap)) {
+                sorted = new SortedFileHeap<T>(this.filePath, T.MAX_REGISTER_SIZE, this.constructor);
+            } else throw new IllegalArgumentException("The argument \"" + algorithm + "\" is not a valid algorithm.");
+
+            if(this.numberOfBranches != -1 && this.numberOfRegistersPerBlock != -1) {
+                sorted.setBranches(numberOfBranches);
+                sorted.setNumberOfRegistersPerBlock(numberOfRegistersPerBlock);
+            }
 
-        if(this.numberOfBranches != -1 && this.numberOfRegistersPerBlock != -1) {
-            sorted.setBranches(numberOfBranches);
-            sorted.setNumberOfRegistersPerBlock(numberOfRegistersPerBlock);
+            sorted.setComparator(constructor.newInstance().getProperties().get(key));
+            this.__cancelCompaction();
+            this.checkpoint();
+            boolean value = sorted.sort();
+            this.restartIndexes();
+            this.checkpoint();
+            return value;
+        } finally {
+            this.lock.writeLock().unlock();
         }
-
-        sorted.setComparator(constructor.newInstance().getProperties().get(key));
-        boolean value = sorted.sort();
-        this.restartIndexes();
-        return value;
     }
 
     /**
@@ -626,7 +1115,12 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws Exception if an error occurs during sorting.
      */
     public boolean orderBy(String key) throws Exception {
-        return this.orderBy(key, SortType.Heap);
+        this.lock.writeLock().lock();
+        try {
+            return this.orderBy(key, SortType.Heap);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -666,8 +1160,14 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws IOException if an I/O error occurs during archive clearing.
      */
     public boolean cleanArchive() throws IOException {
-        this.archive.clear();
-        return true;
+        this.lock.writeLock().lock();
+        try {
+            this.__cancelCompaction();
+            this.archive.clear();
+            return true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -677,8 +1177,13 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws IOException if an I/O error occurs during trash clearing.
      */
     public boolean clearTrash() throws IOException {
-        this.trash.clear();
-        return true;
+        this.lock.writeLock().lock();
+        try {
+            this.trash.clear();
+            return true;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -688,7 +1193,12 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws IOException if an I/O error occurs during checking.
      */
     public boolean isEmpty() throws IOException {
-        return this.archive.isEmpty();
+        this.lock.readLock().lock();
+        try {
+            return this.archive.isEmpty();
+        } finally {
+            this.lock.readLock().unlock();
+        }
     }
 
     /**
@@ -698,7 +1208,12 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws IOException if an I/O error occurs during checking.
      */
     public boolean isEOF() throws IOException {
-        return this.archive.isEOF();
+        this.lock.writeLock().lock();
+        try {
+            return this.archive.isEOF();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -707,7 +1222,12 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws IOException if an I/O error occurs during resetting.
      */
     public void reset() throws IOException {
-        this.archive.reset();
+        this.lock.writeLock().lock();
+        try {
+            this.archive.reset();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -717,7 +1237,12 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws IOException if an I/O error occurs during counting.
      */
     public int count() throws IOException {
-        return this.archive.count();
+        this.lock.readLock().lock();
+        try {
+            return this.archive.count();
+        } finally {
+            this.lock.readLock().unlock();
+        }
     }
 
     /**
@@ -727,7 +1252,12 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws IOException if an I/O error occurs during counting.
      */
     public int countTrash() throws IOException {
-        return this.trash.count();
+        this.lock.readLock().lock();
+        try {
+            return this.trash.count();
+        } finally {
+            this.lock.readLock().unlock();
+        }
     }
 
     /**
@@ -736,30 +1266,659 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws IOException if an I/O error occurs during clearing.
      */
     public void clear() throws IOException {
-        this.archive.clear();
-        this.trash.clear();
+        this.lock.writeLock().lock();
+        try {
+            this.__cancelCompaction();
+            this.checkpoint();
+            this.archive.clear();
+            this.trash.clear();
+
+            if(this.tree != null) 
+                this.tree.clear();
+
+            if(this.stringTree != null) 
+                this.stringTree.clear();
+
+            if(this.hash != null)
+                this.hash.clear();
+
+            if(this.invertedIndex != null)
+                    invertedIndex.clear();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves the main archive from RSA to AES-GCM field encryption with a new data key, which
+     * is kept next to the archive wrapped by the RSA keys. Every record is encrypted again
+     * into a copy of the archive that replaces it, and the indexes are patched with the new
+     * addresses.
+     *
+     * <p>
+     * The key is saved before the swap. Until the copy replaces the archive, the values that
+     * were not encrypted with the key are still decrypted with RSA. As in a compaction, a
+     * marker file makes the next start rebuild the indexes after a crash.
+     * </p>
+     *
+     * @return The new address of every record by its old address.
+     * @throws Exception if an error occurs during the migration.
+     */
+    public HashMap<Long, Long> encryptWithAES() throws Exception {
+        this.lock.writeLock().lock();
+        try {
+            this.__cancelCompaction();
+            this.checkpoint();
+
+            RSA rsa = new RSA(1024);
+            AESCipher cipher = AESCipher.generate(rsa);
+            String path = this.filePath + MIGRATION_FILES_EXTENSION;
+
+            try {
+                HashMap<Long, Long> addresses = this.archive.reencrypt(path, cipher);
+
+                File marker = new File(this.filePath + REMAP_FILES_EXTENSION);
+                marker.createNewFile();
+
+                cipher.save(this.filePath + CIPHER_KEY_FILES_EXTENSION, rsa);
+                this.archive.setCipher(cipher);
+                this.archive.swap(path);
+                this.__remapIndexes(addresses);
+                this.checkpoint();
+
+                marker.delete();
+                return addresses;
+            } finally {
+                new File(path).delete();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Starts copying the live records of the main archive to a new file in a background
+     * thread. The CRUD keeps serving every operation while the copy runs, and the copy
+     * only replaces the archive when {@link #finishCompaction()} is called.
+     *
+     * @throws IOException if an I/O error occurs while starting the copy.
+     */
+    public void startCompaction() throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            if(this.compactor != null)
+                return;
+
+            this.compactor = new Compactor<T>(this.archive);
+            this.compactor.start();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Checks if a compaction was started and not finished yet.
+     *
+     * @return `true` if a compaction is running, `false` otherwise.
+     */
+    public boolean isCompacting() {
+        this.lock.readLock().lock();
+        try {
+            return this.compactor != null;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits for the background copy started by {@link #startCompaction()} and replaces the
+     * main archive by it. If the archive was written while the copy was running, only the records
+     * written meanwhile are copied again, in this thread. The indexes are patched in a single pass with the new address
+     * of every record, and the file of the archive is swapped with an atomic rename.
+     *
+     * <p>
+     * A marker file is kept from the swap until the indexes are patched and checkpointed, so
+     * a crash in between makes the next start rebuild the indexes from the new archive.
+     * </p>
+     *
+     * @return The new address of every live record by its old address, or `null` if no compaction was running.
+     * @throws Exception if an error occurs during the compaction.
+     */
+    public HashMap<Long, Long> finishCompaction() throws Exception {
+        this.lock.writeLock().lock();
+        try {
+            if(this.compactor == null)
+                return null;
+
+            Compactor<T> compactor = this.compactor;
+            this.compactor = null;
+
+            try {
+                compactor.await();
+
+                if(compactor.isStale())
+                    compactor.catchUp();
+
+                this.checkpoint();
+
+                File marker = new File(this.filePath + REMAP_FILES_EXTENSION);
+                marker.createNewFile();
+
+                this.archive.swap(compactor.getPath());
+                this.__remapIndexes(compactor.getAddresses());
+                this.checkpoint();
+
+                marker.delete();
+                return compactor.getAddresses();
+            } finally {
+                compactor.close();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Compacts the main archive, removing the deleted records, and patches the indexes
+     * with the new addresses.
+     *
+     * @return The new address of every live record by its old address.
+     * @throws Exception if an error occurs during the compaction.
+     */
+    public HashMap<Long, Long> compact() throws Exception {
+        this.lock.writeLock().lock();
+        try {
+            this.startCompaction();
+            return this.finishCompaction();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes every modified page back to the disk and empties the write-ahead log,
+     * so the recovery does not need to replay the operations done until now.
+     *
+     * @throws IOException if an I/O error occurs during the checkpoint.
+     */
+    public void checkpoint() throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            BufferPool.getInstance().sync();
+            this.log.truncate();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Closes the files held open by the main archive, the trash and the indexes.
+     * A checkpoint is done first, so the write-ahead log is left empty.
+     *
+     * @throws IOException if an I/O error occurs during closing.
+     */
+    @Override
+    public void close() throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            this.__cancelCompaction();
+            this.checkpoint();
+            BufferPool.getInstance().removeBarrier(this.log);
+            this.log.close();
+
+            this.archive.close();
+            this.trash.close();
+
+            if(this.tree != null)
+                this.tree.close();
+
+            if(this.stringTree != null)
+                this.stringTree.close();
+
+            if(this.hash != null)
+                this.hash.close();
+
+            if(this.invertedIndex != null)
+                this.invertedIndex.close();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    // Package Methods
+
+    /**
+     * Creates a new record in the archive, which logs it before writing it, and in the indexes. The write lock must be held.
+     *
+     * @param obj The record to create.
+     * @return The response of the archive, with the record as written and its address.
+     * @throws Exception if an error occurs during record creation.
+     */
+    Response<T> _create(T obj) throws Exception {
+        Response<T> response = this.archive.create(obj);
+        long address = response.currentAddress;
+
+        // The record as created carries the ID given by the archive
+        T created = response.body.decript();
+        if(this.tree != null)
+            this.tree.insert(created.get(created.getBPlusTreeAttribute()), address);
+        if(this.stringTree != null)
+            this.stringTree.insert((String)created.get(created.getBPlusTreeAttribute()), address);
+        if(this.hash != null)
+            this.hash.insert(created.get(created.getExtensibleHashAttribute()), address);
+        if(this.invertedIndex != null)
+            this.invertedIndex.insert((String)created.get(created.getInvertedIndexAttributes()[0]), address);
+
+        this.__commit();
+        return response;
+    }
+
+    /**
+     * Removes a record created by {@link #_create(Register)} from the archive and the indexes
+     * without moving it to the trash, undoing its creation. The write lock must be held.
+     *
+     * @param response The response of its creation.
+     * @throws Exception if an error occurs during record removal.
+     */
+    void _discard(Response<T> response) throws Exception {
+        int id = response.body.getId();
+        long address = response.currentAddress;
+        this.log.append(LogType.Discard, id, address, address, response.body.toByteArray());
 
         if(this.tree != null) 
-            this.tree.clear();
+            this.tree.delete(id);
+        else if(this.stringTree != null)
+            this.stringTree.delete((String)response.body.decript().get(response.body.getBPlusTreeAttribute()), address);
+        else if(this.hash != null)
+            this.hash.delete(id);
+        else if(this.invertedIndex != null) 
+            this.invertedIndex.delete((String)response.body.decript().get(response.body.getInvertedIndexAttributes()[0]), address);
+
+        this.archive.deleteAt(address);
+        this.__commit();
+    }
+
+    // Private Methods
+
+    /**
+     * Ends an operation in the write-ahead log, doing a checkpoint when the log grows
+     * past {@code WAL_CHECKPOINT_SIZE}.
+     *
+     * @throws IOException if an I/O error occurs while writing the log.
+     */
+    private void __commit() throws IOException {
+        if(this.transaction != null)
+            return;
+
+        this.log.commit();
+
+        if(this.log.size() >= WAL_CHECKPOINT_SIZE)
+            this.checkpoint();
+    }
+
+    /**
+     * Stops a compaction that was started and not finished, discarding its copy. It must be
+     * called before the main archive is truncated or rewritten, since the copy maps the file.
+     *
+     * @throws IOException if an I/O error occurs while discarding the copy.
+     */
+    private void __cancelCompaction() throws IOException {
+        if(this.compactor == null)
+            return;
+
+        try {
+            this.compactor.await();
+        } catch(InterruptedException | IOException e) {
+            // The copy is discarded anyway
+        } finally {
+            this.compactor.close();
+            this.compactor = null;
+        }
+    }
+
+    /**
+     * Replaces the addresses kept by every index with the new addresses of the records,
+     * deleting the keys of records that no longer exist.
+     *
+     * @param addresses The new address of every live record by its old address.
+     * @throws Exception if an error occurs while changing the indexes.
+     */
+    private void __remapIndexes(HashMap<Long, Long> addresses) throws Exception {
+        if(this.tree != null)
+            this.tree.remap(addresses);
+
+        if(this.stringTree != null)
+            this.stringTree.remap(addresses);
 
         if(this.hash != null)
-            this.hash.clear();
+            this.hash.remap(addresses);
 
         if(this.invertedIndex != null)
-                invertedIndex.clear();
+            this.invertedIndex.remap(addresses);
     }
 
-    // Private Methods
+    /**
+     * Replays the operations left in the write-ahead log by a crash and does a checkpoint.
+     * Every operation is redone at the addresses it was logged with, and the indexes are
+     * checked before being changed, so an operation that already reached the disk is not
+     * applied twice. The operations of a transaction that was not committed are skipped,
+     * and the indexes are rebuilt, since some of their files are written outside the pool.
+     *
+     * @throws Exception if an error occurs while replaying the log.
+     */
+    private void __recover() throws Exception {
+        new File(this.filePath + COMPACTION_FILES_EXTENSION).delete();
+        new File(this.filePath + MIGRATION_FILES_EXTENSION).delete();
+
+        File marker = new File(this.filePath + REMAP_FILES_EXTENSION);
+        if(marker.exists()) {
+            this.restartIndexes();
+            this.checkpoint();
+            marker.delete();
+        }
+
+        ArrayList<LogEntry> entries = this.log.read();
+        if(entries.isEmpty()) {
+            this.log.truncate();
+            return;
+        }
+
+        int begin = -1;
+        for(int i = 0; i < entries.size(); i++) {
+            if(entries.get(i).type.equals(LogType.Begin))
+                begin = i;
+            else if(entries.get(i).type.equals(LogType.Commit))
+                begin = -1;
+        }
+
+        boolean torn = begin != -1;
+        if(torn)
+            entries.subList(begin, entries.size()).clear();
+
+        for(LogEntry entry : entries) {
+            if(entry.type.equals(LogType.Begin) || entry.type.equals(LogType.Commit))
+                continue;
+
+            T obj = this.constructor.newInstance();
+            obj.fromByteArray(entry.body);
+
+            if(this.archive.getCipher() != null)
+                obj.setCipher(this.archive.getCipher());
+
+            if(entry.type.equals(LogType.Create)) {
+                this.archive.redo(entry.address, entry.body);
+                this.__redoIndexes(obj.decript(), entry.address);
+            } else if(entry.type.equals(LogType.Update)) {
+                if(entry.oldAddress != entry.address)
+                    this.archive.deleteAt(entry.oldAddress);
+
+                this.archive.redo(entry.address, entry.body);
+
+                if(this.tree != null)
+                    this.tree.update(entry.id, entry.address);
+                else if(this.hash != null)
+                    this.hash.update(entry.id, entry.address);
+                else if(this.invertedIndex != null)
+                    this.invertedIndex.update((String)obj.decript().get(obj.getInvertedIndexAttributes()[0]), entry.oldAddress, entry.address);
+            } else if(entry.type.equals(LogType.Delete)) {
+                if(this.trash.search("id", entry.id) == -1)
+                    this.trash.create(obj.decript());
+
+                if(this.tree != null) 
+                    this.tree.delete(entry.id);
+                else if(this.hash != null)
+                    this.hash.delete(entry.id);
+                else if(this.invertedIndex != null) 
+                    this.invertedIndex.delete((String)obj.decript().get(obj.getInvertedIndexAttributes()[0]), entry.address);
+
+                this.archive.deleteAt(entry.address);
+            } else if(entry.type.equals(LogType.Restore)) {
+                this.archive.redo(entry.address, entry.body);
+                this.__redoIndexes(obj.decript(), entry.address);
+                this.trash.delete(entry.id);
+            } else if(entry.type.equals(LogType.Discard)) {
+                if(this.tree != null) 
+                    this.tree.delete(entry.id);
+                else if(this.hash != null)
+                    this.hash.delete(entry.id);
+                else if(this.invertedIndex != null) 
+                    this.invertedIndex.delete((String)obj.decript().get(obj.getInvertedIndexAttributes()[0]), entry.address);
+
+                this.archive.deleteAt(entry.address);
+            }
+        }
+
+        if(torn)
+            this.restartIndexes();
+        else if(this.stringTree != null)
+            this.rebuildIndex(IndexType.BPlusTree);
+
+        this.checkpoint();
+    }
+
+    /**
+     * Checks if the B+ Tree indexes the records by their IDs, so it can be walked in the order of the IDs.
+     *
+     * @return True if there is a B+ Tree on the IDs, false otherwise.
+     * @throws Exception if the record type cannot be instantiated.
+     */
+    private boolean __isTreeById() throws Exception {
+        return this.tree != null && this.constructor.newInstance().getBPlusTreeAttribute().equals("id");
+    }
+
+    /**
+     * Checks if an attribute is written as text by the records, so its B+ Tree has string keys.
+     *
+     * @param key The attribute.
+     * @return True if the layout of the records has the attribute as a text field, false otherwise.
+     * @throws Exception if the record type cannot be instantiated.
+     */
+    private boolean __isStringAttribute(String key) throws Exception {
+        Map<String, FieldType> layout = this.constructor.newInstance().getLayout();
+        FieldType type = (layout != null) ? layout.get(key) : null;
+
+        return type == FieldType.Text || type == FieldType.Cipher;
+    }
+
+    /**
+     * Returns the value of the attribute of the string B+ Tree for the record with the
+     * given ID, read before the record is changed.
+     *
+     * @param id The ID of the record.
+     * @return The value of the attribute, or null if there is no string B+ Tree or no record.
+     * @throws Exception if an error occurs during record reading.
+     */
+    private String __stringKey(int id) throws Exception {
+        if(this.stringTree == null)
+            return null;
+
+        T obj = this.read("id", id);
+        return (obj != null) ? (String)obj.get(obj.getBPlusTreeAttribute()) : null;
+    }
+
+    /**
+     * Moves the entry of an updated record in the string B+ Tree to its new value and address.
+     *
+     * @param oldKey     The value of the attribute before the update.
+     * @param oldAddress The address of the record before the update.
+     * @param key        The value of the attribute after the update.
+     * @param address    The address of the record after the update.
+     * @throws IOException if an I/O error occurs while changing the tree.
+     */
+    private void __updateStringTree(String oldKey, long oldAddress, String key, long address) throws IOException {
+        if(oldKey != null && oldKey.equals(key)) {
+            this.stringTree.update(key, oldAddress, address);
+            return;
+        }
+
+        if(oldKey != null)
+            this.stringTree.delete(oldKey, oldAddress);
+
+        this.stringTree.insert(key, address);
+    }
+
+    /**
+     * Reads the records at the addresses of the given B+ Tree entries, in their order.
+     *
+     * @param entries The entries of the records.
+     * @return A list of the records.
+     * @throws IOException if an I/O error occurs during record reading.
+     */
+    private List<T> __readAll(Iterator<Map.Entry<String, Long>> entries) throws IOException {
+        List<T> list = new ArrayList<>();
+        while(entries.hasNext())
+            list.add(this.archive.readObj(entries.next().getValue()));
+
+        return list;
+    }
 
     /**
-     * Writes indexes data to JSON files if available.
+     * Scans the archive for the records whose value of a text attribute matches a filter,
+     * sorted by the comparator of the attribute.
+     *
+     * @param key    The text attribute.
+     * @param filter The filter of the values.
+     * @return A list of the matching records, in the order of the values.
+     * @throws Exception if an error occurs during record reading.
+     */
+    private List<T> __readSorted(String key, Predicate<String> filter) throws Exception {
+        Comparator<T> comparator = this.constructor.newInstance().getProperties().get(key);
+        if(comparator == null)
+            comparator = (a, b) -> ((String)a.get(key)).compareTo((String)b.get(key));
+
+        try(Stream<Response<T>> stream = this.archive.stream()) {
+            return stream.map((response) -> response.body)
+                         .filter((obj) -> obj.get(key) != null && filter.test((String)obj.get(key)))
+                         .sorted(comparator)
+                         .toList();
+        }
+    }
+
+    /**
+     * Reads the key of an index from every valid record with its address, decoding the
+     * records in parallel. Only the pairs are kept, so the records can be released as soon
+     * as they are decoded. The records without a key, such as a field that could not be
+     * decrypted, are left out of the index.
+     *
+     * @param key  The key of the index in a record.
+     * @param pair Builds the pair of a key and an address.
+     * @return The pairs, in the order of the records.
+     * @throws IOException if an I/O error occurs while reading the archive.
+     */
+    private <K, P> List<P> __keys(Function<T, K> key, BiFunction<K, Long, P> pair) throws IOException {
+        try(Stream<Response<T>> stream = this.archive.stream()) {
+            return stream.parallel()
+                         .map((response) -> {
+                             K k = key.apply(response.body);
+                             return k == null ? null : pair.apply(k, response.currentAddress);
+                         })
+                         .filter(Objects::nonNull)
+                         .toList();
+        }
+    }
+
+    /**
+     * Returns the paths of the files changed by the operations: the main archive, the trash and the indexes.
+     *
+     * @return The paths of the files.
+     */
+    private ArrayList<String> __paths() {
+        ArrayList<String> paths = new ArrayList<String>();
+        paths.add(this.archive.filePath);
+        paths.add(this.trash.filePath);
+
+        if(this.tree != null)
+            paths.add(this.tree.getPath());
+        if(this.stringTree != null)
+            paths.add(this.stringTree.getPath());
+        if(this.hash != null)
+            paths.add(this.hash.getPath());
+        if(this.invertedIndex != null)
+            paths.add(this.invertedIndex.getPath());
+
+        return paths;
+    }
+
+    /**
+     * Points the indexes to the given address for a replayed record, inserting its keys
+     * only if they are not already in the indexes.
+     *
+     * @param obj     The replayed record.
+     * @param address The address of the record.
+     * @throws Exception if an error occurs while changing the indexes.
+     */
+    private void __redoIndexes(T obj, long address) throws Exception {
+        if(this.tree != null) {
+            Object key = obj.get(obj.getBPlusTreeAttribute());
+
+            if(this.tree.search(key) == null) 
+                this.tree.insert(key, address);
+            else this.tree.update(key, address);
+        }
+
+        if(this.hash != null) {
+            Object key = obj.get(obj.getExtensibleHashAttribute());
+
+            if(!this.hash.insert(key, address))
+                this.hash.update(key, address);
+        }
+
+        if(this.invertedIndex != null) 
+            this.invertedIndex.redo((String)obj.get(obj.getInvertedIndexAttributes()[0]), address);
+    }
+
+    /**
+     * Writes the main archive and the trash, as seen by snapshots opened together, and then
+     * the indexes to JSON files. The writes only wait while the snapshots are opened and
+     * while the indexes are written.
+     *
+     * @param name The name of the JSON files, without extension.
+     * @throws IOException if an I/O error occurs during JSON file generation.
+     */
+    private void __toJsonFile(String name) throws IOException {
+        Snapshot archive;
+        Snapshot trash;
+
+        this.lock.readLock().lock();
+        try {
+            archive = this.archive.snapshot();
+
+            try {
+                trash = this.trash.snapshot();
+            } catch(IOException e) {
+                archive.close();
+                throw e;
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+
+        try(Snapshot a = archive; Snapshot t = trash) {
+            this.archive.toJsonFile(JSON_FILES_DIRECTORY + name + ".json", a);
+            this.trash.toJsonFile(JSON_TRASH_FILES_DIRECTORY + name + ".trash.json", t);
+        }
+
+        this.lock.readLock().lock();
+        try {
+            this.indexesToJsonFile();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes indexes data to JSON files if available. The indexes are written by a single
+     * thread at a time, since their files have fixed names.
      *
      * @throws IOException if an I/O error occurs during JSON file writing.
      */
-    private void indexesToJsonFile() throws IOException {
+    private synchronized void indexesToJsonFile() throws IOException {
         if(this.tree != null) 
             this.tree.toJsonFile();
 
+        if(this.stringTree != null) 
+            this.stringTree.toJsonFile();
+
         if(this.hash != null) 
             this.hash.toJsonFile();
 
@@ -773,10 +1932,8 @@ public class CRUD<T extends Register<T>> implements SystemSpecification {
      * @throws Exception if an error occurs during index rebuilding.
      */
     private void restartIndexes() throws Exception {
-        if(this.tree != null) {
-            this.tree.clear();
+        if(this.tree != null || this.stringTree != null)
             this.rebuildIndex(IndexType.BPlusTree);
-        }
 
         if(this.hash != null) {
             this.hash.clear();
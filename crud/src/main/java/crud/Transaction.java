@@ -0,0 +1,218 @@
+package crud;
+
+import java.util.ArrayDeque;
+
+import components.interfaces.Register;
+import crud.core.types.Response;
+
+/**
+ * <strong> The operations of a transaction over a {@link CRUD}. </strong>
+ *
+ * <p>
+ * A transaction is given to the body run by {@link CRUD#transaction(Body)}, and its
+ * operations are committed together when the body returns. Every operation that succeeds
+ * keeps the operation that undoes it: a created record is discarded, an updated record
+ * gets its old version back, and a deleted record is restored, or deleted again if it was
+ * restored. When the body throws, those are run from the newest to the oldest.
+ * </p>
+ *
+ * <p>
+ * The transaction can only be used by the body, which runs holding the write lock of the
+ * CRUD, and the reads made through it see the records written by the body. The CRUD must
+ * not be changed by the body through other methods, which are not undone.
+ * </p>
+ *
+ * <pre>{@code
+ * crud.transaction(tx -> {
+ *     int id = tx.create(show);
+ *     tx.update(id, "title", "New title");
+ * });
+ * }</pre>
+ *
+ * @param <T> Type of the records
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.CRUD#transaction(Body)
+ * @version 1.0.0
+ */
+public class Transaction<T extends Register<T>> {
+
+    // Attributes
+
+    private final CRUD<T> crud; // CRUD changed by the transaction
+    private final ArrayDeque<Undo> undo = new ArrayDeque<Undo>(); // Operations that undo the ones made, newest first
+    private boolean open = true; // If the body is still running
+
+    /**
+     * The operations run as a transaction.
+     *
+     * @param <T> Type of the records
+     */
+    @FunctionalInterface
+    public interface Body<T extends Register<T>> {
+
+        /**
+         * Runs the operations of the transaction.
+         *
+         * @param tx The transaction.
+         * @throws Exception if an operation fails, which undoes the transaction.
+         */
+        void run(Transaction<T> tx) throws Exception;
+    }
+
+    /**
+     * An operation that undoes another one.
+     */
+    @FunctionalInterface
+    private interface Undo {
+        void run() throws Exception;
+    }
+
+    // Constructors
+
+    /**
+     * Starts a transaction over the given CRUD. The write lock of the CRUD must be held.
+     *
+     * @param crud The CRUD changed by the transaction.
+     */
+    Transaction(CRUD<T> crud) {
+        this.crud = crud;
+    }
+
+    // Public Methods
+
+    /**
+     * Creates a new record.
+     *
+     * @param obj The record to create.
+     * @return The ID of the record.
+     * @throws Exception if an error occurs during record creation.
+     */
+    public int create(T obj) throws Exception {
+        this.__check();
+
+        Response<T> response = this.crud._create(obj);
+        this.undo.push(() -> this.crud._discard(response));
+
+        return response.body.getId();
+    }
+
+    /**
+     * Reads a record with the specified key and value, as written by the transaction.
+     *
+     * @param key   The key to search for.
+     * @param value The value to search for.
+     * @return The record matching the key and value, or `null` if not found.
+     * @throws Exception if an error occurs during record reading.
+     */
+    public T read(String key, Object value) throws Exception {
+        this.__check();
+        return this.crud.read(key, value);
+    }
+
+    /**
+     * Updates a record with the given ID.
+     *
+     * @param id  The ID of the record to update.
+     * @param obj The updated record.
+     * @return `true` if the update is successful, `false` otherwise.
+     * @throws Exception if an error occurs during record updating.
+     */
+    public boolean update(int id, T obj) throws Exception {
+        this.__check();
+
+        T old = this.crud.read("id", id);
+        boolean value = this.crud.update(id, obj);
+
+        if(value && old != null)
+            this.undo.push(() -> this.crud.update(id, old));
+
+        return value;
+    }
+
+    /**
+     * Updates a field of the record with the given ID.
+     *
+     * @param id    The ID of the record to update.
+     * @param key   The key to update.
+     * @param value The new value for the key.
+     * @return `true` if the update is successful, `false` otherwise.
+     * @throws Exception if an error occurs during record updating.
+     */
+    public boolean update(int id, String key, Object value) throws Exception {
+        this.__check();
+
+        T old = this.crud.read("id", id);
+        boolean success = this.crud.update(id, key, value);
+
+        if(success && old != null)
+            this.undo.push(() -> this.crud.update(id, old));
+
+        return success;
+    }
+
+    /**
+     * Deletes the record with the given ID, moving it to the trash.
+     *
+     * @param id The ID of the record to delete.
+     * @return `true` if the delete is successful, `false` otherwise.
+     * @throws Exception if an error occurs during record deletion.
+     */
+    public boolean delete(int id) throws Exception {
+        this.__check();
+
+        boolean value = this.crud.delete(id);
+        if(value)
+            this.undo.push(() -> this.crud.restore(id));
+
+        return value;
+    }
+
+    /**
+     * Restores the record with the given ID from the trash.
+     *
+     * @param id The ID of the record to restore.
+     * @return `true` if the restore is successful, `false` otherwise.
+     * @throws Exception if an error occurs during record restoration.
+     */
+    public boolean restore(int id) throws Exception {
+        this.__check();
+
+        boolean value = this.crud.restore(id);
+        if(value)
+            this.undo.push(() -> this.crud.delete(id));
+
+        return value;
+    }
+
+    // Package Methods
+
+    /**
+     * Undoes every operation made, from the newest to the oldest, and ends the transaction.
+     *
+     * @throws Exception if an operation cannot be undone.
+     */
+    void rollback() throws Exception {
+        this.open = false;
+
+        while(!this.undo.isEmpty())
+            this.undo.pop().run();
+    }
+
+    /**
+     * Ends the transaction, so it can no longer be used.
+     */
+    void end() {
+        this.open = false;
+        this.undo.clear();
+    }
+
+    // Private Methods
+
+    /**
+     * Checks that the body of the transaction is still running.
+     */
+    private void __check() {
+        if(!this.open)
+            throw new IllegalStateException("The transaction has already ended.");
+    }
+}
@@ -1,34 +1,63 @@
 package crud.base;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import components.interfaces.Register;
+import crud.core.security.FieldCipher;
+import crud.core.types.Response;
 import logic.SystemSpecification;
 
 /**
  * A generic binary archive for reading and writing objects of a specified type.
  *
+ * <p>
+ * The archive owns a long-lived {@link PagedFile} that is opened on the first
+ * access and kept until {@link #close()} is called, so the record operations do
+ * not pay an open/close pair per call and read their pages from the shared
+ * {@link BufferPool} when they are hot. Records are stored as
+ * {@code [lapide][length][bytes]} and can be read and written at any address
+ * with positional I/O, which does not move the file pointer used by the
+ * sequential {@code _readObj()}/{@code _writeObj()} methods.
+ * </p>
+ *
  * @param <T> The type of objects to be stored in the archive.
  * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
  * @version 1.0.0
  */
-public class BinaryArchive<T extends Register<T>> implements SystemSpecification {
+public class BinaryArchive<T extends Register<T>> implements SystemSpecification, AutoCloseable {
 
     // Attributes
 
+    /**
+     * The size in bytes of the {@code [lapide][length]} header that precedes every record.
+     */
+    protected static final int RECORD_HEADER_BYTES = Byte.BYTES + Integer.BYTES;
+
     /**
      * The last read/write position in the binary archive file.
      */
     private long lastPosition = 0; 
+
+    /**
+     * The position of the next sequential read/write in the binary archive file.
+     */
+    private long filePointer = 0;
     
     public final String label;  // Label for the archive
     public final String filePath; // Path for the archive
-    public RandomAccessFile file; // File object for the archive
     public Constructor<T> constructor; // Constructor for the objects to be stored in the archive
 
+    protected PagedFile pages; // Pages of the archive file, kept open between calls
+    private final ThreadLocal<ByteBuffer> header = ThreadLocal.withInitial(() -> ByteBuffer.allocate(RECORD_HEADER_BYTES)); // Reusable buffer for record headers, one per thread
+    private long modifications = 0; // Number of writes done through this archive
+    private FieldCipher cipher = null; // Cipher of the records, or null to use the one of the register
+    private final VersionStore versions = new VersionStore(); // Bytes overwritten while snapshots are open
+
     // Constructors
 
     /**
@@ -58,16 +87,118 @@ public class BinaryArchive<T extends Register<T>> implements SystemSpecification
 
     // Methods
 
+    /**
+     * Opens the archive file if it is not already open. The file stays open
+     * until {@link #close()} is called.
+     *
+     * @throws IOException If an I/O error occurs while opening the archive.
+     */
+    public synchronized void open() throws IOException {
+        if(this.pages == null) 
+            this.pages = BufferPool.getInstance().open(this.filePath);
+    }
+
+    /**
+     * Checks if the archive file is currently open.
+     *
+     * @return True if the archive file is open, false otherwise.
+     */
+    public boolean isOpen() {
+        return this.pages != null;
+    }
+
+    /**
+     * Returns the cipher the records of the archive are encrypted with.
+     *
+     * @return The cipher, or null if the records use the cipher of the register.
+     */
+    public FieldCipher getCipher() {
+        return this.cipher;
+    }
+
+    /**
+     * Sets the cipher the records of the archive are encrypted with. Every object decoded
+     * from the archive is given this cipher.
+     *
+     * @param cipher The cipher, or null to use the cipher of the register.
+     */
+    public void setCipher(FieldCipher cipher) {
+        this.cipher = cipher;
+    }
+
+    /**
+     * Returns the number of writes done through this archive, so a reader can tell
+     * if the file changed since it last looked at it.
+     *
+     * @return The number of writes done.
+     */
+    public long getModificationCount() {
+        return this.modifications;
+    }
+
+    /**
+     * Opens a snapshot of the archive as it is now. The scans started with the snapshot
+     * see the records as they are now, while other threads keep writing the archive, until
+     * the snapshot is closed. It must not be opened while a write is in progress, nor while
+     * the writes of the archive are held by a transaction, which the file does not have yet.
+     *
+     * @return The snapshot.
+     * @throws IOException If an I/O error occurs while writing the pages.
+     */
+    public Snapshot snapshot() throws IOException {
+        this.open();
+
+        if(this.pages.isHeld())
+            throw new IllegalStateException("A snapshot of " + this.filePath + " cannot be opened while its writes are held.");
+        this.pages.flush();
+        return this.versions.open(this.pages.size());
+    }
+
+    /**
+     * Returns the number of versions of the bytes of the archive kept for the open snapshots.
+     *
+     * @return The number of versions.
+     */
+    public int countVersions() {
+        return this.versions.size();
+    }
+
+    /**
+     * Writes the modified pages of the archive back to the disk.
+     *
+     * @throws IOException If an I/O error occurs while writing the pages.
+     */
+    public void flush() throws IOException {
+        if(this.pages != null) 
+            this.pages.flush();
+    }
+
+    /**
+     * Closes the archive file. It is reopened by the next operation that needs it.
+     *
+     * @throws IOException If an I/O error occurs while closing the archive.
+     */
+    @Override
+    public void close() throws IOException {
+        this.versions.await();
+
+        if(this.pages != null) 
+            this.pages.close();
+
+        this.pages = null;
+    }
+
     /**
      * Clears the contents of the binary archive.
      *
      * @throws IOException If an I/O error occurs while clearing the archive.
      */
     public void clear() throws IOException {
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
-        this.file.setLength(0);
-        this.file.seek(0);
-        this.file.close();
+        this.versions.await();
+        this.open();
+        this.pages.truncate(0);
+        this.filePointer = 0;
+        this.modifications++;
     }
 
     /**
@@ -77,22 +208,12 @@ public class BinaryArchive<T extends Register<T>> implements SystemSpecification
      * @throws IOException If an I/O error occurs while reading the object.
      */
     public T _readObj() throws IOException {
-        this.lastPosition = this.file.getFilePointer();
+        this.lastPosition = this.filePointer;
         T obj = null;
 
-        if(this.file.getFilePointer() < this.file.length()) {
-            int len = this.file.readInt();
-            byte[] b = new byte[len];
-            
-            this.file.read(b);
-    
-            try {
-                obj = this.constructor.newInstance();
-                obj.fromByteArray(b);
-            } catch(Exception e) {
-                System.err.println("Could not make a new instanse of " + this.constructor.getName());
-                e.printStackTrace();
-            }
+        if(this.filePointer < this._size()) {
+            int len = this._readIntAt(this.filePointer);
+            obj = this.__readSequential(this.filePointer + Integer.BYTES, len);
         }
 
         return obj;
@@ -106,21 +227,11 @@ public class BinaryArchive<T extends Register<T>> implements SystemSpecification
      * @throws IOException If an I/O error occurs while reading the object.
      */
     public T _readObj(int len) throws IOException {
-        this.lastPosition = this.file.getFilePointer();
+        this.lastPosition = this.filePointer;
         T obj = null;
 
-        if(this.file.getFilePointer() < this.file.length()) {
-            byte[] b = new byte[len];
-            this.file.read(b);
-            
-            try {
-                obj = this.constructor.newInstance();
-                obj.fromByteArray(b);
-            } catch(Exception e) {
-                System.err.println("Could not make a new instanse of " + this.constructor.getName());
-                e.printStackTrace();
-            }
-        }
+        if(this.filePointer < this._size())
+            obj = this.__readSequential(this.filePointer, len);
 
         return obj;
     }
@@ -157,7 +268,7 @@ public class BinaryArchive<T extends Register<T>> implements SystemSpecification
      * Sets the file pointer to the last read/write position.
      */
     public void _returnOneRegister() throws IOException {
-        this.file.seek(this.lastPosition);
+        this.filePointer = this.lastPosition;
     }
 
     /**
@@ -169,9 +280,11 @@ public class BinaryArchive<T extends Register<T>> implements SystemSpecification
     public void _writeObj(T obj) throws IOException {
         if(obj != null) {
             byte[] b = obj.toByteArray();
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + b.length);
+            buffer.putInt(b.length).put(b).flip();
 
-            this.file.writeInt(b.length);
-            this.file.write(b);
+            this._writeAt(this.filePointer, buffer);
+            this.filePointer += Integer.BYTES + b.length;
         }
     }
 
@@ -193,7 +306,244 @@ public class BinaryArchive<T extends Register<T>> implements SystemSpecification
      * @throws IOException If an I/O error occurs while checking the end of the file.
      */
     public boolean _isEOF() throws IOException {
-        return this.file.getFilePointer() == this.file.length();
+        return this.filePointer >= this._size();
+    }
+
+    // Positional I/O
+
+    /**
+     * Returns the current size of the archive file.
+     *
+     * @return The size of the archive file in bytes.
+     * @throws IOException If an I/O error occurs while reading the size.
+     */
+    protected long _size() throws IOException {
+        this.open();
+        return this.pages.size();
+    }
+
+    /**
+     * Fills the buffer with the bytes found at the given position of the archive.
+     * The buffer is flipped before returning, so it is ready to be read.
+     *
+     * @param position The position of the first byte to read.
+     * @param buffer   The buffer to fill.
+     * @throws IOException If an I/O error occurs or the end of the file is reached before the buffer is full.
+     */
+    protected void _readAt(long position, ByteBuffer buffer) throws IOException {
+        this.open();
+        this.pages.read(position, buffer);
+        buffer.flip();
+    }
+
+    /**
+     * Writes all the remaining bytes of the buffer at the given position of the archive.
+     *
+     * @param position The position of the first byte to write.
+     * @param buffer   The buffer to write.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    protected void _writeAt(long position, ByteBuffer buffer) throws IOException {
+        this.open();
+
+        if(this.versions.isActive())
+            this.__keep(position, buffer.remaining());
+
+        this.pages.write(position, buffer);
+        this.modifications++;
+    }
+
+    /**
+     * Reads an integer at the given position of the archive.
+     *
+     * @param position The position of the integer.
+     * @return The integer read.
+     * @throws IOException If an I/O error occurs while reading.
+     */
+    protected int _readIntAt(long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+        this._readAt(position, buffer);
+        return buffer.getInt();
+    }
+
+    /**
+     * Writes an integer at the given position of the archive.
+     *
+     * @param position The position of the integer.
+     * @param value    The integer to write.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    protected void _writeIntAt(long position, int value) throws IOException {
+        this._writeAt(position, ByteBuffer.allocate(Integer.BYTES).putInt(0, value));
+    }
+
+    /**
+     * Reads the {@code [lapide][length]} header of the record at the given address.
+     * The returned buffer is shared between the calls of the same thread, so it must be
+     * consumed before the next read.
+     *
+     * @param address The address of the record.
+     * @return A buffer positioned at the lapide byte, followed by the record length.
+     * @throws IOException If an I/O error occurs while reading.
+     */
+    protected ByteBuffer _readHeader(long address) throws IOException {
+        ByteBuffer header = this.header.get();
+        header.clear();
+        this._readAt(address, header);
+        return header;
+    }
+
+    /**
+     * Reads and decodes the body of the record at the given address.
+     *
+     * @param address The address of the record (the position of its lapide).
+     * @param len     The length of the record body.
+     * @return The decoded object.
+     * @throws IOException If an I/O error occurs while reading.
+     */
+    protected T _readBody(long address, int len) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(len);
+        this._readAt(address + RECORD_HEADER_BYTES, buffer);
+        return this._decode(buffer.array());
+    }
+
+    /**
+     * Writes a complete record, header and body, at the given address with a single write.
+     *
+     * @param address The address of the record.
+     * @param lapide  True if the record is valid, false otherwise.
+     * @param b       The record body.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    protected void _writeRecord(long address, boolean lapide, byte[] b) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + b.length);
+        buffer.put((byte)(lapide ? 1 : 0)).putInt(b.length).put(b).flip();
+        this._writeAt(address, buffer);
+    }
+
+    /**
+     * Overwrites the lapide of the record at the given address.
+     *
+     * @param address The address of the record.
+     * @param lapide  True if the record is valid, false otherwise.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    protected void _writeLapide(long address, boolean lapide) throws IOException {
+        this._writeAt(address, ByteBuffer.wrap(new byte[] { (byte)(lapide ? 1 : 0) }));
+    }
+
+    /**
+     * Starts a memory-mapped scan over the records from the given address to the end of the archive.
+     * The modified pages of the archive are written back first, so the mapping sees every record.
+     *
+     * @param address The address of the first record.
+     * @return A scanner positioned before the first record.
+     * @throws IOException If an I/O error occurs while flushing the archive.
+     */
+    protected RecordScanner _scan(long address) throws IOException {
+        return this._scan(address, null);
+    }
+
+    /**
+     * Starts a memory-mapped scan over the records from the given address to the end of the
+     * archive seen by a snapshot. Without a snapshot, the modified pages of the archive are
+     * written back first, so the mapping sees every record.
+     *
+     * @param address  The address of the first record.
+     * @param snapshot The snapshot, or null to scan the archive as it is now.
+     * @return A scanner positioned before the first record.
+     * @throws IOException If an I/O error occurs while flushing the archive.
+     */
+    protected RecordScanner _scan(long address, Snapshot snapshot) throws IOException {
+        this.open();
+
+        if(snapshot != null)
+            return new RecordScanner(this.pages, address, snapshot.getLength(), snapshot);
+
+        this.pages.flush();
+        return new RecordScanner(this.pages, address, this.pages.size(), null);
+    }
+
+    /**
+     * Starts a cursor over the valid records from the given address to the end of the archive,
+     * which decodes every record into the same object.
+     *
+     * @param address The address of the first record.
+     * @param decrypt True to decrypt the records, false to leave them as stored.
+     * @return A cursor positioned before the first record.
+     * @throws IOException If an I/O error occurs while flushing the archive.
+     */
+    protected RecordCursor<T> _cursor(long address, boolean decrypt) throws IOException {
+        return this._cursor(address, decrypt, null);
+    }
+
+    /**
+     * Starts a cursor over the valid records from the given address to the end of the archive
+     * seen by a snapshot, which decodes every record into the same object.
+     *
+     * @param address  The address of the first record.
+     * @param decrypt  True to decrypt the records, false to leave them as stored.
+     * @param snapshot The snapshot, or null to read the archive as it is now.
+     * @return A cursor positioned before the first record.
+     * @throws IOException If an I/O error occurs while flushing the archive.
+     */
+    protected RecordCursor<T> _cursor(long address, boolean decrypt, Snapshot snapshot) throws IOException {
+        return new RecordCursor<T>(this, this._scan(address, snapshot), decrypt);
+    }
+
+    /**
+     * Starts a stream over the valid records from the given address to the end of the archive,
+     * decoded and decrypted. The stream can be made parallel, in which case the archive is split
+     * in ranges of records that are decoded by different threads.
+     *
+     * @param address The address of the first record.
+     * @return A stream of responses holding the records and their addresses.
+     * @throws IOException If an I/O error occurs while flushing the archive.
+     */
+    protected Stream<Response<T>> _stream(long address) throws IOException {
+        return this._stream(address, null);
+    }
+
+    /**
+     * Starts a stream over the valid records from the given address to the end of the archive
+     * seen by a snapshot, decoded and decrypted.
+     *
+     * @param address  The address of the first record.
+     * @param snapshot The snapshot, or null to read the archive as it is now.
+     * @return A stream of responses holding the records and their addresses.
+     * @throws IOException If an I/O error occurs while flushing the archive.
+     */
+    protected Stream<Response<T>> _stream(long address, Snapshot snapshot) throws IOException {
+        this.open();
+
+        if(snapshot == null)
+            this.pages.flush();
+
+        long end = snapshot != null ? snapshot.getLength() : this.pages.size();
+        return StreamSupport.stream(new RecordSpliterator<T>(this, this.pages, address, end, snapshot), false);
+    }
+
+    /**
+     * Builds a new object of type T from its byte representation.
+     *
+     * @param b The byte representation of the object.
+     * @return The decoded object, or null if it could not be instantiated.
+     */
+    protected T _decode(byte[] b) {
+        T obj = null;
+
+        try {
+            obj = this.constructor.newInstance();
+            obj.fromByteArray(b);
+
+            if(this.cipher != null)
+                obj.setCipher(this.cipher);
+        } catch(Exception e) {
+            System.err.println("Could not make a new instanse of " + this.constructor.getName());
+            e.printStackTrace();
+        }
+
+        return obj;
     }
 
     /**
@@ -204,6 +554,51 @@ public class BinaryArchive<T extends Register<T>> implements SystemSpecification
      */
     public void _resetFilePointers(BinaryArchive<T>[] arr) throws IOException {
         for(int k = 0; k < arr.length; k++)
-            arr[k].file.seek(0);
+            arr[k].filePointer = 0;
     } 
+
+    // Private Methods
+
+    /**
+     * Reads the bytes of an object at the given position and moves the sequential file pointer after them.
+     *
+     * @param position The position of the first byte of the object.
+     * @param len      The length of the object data to read.
+     * @return The read object, or null if it could not be instantiated.
+     * @throws IOException If an I/O error occurs while reading the object.
+     */
+    private T __readSequential(long position, int len) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(len);
+        this._readAt(position, buffer);
+        this.filePointer = position + len;
+
+        T obj = null;
+        try {
+            obj = this.constructor.newInstance();
+            obj.fromByteArray(buffer.array());
+        } catch(Exception e) {
+            System.err.println("Could not make a new instanse of " + this.constructor.getName());
+            e.printStackTrace();
+        }
+
+        return obj;
+    }
+
+    /**
+     * Keeps the bytes a write is about to overwrite for the open snapshots. Only the bytes
+     * before the end of the longest snapshot are kept, since no snapshot sees the others.
+     *
+     * @param position The position of the first byte written.
+     * @param len      The number of bytes written.
+     * @throws IOException If an I/O error occurs while reading the bytes.
+     */
+    private void __keep(long position, int len) throws IOException {
+        long end = Math.min(position + len, Math.min(this.versions.getLength(), this.pages.size()));
+        if(end <= position)
+            return;
+
+        ByteBuffer old = ByteBuffer.allocate((int)(end - position));
+        this.pages.read(position, old);
+        this.versions.keep(position, old.array());
+    }
 }
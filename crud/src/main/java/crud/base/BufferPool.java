@@ -0,0 +1,526 @@
+package crud.base;
+
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import err.InsufficientMemoryException;
+import logic.SystemSpecification;
+
+/**
+ * <strong> A shared, size-bounded pool of {@code BLOCK_SIZE} pages. </strong>
+ *
+ * <p>
+ * The pool caches the pages of every {@link PagedFile} opened through it, so the
+ * database file, the B+ Tree and the Extensible Hash indexes read their blocks from
+ * memory when they are hot. A page must be pinned while it is being used and unpinned
+ * right after, telling the pool if it was modified.
+ * </p>
+ *
+ * <p>
+ * When the pool is full a page is chosen for eviction using the CLOCK policy: the
+ * frames are visited in a circular order and the first unpinned frame whose
+ * reference bit is clear is evicted, clearing the reference bit of the frames that
+ * are skipped. Dirty pages are written back to their files before being evicted,
+ * when their file is flushed or closed, and when the virtual machine shuts down.
+ * </p>
+ *
+ * <p>
+ * Barriers, such as a write-ahead log, can be registered to be flushed before any
+ * dirty page is written back, so a page never reaches the disk before them. They are
+ * flushed once for each flush of the pool or eviction, not once for each page. The
+ * writes of a file can also be held, so its dirty pages stay in memory until they
+ * are released, as a transaction needs until it is committed.
+ * </p>
+ *
+ * <p>
+ * The pool counts hits, misses, evictions and write-backs, so its size can be
+ * tuned against the working set using {@link #toString()}.
+ * </p>
+ *
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.base.PagedFile
+ * @version 1.0.0
+ */
+public final class BufferPool implements SystemSpecification {
+
+    // Attributes
+
+    private static BufferPool instance = null; // Pool shared by the whole process
+
+    private final int capacity; // Maximum number of pages in memory
+    private final ArrayList<Frame> frames; // Frames allocated until now
+    private final ArrayDeque<Frame> free = new ArrayDeque<>(); // Allocated frames that hold no page
+    private final HashMap<Long, Frame> table = new HashMap<>(); // Page key to frame
+    private final HashMap<String, PagedFile> files = new HashMap<>(); // Open files by path
+    private final ArrayList<Flushable> barriers = new ArrayList<>(); // Flushed once before each batch of write-backs
+
+    private int hand = 0; // Position of the CLOCK hand
+    private int nextFileId = 0; // Identifier of the next opened file
+
+    private long hits = 0; // Number of pins that found the page in memory
+    private long misses = 0; // Number of pins that had to read the page from disk
+    private long evictions = 0; // Number of pages evicted
+    private long writeBacks = 0; // Number of dirty pages written to disk
+
+    // Constructors
+
+    /**
+     * Creates a new buffer pool with the specified capacity.
+     *
+     * @param capacity Maximum number of pages kept in memory
+     */
+    public BufferPool(int capacity) {
+        if(capacity < 1)
+            throw new IllegalArgumentException("The buffer pool capacity must be greater than 0.");
+
+        this.capacity = capacity;
+        this.frames = new ArrayList<>();
+    }
+
+    /**
+     * Returns the buffer pool shared by the process, creating it on the first call.
+     *
+     * @return The shared buffer pool
+     */
+    public static synchronized BufferPool getInstance() {
+        if(instance == null) {
+            instance = new BufferPool(BUFFER_POOL_SIZE);
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    instance.flushAll();
+                } catch(IOException e) {
+                    System.err.println("It was not possible to write the buffer pool back to the disk.");
+                    e.printStackTrace();
+                }
+            }));
+        }
+
+        return instance;
+    }
+
+    // Public Methods
+
+    /**
+     * Opens the file at the specified path through the pool. Every handle opened
+     * for the same path shares the same cached pages, and must be closed once.
+     *
+     * @param path Path of the file
+     * @return A handle to the file
+     * @throws IOException
+     */
+    public synchronized PagedFile open(String path) throws IOException {
+        String key = new File(path).getAbsoluteFile().toPath().normalize().toString();
+        PagedFile file = this.files.get(key);
+
+        if(file == null) {
+            file = new PagedFile(this, key, this.nextFileId++);
+            this.files.put(key, file);
+        }
+
+        file.references++;
+        return file;
+    }
+
+    /**
+     * Pins the specified page in memory, reading it from the disk if it is not cached.
+     *
+     * @param file File of the page
+     * @param pageNumber Number of the page in the file
+     * @return The frame holding the page
+     * @throws IOException
+     */
+    public synchronized Frame pin(PagedFile file, long pageNumber) throws IOException {
+        Frame frame = this.table.get(key(file, pageNumber));
+
+        if(frame != null) {
+            this.hits++;
+        } else {
+            this.misses++;
+            frame = this.victim();
+            frame.load(file, pageNumber);
+            this.table.put(key(file, pageNumber), frame);
+        }
+
+        frame.pinCount++;
+        frame.referenced = true;
+        return frame;
+    }
+
+    /**
+     * Unpins a frame pinned by {@link #pin(PagedFile, long)}.
+     *
+     * @param frame Frame to be unpinned
+     * @param dirty True if the page was modified while pinned
+     */
+    public synchronized void unpin(Frame frame, boolean dirty) {
+        if(frame.pinCount == 0)
+            throw new IllegalStateException("The page " + frame.pageNumber + " is not pinned.");
+
+        frame.pinCount--;
+        frame.dirty |= dirty;
+    }
+
+    /**
+     * Writes every dirty page of the specified file back to the disk.
+     *
+     * @param file File to be flushed
+     * @throws IOException
+     */
+    public synchronized void flush(PagedFile file) throws IOException {
+        ArrayList<Frame> dirty = new ArrayList<>();
+        for(Frame frame : this.frames)
+            if(frame.file == file && frame.dirty && file.holds == 0)
+                dirty.add(frame);
+
+        this.writeBack(dirty);
+    }
+
+    /**
+     * Writes every dirty page in the pool back to the disk.
+     *
+     * @throws IOException
+     */
+    public synchronized void flushAll() throws IOException {
+        ArrayList<Frame> dirty = new ArrayList<>();
+        for(Frame frame : this.frames)
+            if(frame.file != null && frame.dirty && frame.file.holds == 0)
+                dirty.add(frame);
+
+        this.writeBack(dirty);
+    }
+
+    /**
+     * Writes every dirty page in the pool back to the disk and forces every open
+     * file to the storage device.
+     *
+     * @throws IOException
+     */
+    public synchronized void sync() throws IOException {
+        this.flushAll();
+
+        for(PagedFile file : this.files.values())
+            file.channel.force(false);
+    }
+
+    /**
+     * Registers a barrier that is flushed before any dirty page is written back.
+     *
+     * @param barrier Barrier to be registered
+     */
+    public synchronized void addBarrier(Flushable barrier) {
+        this.barriers.add(barrier);
+    }
+
+    /**
+     * Removes a barrier registered by {@link #addBarrier(Flushable)}.
+     *
+     * @param barrier Barrier to be removed
+     */
+    public synchronized void removeBarrier(Flushable barrier) {
+        this.barriers.remove(barrier);
+    }
+
+    /**
+     * Holds the dirty pages of the file at the specified path in memory until
+     * {@link #releaseWrites(String)} is called: they are neither evicted nor flushed.
+     * The file is opened, so the pages written after this call are held too.
+     *
+     * @param path Path of the file
+     * @throws IOException
+     */
+    public synchronized void holdWrites(String path) throws IOException {
+        this.open(path).holds++;
+    }
+
+    /**
+     * Releases the dirty pages held by {@link #holdWrites(String)}, which can be
+     * written back again.
+     *
+     * @param path Path of the file
+     * @throws IOException
+     */
+    public synchronized void releaseWrites(String path) throws IOException {
+        PagedFile file = this.files.get(new File(path).getAbsoluteFile().toPath().normalize().toString());
+        if(file == null || file.holds == 0)
+            throw new IllegalStateException("The writes of " + path + " are not held.");
+
+        file.holds--;
+        this.release(file);
+    }
+
+    /**
+     * Returns the maximum number of pages kept in memory.
+     *
+     * @return Capacity of the pool
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Returns the number of pins that found the page in memory.
+     *
+     * @return Number of hits
+     */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of pins that had to read the page from the disk.
+     *
+     * @return Number of misses
+     */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Returns the number of pages evicted to make room for other pages.
+     *
+     * @return Number of evictions
+     */
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Returns the number of dirty pages written back to the disk.
+     *
+     * @return Number of write-backs
+     */
+    public synchronized long getWriteBacks() {
+        return this.writeBacks;
+    }
+
+    /**
+     * Returns the fraction of pins that found the page in memory.
+     *
+     * @return Hit ratio between 0 and 1
+     */
+    public synchronized double getHitRatio() {
+        long total = this.hits + this.misses;
+        return total == 0 ? 0 : (double)this.hits / total;
+    }
+
+    /**
+     * Resets the hit, miss, eviction and write-back counters.
+     */
+    public synchronized void resetStatistics() {
+        this.hits = 0;
+        this.misses = 0;
+        this.evictions = 0;
+        this.writeBacks = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder("{ ");
+        sb.append("\"capacity\": ").append(this.capacity).append(", ");
+        sb.append("\"pages\": ").append(this.table.size()).append(", ");
+        sb.append("\"hits\": ").append(this.hits).append(", ");
+        sb.append("\"misses\": ").append(this.misses).append(", ");
+        sb.append("\"hitRatio\": ").append(String.format("%.4f", this.getHitRatio())).append(", ");
+        sb.append("\"evictions\": ").append(this.evictions).append(", ");
+        sb.append("\"writeBacks\": ").append(this.writeBacks);
+        return sb.append(" }").toString();
+    }
+
+    // Package Methods
+
+    /**
+     * Drops every cached page of the specified file without writing it back. The pages
+     * of a file whose writes are held cannot be dropped.
+     *
+     * @param file File whose pages will be dropped
+     */
+    synchronized void discard(PagedFile file) {
+        if(file.holds > 0)
+            throw new IllegalStateException("The writes of " + file.getPath() + " are held.");
+
+        for(Frame frame : this.frames) {
+            if(frame.file == file) {
+                if(frame.pinCount > 0)
+                    throw new IllegalStateException("The page " + frame.pageNumber + " of " + file.getPath() + " is still pinned.");
+
+                this.table.remove(key(file, frame.pageNumber));
+                frame.clear();
+                this.free.add(frame);
+            }
+        }
+    }
+
+    /**
+     * Releases a handle returned by {@link #open(String)}. When the last handle of
+     * a file is released its pages are written back and dropped, and the file is closed.
+     *
+     * @param file File to be released
+     * @throws IOException
+     */
+    synchronized void release(PagedFile file) throws IOException {
+        if(--file.references > 0)
+            return;
+
+        this.flush(file);
+        this.discard(file);
+        this.files.remove(file.getPath());
+        file.channel.close();
+    }
+
+    // Private Methods
+
+    /**
+     * Returns a free frame, evicting a page with the CLOCK policy if the pool is full.
+     *
+     * @return A frame that is not holding any page
+     * @throws IOException
+     */
+    private Frame victim() throws IOException {
+        if(!this.free.isEmpty()) 
+            return this.free.poll();
+
+        if(this.frames.size() < this.capacity) {
+            Frame frame = new Frame();
+            this.frames.add(frame);
+            return frame;
+        }
+
+        for(int i = 0; i < 2 * this.capacity; i++) {
+            Frame frame = this.frames.get(this.hand);
+            this.hand = (this.hand + 1) % this.capacity;
+
+            if(frame.pinCount == 0 && !(frame.dirty && frame.file.holds > 0)) {
+                if(frame.referenced) {
+                    frame.referenced = false;
+                } else {
+                    if(frame.dirty) this.writeBack(List.of(frame));
+
+                    this.table.remove(key(frame.file, frame.pageNumber));
+                    frame.clear();
+                    this.evictions++;
+                    return frame;
+                }
+            }
+        }
+
+        throw new InsufficientMemoryException("Every page of the buffer pool is pinned or held.");
+    }
+
+    /**
+     * Writes a batch of dirty frames back to their files. The barriers are flushed once
+     * before the first page is written, and a barrier with nothing new to flush, such as
+     * a log that is already synced, returns without touching the disk.
+     *
+     * @param batch Frames to be written
+     * @throws IOException
+     */
+    private void writeBack(List<Frame> batch) throws IOException {
+        if(batch.isEmpty())
+            return;
+
+        for(Flushable barrier : this.barriers)
+            barrier.flush();
+
+        for(Frame frame : batch) {
+            long start = frame.pageNumber * BLOCK_SIZE;
+            int len = (int)Math.min(BLOCK_SIZE, frame.file.size() - start);
+
+            if(len > 0) {
+                ByteBuffer buffer = frame.data.duplicate();
+                buffer.clear().limit(len);
+
+                while(buffer.hasRemaining())
+                    frame.file.channel.write(buffer, start + buffer.position());
+            }
+
+            frame.dirty = false;
+            this.writeBacks++;
+        }
+    }
+
+    /**
+     * Builds the key of a page in the table.
+     *
+     * @param file File of the page
+     * @param pageNumber Number of the page in the file
+     * @return Key of the page
+     */
+    private static long key(PagedFile file, long pageNumber) {
+        return ((long)file.id << 44) | pageNumber;
+    }
+
+    // Nested Classes
+
+    /**
+     * A slot of the pool holding one page of a file.
+     */
+    public static final class Frame {
+
+        private final ByteBuffer data = ByteBuffer.allocate(BLOCK_SIZE); // Bytes of the page
+        private PagedFile file = null; // File of the page, null if the frame is free
+        private long pageNumber = -1; // Number of the page in the file
+        private int pinCount = 0; // Number of users of the page
+        private boolean dirty = false; // If the page was modified since it was read
+        private boolean referenced = false; // CLOCK reference bit
+
+        /**
+         * Returns the bytes of the page. The buffer must only be used while the frame is pinned.
+         *
+         * @return Bytes of the page
+         */
+        public ByteBuffer getData() {
+            return this.data;
+        }
+
+        /**
+         * Returns the number of the page held by the frame.
+         *
+         * @return Number of the page
+         */
+        public long getPageNumber() {
+            return this.pageNumber;
+        }
+
+        /**
+         * Reads a page of a file into the frame, filling with zeros what is past the end of the file.
+         *
+         * @param file File of the page
+         * @param pageNumber Number of the page
+         * @throws IOException
+         */
+        private void load(PagedFile file, long pageNumber) throws IOException {
+            this.file = file;
+            this.pageNumber = pageNumber;
+
+            this.data.clear();
+            long start = pageNumber * BLOCK_SIZE;
+            int n = 0;
+
+            while(this.data.hasRemaining() && n != -1)
+                n = file.channel.read(this.data, start + this.data.position());
+
+            while(this.data.hasRemaining())
+                this.data.put((byte)0);
+
+            this.data.clear();
+        }
+
+        /**
+         * Frees the frame.
+         */
+        private void clear() {
+            this.file = null;
+            this.pageNumber = -1;
+            this.pinCount = 0;
+            this.dirty = false;
+            this.referenced = false;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package crud.base;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import crud.base.BufferPool.Frame;
+import logic.SystemSpecification;
+
+/**
+ * <strong> A file whose pages are cached by the {@link BufferPool}. </strong>
+ *
+ * <p>
+ * Reads and writes are split into {@code BLOCK_SIZE} pages and served from the
+ * pool, so only the pages that are not cached touch the disk. Writes stay in memory
+ * until the page is evicted or the file is flushed or closed, and the size returned by
+ * {@link #size()} already counts the bytes that were not written back yet.
+ * </p>
+ *
+ * <p>
+ * Instances are created by {@link BufferPool#open(String)}, which returns the same
+ * handle for every caller of the same path, and must be closed once per open call.
+ * </p>
+ *
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.base.BufferPool
+ * @version 1.0.0
+ */
+public class PagedFile implements SystemSpecification, AutoCloseable {
+
+    // Attributes
+
+    private final BufferPool pool; // Pool that caches the pages of the file
+    private final String path; // Absolute path of the file
+    private volatile long size; // Size of the file, counting the pages that were not written back
+
+    final int id; // Identifier of the file in the pool
+    final FileChannel channel; // Channel used to read and write back the pages
+    int references = 0; // Number of handles opened for the file
+    int holds = 0; // Number of holders keeping the dirty pages of the file in memory
+
+    // Constructors
+
+    /**
+     * Opens the file at the specified path.
+     *
+     * @param pool Pool that caches the pages of the file
+     * @param path Absolute path of the file
+     * @param id Identifier of the file in the pool
+     * @throws IOException
+     */
+    PagedFile(BufferPool pool, String path, int id) throws IOException {
+        this.pool = pool;
+        this.path = path;
+        this.id = id;
+        this.channel = new RandomAccessFile(path, "rw").getChannel();
+        this.size = this.channel.size();
+    }
+
+    // Public Methods
+
+    /**
+     * Returns the absolute path of the file.
+     *
+     * @return Path of the file
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * Checks if the dirty pages of the file are held in the pool, so the file on the disk misses them.
+     *
+     * @return True if the writes are held
+     */
+    public boolean isHeld() {
+        synchronized(this.pool) {
+            return this.holds > 0;
+        }
+    }
+
+    /**
+     * Returns the size of the file in bytes.
+     *
+     * @return Size of the file
+     */
+    public long size() {
+        return this.size;
+    }
+
+    /**
+     * Fills the remaining bytes of the buffer with the bytes of the file starting at the given position.
+     *
+     * @param position Position of the first byte to be read
+     * @param buffer Buffer to be filled
+     * @throws IOException If the end of the file is reached before the buffer is full
+     */
+    public void read(long position, ByteBuffer buffer) throws IOException {
+        if(position + buffer.remaining() > this.size())
+            throw new EOFException("Unexpected end of the file " + this.path + " at " + position + ".");
+
+        while(buffer.hasRemaining()) {
+            Frame frame = this.pool.pin(this, position / BLOCK_SIZE);
+            int offset = (int)(position % BLOCK_SIZE);
+            int len = Math.min(BLOCK_SIZE - offset, buffer.remaining());
+
+            buffer.put(buffer.position(), frame.getData(), offset, len);
+            buffer.position(buffer.position() + len);
+            this.pool.unpin(frame, false);
+
+            position += len;
+        }
+    }
+
+    /**
+     * Writes the remaining bytes of the buffer in the file starting at the given position.
+     *
+     * @param position Position of the first byte to be written
+     * @param buffer Buffer to be written
+     * @throws IOException
+     */
+    public void write(long position, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            Frame frame = this.pool.pin(this, position / BLOCK_SIZE);
+            int offset = (int)(position % BLOCK_SIZE);
+            int len = Math.min(BLOCK_SIZE - offset, buffer.remaining());
+
+            frame.getData().put(offset, buffer, buffer.position(), len);
+            buffer.position(buffer.position() + len);
+            position += len;
+
+            if(position > this.size) this.size = position;
+
+            this.pool.unpin(frame, true);
+        }
+    }
+
+    /**
+     * Truncates the file to the given length.
+     *
+     * @param length New length of the file
+     * @throws IOException
+     */
+    public void truncate(long length) throws IOException {
+        this.pool.flush(this);
+        this.pool.discard(this);
+        this.channel.truncate(length);
+        this.size = length;
+    }
+
+    /**
+     * Writes every dirty page of the file back to the disk.
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        this.pool.flush(this);
+    }
+
+    /**
+     * Drops the cached pages of the file without writing them and reads its size again.
+     * It must be used after the file is rewritten without the pool.
+     *
+     * @throws IOException
+     */
+    public void invalidate() throws IOException {
+        this.pool.discard(this);
+        this.size = this.channel.size();
+    }
+
+    /**
+     * Closes the handle. The file is flushed and closed when its last handle is closed.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        this.pool.release(this);
+    }
+}
@@ -0,0 +1,119 @@
+package crud.base;
+
+import java.io.IOException;
+
+import components.interfaces.Register;
+
+/**
+ * <strong> A cursor over the valid records of an archive that decodes them into a single object. </strong>
+ *
+ * <p>
+ * The cursor reads every body into the same growing array and decodes it into the same
+ * object, which is decrypted in place, so a scan does not allocate an array, a register
+ * and its {@code RSA} per record. The object returned by {@link #get()} is overwritten
+ * by the next call to {@link #next()}, so a caller that keeps a record must keep a
+ * {@link #copy()} of it.
+ * </p>
+ *
+ * <pre>{@code
+ * RecordCursor<T> cursor = database.cursor();
+ * while(cursor.next())
+ *     if(cursor.get().getReleaseYear() > 2020) list.add(cursor.copy());
+ * }</pre>
+ *
+ * <p>
+ * The body is decoded from the start of an array that may be longer than it, so
+ * {@code fromByteArray} must only read the bytes it needs.
+ * </p>
+ *
+ * @param <T> Type of the records
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.base.RecordScanner
+ * @version 1.0.0
+ */
+public class RecordCursor<T extends Register<T>> {
+
+    // Attributes
+
+    private final RecordScanner scanner; // Scanner of the records
+    private final T obj; // Object the records are decoded into
+    private final boolean decrypt; // If the records are decrypted after being decoded
+
+    private byte[] buffer = null; // Array the bodies are read into
+
+    // Constructors
+
+    /**
+     * Creates a cursor over the records of a scanner.
+     *
+     * @param archive Archive of the records
+     * @param scanner Scanner of the records
+     * @param decrypt True to decrypt the records, false to leave them as stored
+     * @throws IOException If the object cannot be instantiated
+     */
+    RecordCursor(BinaryArchive<T> archive, RecordScanner scanner, boolean decrypt) throws IOException {
+        this.scanner = scanner;
+        this.decrypt = decrypt;
+
+        try {
+            this.obj = archive.constructor.newInstance();
+        } catch(ReflectiveOperationException e) {
+            throw new IOException("Could not make a new instance of " + archive.constructor.getName(), e);
+        }
+
+        if(archive.getCipher() != null)
+            this.obj.setCipher(archive.getCipher());
+    }
+
+    // Public Methods
+
+    /**
+     * Moves to the next valid record and decodes it.
+     *
+     * @return True if there is a record, false if the end of the archive was reached
+     * @throws IOException If there is an issue with file operations
+     */
+    public boolean next() throws IOException {
+        while(this.scanner.next()) {
+            if(!this.scanner.isValid())
+                continue;
+
+            this.buffer = this.scanner.body(this.buffer);
+            this.obj.fromByteArray(this.buffer);
+
+            if(this.decrypt)
+                this.obj.decriptInPlace();
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the current record. The object is reused by the next record.
+     *
+     * @return The current record
+     */
+    public T get() {
+        return this.obj;
+    }
+
+    /**
+     * Returns a copy of the current record that can be kept.
+     *
+     * @return A copy of the current record
+     */
+    public T copy() {
+        return this.obj.clone();
+    }
+
+    /**
+     * Returns the address of the current record.
+     *
+     * @return Address of the record
+     */
+    public long address() {
+        return this.scanner.address();
+    }
+}
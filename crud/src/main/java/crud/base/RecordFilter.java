@@ -0,0 +1,302 @@
+package crud.base;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+
+import crud.core.types.FieldPredicate;
+import crud.core.types.FieldType;
+import crud.core.types.PredicateType;
+
+/**
+ * <strong> A set of {@link FieldPredicate}s compiled against the layout of a register. </strong>
+ *
+ * <p>
+ * The filter evaluates the predicates on the bytes of a record body, as written by
+ * {@code toByteArray}, without decoding it. The fields before the last compared one are
+ * skipped by their size, and the fields after it are not read at all. Numbers and dates
+ * are compared by value and texts by their modified UTF-8 bytes, which keep the order of
+ * the strings except for the NUL character.
+ * </p>
+ *
+ * <p>
+ * A filter can only be compiled when every predicate compares a field of the layout that
+ * is not encrypted with values of a matching type. Otherwise the records must be decoded
+ * and the predicates evaluated with {@link FieldPredicate#test}.
+ * </p>
+ *
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.base.RecordScanner#test(RecordFilter)
+ * @version 1.0.0
+ */
+public class RecordFilter {
+
+    // Attributes
+
+    private final FieldType[] layout; // Type of every field, in the order they are written
+    private final int last; // Index of the last field compared by the filter
+
+    private final int[] fields; // Field compared by each predicate
+    private final PredicateType[] types; // Comparison made by each predicate
+    private final long[] mins; // Lower bound of each numeric predicate
+    private final long[] maxs; // Upper bound of each numeric predicate
+    private final byte[][] texts; // Encoded value or prefix of each text predicate
+    private final byte[][] textMaxs; // Encoded upper bound of each text range predicate
+
+    // Constructors
+
+    /**
+     * Creates a filter for the given layout. The predicates are added by {@link #compile}.
+     *
+     * @param layout Type of every field
+     * @param count Number of predicates
+     * @param last Index of the last field compared
+     */
+    private RecordFilter(FieldType[] layout, int count, int last) {
+        this.layout = layout;
+        this.last = last;
+        this.fields = new int[count];
+        this.types = new PredicateType[count];
+        this.mins = new long[count];
+        this.maxs = new long[count];
+        this.texts = new byte[count][];
+        this.textMaxs = new byte[count][];
+    }
+
+    /**
+     * Compiles the predicates against the layout of a register.
+     *
+     * @param layout Type of every field by name, in the order they are written, or null
+     * @param predicates Predicates that must all match
+     * @return The filter, or null if some predicate cannot be evaluated on the bytes
+     */
+    public static RecordFilter compile(LinkedHashMap<String, FieldType> layout, FieldPredicate... predicates) {
+        if(layout == null || predicates.length == 0)
+            return null;
+
+        ArrayList<String> keys = new ArrayList<String>(layout.keySet());
+        FieldType[] types = layout.values().toArray(new FieldType[0]);
+
+        int last = 0;
+        for(FieldPredicate predicate : predicates)
+            last = Math.max(last, keys.indexOf(predicate.key));
+
+        RecordFilter filter = new RecordFilter(types, predicates.length, last);
+
+        for(int i = 0; i < predicates.length; i++)
+            if(!filter.__add(i, keys.indexOf(predicates[i].key), predicates[i]))
+                return null;
+
+        return filter;
+    }
+
+    // Public Methods
+
+    /**
+     * Evaluates the predicates on the body of a record.
+     *
+     * @param buffer Buffer holding the body
+     * @param offset Position of the body in the buffer
+     * @param length Length of the body
+     * @return True if every predicate matches, false otherwise
+     */
+    public boolean test(ByteBuffer buffer, int offset, int length) {
+        int pos = offset;
+        int end = offset + length;
+
+        for(int field = 0; field <= this.last; field++) {
+            FieldType type = this.layout[field];
+            int size = __size(type);
+            int start = pos;
+
+            if(size < 0) {
+                if(pos + Short.BYTES > end)
+                    return false;
+
+                size = Short.BYTES + Short.toUnsignedInt(buffer.getShort(pos));
+            }
+
+            pos += size;
+            if(pos > end)
+                return false;
+
+            for(int i = 0; i < this.fields.length; i++)
+                if(this.fields[i] == field && !this.__test(i, type, buffer, start))
+                    return false;
+        }
+
+        return true;
+    }
+
+    // Private Methods
+
+    /**
+     * Adds a predicate to the filter.
+     *
+     * @param i Index of the predicate
+     * @param field Index of the field compared by the predicate
+     * @param predicate The predicate
+     * @return True if the predicate can be evaluated on the bytes, false otherwise
+     */
+    private boolean __add(int i, int field, FieldPredicate predicate) {
+        if(field < 0)
+            return false;
+
+        FieldType type = this.layout[field];
+        this.fields[i] = field;
+        this.types[i] = predicate.type;
+
+        if(type == FieldType.Cipher)
+            return false;
+
+        if(type == FieldType.Text) {
+            if(!__isText(predicate.min) || (predicate.type == PredicateType.Range && !__isText(predicate.max)))
+                return false;
+
+            if(predicate.type != PredicateType.Range && predicate.min == null)
+                return false;
+
+            this.texts[i] = predicate.min == null ? null : __encode((String)predicate.min);
+            this.textMaxs[i] = predicate.max == null ? null : __encode((String)predicate.max);
+            return (predicate.min == null || this.texts[i] != null) && (predicate.max == null || this.textMaxs[i] != null);
+        }
+
+        if(predicate.type == PredicateType.Prefix)
+            return false;
+
+        Long min = __number(type, predicate.min);
+        Long max = __number(type, predicate.max);
+
+        if((predicate.min != null && min == null) || (predicate.max != null && max == null))
+            return false;
+
+        if(predicate.type == PredicateType.Equal && min == null)
+            return false;
+
+        this.mins[i] = min == null ? Long.MIN_VALUE : min;
+        this.maxs[i] = max == null ? Long.MAX_VALUE : max;
+        return true;
+    }
+
+    /**
+     * Evaluates a predicate on its field.
+     *
+     * @param i Index of the predicate
+     * @param type Type of the field
+     * @param buffer Buffer holding the body
+     * @param pos Position of the field in the buffer
+     * @return True if the predicate matches, false otherwise
+     */
+    private boolean __test(int i, FieldType type, ByteBuffer buffer, int pos) {
+        if(type != FieldType.Text) {
+            long value;
+
+            switch(type) {
+                case Int: value = buffer.getInt(pos); break;
+                case Short: value = buffer.getShort(pos); break;
+                default: value = buffer.getLong(pos); break;
+            }
+
+            return value >= this.mins[i] && value <= this.maxs[i];
+        }
+
+        int len = Short.toUnsignedInt(buffer.getShort(pos));
+        pos += Short.BYTES;
+
+        switch(this.types[i]) {
+            case Equal:
+                return len == this.texts[i].length && __compare(buffer, pos, len, this.texts[i]) == 0;
+            case Prefix:
+                return len >= this.texts[i].length && __compare(buffer, pos, this.texts[i].length, this.texts[i]) == 0;
+            default:
+                return (this.texts[i] == null || __compare(buffer, pos, len, this.texts[i]) >= 0)
+                    && (this.textMaxs[i] == null || __compare(buffer, pos, len, this.textMaxs[i]) <= 0);
+        }
+    }
+
+    /**
+     * Compares bytes of the buffer with an array, as unsigned bytes.
+     *
+     * @param buffer Buffer holding the bytes
+     * @param pos Position of the first byte in the buffer
+     * @param len Number of bytes of the buffer to compare
+     * @param b The array
+     * @return A negative number, zero or a positive number as the bytes are less than, equal to or greater than the array
+     */
+    private static int __compare(ByteBuffer buffer, int pos, int len, byte[] b) {
+        int n = Math.min(len, b.length);
+
+        for(int k = 0; k < n; k++) {
+            int res = Byte.compareUnsigned(buffer.get(pos + k), b[k]);
+            if(res != 0) return res;
+        }
+
+        return Integer.compare(len, b.length);
+    }
+
+    /**
+     * Returns the size of a field of the given type.
+     *
+     * @param type Type of the field
+     * @return Size of the field, or -1 if it is text and its size is written before it
+     */
+    private static int __size(FieldType type) {
+        switch(type) {
+            case Int: return Integer.BYTES;
+            case Short: return Short.BYTES;
+            case Long: case Date: return Long.BYTES;
+            default: return -1;
+        }
+    }
+
+    /**
+     * Converts a value to the number written for a numeric field.
+     *
+     * @param type Type of the field
+     * @param value The value
+     * @return The number, or null if the value is null or does not match the type of the field
+     */
+    private static Long __number(FieldType type, Object value) {
+        if(type == FieldType.Date)
+            return value instanceof Date ? ((Date)value).getTime() : null;
+
+        if(value instanceof Integer || value instanceof Short || value instanceof Long || value instanceof Byte)
+            return ((Number)value).longValue();
+
+        return null;
+    }
+
+    /**
+     * Checks if a value can be compared with a text field.
+     *
+     * @param value The value
+     * @return True if the value is null or a string, false otherwise
+     */
+    private static boolean __isText(Object value) {
+        return value == null || value instanceof String;
+    }
+
+    /**
+     * Encodes a string as the bytes written by {@code writeUTF}, without their length.
+     *
+     * @param s The string
+     * @return The encoded bytes
+     */
+    private static byte[] __encode(String s) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        try(DataOutputStream dos = new DataOutputStream(baos)) {
+            dos.writeUTF(s);
+        } catch(IOException e) {
+            return null;
+        }
+
+        byte[] b = baos.toByteArray();
+        return Arrays.copyOfRange(b, Short.BYTES, b.length);
+    }
+}
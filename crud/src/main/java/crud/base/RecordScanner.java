@@ -0,0 +1,248 @@
+package crud.base;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import logic.SystemSpecification;
+
+/**
+ * <strong> A sequential reader of {@code [lapide][length][bytes]} records over a memory-mapped file. </strong>
+ *
+ * <p>
+ * The file is mapped in read-only windows of {@code SCAN_WINDOW_SIZE} bytes, so files
+ * larger than 2GB can be scanned, and the records are parsed directly from the mapping.
+ * When a record crosses the end of the current window a new window is mapped starting
+ * at the record. The bodies are only copied when {@link #body()} is called, so walking
+ * over the headers does not allocate.
+ * </p>
+ *
+ * <p>
+ * A scanner reflects the file at the moment it was created by
+ * {@link BinaryArchive#_scan(long)}. Writes made while it is being used may not be seen.
+ * A scanner started with a {@link Snapshot} copies every record it reads out of the mapping
+ * and patches it with the bytes overwritten since the snapshot, so it sees every record as
+ * it was when the snapshot was opened. While the writes of the file are held in the
+ * {@link BufferPool} by a transaction, the file misses them, so the records are copied
+ * through the pool instead of the mapping.
+ * </p>
+ *
+ * <pre>{@code
+ * RecordScanner scanner = this._scan(Integer.BYTES);
+ * while(scanner.next())
+ *     if(scanner.isValid()) ...
+ * }</pre>
+ *
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.base.BinaryArchive
+ * @version 1.0.0
+ */
+public class RecordScanner implements SystemSpecification {
+
+    // Attributes
+
+    private final PagedFile file; // Scanned file
+    private final FileChannel channel; // Channel of the scanned file
+    private final boolean pooled; // If the records are read through the pool
+    private final long end; // Size of the file when the scan started
+
+    private final Snapshot snapshot; // Snapshot the records are read from, or null
+
+    private ByteBuffer window = null; // Current mapped window
+    private long windowStart = 0; // Position of the first byte of the window in the file
+
+    private long next; // Address of the next record
+    private long address = -1; // Address of the current record
+    private boolean valid = false; // Lapide of the current record
+    private int length = 0; // Length of the body of the current record
+
+    private ByteBuffer view = null; // Buffer holding the bytes read, the window or the copy of a record
+    private byte[] copy = new byte[0]; // Copy of the record read through the snapshot
+
+    // Constructors
+
+    /**
+     * Creates a scanner over the records between the given position and the end of the file.
+     *
+     * @param file Scanned file
+     * @param start Address of the first record
+     * @param end Size of the file
+     * @param snapshot Snapshot the records are read from, or null
+     */
+    RecordScanner(PagedFile file, long start, long end, Snapshot snapshot) {
+        this.file = file;
+        this.channel = file.channel;
+        this.pooled = snapshot == null && file.isHeld();
+        this.next = start;
+        this.end = end;
+        this.snapshot = snapshot;
+    }
+
+    // Public Methods
+
+    /**
+     * Moves to the next record.
+     *
+     * @return True if there is a record, false if the end of the file was reached
+     * @throws IOException If the file ends in the middle of a record
+     */
+    public boolean next() throws IOException {
+        if(this.next >= this.end)
+            return false;
+
+        int header = Byte.BYTES + Integer.BYTES;
+        int offset = this.__map(this.next, header);
+
+        this.address = this.next;
+        this.valid = this.view.get(offset) != 0;
+        this.length = this.view.getInt(offset + Byte.BYTES);
+        this.next += header + this.length;
+
+        if(this.next > this.end)
+            throw new EOFException("The record at " + this.address + " ends after the end of the file.");
+
+        return true;
+    }
+
+    /**
+     * Returns the address of the current record.
+     *
+     * @return Address of the record
+     */
+    public long address() {
+        return this.address;
+    }
+
+    /**
+     * Returns the lapide of the current record.
+     *
+     * @return True if the record is valid, false if it was deleted
+     */
+    public boolean isValid() {
+        return this.valid;
+    }
+
+    /**
+     * Returns the length of the body of the current record.
+     *
+     * @return Length of the body
+     */
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * Copies the body of the current record.
+     *
+     * @return Bytes of the body
+     * @throws IOException
+     */
+    public byte[] body() throws IOException {
+        int header = Byte.BYTES + Integer.BYTES;
+        byte[] b = new byte[this.length];
+        int offset = this.__map(this.address, header + this.length);
+
+        this.view.get(offset + header, b);
+        return b;
+    }
+
+    /**
+     * Copies the body of the current record into the given array, or into a new one if
+     * the array is too small. The bytes after the body are left as they were.
+     *
+     * @param b Array to reuse, or null
+     * @return The array holding the body at its start
+     * @throws IOException
+     */
+    public byte[] body(byte[] b) throws IOException {
+        int header = Byte.BYTES + Integer.BYTES;
+        int offset = this.__map(this.address, header + this.length);
+
+        if(b == null || b.length < this.length)
+            b = new byte[Math.max(this.length, b == null ? 0 : b.length * 2)];
+
+        this.view.get(offset + header, b, 0, this.length);
+        return b;
+    }
+
+    /**
+     * Evaluates a filter on the body of the current record, over the mapping, without copying
+     * it unless the record is read through a snapshot.
+     *
+     * @param filter The filter
+     * @return True if the record matches the filter, false otherwise
+     * @throws IOException
+     */
+    public boolean test(RecordFilter filter) throws IOException {
+        int header = Byte.BYTES + Integer.BYTES;
+        int offset = this.__map(this.address, header + this.length);
+
+        return filter.test(this.view, offset + header, this.length);
+    }
+
+    // Private Methods
+
+    /**
+     * Makes sure the bytes between the position and the position plus the length
+     * can be read from the view. Through a snapshot, the bytes are copied from the
+     * window and patched, and while the writes are held they are copied from the pool;
+     * otherwise the view is the window itself.
+     *
+     * @param position Position of the first byte
+     * @param len Number of bytes needed
+     * @return Offset of the position in the view
+     * @throws IOException If the bytes go past the end of the file
+     */
+    private int __map(long position, int len) throws IOException {
+        if(this.copy.length < len) {
+            this.copy = new byte[Math.max(len, this.copy.length * 2)];
+            this.view = null;
+        }
+
+        if(this.pooled) {
+            if(position + len > this.end)
+                throw new EOFException("The record at " + position + " ends after the end of the file.");
+
+            this.file.read(position, ByteBuffer.wrap(this.copy, 0, len));
+            this.view = ByteBuffer.wrap(this.copy);
+            return 0;
+        }
+
+        int offset = this.__window(position, len);
+
+        if(this.snapshot == null) {
+            this.view = this.window;
+            return offset;
+        }
+
+        this.view = ByteBuffer.wrap(this.copy);
+        this.window.get(offset, this.copy, 0, len);
+        this.snapshot.patch(this.copy, 0, position, len);
+        return 0;
+    }
+
+    /**
+     * Makes sure the bytes between the position and the position plus the length
+     * are in the current window, mapping a new window if they are not.
+     *
+     * @param position Position of the first byte
+     * @param len Number of bytes needed
+     * @return Offset of the position in the window
+     * @throws IOException If the bytes go past the end of the file
+     */
+    private int __window(long position, int len) throws IOException {
+        if(position + len > this.end)
+            throw new EOFException("The record at " + position + " ends after the end of the file.");
+
+        if(this.window == null || position < this.windowStart || position + len > this.windowStart + this.window.capacity()) {
+            long size = Math.min(Math.max((long)SCAN_WINDOW_SIZE, len), this.end - position);
+
+            this.window = this.channel.map(MapMode.READ_ONLY, position, size);
+            this.windowStart = position;
+        }
+
+        return (int)(position - this.windowStart);
+    }
+}
@@ -0,0 +1,142 @@
+package crud.base;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import components.interfaces.Register;
+import crud.core.types.Response;
+import logic.SystemSpecification;
+
+/**
+ * <strong> A {@link Spliterator} over the valid records of an archive. </strong>
+ *
+ * <p>
+ * The spliterator covers a range of bytes of the archive that starts and ends on record
+ * boundaries. Since the records have no markers, a boundary in the middle of the range is
+ * found by walking the record headers from its start over the memory mapping, which does
+ * not read the bodies. The range is then split in two halves that are scanned and decoded
+ * on their own, so a parallel stream decodes and decrypts the records on every core.
+ * </p>
+ *
+ * <p>
+ * As a {@link RecordScanner}, a spliterator reflects the archive at the moment it was
+ * created by {@link BinaryArchive#_stream(long)}.
+ * </p>
+ *
+ * @param <T> Type of the records
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.base.RecordScanner
+ * @version 1.0.0
+ */
+public class RecordSpliterator<T extends Register<T>> implements Spliterator<Response<T>>, SystemSpecification {
+
+    // Attributes
+
+    private final BinaryArchive<T> archive; // Archive that decodes the records
+    private final PagedFile file; // Pages of the archive file
+    private final long end; // Address after the last record of the range
+
+    private long start; // Address of the first record of the range
+    private final Snapshot snapshot; // Snapshot the records are read from, or null
+
+    private RecordScanner scanner = null; // Scanner of the range, created by the first advance
+
+    // Constructors
+
+    /**
+     * Creates a spliterator over the records between the given addresses.
+     *
+     * @param archive Archive that decodes the records
+     * @param file Pages of the archive file
+     * @param start Address of the first record
+     * @param end Address after the last record
+     * @param snapshot Snapshot the records are read from, or null
+     */
+    RecordSpliterator(BinaryArchive<T> archive, PagedFile file, long start, long end, Snapshot snapshot) {
+        this.archive = archive;
+        this.file = file;
+        this.start = start;
+        this.end = end;
+        this.snapshot = snapshot;
+    }
+
+    // Public Methods
+
+    /**
+     * Decodes the next valid record and passes it to the action, decrypted.
+     *
+     * @param action Action to perform on the record
+     * @return True if there was a record, false if the end of the range was reached
+     */
+    @Override
+    public boolean tryAdvance(Consumer<? super Response<T>> action) {
+        if(this.scanner == null)
+            this.scanner = new RecordScanner(this.file, this.start, this.end, this.snapshot);
+
+        try {
+            while(this.scanner.next()) {
+                if(!this.scanner.isValid())
+                    continue;
+
+                T obj = this.archive._decode(this.scanner.body());
+                action.accept(new Response<T>(true, "The object was readed successfully.", -1L, this.scanner.address(), -1L, obj.decript()));
+                return true;
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return false;
+    }
+
+    /**
+     * Splits off the first half of the range, cut at the first record boundary after its middle.
+     *
+     * @return A spliterator over the first half, or null if the range is too small or already being scanned
+     */
+    @Override
+    public Spliterator<Response<T>> trySplit() {
+        if(this.scanner != null || this.end - this.start < BLOCK_SIZE * 2)
+            return null;
+
+        long middle = this.start + (this.end - this.start) / 2;
+        RecordScanner walker = new RecordScanner(this.file, this.start, this.end, this.snapshot);
+
+        try {
+            while(walker.next()) {
+                if(walker.address() < middle)
+                    continue;
+
+                RecordSpliterator<T> prefix = new RecordSpliterator<T>(this.archive, this.file, this.start, walker.address(), this.snapshot);
+                this.start = walker.address();
+                return prefix;
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the number of bytes left in the range, as an upper bound of the number of records.
+     *
+     * @return Number of bytes left
+     */
+    @Override
+    public long estimateSize() {
+        return this.scanner == null || this.scanner.address() < this.start ? this.end - this.start : this.end - this.scanner.address();
+    }
+
+    /**
+     * Returns the characteristics of the spliterator.
+     *
+     * @return The records are ordered by address and never null
+     */
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
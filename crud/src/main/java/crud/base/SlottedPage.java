@@ -0,0 +1,346 @@
+package crud.base;
+
+import java.nio.ByteBuffer;
+
+import logic.SystemSpecification;
+
+/**
+ * <strong> A {@code BLOCK_SIZE} page of records with a slot directory. </strong>
+ *
+ * <p>
+ * The page starts with a {@code [slot count][free end]} header followed by the slot
+ * directory, where each slot holds the {@code [offset][length]} of its record. The records
+ * are written from the end of the page backwards as {@code [lapide][bytes]}, so the
+ * directory and the records grow towards each other. A record keeps its slot while it
+ * stays in the page, even if it is moved by {@link #compact()}, so a {@code (page, slot)}
+ * pair identifies it for its whole life.
+ * </p>
+ *
+ * <p>
+ * A deleted record keeps its bytes, so it can be restored, until the page runs out of
+ * space for an insert. Then the deleted records are dropped, their slots are freed to
+ * be reused and the remaining records are packed at the end of the page.
+ * </p>
+ *
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.core.SlottedDataBase
+ * @version 1.0.0
+ */
+public class SlottedPage implements SystemSpecification {
+
+    // Attributes
+
+    public static final int HEADER_BYTES = Short.BYTES * 2; // [slot count][free end]
+    public static final int SLOT_BYTES = Short.BYTES * 2; // [offset][length]
+    public static final int MAX_RECORD_BYTES = BLOCK_SIZE - HEADER_BYTES - SLOT_BYTES - Byte.BYTES; // Largest body that fits in an empty page
+
+    private final ByteBuffer data; // Bytes of the page
+
+    // Constructors
+
+    /**
+     * Wraps the bytes of a page that was already formatted.
+     *
+     * @param data Bytes of the page, with {@code BLOCK_SIZE} bytes
+     */
+    public SlottedPage(ByteBuffer data) {
+        this.data = data;
+    }
+
+    /**
+     * Formats the given bytes as an empty page.
+     *
+     * @param data Bytes of the page, with {@code BLOCK_SIZE} bytes
+     * @return The empty page
+     */
+    public static SlottedPage format(ByteBuffer data) {
+        SlottedPage page = new SlottedPage(data);
+        page.__setSlotCount(0);
+        page.__setFreeEnd(BLOCK_SIZE);
+        return page;
+    }
+
+    // Public Methods
+
+    /**
+     * Returns the bytes of the page.
+     *
+     * @return Bytes of the page
+     */
+    public ByteBuffer getData() {
+        return this.data;
+    }
+
+    /**
+     * Returns the number of slots of the page, used or not.
+     *
+     * @return Number of slots
+     */
+    public int slotCount() {
+        return this.data.getShort(0);
+    }
+
+    /**
+     * Returns the number of bytes an insert can use, counting the bytes of the deleted
+     * records and the gaps that {@link #compact()} would give back.
+     *
+     * @return Number of free bytes
+     */
+    public int freeSpace() {
+        int used = HEADER_BYTES + this.slotCount() * SLOT_BYTES;
+
+        for(int i = 0; i < this.slotCount(); i++)
+            if(this.__offset(i) != 0 && this.isValid(i)) used += this.__length(i);
+
+        return BLOCK_SIZE - used;
+    }
+
+    /**
+     * Checks if the slot holds a record that was not deleted.
+     *
+     * @param slot Slot of the record
+     * @return True if the record is valid, false if it was deleted or the slot is free
+     */
+    public boolean isValid(int slot) {
+        return this.isUsed(slot) && this.data.get(this.__offset(slot)) != 0;
+    }
+
+    /**
+     * Checks if the slot holds a record, deleted or not.
+     *
+     * @param slot Slot of the record
+     * @return True if the slot is in use, false otherwise
+     */
+    public boolean isUsed(int slot) {
+        return slot >= 0 && slot < this.slotCount() && this.__offset(slot) != 0;
+    }
+
+    /**
+     * Copies the body of the record in the slot.
+     *
+     * @param slot Slot of the record
+     * @return Bytes of the body, or null if the slot is free
+     */
+    public byte[] read(int slot) {
+        if(!this.isUsed(slot))
+            return null;
+
+        byte[] b = new byte[this.__length(slot) - Byte.BYTES];
+        this.data.get(this.__offset(slot) + Byte.BYTES, b);
+        return b;
+    }
+
+    /**
+     * Inserts a record in the page, reusing a free slot if there is one.
+     *
+     * @param b Bytes of the body
+     * @return Slot of the record, or -1 if it does not fit in the page
+     */
+    public int insert(byte[] b) {
+        int slot = this.__freeSlot();
+        int len = Byte.BYTES + b.length;
+        int needed = len + (slot == this.slotCount() ? SLOT_BYTES : 0);
+
+        if(this.__contiguousSpace() < needed) {
+            if(this.freeSpace() < needed)
+                return -1;
+
+            this.compact();
+            slot = this.__freeSlot();
+            needed = len + (slot == this.slotCount() ? SLOT_BYTES : 0);
+
+            if(this.__contiguousSpace() < needed)
+                return -1;
+        }
+
+        if(slot == this.slotCount())
+            this.__setSlotCount(slot + 1);
+
+        this.__write(slot, b);
+        return slot;
+    }
+
+    /**
+     * Replaces the body of the record in the slot, keeping the slot.
+     *
+     * @param slot Slot of the record
+     * @param b Bytes of the new body
+     * @return True if the record was replaced, false if it does not fit in the page
+     */
+    public boolean update(int slot, byte[] b) {
+        if(!this.isUsed(slot))
+            return false;
+
+        int len = Byte.BYTES + b.length;
+
+        if(len <= this.__length(slot)) {
+            this.data.put(this.__offset(slot), (byte)1);
+            this.data.put(this.__offset(slot) + Byte.BYTES, b);
+            this.data.putShort(this.__slot(slot) + Short.BYTES, (short)len);
+            return true;
+        }
+
+        if(this.__contiguousSpace() < len) {
+            if(this.freeSpace() + (this.isValid(slot) ? this.__length(slot) : 0) < len)
+                return false;
+
+            this.free(slot);
+            this.compact();
+        }
+
+        this.__write(slot, b);
+        return true;
+    }
+
+    /**
+     * Sets the lapide of the record in the slot.
+     *
+     * @param slot Slot of the record
+     * @param lapide True if the record is valid, false if it is deleted
+     * @return True if the slot holds a record, false otherwise
+     */
+    public boolean setLapide(int slot, boolean lapide) {
+        if(!this.isUsed(slot))
+            return false;
+
+        this.data.put(this.__offset(slot), (byte)(lapide ? 1 : 0));
+        return true;
+    }
+
+    /**
+     * Frees the slot, dropping its record. The slot can be reused by the next insert.
+     *
+     * @param slot Slot of the record
+     */
+    public void free(int slot) {
+        if(slot < 0 || slot >= this.slotCount())
+            return;
+
+        this.data.putShort(this.__slot(slot), (short)0);
+        this.data.putShort(this.__slot(slot) + Short.BYTES, (short)0);
+    }
+
+    /**
+     * Drops the deleted records and packs the remaining ones at the end of the page,
+     * so the free bytes are contiguous. The records keep their slots.
+     */
+    public void compact() {
+        byte[] copy = new byte[BLOCK_SIZE];
+        int end = BLOCK_SIZE;
+
+        for(int i = 0; i < this.slotCount(); i++) {
+            if(this.isUsed(i) && !this.isValid(i))
+                this.free(i);
+
+            if(this.isUsed(i)) {
+                int len = this.__length(i);
+                end -= len;
+
+                this.data.get(this.__offset(i), copy, end, len);
+                this.data.putShort(this.__slot(i), (short)end);
+            }
+        }
+
+        this.data.put(end, copy, end, BLOCK_SIZE - end);
+        this.__setFreeEnd(end);
+    }
+
+    // Private Methods
+
+    /**
+     * Writes a valid record at the end of the free bytes and points the slot to it.
+     *
+     * @param slot Slot of the record
+     * @param b Bytes of the body
+     */
+    private void __write(int slot, byte[] b) {
+        int len = Byte.BYTES + b.length;
+        int offset = this.__freeEnd() - len;
+
+        this.data.put(offset, (byte)1);
+        this.data.put(offset + Byte.BYTES, b);
+        this.data.putShort(this.__slot(slot), (short)offset);
+        this.data.putShort(this.__slot(slot) + Short.BYTES, (short)len);
+        this.__setFreeEnd(offset);
+    }
+
+    /**
+     * Returns the first free slot, or the slot count if every slot is in use.
+     *
+     * @return Slot to be used by an insert
+     */
+    private int __freeSlot() {
+        int count = this.slotCount();
+
+        for(int i = 0; i < count; i++)
+            if(!this.isUsed(i)) return i;
+
+        return count;
+    }
+
+    /**
+     * Returns the number of free bytes between the slot directory and the records.
+     *
+     * @return Number of contiguous free bytes
+     */
+    private int __contiguousSpace() {
+        return this.__freeEnd() - HEADER_BYTES - this.slotCount() * SLOT_BYTES;
+    }
+
+    /**
+     * Returns the position of the slot in the page.
+     *
+     * @param slot Slot of the record
+     * @return Position of the slot
+     */
+    private int __slot(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    /**
+     * Returns the position of the record in the slot.
+     *
+     * @param slot Slot of the record
+     * @return Position of the record, or 0 if the slot is free
+     */
+    private int __offset(int slot) {
+        return Short.toUnsignedInt(this.data.getShort(this.__slot(slot)));
+    }
+
+    /**
+     * Returns the length of the record in the slot, counting its lapide.
+     *
+     * @param slot Slot of the record
+     * @return Length of the record
+     */
+    private int __length(int slot) {
+        return Short.toUnsignedInt(this.data.getShort(this.__slot(slot) + Short.BYTES));
+    }
+
+    /**
+     * Returns the position of the first byte of the records.
+     *
+     * @return Position of the end of the free bytes
+     */
+    private int __freeEnd() {
+        return Short.toUnsignedInt(this.data.getShort(Short.BYTES));
+    }
+
+    /**
+     * Sets the number of slots of the page.
+     *
+     * @param count Number of slots
+     */
+    private void __setSlotCount(int count) {
+        this.data.putShort(0, (short)count);
+    }
+
+    /**
+     * Sets the position of the first byte of the records.
+     *
+     * @param end Position of the end of the free bytes
+     */
+    private void __setFreeEnd(int end) {
+        this.data.putShort(Short.BYTES, (short)end);
+    }
+}
@@ -0,0 +1,79 @@
+package crud.base;
+
+/**
+ * <strong> A consistent view of an archive as it was when the snapshot was opened. </strong>
+ *
+ * <p>
+ * The scanners, cursors and streams started with a snapshot read the records the archive
+ * had when it was opened, while other threads keep writing it: a record updated, deleted or
+ * moved afterwards is seen as it was, once, and the records created afterwards are not seen.
+ * The bytes overwritten since are kept by the {@link VersionStore} of the archive until the
+ * snapshot is closed, so a snapshot must always be closed, and the archive cannot be cleared
+ * or replaced while it is open.
+ * </p>
+ *
+ * <pre>{@code
+ * try(Snapshot snapshot = archive.snapshot()) {
+ *     RecordCursor<T> cursor = archive.cursor(snapshot);
+ *     while(cursor.next()) ...
+ * }
+ * }</pre>
+ *
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.base.VersionStore
+ * @version 1.0.0
+ */
+public class Snapshot implements AutoCloseable {
+
+    // Attributes
+
+    final VersionStore store; // Store keeping the bytes overwritten since the snapshot
+    final long version; // Version of the last write seen by the snapshot
+    final long length; // Length of the archive when the snapshot was opened
+
+    // Constructors
+
+    /**
+     * Creates a snapshot. Snapshots are opened by {@link VersionStore#open(long)}.
+     *
+     * @param store Store of the archive
+     * @param version Version of the last write
+     * @param length Length of the archive
+     */
+    Snapshot(VersionStore store, long version, long length) {
+        this.store = store;
+        this.version = version;
+        this.length = length;
+    }
+
+    // Public Methods
+
+    /**
+     * Returns the length of the archive seen by the snapshot.
+     *
+     * @return Length of the archive
+     */
+    public long getLength() {
+        return this.length;
+    }
+
+    /**
+     * Replaces the bytes copied from the file by the ones seen by the snapshot.
+     *
+     * @param b Bytes copied from the file
+     * @param offset Offset of the first byte in the array
+     * @param position Position of the first byte in the file
+     * @param len Number of bytes
+     */
+    public void patch(byte[] b, int offset, long position, int len) {
+        this.store.patch(this, b, offset, position, len);
+    }
+
+    /**
+     * Closes the snapshot, letting the archive drop the bytes kept for it.
+     */
+    @Override
+    public void close() {
+        this.store.close(this);
+    }
+}
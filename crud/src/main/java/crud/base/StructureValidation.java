@@ -146,7 +146,7 @@ public final class StructureValidation implements SystemSpecification {
         if (databaseFile.exists()) {
             File[] files = databaseFile.listFiles();
             for(int i = 0; i < files.length; i++) {
-                if (files[i].getName().endsWith(".db") || files[i].getName().endsWith(".db.trash")) {
+                if (files[i].getName().endsWith(".db") || files[i].getName().endsWith(".db.trash") || files[i].getName().endsWith(".db" + WAL_FILES_EXTENSION) || files[i].getName().endsWith(".db" + FREE_SPACE_FILES_EXTENSION) || files[i].getName().endsWith(".db" + ID_MAP_FILES_EXTENSION) || files[i].getName().endsWith(".db" + COMPACTION_FILES_EXTENSION) || files[i].getName().endsWith(".db" + REMAP_FILES_EXTENSION) || files[i].getName().endsWith(".db" + CIPHER_KEY_FILES_EXTENSION) || files[i].getName().endsWith(".db" + MIGRATION_FILES_EXTENSION)) {
                     files[i].delete();
                 }
             }
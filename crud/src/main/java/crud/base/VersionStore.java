@@ -0,0 +1,203 @@
+package crud.base;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <strong> The old versions of the bytes of an archive still seen by its open {@link Snapshot}s. </strong>
+ *
+ * <p>
+ * Every write made to the archive while a snapshot is open first keeps the bytes it is
+ * about to overwrite, tagged with a version taken from a counter. A snapshot remembers the
+ * version it was opened at, so the bytes it sees at a position are the oldest ones kept
+ * after that version, or the bytes of the file if none were kept. The bytes written past
+ * the length of every open snapshot are not kept, since no snapshot reads them, so the
+ * records appended at the end of the archive cost nothing.
+ * </p>
+ *
+ * <p>
+ * The bytes are kept before the write reaches the buffer pool, and a reader copies the
+ * bytes of the file before looking at the kept ones, so a write that lands while a record
+ * is being read is always undone. When a snapshot is closed the versions that no open
+ * snapshot needs are dropped, and the store is emptied when the last one is closed.
+ * </p>
+ *
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.base.Snapshot
+ * @see crud.base.BinaryArchive#snapshot()
+ * @version 1.0.0
+ */
+public class VersionStore {
+
+    // Attributes
+
+    private final TreeMap<Long, ArrayList<Version>> versions = new TreeMap<>(); // Kept bytes by position
+    private final ArrayList<Snapshot> snapshots = new ArrayList<>(); // Open snapshots
+
+    private long version = 0; // Version of the last write
+    private long length = 0; // Largest length of the open snapshots
+    private int longest = 0; // Largest number of bytes kept by a single write
+    private volatile boolean active = false; // If some snapshot is open
+
+    /**
+     * Bytes overwritten by a write.
+     */
+    private static class Version {
+        final long version; // Version of the write
+        final long position; // Position of the first byte
+        final byte[] bytes; // Bytes before the write
+
+        Version(long version, long position, byte[] bytes) {
+            this.version = version;
+            this.position = position;
+            this.bytes = bytes;
+        }
+    }
+
+    // Public Methods
+
+    /**
+     * Checks if some snapshot is open, so the writes must keep the bytes they overwrite.
+     *
+     * @return True if some snapshot is open, false otherwise.
+     */
+    public boolean isActive() {
+        return this.active;
+    }
+
+    /**
+     * Returns the largest length of the open snapshots. The bytes after it are not seen by any of them.
+     *
+     * @return The length, or 0 if no snapshot is open.
+     */
+    public synchronized long getLength() {
+        return this.length;
+    }
+
+    /**
+     * Opens a snapshot of the archive as it is now.
+     *
+     * @param length Length of the archive.
+     * @return The snapshot.
+     */
+    public synchronized Snapshot open(long length) {
+        Snapshot snapshot = new Snapshot(this, this.version, length);
+
+        this.snapshots.add(snapshot);
+        this.length = Math.max(this.length, length);
+        this.active = true;
+
+        return snapshot;
+    }
+
+    /**
+     * Keeps the bytes a write is about to overwrite.
+     *
+     * @param position Position of the first byte.
+     * @param bytes    Bytes before the write.
+     */
+    public synchronized void keep(long position, byte[] bytes) {
+        if(this.snapshots.isEmpty() || bytes.length == 0)
+            return;
+
+        Version v = new Version(++this.version, position, bytes);
+        this.versions.computeIfAbsent(position, k -> new ArrayList<Version>()).add(v);
+        this.longest = Math.max(this.longest, bytes.length);
+    }
+
+    /**
+     * Replaces the bytes copied from the file by the ones a snapshot sees.
+     *
+     * @param snapshot The snapshot.
+     * @param b        Bytes copied from the file.
+     * @param offset   Offset of the first byte in the array.
+     * @param position Position of the first byte in the file.
+     * @param len      Number of bytes.
+     */
+    public synchronized void patch(Snapshot snapshot, byte[] b, int offset, long position, int len) {
+        if(this.versions.isEmpty())
+            return;
+
+        ArrayList<Version> found = new ArrayList<Version>();
+        for(Map.Entry<Long, ArrayList<Version>> entry : this.versions.subMap(position - this.longest, false, position + len, false).entrySet())
+            for(Version v : entry.getValue())
+                if(v.version > snapshot.version && v.position + v.bytes.length > position)
+                    found.add(v);
+
+        // The oldest version after the snapshot is applied last, so it wins
+        found.sort((x, y) -> Long.compare(y.version, x.version));
+
+        for(Version v : found) {
+            long from = Math.max(position, v.position);
+            long to = Math.min(position + len, v.position + v.bytes.length);
+
+            System.arraycopy(v.bytes, (int)(from - v.position), b, offset + (int)(from - position), (int)(to - from));
+        }
+    }
+
+    /**
+     * Closes a snapshot, dropping the versions that no open snapshot needs.
+     *
+     * @param snapshot The snapshot.
+     */
+    public synchronized void close(Snapshot snapshot) {
+        if(!this.snapshots.remove(snapshot))
+            return;
+
+        if(this.snapshots.isEmpty()) {
+            this.versions.clear();
+            this.length = 0;
+            this.longest = 0;
+            this.active = false;
+        } else {
+            long oldest = Long.MAX_VALUE;
+            long length = 0;
+
+            for(Snapshot s : this.snapshots) {
+                oldest = Math.min(oldest, s.version);
+                length = Math.max(length, s.length);
+            }
+
+            final long min = oldest;
+            this.versions.values().removeIf(list -> {
+                list.removeIf(v -> v.version <= min);
+                return list.isEmpty();
+            });
+            this.length = length;
+        }
+
+        this.notifyAll();
+    }
+
+    /**
+     * Waits until every snapshot is closed. Called before the file of the archive is
+     * truncated or replaced, which would take the bytes the snapshots read away.
+     *
+     * @throws InterruptedIOException If the thread is interrupted while waiting.
+     */
+    public synchronized void await() throws InterruptedIOException {
+        while(!this.snapshots.isEmpty()) {
+            try {
+                this.wait();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the snapshots of the archive to be closed.");
+            }
+        }
+    }
+
+    /**
+     * Returns the number of versions kept.
+     *
+     * @return The number of versions.
+     */
+    public synchronized int size() {
+        int size = 0;
+        for(ArrayList<Version> list : this.versions.values())
+            size += list.size();
+
+        return size;
+    }
+}
@@ -0,0 +1,273 @@
+package crud.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+import components.interfaces.Register;
+import crud.base.RecordScanner;
+import logic.SystemSpecification;
+
+/**
+ * <strong> An incremental copy of the live records of a database file. </strong>
+ *
+ * <p>
+ * The records are read from a memory-mapped scan of the database and appended to a
+ * {@code .compact} file, one segment of {@code COMPACTION_SEGMENT_SIZE} bytes per call
+ * to {@link #step()}, leaving the deleted records behind. The new address of every copied
+ * record is kept in a map from its old address, which is used to patch the indexes when
+ * the copy replaces the database file.
+ * </p>
+ *
+ * <p>
+ * The copy only touches the scan and its own file, so it can run in another thread
+ * with {@link #start()} while the database keeps serving reads and writes. The database
+ * keeps the address of every record written meanwhile, and {@link #catchUp()} copies only
+ * those records again before the copy is used.
+ * </p>
+ *
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.core.DataBase#swap(String)
+ * @version 1.0.0
+ */
+public class Compactor<T extends Register<T>> implements SystemSpecification, Runnable, AutoCloseable {
+
+    // Attributes
+
+    private static final int RECORD_HEADER_BYTES = Byte.BYTES + Integer.BYTES; // [lapide][length]
+
+    private final DataBase<T> database; // Database being compacted
+    private final String path; // Path of the copy
+    private final RandomAccessFile file; // File of the copy
+    private final FileChannel channel; // Channel of the copy
+    private final RecordScanner scanner; // Scan of the database when the copy started
+    private final long modifications; // Writes done to the database when the copy started
+    private final int lastId; // ID of the last record when the copy started
+    private final HashMap<Long, Long> addresses = new HashMap<>(); // New address of each copied record
+
+    private ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE); // Records waiting to be written
+    private long position = Integer.BYTES; // Address of the next record in the copy
+    private boolean pending = false; // If the scanner is on a record that was not copied
+    private volatile boolean done = false; // If every record was copied
+    private Thread thread = null; // Thread running the copy
+    private Exception error = null; // Error that stopped the copy
+
+    // Constructors
+
+    /**
+     * Starts a copy of the given database. Nothing is copied until {@link #step()},
+     * {@link #run()} or {@link #start()} is called.
+     *
+     * @param database Database to be compacted
+     * @throws IOException
+     */
+    public Compactor(DataBase<T> database) throws IOException {
+        this.database = database;
+        this.path = database.getFilePath() + COMPACTION_FILES_EXTENSION;
+        this.scanner = database.scan();
+        this.modifications = database.getModificationCount();
+        this.lastId = database.getLastId();
+        this.database._trackWrites(true);
+
+        this.file = new RandomAccessFile(this.path, "rw");
+        this.file.setLength(0);
+        this.channel = this.file.getChannel();
+    }
+
+    // Public Methods
+
+    /**
+     * Returns the path of the copy.
+     *
+     * @return Path of the copy
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * Returns the new address of every copied record by its old address.
+     *
+     * @return Map from the old to the new addresses
+     */
+    public HashMap<Long, Long> getAddresses() {
+        return this.addresses;
+    }
+
+    /**
+     * Checks if every record was copied.
+     *
+     * @return True if the copy is complete, false otherwise
+     */
+    public boolean isDone() {
+        return this.done;
+    }
+
+    /**
+     * Checks if the database was written after the copy started, so the copy
+     * must be brought up to date with {@link #catchUp()}.
+     *
+     * @return True if the copy is stale, false otherwise
+     */
+    public boolean isStale() {
+        return this.database.getModificationCount() != this.modifications;
+    }
+
+    /**
+     * Copies the live records of the next segment of the database. When the last
+     * segment is copied the header is written and the copy is synced to the disk.
+     *
+     * @return True if there are records left to be copied, false otherwise
+     * @throws IOException
+     */
+    public boolean step() throws IOException {
+        if(this.done) return false;
+
+        long end = this.scanner.address() + COMPACTION_SEGMENT_SIZE;
+
+        while(this.pending || this.scanner.next()) {
+            if(!this.pending && this.scanner.address() >= end) {
+                this.pending = true;
+                return true;
+            }
+
+            this.pending = false;
+            if(this.scanner.isValid()) this.__copy(this.scanner.address(), this.scanner.body());
+        }
+
+        this.__flush();
+        this.channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, this.lastId), 0);
+        this.channel.force(true);
+
+        this.done = true;
+        return false;
+    }
+
+    /**
+     * Brings a complete copy up to date with the records written to the database after the
+     * copy started. A deleted record is marked as deleted in the copy, a record already copied
+     * is written again in its slot, which keeps its length, and any other record is appended.
+     * It must be called while the database is not written.
+     *
+     * @throws IOException
+     */
+    public void catchUp() throws IOException {
+        if(!this.done)
+            throw new IllegalStateException("The copy of " + this.database.getFilePath() + " is not complete.");
+
+        ArrayList<Long> written = new ArrayList<>(this.database._writtenAddresses());
+        Collections.sort(written);
+
+        for(long address : written) {
+            byte[] b = this.database._readSlot(address);
+            Long copy = this.addresses.get(address);
+
+            if(b == null) {
+                if(copy != null) {
+                    this.channel.write(ByteBuffer.allocate(Byte.BYTES), copy);
+                    this.addresses.remove(address);
+                }
+            } else if(copy != null) {
+                ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + b.length);
+                record.put((byte)1).putInt(b.length).put(b).flip();
+
+                while(record.hasRemaining())
+                    copy += this.channel.write(record, copy);
+            } else {
+                this.__copy(address, b);
+            }
+        }
+
+        this.__flush();
+        this.channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, this.database.getLastId()), 0);
+        this.channel.force(true);
+        this.database._trackWrites(true);
+    }
+
+    /**
+     * Copies every record left.
+     */
+    @Override
+    public void run() {
+        try {
+            while(this.step());
+        } catch(Exception e) {
+            this.error = e;
+        }
+    }
+
+    /**
+     * Runs the copy in a background thread.
+     */
+    public void start() {
+        this.thread = new Thread(this, "Compactor " + this.path);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Waits for the background copy to end.
+     *
+     * @throws IOException If the copy failed
+     * @throws InterruptedException
+     */
+    public void await() throws IOException, InterruptedException {
+        if(this.thread != null)
+            this.thread.join();
+
+        if(this.error != null)
+            throw new IOException("The compaction of " + this.database.getFilePath() + " failed.", this.error);
+    }
+
+    /**
+     * Closes the copy, deleting it if it was not moved over the database.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        this.database._trackWrites(false);
+        this.file.close();
+        new File(this.path).delete();
+    }
+
+    // Private Methods
+
+    /**
+     * Appends a record to the copy, keeping its length.
+     *
+     * @param address Address of the record in the database
+     * @param b Body of the record
+     * @throws IOException
+     */
+    private void __copy(long address, byte[] b) throws IOException {
+        if(this.buffer.remaining() < RECORD_HEADER_BYTES + b.length) {
+            this.__flush();
+
+            if(this.buffer.capacity() < RECORD_HEADER_BYTES + b.length)
+                this.buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + b.length);
+        }
+
+        this.addresses.put(address, this.position + this.buffer.position());
+        this.buffer.put((byte)1).putInt(b.length).put(b);
+    }
+
+    /**
+     * Writes the buffered records at the end of the copy.
+     *
+     * @throws IOException
+     */
+    private void __flush() throws IOException {
+        this.buffer.flip();
+
+        while(this.buffer.hasRemaining())
+            this.position += this.channel.write(this.buffer, this.position);
+
+        this.buffer.clear();
+    }
+}
@@ -10,21 +10,42 @@
  */
 package crud.core;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.stream.Stream;
 
 import components.interfaces.Register;
 import crud.base.BinaryArchive;
+import crud.base.RecordCursor;
+import crud.base.RecordFilter;
+import crud.base.RecordScanner;
+import crud.base.Snapshot;
 import crud.core.compress.HuffmanCompressor;
 import crud.core.compress.HuffmanDecompressor;
 import crud.core.compress.LZWCompressor;
 import crud.core.compress.LZWDecompressor;
+import crud.core.security.AESCipher;
+import crud.core.security.FieldCipher;
+import crud.core.security.RSA;
+import crud.core.types.FieldPredicate;
+import crud.core.types.FieldType;
+import crud.core.types.LogType;
 import crud.core.types.Response;
 import err.EmptyFileException;
 import err.JsonValidationException;
@@ -39,6 +60,11 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
     
     private long position = Integer.BYTES; // Position for the first data byte of the archive
     private int ID = 0; // ID of the last object written in the archive
+    private FreeSpaceMap freeSpace = null; // Dead record slots that can be reused
+    private IdMap ids = null; // Address of the record of each ID
+    private volatile LinkedHashMap<String, FieldType> layout = null; // Fields of the records, used to filter them without decoding
+    private WriteAheadLog log = null; // Log the writes are appended to before their bytes are written, if any
+    private HashSet<Long> written = null; // Addresses of the records written while a compaction copies the archive, or null
 
     // Constructors
 
@@ -55,6 +81,7 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
 
     /**
      * Constructor to create a DataBase object with a label, path, and constructor.
+     * The archive file is opened here and kept open until {@link #close()} is called.
      *
      * @param label       A label for the database archive.
      * @param path        The path to the database archive file.
@@ -63,9 +90,10 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      */
     public DataBase(String label, String path, Constructor<T> constructor) throws IOException {
         super(label, path, constructor);
-        this.file = new RandomAccessFile(path, "rw");
+        this.open();
         this.__initiateDB();
-        this.file.close();
+        this.__freeSpace();
+        this.setCipher(AESCipher.load(this.filePath + CIPHER_KEY_FILES_EXTENSION, new RSA(1024)));
     }
 
     // Public methods
@@ -104,10 +132,7 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     public long length() throws IOException {
-        this.file = new RandomAccessFile(this.filePath, "rw");
-        long len = this.file.length();
-        this.file.close();
-        return len;
+        return this._size();
     }
 
     /**
@@ -117,10 +142,8 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     public boolean isEmpty() throws IOException {
-        this.file = new RandomAccessFile(this.filePath, "rw");
-        boolean res = this.file.length() == 0 || this.file.length() == Integer.BYTES;
-        this.file.close();
-        return res;
+        long len = this._size();
+        return len == 0 || len == Integer.BYTES;
     }
 
     /**
@@ -130,10 +153,7 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     public boolean isEOF() throws IOException {
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
-        boolean value = this.position == this.file.length();
-        this.file.close();
-        return value;
+        return this.position == this._size();
     }
 
     /**
@@ -150,12 +170,17 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     public int getLastId() throws IOException {
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
-        this.file.seek(0);
-        int id = this.file.readInt();
-    
-        this.file.close();
-        return id;
+        return this._readIntAt(0);
+    }
+
+    /**
+     * Set the write-ahead log of the archive. Every create, update and restore appends its entry
+     * to the log once the address of the record is chosen and before its bytes are written.
+     *
+     * @param log The write-ahead log, or null to write without logging.
+     */
+    public void setLog(WriteAheadLog log) {
+        this.log = log;
     }
 
     /**
@@ -167,26 +192,30 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     public long search(String key, Object value) throws IOException {
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
         this.__checkDefaultId();
-        
-        long pos = Integer.BYTES;
-        this.file.seek(pos);
 
-        boolean lapide; // [1][valido] != [0][invalido]
-        T obj = null;
+        if(key.equals("id") && value instanceof Integer) {
+            long address = this.__find((Integer)value);
+            return address != -1 && this._readHeader(address).get() != 0 ? address : -1;
+        }
+
+        RecordFilter filter = this.__filter(FieldPredicate.equal(key, value));
+
+        if(filter != null) {
+            RecordScanner scanner = this._scan(Integer.BYTES);
+            while(scanner.next())
+                if(scanner.isValid() && scanner.test(filter))
+                    return scanner.address();
 
-        do {
-            pos = this.file.getFilePointer();
-            lapide = this.file.readBoolean();
-            obj = this._readObj().decript();
-        } while((!lapide || obj.compare(key, value) != 0) && !this._isEOF());
+            return -1;
+        }
 
-        if(obj == null || obj.compare(key, value) != 0 || !lapide) 
-            pos = -1;
+        RecordCursor<T> cursor = this._cursor(Integer.BYTES, true);
+        while(cursor.next()) 
+            if(cursor.get().compare(key, value) == 0)
+                return cursor.address();
 
-        this.file.close();
-        return pos;
+        return -1;
     }
 
     /**
@@ -197,27 +226,20 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     public Response<T> restore(int id) throws IOException {
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
         this.__checkDefaultId();
 
-        long pos = -1;
-        T obj = null;
+        long address = this.__find(id);
+        if(address != -1) {
+            T obj = this._readBody(address, this._readHeader(address).getInt(Byte.BYTES));
+            this.__log(LogType.Restore, id, -1L, address, obj.toByteArray());
 
-        this.file.seek(Integer.BYTES);
-        
-        do {
-            pos = this.file.getFilePointer();
-            this.file.skipBytes(1);
-            obj = this._readObj();
-        } while(obj.getId() != id && !this._isEOF());
-
-        if(obj.getId() != id) 
-            return new Response<T>(false, "The object with the ID \"" + id + "\" does not exist in the file.", -1L, -1L, -1L, null);
+            this.__written(address);
+            this._writeLapide(address, true);
+            this.__freeSpace().remove(address);
+            return new Response<T>(true, "The object was restored successfully.", -1L, address, -1L, obj);
+        }
 
-        this.file.seek(pos);
-        this.file.writeBoolean(true);
-        this.file.close();
-        return new Response<T>(true, "The object was restored successfully.", -1L, pos, -1L, obj);
+        return new Response<T>(false, "The object with the ID \"" + id + "\" does not exist in the file.", -1L, -1L, -1L, null);
     }
 
     /**
@@ -227,33 +249,27 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     public Response<T> readObj() throws IOException {
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
         this.__checkDefaultId();
 
-        this.file.seek(this.position);
+        long length = this._size();
+        long pos = this.position;
 
-        boolean lapide = false;
-        int len = 0;
+        while(pos < length) {
+            ByteBuffer header = this._readHeader(pos);
+            boolean lapide = header.get() != 0;
+            int len = header.getInt();
 
-        while(!lapide && this.file.getFilePointer() < this.file.length()) {
-            lapide = this.file.readBoolean();
-            len = this.file.readInt(); 
+            if(lapide) {
+                T obj = this._readBody(pos, len);
+                this.position = pos + RECORD_HEADER_BYTES + len;
+                return new Response<T>(true, "The object was readed successfully.", -1L, pos, -1L, obj.decript());
+            }
 
-            if(!lapide)
-                this.file.skipBytes(len);
-        } 
-
-        if(this.file.getFilePointer() == this.file.length()) {
-            this.file.close();
-            return new Response<T>(false, "The end of the file was reached.", -1L, -1L, -1L, null);
+            pos += RECORD_HEADER_BYTES + len;
         }
 
-        T obj = this._readObj(len);
-        
-        Response<T> response = new Response<T>(true, "The object was readed successfully.", -1L, this.position, -1L, obj.decript());
-        this.position = this.file.getFilePointer();
-        this.file.close();
-        return response;
+        this.position = length;
+        return new Response<T>(false, "The end of the file was reached.", -1L, -1L, -1L, null);
     }
 
     /**
@@ -264,20 +280,37 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     public T readObj(long address) throws IOException {
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
         this.__checkDefaultId();
 
-        this.file.seek(address);
+        ByteBuffer header = this._readHeader(address);
+        boolean lapide = header.get() != 0;
+        int len = header.getInt();
 
-        boolean lapide = this.file.readBoolean();
-        if(!lapide) {
-            this.file.close();
+        if(!lapide) 
+            return null;
+
+        return this._readBody(address, len).decript();
+    }
+
+    /**
+     * Read an object at a specific address within the database archive as it is stored,
+     * without decrypting it.
+     *
+     * @param address The address at which to read the object.
+     * @return The encrypted object read from the specified address or null if not found.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public T readStoredObj(long address) throws IOException {
+        this.__checkDefaultId();
+
+        ByteBuffer header = this._readHeader(address);
+        boolean lapide = header.get() != 0;
+        int len = header.getInt();
+
+        if(!lapide)
             return null;
-        }
 
-        T obj = this._readObj();
-        this.file.close();
-        return obj.decript();
+        return this._readBody(address, len);
     }
 
     /**
@@ -291,28 +324,17 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
     public Response<T> readObj(String key, Object o) throws IOException {
         long pos = this.search(key, o);
         Response<T> response = new Response<T>();
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
         
-        T obj = null;
-        if(pos != -1) {
-            this.file.seek(pos);
-            boolean lapide = this.file.readBoolean();
-
-            if(lapide) 
-                obj = this._readObj();
-        } else {
+        if(pos == -1) {
             response.success = false;
             response.message = "The object with the key \"" + key + "\" and value \"" + o + "\" does not exist in the file.";
+            return response;
         }
 
-        if(obj != null) {
-            response.success = true;
-            response.message = "The object was readed successfully.";
-            response.currentAddress = pos;
-            response.body = obj.decript();
-        }
-
-        this.file.close();
+        response.success = true;
+        response.message = "The object was readed successfully.";
+        response.currentAddress = pos;
+        response.body = this._readBody(pos, this._readHeader(pos).getInt(Byte.BYTES)).decript();
         return response;
     }
 
@@ -326,24 +348,81 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      */
     @SuppressWarnings("unchecked")
     public T[] readAllObj(String key, Object o) throws IOException {
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
         this.__checkDefaultId();
 
-        this.file.seek(Integer.BYTES);
         ArrayList<T> list = new ArrayList<T>();
 
-        boolean lapide = false;
-        T obj = null;
-        do {
-            lapide = this.file.readBoolean();
-            obj = this._readObj();
+        if(key.equals("id") && o instanceof Integer) {
+            long address = this.search(key, o);
+            if(address != -1) list.add(this.readObj(address));
+
+            return list.toArray((T[])Array.newInstance(this.constructor.getDeclaringClass(), list.size()));
+        }
+
+        RecordScanner scanner = this._scan(Integer.BYTES);
+        RecordFilter filter = this.__filter(FieldPredicate.equal(key, o));
+
+        while(scanner.next()) {
+            if(filter != null) {
+                if(scanner.isValid() && scanner.test(filter))
+                    list.add(this._decode(scanner.body()).decript());
+            } else if(scanner.isValid()) {
+                T obj = this._decode(scanner.body());
+                if(obj.compare(key, o) == 0)
+                    list.add(obj.decript());
+            }
+        }
 
-            if(lapide && obj.compare(key, o) == 0)
-                list.add(obj.decript());
-        } while(this.file.getFilePointer() < this.file.length());
+        return list.toArray((T[])Array.newInstance(this.constructor.getDeclaringClass(), list.size()));
+    }
 
-        this.file.close();
-        return list.toArray((T[])Array.newInstance(obj.getClass(), list.size()));
+    /**
+     * Read all objects from the database archive that match every given predicate. When the
+     * predicates only compare fields that are not encrypted, they are evaluated on the bytes
+     * of the records and only the matching records are decoded.
+     *
+     * @param predicates The predicates to match.
+     * @return An array of objects matching the predicates.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public T[] readAllObj(FieldPredicate... predicates) throws IOException {
+        return this.readAllObj((Snapshot)null, predicates);
+    }
+
+    /**
+     * Read all objects seen by a snapshot of the database archive that match every given predicate.
+     *
+     * @param snapshot   The snapshot, or null to read the archive as it is now.
+     * @param predicates The predicates to match.
+     * @return An array of objects matching the predicates.
+     * @throws IOException If there is an issue with file operations.
+     */
+    @SuppressWarnings("unchecked")
+    public T[] readAllObj(Snapshot snapshot, FieldPredicate... predicates) throws IOException {
+        this.__checkDefaultId();
+
+        ArrayList<T> list = new ArrayList<T>();
+        RecordFilter filter = this.__filter(predicates);
+
+        if(filter != null) {
+            RecordScanner scanner = this._scan(Integer.BYTES, snapshot);
+            while(scanner.next())
+                if(scanner.isValid() && scanner.test(filter))
+                    list.add(this._decode(scanner.body()).decript());
+        } else {
+            RecordCursor<T> cursor = this._cursor(Integer.BYTES, true, snapshot);
+            while(cursor.next()) {
+                boolean matches = true;
+
+                for(int i = 0; matches && i < predicates.length; i++)
+                    matches = predicates[i].test(cursor.get());
+
+                if(matches)
+                    list.add(cursor.copy());
+            }
+        }
+
+        return list.toArray((T[])Array.newInstance(this.constructor.getDeclaringClass(), list.size()));
     }
 
     /**
@@ -355,9 +434,8 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     public Response<T> update(int id, T obj) throws IOException {
-        T encypted = obj.encrypt();
+        T encypted = this.__encrypt(obj);
         long pos = this.search("id", id);
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
         Response<T> response = new Response<T>();
 
         if(pos == -1) {
@@ -365,35 +443,9 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
             return response;
         }
 
-        response.success = true;
-        response.oldAddress = pos;
-        this.file.seek(pos);
-        this.file.skipBytes(1);
-        int len = this.file.readInt();
-
         encypted.setId(id);
-        byte[] b = encypted.toByteArray();
- 
-        if(b.length <= len) {
-            response.currentAddress = pos;
-            response.message = "The object was updated in the same address.";
-            this.file.write(b);
-        } else {
-            this.file.seek(pos);
-            this.file.writeBoolean(false);
-            
-            pos = this.file.length();
-            response.newAddress = pos;
-            response.currentAddress = pos;
-            response.message = "The object was updated in a new address.";
-
-            this.file.seek(pos);
-            this.file.writeBoolean(true);
-            this.file.writeInt(b.length);
-            this.file.write(b);
-        }
-
-        this.file.close();
+        this.__rewrite(id, pos, encypted.toByteArray(), response);
+        response.body = encypted;
         return response;
     }
 
@@ -408,7 +460,6 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      */
     public Response<T> update(int id, String key, Object value) throws IOException {
         long pos = this.search("id", id);
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
         Response<T> response = new Response<T>();
         
         if(pos == -1) {
@@ -416,40 +467,11 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
             return response;
         }
 
-        response.success = true;
-        response.oldAddress = pos;
-        this.file.seek(pos);
-        this.file.skipBytes(1);
-        int len = this.file.readInt();
-
-        T obj = this._readObj(len);
+        T obj = this._readBody(pos, this._readHeader(pos).getInt(Byte.BYTES));
         obj.set(key, value);
-        byte[] b = obj.toByteArray();
-
-        if(b.length <= len) {
-            response.currentAddress = pos;
-            response.message = "The object was updated in the same address.";
-
-            this.file.seek(pos);
-            this.file.writeBoolean(true);
-            this.file.skipBytes(Integer.BYTES);
-            this.file.write(b);
-        } else {
-            this.file.seek(pos);
-            this.file.writeBoolean(false);
-            
-            pos = this.file.length();
-            response.newAddress = pos;
-            response.currentAddress = pos;
-            response.message = "The object was updated in a new address.";
-
-            this.file.seek(pos);
-            this.file.writeBoolean(true);
-            this.file.writeInt(b.length);
-            this.file.write(b);
-        }
 
-        this.file.close();
+        this.__rewrite(id, pos, obj.toByteArray(), response);
+        response.body = obj;
         return response;
     }
 
@@ -462,15 +484,13 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      */
     public boolean delete(int id) throws IOException {
         long pos = this.search("id", id);
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
         
         if(pos == -1) 
             return false;
 
-        this.file.seek(pos);
-        this.file.writeBoolean(false);
-        this.file.close();
-
+        this.__written(pos);
+        this._writeLapide(pos, false);
+        this.__freeSpace().add(pos, this._readHeader(pos).getInt(Byte.BYTES));
         return true;
     }
 
@@ -482,30 +502,7 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     public Response<T> create(T obj) throws IOException {
-        T encypted = obj.encrypt();
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
-        this.__initiateDB();
-
-        this.file.seek(0);
-        this.ID = this.file.readInt();
-        
-        if(encypted.getId() == -1) {
-            this.ID++;
-            encypted.setId(this.ID);
-        } else if(encypted.getId() <= this.ID) 
-            throw new IndexOutOfBoundsException("O ID ja existe no arquivo, coloque um ID acima de " + this.ID + ".");
-
-        long address = this.file.length();
-        file.seek(address);
-        this.file.writeBoolean(true);
-
-        this._writeObj(encypted);
-        
-        this.file.seek(0);
-        this.file.writeInt(encypted.getId());
-
-        this.file.close();
-        return new Response<T>(true, "The object was created in the address " + address + ".", -1L, address, -1L, encypted);
+        return this.create(obj, false);
     }
 
     /**
@@ -517,12 +514,10 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     public Response<T> create(T obj, boolean restoreId) throws IOException {
-        T encypted = obj.encrypt();
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
+        T encypted = this.__encrypt(obj);
         this.__initiateDB();
 
-        this.file.seek(0);
-        this.ID = this.file.readInt();
+        this.ID = this._readIntAt(0);
         
         if(encypted.getId() == -1 || restoreId) {
             this.ID++;
@@ -530,19 +525,292 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
         } else if(encypted.getId() <= this.ID) 
             throw new IndexOutOfBoundsException("O ID ja existe no arquivo, coloque um ID acima de " + this.ID + ".");
 
-        long address = this.file.length();
-        file.seek(address);
-        this.file.writeBoolean(true);
+        // A record created again with a new ID is one restored from the trash
+        byte[] b = encypted.toByteArray();
+        long address = this.__allocate(b.length);
+        this.__log(restoreId ? LogType.Restore : LogType.Create, encypted.getId(), -1L, address, b);
 
-        this._writeObj(encypted);
-        
-        this.file.seek(0);
-        this.file.writeInt(encypted.getId());
+        this.__place(address, b);
+        this._writeIntAt(0, encypted.getId());
+        this.__ids().put(encypted.getId(), address);
 
-        this.file.close();
         return new Response<T>(true, "The object was created in the address " + address + ".", -1L, address, -1L, encypted);
     }
 
+    /**
+     * Append a batch of objects to the end of the database archive in a single sequential write.
+     * The IDs are assigned in memory following the same rules as {@link #create(Register)} and
+     * the last ID header is written once. Every object is validated before anything is written,
+     * so a batch with an invalid ID leaves the archive untouched.
+     *
+     * @param objs The objects to append.
+     * @return A Response for each object, in the order they were given, with the address where it was written and its encrypted body.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public ArrayList<Response<T>> appendBatch(Iterable<T> objs) throws IOException {
+        this.__initiateDB();
+        this.ID = this._readIntAt(0);
+
+        ArrayList<Response<T>> responses = new ArrayList<Response<T>>();
+        ArrayList<byte[]> records = new ArrayList<byte[]>();
+        int id = this.ID;
+
+        for(T obj : objs) {
+            T encypted = this.__encrypt(obj);
+
+            if(encypted.getId() == -1) {
+                encypted.setId(++id);
+            } else if(encypted.getId() <= id) {
+                throw new IndexOutOfBoundsException("O ID ja existe no arquivo, coloque um ID acima de " + id + ".");
+            } else id = encypted.getId();
+
+            records.add(encypted.toByteArray());
+            responses.add(new Response<T>(true, "The object was created successfully.", -1L, -1L, -1L, encypted));
+        }
+
+        // The records are written one after the other, so their addresses are known before the write
+        long address = this._size();
+        long next = address;
+
+        for(int i = 0; i < records.size(); i++) {
+            responses.get(i).currentAddress = next;
+            next += RECORD_HEADER_BYTES + records.get(i).length;
+
+            this.__log(LogType.Create, responses.get(i).body.getId(), -1L, responses.get(i).currentAddress, records.get(i));
+            this.__written(responses.get(i).currentAddress);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+
+        for(int i = 0; i < records.size(); i++) {
+            byte[] b = records.get(i);
+
+            if(buffer.remaining() < RECORD_HEADER_BYTES + b.length) {
+                address += this.__flushBatch(address, buffer);
+
+                if(buffer.capacity() < RECORD_HEADER_BYTES + b.length)
+                    buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + b.length);
+            }
+
+            buffer.put((byte)1).putInt(b.length).put(b);
+        }
+
+        this.__flushBatch(address, buffer);
+        this._writeIntAt(0, id);
+        this.ID = id;
+
+        IdMap ids = this.__ids();
+        for(Response<T> response : responses)
+            ids.put(response.body.getId(), response.currentAddress);
+
+        return responses;
+    }
+
+    /**
+     * Write again a record at the given address while replaying the write-ahead log. The record
+     * is rewritten in place when the record found at the address is at least as long, as done by
+     * the updates, otherwise it is written whole. The last ID header is moved forward if needed.
+     *
+     * @param address The address of the record.
+     * @param b       The record body.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public void redo(long address, byte[] b) throws IOException {
+        this.__initiateDB();
+        this.__written(address);
+
+        if(address + RECORD_HEADER_BYTES <= this._size() && this._readHeader(address).getInt(Byte.BYTES) >= b.length) {
+            this._writeLapide(address, true);
+            this._writeAt(address + RECORD_HEADER_BYTES, ByteBuffer.wrap(b));
+        } else this._writeRecord(address, true, b);
+
+        this.__freeSpace().remove(address);
+
+        int id = this._decode(b).getId();
+        if(id > this._readIntAt(0))
+            this._writeIntAt(0, id);
+
+        this.__ids().put(id, address);
+    }
+
+    /**
+     * Delete the record at the given address, if the archive reaches it.
+     *
+     * @param address The address of the record.
+     * @return True if the record was marked as deleted, false if the address is past the end of the archive.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public boolean deleteAt(long address) throws IOException {
+        if(address < Integer.BYTES || address + RECORD_HEADER_BYTES > this._size())
+            return false;
+
+        this.__written(address);
+        this._writeLapide(address, false);
+        this.__freeSpace().add(address, this._readHeader(address).getInt(Byte.BYTES));
+        return true;
+    }
+
+    /**
+     * Start a memory-mapped scan over every record of the database archive, deleted or not.
+     * The scanner does not share any state with this object, so it can be used by another thread.
+     *
+     * @return A scanner positioned before the first record.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public RecordScanner scan() throws IOException {
+        this.__initiateDB();
+        return this._scan(Integer.BYTES);
+    }
+
+    /**
+     * Start a cursor over the valid records of the database archive, decrypted. Every record
+     * is decoded into the same object, so a record that must be kept has to be copied.
+     *
+     * @return A cursor positioned before the first record.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public RecordCursor<T> cursor() throws IOException {
+        this.__initiateDB();
+        return this._cursor(Integer.BYTES, true);
+    }
+
+    /**
+     * Start a cursor over the valid records seen by a snapshot of the database archive, decrypted.
+     *
+     * @param snapshot The snapshot.
+     * @return A cursor positioned before the first record.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public RecordCursor<T> cursor(Snapshot snapshot) throws IOException {
+        return this._cursor(Integer.BYTES, true, snapshot);
+    }
+
+    /**
+     * Start a stream over the valid records of the database archive, decrypted, with their
+     * addresses. The stream does not use the position of {@link #readObj()}, so several
+     * streams can be used at once, and it can be made parallel to decode the records on
+     * every core.
+     *
+     * @return A stream of responses holding the records and their addresses.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public Stream<Response<T>> stream() throws IOException {
+        this.__initiateDB();
+        return this._stream(Integer.BYTES);
+    }
+
+    /**
+     * Start a stream over the valid records seen by a snapshot of the database archive,
+     * decrypted, with their addresses.
+     *
+     * @param snapshot The snapshot.
+     * @return A stream of responses holding the records and their addresses.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public Stream<Response<T>> stream(Snapshot snapshot) throws IOException {
+        return this._stream(Integer.BYTES, snapshot);
+    }
+
+    /**
+     * Open a snapshot of the database archive. The records created, updated or deleted
+     * after it is opened are seen by its scans as they were until it is closed.
+     *
+     * @return The snapshot.
+     * @throws IOException If there is an issue with file operations.
+     */
+    @Override
+    public Snapshot snapshot() throws IOException {
+        this.__initiateDB();
+        return super.snapshot();
+    }
+
+    /**
+     * Write a copy of the database archive at the given path with every record, valid or
+     * deleted, decrypted with the cipher of the archive and encrypted again with the given
+     * one. The records keep their IDs and lapides, and the copy can replace the archive
+     * through {@link #swap(String)}.
+     *
+     * @param path   The path of the copy.
+     * @param cipher The cipher of the copy.
+     * @return The address of every record in the copy by its address in the archive.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public HashMap<Long, Long> reencrypt(String path, FieldCipher cipher) throws IOException {
+        this.__initiateDB();
+
+        HashMap<Long, Long> addresses = new HashMap<Long, Long>();
+        RecordScanner scanner = this._scan(Integer.BYTES);
+
+        try(RandomAccessFile raf = new RandomAccessFile(path, "rw")) {
+            raf.setLength(0);
+
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(raf.getFD()), PAGE_SIZE));
+            long address = Integer.BYTES;
+            dos.writeInt(this._readIntAt(0));
+
+            while(scanner.next()) {
+                T obj = this._decode(scanner.body());
+                obj.decriptInPlace();
+                obj.setCipher(cipher);
+
+                byte[] b = obj.encrypt().toByteArray();
+                dos.writeBoolean(scanner.isValid());
+                dos.writeInt(b.length);
+                dos.write(b);
+
+                addresses.put(scanner.address(), address);
+                address += RECORD_HEADER_BYTES + b.length;
+            }
+
+            dos.flush();
+            raf.getFD().sync();
+        }
+
+        return addresses;
+    }
+
+    /**
+     * Create a table in the slotted-page format at the given path with the live records of
+     * this archive. The records keep their IDs, and the new record ID of each of them can
+     * be used to point the indexes to the new table.
+     *
+     * @param path      The path of the new table, which must not exist or be empty.
+     * @param addresses A map to fill with the new record ID of every record by its address, or null.
+     * @return The new table, left open.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public SlottedDataBase<T> migrate(String path, HashMap<Long, Long> addresses) throws IOException {
+        SlottedDataBase<T> table = new SlottedDataBase<T>(path, this.constructor);
+        HashMap<Long, Long> map = table.migrate(this);
+
+        if(addresses != null)
+            addresses.putAll(map);
+
+        return table;
+    }
+
+    /**
+     * Replace the database archive by the file at the given path with an atomic rename.
+     * The free-space map of the old file is dropped and rebuilt for the new one, and the
+     * read position goes back to the first record. Every other handle of the archive must
+     * be closed before, since the buffer pool only drops the file when its last handle is closed.
+     *
+     * @param path The path of the new archive file.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public void swap(String path) throws IOException {
+        this.close();
+
+        Files.move(Paths.get(path), Paths.get(this.filePath), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        new File(this.filePath + FREE_SPACE_FILES_EXTENSION).delete();
+        new File(this.filePath + ID_MAP_FILES_EXTENSION).delete();
+
+        this.open();
+        this.__freeSpace();
+        this.__rebuildIds();
+        this.reset();
+    }
+
     /**
      * Compresses the file using the Huffman compression algorithm.
      * 
@@ -551,6 +819,7 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      */
     public void compressHuffman(String outputFilePath) throws IOException {
         HuffmanCompressor compressor = new HuffmanCompressor();
+        this.flush();
         compressor.compressFile(this.filePath, outputFilePath);
     }
 
@@ -564,6 +833,9 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
         HuffmanDecompressor decompressor = new HuffmanDecompressor();
         this.clear();
         decompressor.decompressFile(inputFilePath, this.filePath);
+        this.pages.invalidate();
+        this.__rebuildFreeSpace();
+        this.__rebuildIds();
     }
 
     /**
@@ -574,6 +846,7 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      */
     public void compressLZW(String outputFilePath) throws IOException {
         LZWCompressor compressor = new LZWCompressor();
+        this.flush();
         compressor.compressFile(this.filePath, outputFilePath);
     }
 
@@ -587,6 +860,9 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
         LZWDecompressor decompressor = new LZWDecompressor();
         this.clear();
         decompressor.decompressFile(inputFilePath, this.filePath);
+        this.pages.invalidate();
+        this.__rebuildFreeSpace();
+        this.__rebuildIds();
     }
 
     /**
@@ -622,27 +898,81 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     public void toJsonFile(String path) throws IOException {
+        this.toJsonFile(path, null);
+    }
+
+    /**
+     * Export the objects seen by a snapshot of the database archive to a JSON file.
+     *
+     * @param path     The path of the JSON file to export to.
+     * @param snapshot The snapshot, or null to export the archive as it is now.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public void toJsonFile(String path, Snapshot snapshot) throws IOException {
         if(!path.endsWith(".json"))
             throw new JsonValidationException("The file at " + path + "is not a JSON file.");
 
-        long tmp = this.position;
+        this.__checkDefaultId();
 
         BufferedWriter bw = new BufferedWriter(new FileWriter(new File(path)));
-        this.reset();
+        RecordCursor<T> cursor = this._cursor(Integer.BYTES, true, snapshot);
+        boolean first = true;
 
         bw.write("[\n");
-        T obj = this.readObj().body;
-        while(obj != null) {
-            bw.write(obj.toString());
-            obj = this.readObj().body;
-            
-            if(obj != null)
+        while(cursor.next()) {
+            if(!first)
                 bw.write(",\n");
+
+            bw.write(cursor.get().toString());
+            first = false;
         }
 
         bw.write("\n]\n");
         bw.close();
-        this.position = tmp;
+    }
+
+    /**
+     * Clear the database archive, its free-space map and its ID map.
+     *
+     * @throws IOException If there is an issue with file operations.
+     */
+    @Override
+    public void clear() throws IOException {
+        super.clear();
+        this.__freeSpace().clear();
+
+        if(this.ids == null)
+            this.ids = IdMap.open(this.filePath);
+
+        this.ids.clear();
+    }
+
+    /**
+     * Close the database archive, saving its free-space map and its ID map when no other handle uses them.
+     *
+     * @throws IOException If there is an issue with file operations.
+     */
+    @Override
+    public void close() throws IOException {
+        if(this.freeSpace != null)
+            this.freeSpace.close(this._size());
+
+        if(this.ids != null)
+            this.ids.close(this._size());
+
+        this.freeSpace = null;
+        this.ids = null;
+        super.close();
+    }
+
+    /**
+     * Get the number of dead record slots that can be reused.
+     *
+     * @return The number of free slots.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public int countFreeSlots() throws IOException {
+        return this.__freeSpace().size();
     }
 
     /**
@@ -652,28 +982,63 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     public int count() throws IOException {
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
         try {
             this.__checkDefaultId();
         } catch(EmptyFileException e) {
-            this.file.close();
             return 0;
         }
 
-        this.file.seek(Integer.BYTES);
+        RecordScanner scanner = this._scan(Integer.BYTES);
         int count = 0;
 
-        while(this.file.getFilePointer() < this.file.length()) {
-            boolean lapide = this.file.readBoolean();
-            int len = this.file.readInt();
-            this.file.skipBytes(len);
-            if(lapide) count++;
-        }
+        while(scanner.next()) 
+            if(scanner.isValid()) count++;
 
-        this.file.close();
         return count;
     }
 
+    // Package methods
+
+    /**
+     * Start or stop keeping the addresses of the records written, so a compaction can copy
+     * again only the records written while it was running.
+     *
+     * @param track True to start keeping the addresses, false to stop and forget them.
+     */
+    void _trackWrites(boolean track) {
+        this.written = track ? new HashSet<Long>() : null;
+    }
+
+    /**
+     * Get the addresses of the records written since {@link #_trackWrites(boolean)} was called.
+     *
+     * @return The addresses of the records written, or null if they are not kept.
+     */
+    HashSet<Long> _writtenAddresses() {
+        return this.written;
+    }
+
+    /**
+     * Read the body of the record at the given address as it is stored, with the whole length
+     * of its slot, without decoding it.
+     *
+     * @param address The address of the record.
+     * @return The body of the record, or null if it is deleted.
+     * @throws IOException If there is an issue with file operations.
+     */
+    byte[] _readSlot(long address) throws IOException {
+        ByteBuffer header = this._readHeader(address);
+        boolean lapide = header.get() != 0;
+        int len = header.getInt();
+
+        if(!lapide)
+            return null;
+
+        ByteBuffer buffer = ByteBuffer.allocate(len);
+        this._readAt(address + RECORD_HEADER_BYTES, buffer);
+        return buffer.array();
+    }
+
     // Private methods
 
     /**
@@ -681,11 +1046,208 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      *
      * @throws IOException If there is an issue with file operations.
      */
-    private void __initiateDB() throws IOException {
-        if(this.file.length() == 0) {
-            this.file.seek(0);
-            this.file.writeInt(0);
+    private synchronized void __initiateDB() throws IOException {
+        if(this._size() == 0) 
+            this._writeIntAt(0, 0);
+    }
+
+    /**
+     * Get the free-space map of the database file, opening it if needed. The map is loaded
+     * from its file or, if it was not closed cleanly, rebuilt from the lapides of the records.
+     *
+     * @return The free-space map.
+     * @throws IOException If there is an issue with file operations.
+     */
+    private FreeSpaceMap __freeSpace() throws IOException {
+        if(this.freeSpace == null) {
+            this.freeSpace = FreeSpaceMap.open(this.filePath);
+
+            if(!this.freeSpace.isLoaded() && !this.freeSpace.load(this._size()))
+                this.__rebuildFreeSpace();
         }
+
+        return this.freeSpace;
+    }
+
+    /**
+     * Rebuild the free-space map from the lapides of the records, without decoding them.
+     *
+     * @throws IOException If there is an issue with file operations.
+     */
+    private void __rebuildFreeSpace() throws IOException {
+        FreeSpaceMap map = this.freeSpace != null ? this.freeSpace : this.__freeSpace();
+        map.clear();
+
+        RecordScanner scanner = this._scan(Integer.BYTES);
+        while(scanner.next()) 
+            if(!scanner.isValid()) map.add(scanner.address(), scanner.length());
+    }
+
+    /**
+     * Encrypt an object with the cipher of the database archive.
+     *
+     * @param obj The object to encrypt, which is given the cipher of the archive.
+     * @return The encrypted copy of the object.
+     */
+    private T __encrypt(T obj) {
+        if(this.getCipher() != null)
+            obj.setCipher(this.getCipher());
+
+        return obj.encrypt();
+    }
+
+    /**
+     * Compile the predicates against the layout of the records.
+     *
+     * @param predicates The predicates to compile.
+     * @return The filter, or null if the predicates must be evaluated on the decoded records.
+     */
+    private RecordFilter __filter(FieldPredicate... predicates) {
+        return RecordFilter.compile(this.__layout(), predicates);
+    }
+
+    /**
+     * Get the layout of the records, building it from a new record on the first call.
+     *
+     * @return The fields of the records in the order they are written, empty if the layout is not known.
+     */
+    private LinkedHashMap<String, FieldType> __layout() {
+        LinkedHashMap<String, FieldType> layout = this.layout;
+
+        if(layout == null) {
+            try {
+                layout = this.constructor.newInstance().getLayout();
+            } catch(ReflectiveOperationException e) {
+                layout = null;
+            }
+
+            if(layout == null)
+                layout = new LinkedHashMap<String, FieldType>();
+
+            this.layout = layout;
+        }
+
+        return layout;
+    }
+
+    /**
+     * Get the ID map of the database file, opening it if needed. The map is loaded from its
+     * file or, if it is missing or was not closed cleanly, rebuilt from the records. Concurrent
+     * readers wait for the first one to finish loading it.
+     *
+     * @return The ID map.
+     * @throws IOException If there is an issue with file operations.
+     */
+    private synchronized IdMap __ids() throws IOException {
+        if(this.ids == null) {
+            this.ids = IdMap.open(this.filePath);
+
+            if(!this.ids.isLoaded() && !this.ids.load(this._size()))
+                this.__rebuildIds();
+        }
+
+        return this.ids;
+    }
+
+    /**
+     * Rebuild the ID map from the records, decoding them without decrypting. A valid record
+     * takes the place of a deleted one with the same ID.
+     *
+     * @throws IOException If there is an issue with file operations.
+     */
+    private void __rebuildIds() throws IOException {
+        IdMap map = this.ids != null ? this.ids : IdMap.open(this.filePath);
+        this.ids = map;
+        map.clear();
+
+        RecordScanner scanner = this._scan(Integer.BYTES);
+        while(scanner.next()) {
+            int id = this._decode(scanner.body()).getId();
+            long address = map.get(id);
+
+            if(scanner.isValid() || address == -1 || this._readHeader(address).get() == 0)
+                map.put(id, scanner.address());
+        }
+    }
+
+    /**
+     * Find the address of the record with the given ID through the ID map, valid or deleted.
+     * The record found at the address is checked, since the address may have been reused,
+     * reading only its ID when the layout of the records starts with it.
+     *
+     * @param id The ID of the record.
+     * @return The address of the record, or -1 if there is none.
+     * @throws IOException If there is an issue with file operations.
+     */
+    private long __find(int id) throws IOException {
+        long address = this.__ids().get(id);
+
+        if(address == -1 || address + RECORD_HEADER_BYTES + Integer.BYTES > this._size())
+            return -1;
+
+        LinkedHashMap<String, FieldType> layout = this.__layout();
+        if(!layout.isEmpty() && layout.keySet().iterator().next().equals("id") && layout.get("id") == FieldType.Int)
+            return this._readIntAt(address + RECORD_HEADER_BYTES) == id ? address : -1;
+
+        T obj = this._readBody(address, this._readHeader(address).getInt(Byte.BYTES));
+        return obj != null && obj.getId() == id ? address : -1;
+    }
+
+    /**
+     * Choose the address of a new record: a free slot that fits it, or the end of the archive if
+     * there is none. Nothing is written, so the record can be logged before it is placed.
+     *
+     * @param length The length of the record body.
+     * @return The address of the record.
+     * @throws IOException If there is an issue with file operations.
+     */
+    private long __allocate(int length) throws IOException {
+        long address = this.__freeSpace().allocate(length);
+        return address == -1 ? this._size() : address;
+    }
+
+    /**
+     * Write a record body at an address chosen by {@link #__allocate(int)}, keeping the length
+     * of the slot when it is a free one.
+     *
+     * @param address The address of the record.
+     * @param b       The record body.
+     * @throws IOException If there is an issue with file operations.
+     */
+    private void __place(long address, byte[] b) throws IOException {
+        this.__written(address);
+
+        if(address >= this._size()) {
+            this._writeRecord(address, true, b);
+        } else {
+            this._writeLapide(address, true);
+            this._writeAt(address + RECORD_HEADER_BYTES, ByteBuffer.wrap(b));
+        }
+    }
+
+    /**
+     * Keep the address of a record about to be written, if a compaction is running.
+     *
+     * @param address The address of the record.
+     */
+    private void __written(long address) {
+        if(this.written != null)
+            this.written.add(address);
+    }
+
+    /**
+     * Append an entry to the write-ahead log, if the archive has one.
+     *
+     * @param type       The type of the operation.
+     * @param id         The ID of the record.
+     * @param oldAddress The address of the record before the operation.
+     * @param address    The address of the record after the operation.
+     * @param b          The record body.
+     * @throws IOException If there is an issue with file operations.
+     */
+    private void __log(LogType type, int id, long oldAddress, long address, byte[] b) throws IOException {
+        if(this.log != null)
+            this.log.append(type, id, oldAddress, address, b);
     }
 
     /**
@@ -695,8 +1257,7 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     private int __checkDefaultId() throws IOException {
-        this.file.seek(0);
-        int id = this.file.readInt();
+        int id = this._readIntAt(0);
 
         if(id == 0)
             throw new EmptyFileException("The file at " + this.filePath + " has no objects.");
@@ -704,6 +1265,63 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
         return id;
     }
 
+    /**
+     * Rewrite the body of the record at the given address. The record is overwritten in place
+     * when the new body fits in the old one, otherwise it is marked as deleted and appended at
+     * the end of the file.
+     *
+     * @param id       The ID of the record.
+     * @param pos      The address of the record.
+     * @param b        The new record body.
+     * @param response The response to fill with the addresses of the operation.
+     * @throws IOException If there is an issue with file operations.
+     */
+    private void __rewrite(int id, long pos, byte[] b, Response<T> response) throws IOException {
+        int len = this._readHeader(pos).getInt(Byte.BYTES);
+        this.__written(pos);
+
+        response.success = true;
+        response.oldAddress = pos;
+
+        if(b.length <= len) {
+            response.currentAddress = pos;
+            response.message = "The object was updated in the same address.";
+
+            this.__log(LogType.Update, id, pos, pos, b);
+            this._writeLapide(pos, true);
+            this._writeAt(pos + RECORD_HEADER_BYTES, ByteBuffer.wrap(b));
+        } else {
+            long address = this.__allocate(b.length);
+            this.__log(LogType.Update, id, pos, address, b);
+
+            this._writeLapide(pos, false);
+            this.__place(address, b);
+            this.__ids().put(id, address);
+            response.newAddress = address;
+            response.currentAddress = address;
+            response.message = "The object was updated in a new address.";
+
+            this.__freeSpace().add(pos, len);
+        }
+    }
+
+    /**
+     * Write the records gathered in the buffer at the given address and empty the buffer.
+     *
+     * @param address The address of the first record in the buffer.
+     * @param buffer  The buffer with the records.
+     * @return The number of bytes written.
+     * @throws IOException If there is an issue with file operations.
+     */
+    private int __flushBatch(long address, ByteBuffer buffer) throws IOException {
+        int len = buffer.flip().remaining();
+
+        this._writeAt(address, buffer);
+        buffer.clear();
+
+        return len;
+    }
+
     /**
      * Write an object to the database file without checking for existing IDs.
      *
@@ -711,27 +1329,21 @@ public class DataBase<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     private void __unsafeWrite(T obj) throws IOException {
-        T encypted = obj.encrypt();
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
+        T encypted = this.__encrypt(obj);
         this.__initiateDB();
 
-        this.file.seek(0);
-        this.ID = this.file.readInt();
+        this.ID = this._readIntAt(0);
         
         if(encypted.getId() == -1) {
             this.ID++;
             encypted.setId(this.ID);
         }
 
-        file.seek(this.file.length());
-        this.file.writeBoolean(true);
-
-        this._writeObj(encypted);
-        
-        this.file.seek(0);
-        this.file.writeInt(encypted.getId());
-
-        this.file.close();
+        long address = this._size();
+        this.__written(address);
+        this._writeRecord(address, true, encypted.toByteArray());
+        this._writeIntAt(0, encypted.getId());
+        this.__ids().put(encypted.getId(), address);
     }
     
 }
\ No newline at end of file
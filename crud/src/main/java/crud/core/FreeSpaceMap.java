@@ -0,0 +1,296 @@
+package crud.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import logic.SystemSpecification;
+
+/**
+ * <strong> A map of the dead record slots of a database file. </strong>
+ *
+ * <p>
+ * The slots left by deleted records and by updates that moved a record are kept
+ * in size classes, where the class of a slot is the position of the highest bit of
+ * its length. A new record is placed in the first slot of its own class that fits it,
+ * or in any slot of the next class, so a slot is never more than four times larger
+ * than the record that reuses it. The reused slot keeps its length in the header,
+ * as the updates done in place already do.
+ * </p>
+ *
+ * <p>
+ * The map is shared by every {@code DataBase} opened for the same file and is saved
+ * in a {@code .fsm} file when the last one is closed. The file is marked as dirty as
+ * soon as it is loaded, so after a crash it is ignored and the map is rebuilt from
+ * the lapides of the database file.
+ * </p>
+ *
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.core.DataBase
+ * @version 1.0.0
+ */
+public class FreeSpaceMap implements SystemSpecification {
+
+    // Attributes
+
+    private static final HashMap<String, FreeSpaceMap> maps = new HashMap<>(); // Open maps by database path
+    private static final int SIZE_CLASSES = Integer.SIZE; // Number of size classes
+
+    private final String key; // Absolute path of the database file
+    private final String path; // Path of the map file
+    private final HashMap<Long, Integer> slots = new HashMap<>(); // Length of each free slot by address
+    private final ArrayList<ArrayDeque<Long>> classes = new ArrayList<>(); // Addresses of the free slots by size class
+
+    private int references = 0; // Number of databases using the map
+    private boolean loaded = false; // If the map reflects the database file
+
+    // Constructors
+
+    /**
+     * Creates an empty map for the database file at the given path.
+     *
+     * @param key Absolute path of the database file
+     */
+    private FreeSpaceMap(String key) {
+        this.key = key;
+        this.path = key + FREE_SPACE_FILES_EXTENSION;
+
+        for(int i = 0; i < SIZE_CLASSES; i++)
+            this.classes.add(new ArrayDeque<Long>());
+    }
+
+    /**
+     * Returns the map of the database file at the given path, creating it if no
+     * database has it open. Every call must be matched by a call to {@link #close(long)}.
+     *
+     * @param path Path of the database file
+     * @return The map of the database file
+     */
+    public static synchronized FreeSpaceMap open(String path) {
+        String key = new File(path).getAbsoluteFile().toPath().normalize().toString();
+        FreeSpaceMap map = maps.get(key);
+
+        if(map == null) {
+            map = new FreeSpaceMap(key);
+            maps.put(key, map);
+        }
+
+        map.references++;
+        return map;
+    }
+
+    // Public Methods
+
+    /**
+     * Checks if the map was loaded or rebuilt for the database file.
+     *
+     * @return True if the map reflects the database file, false otherwise
+     */
+    public synchronized boolean isLoaded() {
+        return this.loaded;
+    }
+
+    /**
+     * Loads the map saved for the database file. The saved map is only used if it was
+     * closed cleanly for a database file of the given size, and it is marked as dirty
+     * right after being read.
+     *
+     * @param size Size of the database file
+     * @return True if the saved map was loaded, false if it must be rebuilt
+     * @throws IOException
+     */
+    public synchronized boolean load(long size) throws IOException {
+        File file = new File(this.path);
+        if(!file.exists())
+            return false;
+
+        this.__reset();
+
+        try(DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if(!dis.readBoolean() || dis.readLong() != size)
+                return false;
+
+            int count = dis.readInt();
+            for(int i = 0; i < count; i++)
+                this.add(dis.readLong(), dis.readInt());
+        } catch(IOException e) {
+            this.__reset();
+            return false;
+        }
+
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.writeBoolean(false);
+            raf.getFD().sync();
+        }
+
+        this.loaded = true;
+        return true;
+    }
+
+    /**
+     * Empties the map, so it reflects an empty database file or one that will be scanned again.
+     */
+    public synchronized void clear() {
+        this.__reset();
+        this.loaded = true;
+    }
+
+    /**
+     * Adds a dead slot to the map.
+     *
+     * @param address Address of the slot
+     * @param len Length of the body of the slot
+     */
+    public synchronized void add(long address, int len) {
+        if(len <= 0 || this.slots.containsKey(address))
+            return;
+
+        this.slots.put(address, len);
+        this.classes.get(sizeClass(len)).add(address);
+    }
+
+    /**
+     * Removes a slot from the map, when the record in it is brought back.
+     *
+     * @param address Address of the slot
+     * @return True if the slot was in the map, false otherwise
+     */
+    public synchronized boolean remove(long address) {
+        Integer len = this.slots.remove(address);
+        if(len == null)
+            return false;
+
+        this.classes.get(sizeClass(len)).remove(address);
+        return true;
+    }
+
+    /**
+     * Takes a slot that fits a record body of the given length out of the map.
+     *
+     * @param len Length of the record body
+     * @return Address of the slot, or -1 if there is no slot that fits it
+     */
+    public synchronized long allocate(int len) {
+        if(len <= 0 || this.slots.isEmpty())
+            return -1;
+
+        int c = sizeClass(len);
+        Iterator<Long> it = this.classes.get(c).iterator();
+
+        while(it.hasNext()) {
+            long address = it.next();
+
+            if(this.slots.get(address) >= len) {
+                it.remove();
+                this.slots.remove(address);
+                return address;
+            }
+        }
+
+        if(c + 1 < SIZE_CLASSES && !this.classes.get(c + 1).isEmpty()) {
+            long address = this.classes.get(c + 1).poll();
+            this.slots.remove(address);
+            return address;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the number of free slots in the map.
+     *
+     * @return Number of free slots
+     */
+    public synchronized int size() {
+        return this.slots.size();
+    }
+
+    /**
+     * Returns the number of bytes held by the free slots, without their headers.
+     *
+     * @return Number of free bytes
+     */
+    public synchronized long freeBytes() {
+        long bytes = 0;
+        for(int len : this.slots.values())
+            bytes += len;
+
+        return bytes;
+    }
+
+    /**
+     * Releases the map. When the last database releases it the map is saved,
+     * marked as clean, for a database file of the given size.
+     *
+     * @param size Size of the database file
+     * @throws IOException
+     */
+    public void close(long size) throws IOException {
+        synchronized(FreeSpaceMap.class) {
+            if(--this.references > 0)
+                return;
+
+            maps.remove(this.key);
+        }
+
+        synchronized(this) {
+            if(this.loaded)
+                this.__save(size);
+        }
+    }
+
+    // Private Methods
+
+    /**
+     * Saves the map in its file, marked as clean.
+     *
+     * @param size Size of the database file
+     * @throws IOException
+     */
+    private void __save(long size) throws IOException {
+        FileOutputStream fos = new FileOutputStream(this.path);
+
+        try(DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos))) {
+            dos.writeBoolean(true);
+            dos.writeLong(size);
+            dos.writeInt(this.slots.size());
+
+            for(HashMap.Entry<Long, Integer> slot : this.slots.entrySet()) {
+                dos.writeLong(slot.getKey());
+                dos.writeInt(slot.getValue());
+            }
+
+            dos.flush();
+            fos.getFD().sync();
+        }
+    }
+
+    /**
+     * Removes every slot from the map.
+     */
+    private void __reset() {
+        this.slots.clear();
+        for(ArrayDeque<Long> c : this.classes)
+            c.clear();
+    }
+
+    /**
+     * Returns the size class of a length, the position of its highest bit.
+     *
+     * @param len Length of a record body
+     * @return Size class of the length
+     */
+    private static int sizeClass(int len) {
+        return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(len);
+    }
+}
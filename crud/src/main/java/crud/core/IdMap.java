@@ -0,0 +1,213 @@
+package crud.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import logic.SystemSpecification;
+
+/**
+ * <strong> A dense map from the IDs of a database file to the addresses of their records. </strong>
+ *
+ * <p>
+ * Since the IDs are given in sequence from the last ID header, the map is an array
+ * indexed by ID holding the address of the last record written with that ID, valid or
+ * deleted. An address may be reused by another record after a delete, so a lookup must
+ * check the ID of the record it finds.
+ * </p>
+ *
+ * <p>
+ * As the {@link FreeSpaceMap}, the map is shared by every {@code DataBase} opened for
+ * the same file and is saved in a {@code .ids} file when the last one is closed. It is
+ * marked as dirty as soon as it is loaded, so after a crash it is rebuilt from the
+ * records of the database file.
+ * </p>
+ *
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.core.DataBase
+ * @version 1.0.0
+ */
+public class IdMap implements SystemSpecification {
+
+    // Attributes
+
+    private static final HashMap<String, IdMap> maps = new HashMap<>(); // Open maps by database path
+
+    private final String key; // Absolute path of the database file
+    private final String path; // Path of the map file
+
+    private long[] addresses = new long[0]; // Address of the record of each ID, or -1
+    private int references = 0; // Number of databases using the map
+    private boolean loaded = false; // If the map reflects the database file
+
+    // Constructors
+
+    /**
+     * Creates an empty map for the database file at the given path.
+     *
+     * @param key Absolute path of the database file
+     */
+    private IdMap(String key) {
+        this.key = key;
+        this.path = key + ID_MAP_FILES_EXTENSION;
+    }
+
+    /**
+     * Returns the map of the database file at the given path, creating it if no
+     * database has it open. Every call must be matched by a call to {@link #close(long)}.
+     *
+     * @param path Path of the database file
+     * @return The map of the database file
+     */
+    public static synchronized IdMap open(String path) {
+        String key = new File(path).getAbsoluteFile().toPath().normalize().toString();
+        IdMap map = maps.get(key);
+
+        if(map == null) {
+            map = new IdMap(key);
+            maps.put(key, map);
+        }
+
+        map.references++;
+        return map;
+    }
+
+    // Public Methods
+
+    /**
+     * Checks if the map was loaded or rebuilt for the database file.
+     *
+     * @return True if the map reflects the database file, false otherwise
+     */
+    public synchronized boolean isLoaded() {
+        return this.loaded;
+    }
+
+    /**
+     * Loads the map saved for the database file. The saved map is only used if it was
+     * closed cleanly for a database file of the given size, and it is marked as dirty
+     * right after being read.
+     *
+     * @param size Size of the database file
+     * @return True if the saved map was loaded, false if it must be rebuilt
+     * @throws IOException
+     */
+    public synchronized boolean load(long size) throws IOException {
+        File file = new File(this.path);
+        if(!file.exists())
+            return false;
+
+        this.addresses = new long[0];
+
+        try(DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if(!dis.readBoolean() || dis.readLong() != size)
+                return false;
+
+            long[] addresses = new long[dis.readInt()];
+            for(int i = 0; i < addresses.length; i++)
+                addresses[i] = dis.readLong();
+
+            this.addresses = addresses;
+        } catch(IOException e) {
+            return false;
+        }
+
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.writeBoolean(false);
+            raf.getFD().sync();
+        }
+
+        this.loaded = true;
+        return true;
+    }
+
+    /**
+     * Empties the map, so it reflects an empty database file or one that will be scanned again.
+     */
+    public synchronized void clear() {
+        this.addresses = new long[0];
+        this.loaded = true;
+    }
+
+    /**
+     * Sets the address of the record with the given ID.
+     *
+     * @param id ID of the record
+     * @param address Address of the record
+     */
+    public synchronized void put(int id, long address) {
+        if(id < 0)
+            return;
+
+        if(id >= this.addresses.length) {
+            int length = this.addresses.length;
+            this.addresses = Arrays.copyOf(this.addresses, Math.max(id + 1, length * 2));
+            Arrays.fill(this.addresses, length, this.addresses.length, -1L);
+        }
+
+        this.addresses[id] = address;
+    }
+
+    /**
+     * Returns the address of the last record written with the given ID.
+     *
+     * @param id ID of the record
+     * @return Address of the record, or -1 if no record was written with the ID
+     */
+    public synchronized long get(int id) {
+        return id >= 0 && id < this.addresses.length ? this.addresses[id] : -1L;
+    }
+
+    /**
+     * Releases the map. When the last database releases it the map is saved,
+     * marked as clean, for a database file of the given size.
+     *
+     * @param size Size of the database file
+     * @throws IOException
+     */
+    public void close(long size) throws IOException {
+        synchronized(IdMap.class) {
+            if(--this.references > 0)
+                return;
+
+            maps.remove(this.key);
+        }
+
+        synchronized(this) {
+            if(this.loaded)
+                this.__save(size);
+        }
+    }
+
+    // Private Methods
+
+    /**
+     * Saves the map in its file, marked as clean.
+     *
+     * @param size Size of the database file
+     * @throws IOException
+     */
+    private void __save(long size) throws IOException {
+        FileOutputStream fos = new FileOutputStream(this.path);
+
+        try(DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos))) {
+            dos.writeBoolean(true);
+            dos.writeLong(size);
+            dos.writeInt(this.addresses.length);
+
+            for(long address : this.addresses)
+                dos.writeLong(address);
+
+            dos.flush();
+            fos.getFD().sync();
+        }
+    }
+}
@@ -0,0 +1,638 @@
+package crud.core;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import components.interfaces.Register;
+import crud.base.BufferPool;
+import crud.base.PagedFile;
+import crud.base.RecordScanner;
+import crud.base.SlottedPage;
+import crud.core.security.AESCipher;
+import crud.core.security.FieldCipher;
+import crud.core.security.RSA;
+import crud.core.types.RecordId;
+import crud.core.types.Response;
+import err.DatabaseValidationException;
+import err.EmptyFileException;
+import logic.SystemSpecification;
+
+/**
+ * <strong> A table of {@code Register} objects stored in slotted pages. </strong>
+ *
+ * <p>
+ * The file is split in {@code BLOCK_SIZE} pages read and written through the
+ * {@link BufferPool}. The first page holds the header of the table, and every other page
+ * is a {@link SlottedPage}. A record is addressed by its {@link RecordId}, packed in a
+ * {@code long} so the indexes can keep it as they keep the offsets of a {@link DataBase}.
+ * The ID of a record only changes when an update does not fit in its page anymore.
+ * </p>
+ *
+ * <p>
+ * The free bytes of every page are kept in memory, so an insert goes to the first page
+ * it fits in without reading the others. They are computed when the table is opened.
+ * A table in the sequential format of {@link DataBase} can be copied into a new table
+ * with {@link #migrate(DataBase)} or {@link DataBase#migrate(String, HashMap)}, which
+ * also copies the key of its cipher, so the records keep being decrypted with it.
+ * </p>
+ *
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.base.SlottedPage
+ * @see crud.core.types.RecordId
+ * @version 1.0.0
+ */
+public class SlottedDataBase<T extends Register<T>> implements SystemSpecification, AutoCloseable {
+
+    // Attributes
+
+    private static final int MAGIC = 0x534C5047; // Signature of the header page ("SLPG")
+
+    private final String filePath; // Path of the table file
+    private final Constructor<T> constructor; // Constructor of the objects stored in the table
+    private final ArrayList<Integer> free = new ArrayList<>(); // Free bytes of each page
+
+    private PagedFile file; // Pages of the table file, kept open until close()
+    private FieldCipher cipher; // Cipher of the records, or null to use the cipher of the register
+    private long lastPage = -1; // Page of the last insert
+
+    // Constructors
+
+    /**
+     * Opens the table at the given path, creating it if the file is empty.
+     *
+     * @param path        The path to the table file.
+     * @param constructor A constructor for creating objects of type T.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public SlottedDataBase(String path, Constructor<T> constructor) throws IOException {
+        this.filePath = path;
+        this.constructor = constructor;
+        this.__open();
+        this.cipher = AESCipher.load(this.filePath + CIPHER_KEY_FILES_EXTENSION, new RSA(1024));
+    }
+
+    // Public Methods
+
+    /**
+     * Get the file path of the table.
+     *
+     * @return The file path of the table.
+     */
+    public String getFilePath() {
+        return this.filePath;
+    }
+
+    /**
+     * Get the cipher the records of the table are encrypted with.
+     *
+     * @return The cipher, or null if the records use the cipher of the register.
+     */
+    public FieldCipher getCipher() {
+        return this.cipher;
+    }
+
+    /**
+     * Set the cipher the records of the table are encrypted with. Every object created,
+     * updated or decoded by the table is given this cipher.
+     *
+     * @param cipher The cipher, or null to use the cipher of the register.
+     */
+    public void setCipher(FieldCipher cipher) {
+        this.cipher = cipher;
+    }
+
+    /**
+     * Get the length of the table file.
+     *
+     * @return The length of the table file.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public long length() throws IOException {
+        return this.__file().size();
+    }
+
+    /**
+     * Get the number of pages of the table, counting the header page.
+     *
+     * @return The number of pages.
+     */
+    public long pageCount() {
+        return this.free.size();
+    }
+
+    /**
+     * Get the last ID written to the table.
+     *
+     * @return The last ID written to the table.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public int getLastId() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+        this.__file().read(Integer.BYTES, buffer);
+        return buffer.getInt(0);
+    }
+
+    /**
+     * Create a new object in the table.
+     *
+     * @param obj The object to create.
+     * @return A Response object indicating the success of the creation and the ID of the record.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public Response<T> create(T obj) throws IOException {
+        return this.create(obj, false);
+    }
+
+    /**
+     * Create a new object in the table with an option to restore the ID.
+     *
+     * @param obj        The object to create.
+     * @param restoreId  True if the ID should be restored (if -1), false otherwise.
+     * @return A Response object indicating the success of the creation and the ID of the record.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public Response<T> create(T obj, boolean restoreId) throws IOException {
+        T encypted = this.__encrypt(obj);
+        int id = this.getLastId();
+
+        if(encypted.getId() == -1 || restoreId) {
+            encypted.setId(++id);
+        } else if(encypted.getId() <= id)
+            throw new IndexOutOfBoundsException("O ID ja existe no arquivo, coloque um ID acima de " + id + ".");
+
+        long address = this.__place(encypted.toByteArray());
+        this.__setLastId(encypted.getId());
+
+        return new Response<T>(true, "The object was created in the record " + RecordId.of(address) + ".", -1L, address, -1L, encypted);
+    }
+
+    /**
+     * Read the object with the given record ID.
+     *
+     * @param address The packed ID of the record.
+     * @return The object, or null if it was deleted or does not exist.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public T readObj(long address) throws IOException {
+        RecordId rid = RecordId.of(address);
+        if(rid.page < 1 || rid.page >= this.pageCount())
+            return null;
+
+        SlottedPage page = this.__readPage(rid.page);
+        if(!page.isValid(rid.slot))
+            return null;
+
+        return this.__decode(page.read(rid.slot)).decript();
+    }
+
+    /**
+     * Read an object from the table based on a key and value.
+     *
+     * @param key   The key to search for.
+     * @param o     The value to search for.
+     * @return A Response object containing the read object or an error message if the object is not found.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public Response<T> readObj(String key, Object o) throws IOException {
+        long address = this.search(key, o);
+        Response<T> response = new Response<T>();
+
+        if(address == -1) {
+            response.message = "The object with the key \"" + key + "\" and value \"" + o + "\" does not exist in the file.";
+            return response;
+        }
+
+        response.success = true;
+        response.message = "The object was readed successfully.";
+        response.currentAddress = address;
+        response.body = this.readObj(address);
+        return response;
+    }
+
+    /**
+     * Read all objects from the table that match a given key and value.
+     *
+     * @param key   The key to search for.
+     * @param o     The value to search for.
+     * @return An array of objects matching the key and value.
+     * @throws IOException If there is an issue with file operations.
+     */
+    @SuppressWarnings("unchecked")
+    public T[] readAllObj(String key, Object o) throws IOException {
+        this.__checkDefaultId();
+        ArrayList<T> list = new ArrayList<T>();
+
+        for(long p = 1; p < this.pageCount(); p++) {
+            SlottedPage page = this.__readPage(p);
+
+            for(int slot = 0; slot < page.slotCount(); slot++) {
+                if(page.isValid(slot)) {
+                    T obj = this.__decode(page.read(slot));
+                    if(obj.compare(key, o) == 0)
+                        list.add(obj.decript());
+                }
+            }
+        }
+
+        return list.toArray((T[])Array.newInstance(this.constructor.getDeclaringClass(), list.size()));
+    }
+
+    /**
+     * Search for an object within the table based on a key and value.
+     *
+     * @param key   The key to search for.
+     * @param value The value to search for.
+     * @return The packed ID of the found record or -1 if not found.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public long search(String key, Object value) throws IOException {
+        this.__checkDefaultId();
+
+        for(long p = 1; p < this.pageCount(); p++) {
+            SlottedPage page = this.__readPage(p);
+
+            for(int slot = 0; slot < page.slotCount(); slot++)
+                if(page.isValid(slot) && this.__decode(page.read(slot)).decript().compare(key, value) == 0)
+                    return new RecordId(p, slot).toLong();
+        }
+
+        return -1;
+    }
+
+    /**
+     * Update an object in the table by its ID with a new object. The record keeps its
+     * record ID if it still fits in its page, otherwise it is moved to another page.
+     *
+     * @param id  The ID of the object to update.
+     * @param obj The new object to replace the existing one.
+     * @return A Response object indicating the success or failure of the update operation.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public Response<T> update(int id, T obj) throws IOException {
+        T encypted = this.__encrypt(obj);
+        long address = this.search("id", id);
+        Response<T> response = new Response<T>();
+
+        if(address == -1) {
+            response.message = "The object with the ID \"" + id + "\" does not exist in the file.";
+            return response;
+        }
+
+        encypted.setId(id);
+        this.__rewrite(address, encypted.toByteArray(), response);
+        response.body = encypted;
+        return response;
+    }
+
+    /**
+     * Delete an object from the table by its ID.
+     *
+     * @param id The ID of the object to delete.
+     * @return True if the object was successfully deleted, false if it was not found.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public boolean delete(int id) throws IOException {
+        long address = this.search("id", id);
+        return address != -1 && this.deleteAt(address);
+    }
+
+    /**
+     * Delete the record with the given record ID. Its bytes are kept in the page, so it
+     * can be restored, until the page needs the space.
+     *
+     * @param address The packed ID of the record.
+     * @return True if the record was marked as deleted, false if it does not exist.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public boolean deleteAt(long address) throws IOException {
+        RecordId rid = RecordId.of(address);
+        if(rid.page < 1 || rid.page >= this.pageCount())
+            return false;
+
+        SlottedPage page = this.__readPage(rid.page);
+        if(!page.setLapide(rid.slot, false))
+            return false;
+
+        this.__writePage(rid.page, page);
+        return true;
+    }
+
+    /**
+     * Restore a deleted object with a specific ID, if its record is still in the table.
+     *
+     * @param id The ID of the object to restore.
+     * @return A Response object indicating the success or failure of the restore operation.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public Response<T> restore(int id) throws IOException {
+        this.__checkDefaultId();
+
+        for(long p = 1; p < this.pageCount(); p++) {
+            SlottedPage page = this.__readPage(p);
+
+            for(int slot = 0; slot < page.slotCount(); slot++) {
+                if(page.isUsed(slot) && !page.isValid(slot)) {
+                    T obj = this.__decode(page.read(slot));
+
+                    if(obj.getId() == id) {
+                        page.setLapide(slot, true);
+                        this.__writePage(p, page);
+                        return new Response<T>(true, "The object was restored successfully.", -1L, new RecordId(p, slot).toLong(), -1L, obj);
+                    }
+                }
+            }
+        }
+
+        return new Response<T>(false, "The object with the ID \"" + id + "\" does not exist in the file.", -1L, -1L, -1L, null);
+    }
+
+    /**
+     * Count the number of valid (not deleted) objects in the table.
+     *
+     * @return The count of valid objects.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public int count() throws IOException {
+        int count = 0;
+
+        for(long p = 1; p < this.pageCount(); p++) {
+            SlottedPage page = this.__readPage(p);
+
+            for(int slot = 0; slot < page.slotCount(); slot++)
+                if(page.isValid(slot)) count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Copy the live records of a table in the sequential format into this table, keeping
+     * their IDs and the last ID of the source. The records are copied still encrypted, and
+     * the key file of the source is copied with them so the table uses the same cipher.
+     *
+     * @param source The table to copy the records from.
+     * @return The new record ID of every record by its address in the source.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public HashMap<Long, Long> migrate(DataBase<T> source) throws IOException {
+        if(this.pageCount() > 1)
+            throw new DatabaseValidationException("The table at " + this.filePath + " is not empty.");
+
+        HashMap<Long, Long> addresses = new HashMap<>();
+        RecordScanner scanner = source.scan();
+
+        while(scanner.next())
+            if(scanner.isValid()) addresses.put(scanner.address(), this.__place(scanner.body()));
+
+        this.__setLastId(source.getLastId());
+
+        Path key = Paths.get(source.getFilePath() + CIPHER_KEY_FILES_EXTENSION);
+        Path copy = Paths.get(this.filePath + CIPHER_KEY_FILES_EXTENSION);
+
+        if(Files.exists(key))
+            Files.copy(key, copy, StandardCopyOption.REPLACE_EXISTING);
+        else
+            Files.deleteIfExists(copy);
+
+        this.cipher = source.getCipher();
+        return addresses;
+    }
+
+    /**
+     * Clear the table, leaving only its header page.
+     *
+     * @throws IOException If there is an issue with file operations.
+     */
+    public void clear() throws IOException {
+        this.__file().truncate(0);
+        this.free.clear();
+        this.lastPage = -1;
+        this.__open();
+    }
+
+    /**
+     * Write the modified pages of the table back to the disk.
+     *
+     * @throws IOException If there is an issue with file operations.
+     */
+    public void flush() throws IOException {
+        if(this.file != null)
+            this.file.flush();
+    }
+
+    /**
+     * Close the table file. It is reopened by the next operation that needs it.
+     *
+     * @throws IOException If there is an issue with file operations.
+     */
+    @Override
+    public void close() throws IOException {
+        if(this.file != null)
+            this.file.close();
+
+        this.file = null;
+    }
+
+    // Private Methods
+
+    /**
+     * Writes the header page if the file is empty, or checks it and reads the free bytes
+     * of every page otherwise.
+     *
+     * @throws IOException If there is an issue with file operations.
+     */
+    private void __open() throws IOException {
+        PagedFile file = this.__file();
+
+        if(file.size() == 0) {
+            file.write(0, ByteBuffer.allocate(BLOCK_SIZE).putInt(0, MAGIC).putInt(Integer.BYTES, 0));
+            this.free.add(0);
+            return;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        file.read(0, header);
+
+        if(header.getInt(0) != MAGIC || file.size() % BLOCK_SIZE != 0)
+            throw new DatabaseValidationException("The file at " + this.filePath + " is not a slotted-page table.");
+
+        this.free.add(0);
+        for(long p = 1; p < file.size() / BLOCK_SIZE; p++)
+            this.free.add(this.__readPage(p).freeSpace());
+    }
+
+    /**
+     * Check the last ID of the table and ensure it's not 0 (indicating an empty table).
+     *
+     * @throws IOException If there is an issue with file operations.
+     */
+    private void __checkDefaultId() throws IOException {
+        if(this.getLastId() == 0)
+            throw new EmptyFileException("The file at " + this.filePath + " has no objects.");
+    }
+
+    /**
+     * Writes the last ID in the header page.
+     *
+     * @param id The last ID.
+     * @throws IOException If there is an issue with file operations.
+     */
+    private void __setLastId(int id) throws IOException {
+        this.__file().write(Integer.BYTES, ByteBuffer.allocate(Integer.BYTES).putInt(0, id));
+    }
+
+    /**
+     * Inserts a record body in the page of the last insert, in the first page that has
+     * room for it, or in a new page at the end of the file.
+     *
+     * @param b The record body.
+     * @return The packed ID of the record.
+     * @throws IOException If there is an issue with file operations.
+     */
+    private long __place(byte[] b) throws IOException {
+        if(b.length > SlottedPage.MAX_RECORD_BYTES)
+            throw new IllegalArgumentException("The record has " + b.length + " bytes, but a page only fits " + SlottedPage.MAX_RECORD_BYTES + ".");
+
+        int needed = Byte.BYTES + b.length + SlottedPage.SLOT_BYTES;
+        long p = this.lastPage;
+
+        if(p == -1 || this.free.get((int)p) < needed) {
+            p = -1;
+            for(int i = 1; i < this.free.size() && p == -1; i++)
+                if(this.free.get(i) >= needed) p = i;
+        }
+
+        SlottedPage page = null;
+        int slot = -1;
+
+        if(p != -1) {
+            page = this.__readPage(p);
+            slot = page.insert(b);
+        }
+
+        if(slot == -1) {
+            p = this.pageCount();
+            page = SlottedPage.format(ByteBuffer.allocate(BLOCK_SIZE));
+            slot = page.insert(b);
+            this.free.add(0);
+        }
+
+        this.__writePage(p, page);
+        this.lastPage = p;
+
+        return new RecordId(p, slot).toLong();
+    }
+
+    /**
+     * Rewrites the body of a record, in its page if it still fits, or in another page
+     * freeing its old slot otherwise.
+     *
+     * @param address  The packed ID of the record.
+     * @param b        The new record body.
+     * @param response The response to fill with the addresses of the operation.
+     * @throws IOException If there is an issue with file operations.
+     */
+    private void __rewrite(long address, byte[] b, Response<T> response) throws IOException {
+        RecordId rid = RecordId.of(address);
+        SlottedPage page = this.__readPage(rid.page);
+
+        response.success = true;
+        response.oldAddress = address;
+
+        if(page.update(rid.slot, b)) {
+            this.__writePage(rid.page, page);
+            response.currentAddress = address;
+            response.message = "The object was updated in the same record.";
+        } else {
+            page.free(rid.slot);
+            this.__writePage(rid.page, page);
+
+            long newAddress = this.__place(b);
+            response.newAddress = newAddress;
+            response.currentAddress = newAddress;
+            response.message = "The object was updated in a new record.";
+        }
+    }
+
+    /**
+     * Reads a page of the table.
+     *
+     * @param p The number of the page.
+     * @return The page.
+     * @throws IOException If there is an issue with file operations.
+     */
+    private SlottedPage __readPage(long p) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(BLOCK_SIZE);
+        this.__file().read(p * BLOCK_SIZE, data);
+        return new SlottedPage(data.clear());
+    }
+
+    /**
+     * Writes a page of the table and updates its free bytes.
+     *
+     * @param p    The number of the page.
+     * @param page The page.
+     * @throws IOException If there is an issue with file operations.
+     */
+    private void __writePage(long p, SlottedPage page) throws IOException {
+        this.__file().write(p * BLOCK_SIZE, ByteBuffer.wrap(page.getData().array()));
+        this.free.set((int)p, page.freeSpace());
+    }
+
+    /**
+     * Encrypts an object with the cipher of the table.
+     *
+     * @param obj The object to encrypt, which is given the cipher of the table.
+     * @return The encrypted copy of the object.
+     */
+    private T __encrypt(T obj) {
+        if(this.cipher != null)
+            obj.setCipher(this.cipher);
+
+        return obj.encrypt();
+    }
+
+    /**
+     * Builds a new object of type T from its byte representation, with the cipher of the table.
+     *
+     * @param b The byte representation of the object.
+     * @return The decoded object, or null if it could not be instantiated.
+     */
+    private T __decode(byte[] b) {
+        T obj = null;
+
+        try {
+            obj = this.constructor.newInstance();
+            obj.fromByteArray(b);
+
+            if(this.cipher != null)
+                obj.setCipher(this.cipher);
+        } catch(Exception e) {
+            System.err.println("Could not make a new instanse of " + this.constructor.getName());
+            e.printStackTrace();
+        }
+
+        return obj;
+    }
+
+    /**
+     * Opens the table file through the buffer pool if it is not already open.
+     *
+     * @return The pages of the table file.
+     * @throws IOException If there is an issue with file operations.
+     */
+    private PagedFile __file() throws IOException {
+        if(this.file == null)
+            this.file = BufferPool.getInstance().open(this.filePath);
+
+        return this.file;
+    }
+}
@@ -4,11 +4,13 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
 
 import components.interfaces.Register;
 import crud.base.BinaryArchive;
+import crud.base.RecordCursor;
+import crud.base.Snapshot;
 import err.JsonValidationException;
 
 /**
@@ -84,10 +86,7 @@ public class Trash<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     public long length() throws IOException {
-        this.file = new RandomAccessFile(this.filePath, "rw");
-        long len = this.file.length();
-        this.file.close();
-        return len;
+        return this._size();
     }
 
     /**
@@ -97,10 +96,7 @@ public class Trash<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     public boolean isEmpty() throws IOException {
-        this.file = new RandomAccessFile(this.filePath, "rw");
-        boolean res = this.file.length() == 0;
-        this.file.close();
-        return res;
+        return this._size() == 0;
     }
 
     /**
@@ -110,10 +106,7 @@ public class Trash<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     public boolean isEOF() throws IOException {
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
-        boolean value = this.position == this.file.length();
-        this.file.close();
-        return value;
+        return this.position == this._size();
     }
 
     /**
@@ -132,25 +125,21 @@ public class Trash<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     public long search(String key, Object value) throws IOException {
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
-        
+        long length = this._size();
         long pos = 0;
-        this.file.seek(pos);
 
-        boolean lapide; // [1][valido] != [0][invalido]
-        T obj = null;
+        while(pos < length) {
+            ByteBuffer header = this._readHeader(pos);
+            boolean lapide = header.get() != 0; // [1][valido] != [0][invalido]
+            int len = header.getInt();
 
-        do {
-            pos = this.file.getFilePointer();
-            lapide = this.file.readBoolean();
-            obj = this._readObj();
-        } while((!lapide || obj.compare(key, value) != 0) && !this._isEOF());
+            if(lapide && this._readBody(pos, len).compare(key, value) == 0)
+                return pos;
 
-        if(obj == null || obj.compare(key, value) != 0 || !lapide) 
-            pos = -1;
+            pos += RECORD_HEADER_BYTES + len;
+        }
 
-        this.file.close();
-        return pos;
+        return -1;
     }
 
     /**
@@ -160,30 +149,25 @@ public class Trash<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     public T readObj() throws IOException {
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
-        this.file.seek(this.position);
-
-        boolean lapide = false;
-        int len = 0;
+        long length = this._size();
+        long pos = this.position;
 
-        while(!lapide && this.file.getFilePointer() < this.file.length()) {
-            lapide = this.file.readBoolean();
-            len = this.file.readInt(); 
+        while(pos < length) {
+            ByteBuffer header = this._readHeader(pos);
+            boolean lapide = header.get() != 0;
+            int len = header.getInt();
 
-            if(!lapide)
-                this.file.skipBytes(len);
-        } 
+            if(lapide) {
+                T obj = this._readBody(pos, len);
+                this.position = pos + RECORD_HEADER_BYTES + len;
+                return obj;
+            }
 
-        if(this.file.getFilePointer() == this.file.length()) {
-            this.file.close();
-            return null;
+            pos += RECORD_HEADER_BYTES + len;
         }
 
-        T obj = this._readObj(len);
-        
-        this.position = this.file.getFilePointer();
-        this.file.close();
-        return obj;
+        this.position = length;
+        return null;
     }
 
     /**
@@ -197,19 +181,10 @@ public class Trash<T extends Register<T>> extends BinaryArchive<T> {
     public T readObj(String key, Object o) throws IOException {
         long pos = this.search(key, o);
 
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
-        
-        T obj = null;
-        if(pos != -1) {
-            this.file.seek(pos);
-            boolean lapide = this.file.readBoolean();
-
-            if(lapide) 
-                obj = this._readObj();
-        }
+        if(pos == -1)
+            return null;
 
-        this.file.close();
-        return obj;
+        return this._readBody(pos, this._readHeader(pos).getInt(Byte.BYTES));
     }
 
     /**
@@ -220,15 +195,10 @@ public class Trash<T extends Register<T>> extends BinaryArchive<T> {
      */
     public void create(T obj) throws IOException {
         if(obj != null) {
-            this.file = new RandomAccessFile(new File(this.filePath), "rw");
-            
             if(obj.getId() == -1) 
                 throw new IndexOutOfBoundsException("The ID must not be -1.");
     
-            file.seek(this.file.length());
-            this.file.writeBoolean(true);
-            this._writeObj(obj);
-            this.file.close();
+            this._writeRecord(this._size(), true, obj.toByteArray());
         }
     }
 
@@ -241,15 +211,11 @@ public class Trash<T extends Register<T>> extends BinaryArchive<T> {
      */
     public boolean delete(int id) throws IOException {
         long pos = this.search("id", id);
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
         
         if(pos == -1) 
             return false;
 
-        this.file.seek(pos);
-        this.file.writeBoolean(false);
-        this.file.close();
-
+        this._writeLapide(pos, false);
         return true;
     }
 
@@ -260,19 +226,16 @@ public class Trash<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     public int count() throws IOException {
-        this.file = new RandomAccessFile(new File(this.filePath), "rw");
-        
+        long length = this._size();
+        long pos = 0;
         int count = 0;
-        this.file.seek(0);
 
-        while(this.file.getFilePointer() < this.file.length()) {
-            boolean lapide = this.file.readBoolean();
-            int len = this.file.readInt();
-            this.file.skipBytes(len);
-            if(lapide) count++;
+        while(pos < length) {
+            ByteBuffer header = this._readHeader(pos);
+            if(header.get() != 0) count++;
+            pos += RECORD_HEADER_BYTES + header.getInt();
         }
 
-        this.file.close();
         return count;
     }
 
@@ -283,26 +246,34 @@ public class Trash<T extends Register<T>> extends BinaryArchive<T> {
      * @throws IOException If there is an issue with file operations.
      */
     public void toJsonFile(String path) throws IOException {
+        this.toJsonFile(path, null);
+    }
+
+    /**
+     * Export the trash archive, as seen by a snapshot, as a JSON file.
+     *
+     * @param path     The path to the JSON file.
+     * @param snapshot The snapshot, or null to export the trash as it is now.
+     * @throws IOException If there is an issue with file operations.
+     */
+    public void toJsonFile(String path, Snapshot snapshot) throws IOException {
         if(!path.endsWith(".json"))
             throw new JsonValidationException("The file at " + path + "is not a JSON file.");
 
-        long tmp = this.position;
-
         BufferedWriter bw = new BufferedWriter(new FileWriter(new File(path)));
-        this.reset();
+        RecordCursor<T> cursor = this._cursor(0, false, snapshot);
+        boolean first = true;
 
         bw.write("[\n");
-        T obj = this.readObj();
-        while(obj != null) {
-            bw.write(obj.toString());
-            obj = this.readObj();
-            
-            if(obj != null)
+        while(cursor.next()) {
+            if(!first)
                 bw.write(",\n");
+
+            bw.write(cursor.get().toString());
+            first = false;
         }
 
         bw.write("\n]\n");
         bw.close();
-        this.position = tmp;
     }
 }
@@ -0,0 +1,207 @@
+package crud.core;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+import crud.core.types.LogEntry;
+import crud.core.types.LogType;
+import logic.SystemSpecification;
+
+/**
+ * <strong> A sequential write-ahead log of the operations of a CRUD. </strong>
+ *
+ * <p>
+ * Every operation that changes the database, the trash or the indexes appends an
+ * entry with the addresses it touched and the bytes of the record, so it can be
+ * replayed after a crash. The entries are stored as {@code [length][payload][crc]},
+ * and a torn entry at the end of the log is ignored when it is read back.
+ * </p>
+ *
+ * <p>
+ * The log is synced to the disk once every {@code WAL_SYNC_INTERVAL} committed
+ * operations, and before the buffer pool writes any page back, so a page never
+ * reaches the disk before the entry that describes it. After a checkpoint writes
+ * every page back the log is truncated, so the recovery only reads its tail.
+ * </p>
+ *
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.core.types.LogEntry
+ * @version 1.0.0
+ */
+public class WriteAheadLog implements SystemSpecification, Flushable, AutoCloseable {
+
+    // Attributes
+
+    private static final int ENTRY_HEADER_BYTES = Byte.BYTES + Integer.BYTES + Long.BYTES * 2; // [type][id][oldAddress][address]
+
+    private final String path; // Path of the log file
+    private final RandomAccessFile file; // File of the log
+    private final FileChannel channel; // Channel of the log file
+    private final CRC32 crc = new CRC32(); // Checksum of the entries
+
+    private long size; // Size of the log file
+    private int pending = 0; // Operations committed since the last sync
+    private boolean dirty = false; // If there are entries that were not synced
+
+    // Constructors
+
+    /**
+     * Opens the log at the specified path, creating it if it does not exist.
+     *
+     * @param path Path of the log file
+     * @throws IOException
+     */
+    public WriteAheadLog(String path) throws IOException {
+        this.path = path;
+        this.file = new RandomAccessFile(path, "rw");
+        this.channel = this.file.getChannel();
+        this.size = this.channel.size();
+    }
+
+    // Public Methods
+
+    /**
+     * Returns the path of the log file.
+     *
+     * @return Path of the log file
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * Returns the size of the log file.
+     *
+     * @return Size of the log in bytes
+     */
+    public synchronized long size() {
+        return this.size;
+    }
+
+    /**
+     * Appends an entry at the end of the log. The entry is only synced by
+     * {@link #commit()} or {@link #flush()}.
+     *
+     * @param type Operation of the entry
+     * @param id ID of the record
+     * @param oldAddress Address of the record before the operation
+     * @param address Address of the record after the operation
+     * @param b Bytes of the record
+     * @throws IOException
+     */
+    public synchronized void append(LogType type, int id, long oldAddress, long address, byte[] b) throws IOException {
+        int len = ENTRY_HEADER_BYTES + b.length;
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + len + Integer.BYTES);
+
+        buffer.putInt(len);
+        buffer.put((byte)type.ordinal()).putInt(id).putLong(oldAddress).putLong(address).put(b);
+
+        this.crc.reset();
+        this.crc.update(buffer.array(), Integer.BYTES, len);
+        buffer.putInt((int)this.crc.getValue()).flip();
+
+        while(buffer.hasRemaining())
+            this.size += this.channel.write(buffer, this.size);
+
+        this.dirty = true;
+    }
+
+    /**
+     * Marks the end of an operation, syncing the log once every {@code WAL_SYNC_INTERVAL} operations.
+     *
+     * @throws IOException
+     */
+    public synchronized void commit() throws IOException {
+        if(++this.pending >= WAL_SYNC_INTERVAL)
+            this.flush();
+    }
+
+    /**
+     * Syncs the entries that were not synced yet to the disk.
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        if(this.dirty && this.channel.isOpen())
+            this.channel.force(false);
+
+        this.dirty = false;
+        this.pending = 0;
+    }
+
+    /**
+     * Reads every complete entry of the log, stopping at the first torn or corrupted entry.
+     *
+     * @return The entries in the order they were appended
+     * @throws IOException
+     */
+    public synchronized ArrayList<LogEntry> read() throws IOException {
+        ArrayList<LogEntry> entries = new ArrayList<LogEntry>();
+        LogType[] types = LogType.values();
+
+        ByteBuffer buffer = ByteBuffer.allocate((int)this.size);
+        while(buffer.hasRemaining() && this.channel.read(buffer, buffer.position()) != -1);
+        buffer.flip();
+
+        while(buffer.remaining() >= Integer.BYTES) {
+            int start = buffer.position();
+            int len = buffer.getInt();
+
+            if(len < ENTRY_HEADER_BYTES || buffer.remaining() < len + Integer.BYTES)
+                break;
+
+            this.crc.reset();
+            this.crc.update(buffer.array(), start + Integer.BYTES, len);
+            if(buffer.getInt(start + Integer.BYTES + len) != (int)this.crc.getValue())
+                break;
+
+            byte type = buffer.get();
+            if(type < 0 || type >= types.length)
+                break;
+
+            int id = buffer.getInt();
+            long oldAddress = buffer.getLong();
+            long address = buffer.getLong();
+            byte[] b = new byte[len - ENTRY_HEADER_BYTES];
+            buffer.get(b);
+            buffer.getInt();
+
+            entries.add(new LogEntry(types[type], id, oldAddress, address, b));
+        }
+
+        return entries;
+    }
+
+    /**
+     * Empties the log. It must only be called after every page it describes was written back.
+     *
+     * @throws IOException
+     */
+    public synchronized void truncate() throws IOException {
+        this.channel.truncate(0);
+        this.channel.force(false);
+
+        this.size = 0;
+        this.dirty = false;
+        this.pending = 0;
+    }
+
+    /**
+     * Syncs and closes the log file.
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(this.channel.isOpen()) {
+            this.flush();
+            this.file.close();
+        }
+    }
+}
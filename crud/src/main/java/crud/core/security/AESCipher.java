@@ -0,0 +1,173 @@
+package crud.core.security;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Class implementing field encryption with AES in GCM mode.
+ *
+ * <p>
+ * Every table has its own random data key, which is kept next to the table wrapped by
+ * the RSA keys, so the RSA private key is still the only secret. Every value is encrypted
+ * with a random IV and stored as {@code $} followed by the IV and the ciphertext in
+ * Base64. Since an RSA ciphertext is a decimal number, a value without the prefix was
+ * written before the table was migrated and is decrypted by the fallback cipher.
+ * </p>
+ *
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.core.security.FieldCipher
+ */
+public class AESCipher implements FieldCipher {
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String PREFIX = "$"; // Prefix of the values encrypted by this cipher
+    private static final int KEY_BYTES = 16; // AES-128
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    private static final int WRAP_PADDING_BYTES = 48; // Random bytes wrapped with the key, so the RSA message is large
+    private static final SecureRandom random = new SecureRandom();
+
+    private final SecretKeySpec key;
+    private final FieldCipher fallback;
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(AESCipher::newCipher);
+
+    /**
+     * Constructor for AESCipher class.
+     *
+     * @param key      The data key.
+     * @param fallback The cipher of the values written before the migration, or null.
+     */
+    public AESCipher(byte[] key, FieldCipher fallback) {
+        this.key = new SecretKeySpec(key, "AES");
+        this.fallback = fallback;
+    }
+
+    /**
+     * Creates a cipher with a new random data key.
+     *
+     * @param fallback The cipher of the values written before the migration, or null.
+     * @return The cipher.
+     */
+    public static AESCipher generate(FieldCipher fallback) {
+        byte[] key = new byte[KEY_BYTES];
+        random.nextBytes(key);
+        return new AESCipher(key, fallback);
+    }
+
+    /**
+     * Loads the data key of a table, unwrapping it with the RSA keys.
+     *
+     * @param path The path of the key file.
+     * @param rsa  The RSA cipher that wrapped the key, also used as the fallback.
+     * @return The cipher, or null if the table has no key file.
+     * @throws IOException If the key file cannot be read or unwrapped.
+     */
+    public static AESCipher load(String path, RSA rsa) throws IOException {
+        Path file = Paths.get(path);
+        if (!Files.exists(file))
+            return null;
+
+        String wrapped = Files.readString(file, StandardCharsets.UTF_8).trim();
+        String unwrapped = rsa.decrypt(wrapped);
+        byte[] b = unwrapped == null ? null : Base64.getDecoder().decode(unwrapped);
+
+        if (b == null || b.length != WRAP_PADDING_BYTES + KEY_BYTES)
+            throw new IOException("The key file at " + path + " could not be unwrapped.");
+
+        return new AESCipher(Arrays.copyOfRange(b, WRAP_PADDING_BYTES, b.length), rsa);
+    }
+
+    /**
+     * Saves the data key of a table, wrapped with the RSA keys. The file is written
+     * aside and renamed, so it is never seen half written.
+     *
+     * @param path The path of the key file.
+     * @param rsa  The RSA cipher that wraps the key.
+     * @throws IOException If the key file cannot be written.
+     */
+    public void save(String path, RSA rsa) throws IOException {
+        byte[] b = new byte[WRAP_PADDING_BYTES + KEY_BYTES];
+        random.nextBytes(b);
+        System.arraycopy(this.key.getEncoded(), 0, b, WRAP_PADDING_BYTES, KEY_BYTES);
+
+        Path tmp = Paths.get(path + ".tmp");
+        Files.writeString(tmp, rsa.encrypt(Base64.getEncoder().encodeToString(b)), StandardCharsets.UTF_8);
+        Files.move(tmp, Paths.get(path), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Encrypts a message with the data key and a random IV.
+     *
+     * @param message The string to be encrypted.
+     * @return The encrypted string, or null in case of error.
+     */
+    @Override
+    public String encrypt(String message) {
+        byte[] iv = new byte[IV_BYTES];
+        random.nextBytes(iv);
+
+        try {
+            Cipher cipher = this.ciphers.get();
+            cipher.init(Cipher.ENCRYPT_MODE, this.key, new GCMParameterSpec(TAG_BITS, iv));
+
+            byte[] plain = message.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer out = ByteBuffer.allocate(IV_BYTES + cipher.getOutputSize(plain.length));
+            out.put(iv);
+            cipher.doFinal(ByteBuffer.wrap(plain), out);
+
+            return PREFIX + Base64.getEncoder().encodeToString(Arrays.copyOf(out.array(), out.position()));
+        } catch (GeneralSecurityException ex) {
+            System.out.println("Error while encrypting: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Decrypts a message encrypted by this cipher, or by the fallback cipher if it has no prefix.
+     *
+     * @param message The encrypted string.
+     * @return The decrypted string, or null in case of error.
+     */
+    @Override
+    public String decrypt(String message) {
+        if (!message.startsWith(PREFIX))
+            return this.fallback == null ? null : this.fallback.decrypt(message);
+
+        try {
+            byte[] b = Base64.getDecoder().decode(message.substring(PREFIX.length()));
+            Cipher cipher = this.ciphers.get();
+            cipher.init(Cipher.DECRYPT_MODE, this.key, new GCMParameterSpec(TAG_BITS, b, 0, IV_BYTES));
+
+            return new String(cipher.doFinal(b, IV_BYTES, b.length - IV_BYTES), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException ex) {
+            System.out.println("Error while decrypting: " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Creates the cipher used by a thread.
+     *
+     * @return The cipher.
+     */
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("The transformation " + TRANSFORMATION + " is not available.", ex);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package crud.core.security;
+
+/**
+ * Interface for the ciphers that encrypt the fields of the registers.
+ *
+ * <p>
+ * A field is encrypted into a string that is stored in place of its value, so
+ * the ciphers can be swapped without changing how the registers are written.
+ * </p>
+ *
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.core.security.RSA
+ * @see crud.core.security.AESCipher
+ */
+public interface FieldCipher {
+
+    /**
+     * Encrypts the value of a field.
+     *
+     * @param message The value to be encrypted.
+     * @return The encrypted value, or null in case of error.
+     */
+    String encrypt(String message);
+
+    /**
+     * Decrypts the value of a field.
+     *
+     * @param message The encrypted value.
+     * @return The decrypted value, or null in case of error.
+     */
+    String decrypt(String message);
+}
@@ -15,94 +15,167 @@ import logic.SystemSpecification;
  /**
  * Class implementing RSA encryption and decryption.
  * It allows the creation of keys, loading of keys from file, encryption and decryption of messages.
- * Implements the {@link SystemSpecification} interface.
+ * The keys are loaded once and shared by every instance, so creating an instance is cheap, and
+ * decryption uses the Chinese remainder theorem with the primes recovered from the keys.
+ * Implements the {@link FieldCipher} and {@link SystemSpecification} interfaces.
  * 
  * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
  */
-public class RSA implements SystemSpecification {
+public class RSA implements FieldCipher, SystemSpecification {
 
-    private BigInteger n, d, e;
-    private int bitlen = 1024;
+    private static volatile Keys shared = null; // Keys shared by every instance, loaded once
+
+    private final Keys keys;
+    private final BigInteger n, d, e;
     private static final String KEY_FILE_PATH = RSA_KEYS + "keys.txt";
 
     /**
      * Constructor for RSA class.
-     * Initializes the bit length and tries to load keys from file.
-     * If keys are not found, it generates new keys.
+     * Uses the keys shared by every instance, which are loaded from file the first time
+     * an instance is created. If keys are not found, it generates new keys.
      *
-     * @param bits The bit length for the RSA keys.
+     * @param bits The bit length for the RSA keys, used if they must be generated.
      */
     public RSA(int bits) {
-        this.bitlen = bits;
-        if (!loadKeysFromFile()) {
-            generateKeys();
-            saveKeysToFile();
+        this.keys = getKeys(bits);
+        this.n = this.keys.n;
+        this.e = this.keys.e;
+        this.d = this.keys.d;
+    }
+
+    /**
+     * Gets the keys shared by every instance, loading or generating them on the first call.
+     *
+     * @param bits The bit length for the RSA keys, used if they must be generated.
+     * @return The shared keys.
+     */
+    private static Keys getKeys(int bits) {
+        Keys keys = shared;
+
+        if (keys == null) {
+            synchronized (RSA.class) {
+                keys = shared;
+
+                if (keys == null) {
+                    keys = loadKeysFromFile();
+
+                    if (keys == null) {
+                        keys = generateKeys(bits);
+                        saveKeysToFile(keys);
+                    }
+
+                    shared = keys;
+                }
+            }
         }
+
+        return keys;
     }
 
     /**
      * Generates RSA keys using SecureRandom and BigInteger.
+     *
+     * @param bitlen The bit length for the RSA keys.
+     * @return The generated keys.
      */
-    private void generateKeys() {
+    private static Keys generateKeys(int bitlen) {
         SecureRandom r = new SecureRandom();
         BigInteger p = new BigInteger(bitlen / 2, 100, r);
         BigInteger q = new BigInteger(bitlen / 2, 100, r);
-        n = p.multiply(q);
+        BigInteger n = p.multiply(q);
         BigInteger z = (p.subtract(BigInteger.ONE)).multiply(q.subtract(BigInteger.ONE));
-        e = new BigInteger("3");
+        BigInteger e = new BigInteger("3");
 
         while (z.gcd(e).intValue() > 1) {
             e = e.add(new BigInteger("2"));
         }
 
-        d = e.modInverse(z);
+        return new Keys(n, e, e.modInverse(z), p, q);
     }
 
     /**
      * Loads RSA keys from a file.
      * 
-     * @return true if keys were successfully loaded, false otherwise.
+     * @return The keys, or null if they could not be loaded.
      */
-    private boolean loadKeysFromFile() {
+    private static Keys loadKeysFromFile() {
         try (BufferedReader br = new BufferedReader(new FileReader(KEY_FILE_PATH))) {
             String modulus = br.readLine();
             String publicExp = br.readLine();
             String privateExp = br.readLine();
 
             if (modulus != null && publicExp != null && privateExp != null) {
-                n = new BigInteger(modulus);
-                e = new BigInteger(publicExp);
-                d = new BigInteger(privateExp);
-                return true;
+                BigInteger n = new BigInteger(modulus);
+                BigInteger e = new BigInteger(publicExp);
+                BigInteger d = new BigInteger(privateExp);
+                BigInteger p = factor(n, e, d);
+
+                return new Keys(n, e, d, p, p == null ? null : n.divide(p));
             }
         } catch (IOException ex) {
             System.out.println("Erro ao ler as chaves do arquivo: " + ex.getMessage());
         }
 
-        return false;
+        return null;
     }
 
     /**
      * Saves RSA keys to a file.
+     *
+     * @param keys The keys to save.
      */
-    private void saveKeysToFile() {
+    private static void saveKeysToFile(Keys keys) {
         try (BufferedWriter bw = new BufferedWriter(new FileWriter(KEY_FILE_PATH))) {
-            bw.write(n.toString());
+            bw.write(keys.n.toString());
             bw.newLine();
-            bw.write(e.toString());
+            bw.write(keys.e.toString());
             bw.newLine();
-            bw.write(d.toString());
+            bw.write(keys.d.toString());
         } catch (IOException ex) {
             System.out.println("Erro ao salvar as chaves no arquivo: " + ex.getMessage());
         }
     }
 
+    /**
+     * Recovers a prime factor of the modulus from the exponents, since the key file does not
+     * keep the primes. It looks for a non-trivial square root of 1 modulo n, which exists
+     * because e * d - 1 is a multiple of the order of every element.
+     *
+     * @param n The modulus.
+     * @param e The public exponent.
+     * @param d The private exponent.
+     * @return A prime factor of the modulus, or null if none was found.
+     */
+    private static BigInteger factor(BigInteger n, BigInteger e, BigInteger d) {
+        BigInteger k = e.multiply(d).subtract(BigInteger.ONE);
+        BigInteger nMinusOne = n.subtract(BigInteger.ONE);
+        int s = k.getLowestSetBit();
+        BigInteger t = k.shiftRight(s);
+
+        for (int g = 2; g < 100; g++) {
+            BigInteger x = BigInteger.valueOf(g).modPow(t, n);
+
+            for (int i = 0; i < s; i++) {
+                BigInteger y = x.multiply(x).mod(n);
+
+                if (y.equals(BigInteger.ONE) && !x.equals(BigInteger.ONE) && !x.equals(nMinusOne)) {
+                    return x.subtract(BigInteger.ONE).gcd(n);
+                }
+
+                x = y;
+            }
+        }
+
+        return null;
+    }
+
     /**
      * Encrypts a message using RSA encryption.
      * 
      * @param message The string to be encrypted.
      * @return The encrypted string, or null in case of encoding error.
      */
+    @Override
     public String encrypt(String message) {
         try {
             byte[] bytes = message.getBytes("UTF-8");
@@ -122,9 +195,10 @@ public class RSA implements SystemSpecification {
      * @param message The encrypted string.
      * @return The decrypted string, or null in case of decoding error.
      */
+    @Override
     public String decrypt(String message) {
         BigInteger messageBigInt = new BigInteger(message);
-        byte[] decryptedBytes = messageBigInt.modPow(d, n).toByteArray();
+        byte[] decryptedBytes = this.keys.decrypt(messageBigInt).toByteArray();
 
         if (decryptedBytes[0] == 0) {
             byte[] temp = new byte[decryptedBytes.length - 1];
@@ -166,4 +240,52 @@ public class RSA implements SystemSpecification {
     public BigInteger getPrivateExponent() {
         return d;
     }    
+
+    /**
+     * The key material shared by every instance, with the Chinese remainder theorem
+     * parameters that split the private exponentiation in two half-size ones.
+     */
+    private static final class Keys {
+
+        private final BigInteger n, e, d;
+        private final BigInteger p, q, dP, dQ, qInv; // Null if the primes are not known
+
+        /**
+         * Creates the key material.
+         *
+         * @param n The modulus.
+         * @param e The public exponent.
+         * @param d The private exponent.
+         * @param p The first prime, or null if it is not known.
+         * @param q The second prime, or null if it is not known.
+         */
+        private Keys(BigInteger n, BigInteger e, BigInteger d, BigInteger p, BigInteger q) {
+            this.n = n;
+            this.e = e;
+            this.d = d;
+            this.p = p;
+            this.q = q;
+            this.dP = p == null ? null : d.mod(p.subtract(BigInteger.ONE));
+            this.dQ = q == null ? null : d.mod(q.subtract(BigInteger.ONE));
+            this.qInv = p == null ? null : q.modInverse(p);
+        }
+
+        /**
+         * Raises a value to the private exponent, with the primes when they are known.
+         *
+         * @param c The value.
+         * @return The value raised to the private exponent modulo n.
+         */
+        private BigInteger decrypt(BigInteger c) {
+            if (this.p == null) {
+                return c.modPow(this.d, this.n);
+            }
+
+            BigInteger m1 = c.modPow(this.dP, this.p);
+            BigInteger m2 = c.modPow(this.dQ, this.q);
+            BigInteger h = this.qInv.multiply(m1.subtract(m2)).mod(this.p);
+
+            return m2.add(h.multiply(this.q));
+        }
+    }
 }
@@ -0,0 +1,126 @@
+package crud.core.types;
+
+import java.util.Date;
+
+import components.interfaces.Register;
+
+/**
+ * FieldPredicate class represents a condition on a single field of a register: equality,
+ * an inclusive range or a text prefix. A scan can evaluate it on the bytes of the records
+ * when the register describes its layout, or on the decoded records otherwise.
+ *
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @version 1.0.0
+ */
+public class FieldPredicate {
+
+    // Attributes
+
+    public final String key;            // The field compared by the predicate.
+    public final PredicateType type;    // The comparison made by the predicate.
+    public final Object min;            // The value, prefix or lower bound, or null if there is none.
+    public final Object max;            // The upper bound, or null if there is none.
+
+    // Constructor
+
+    /**
+     * Creates a predicate on the given field.
+     *
+     * @param key  The field compared by the predicate.
+     * @param type The comparison made by the predicate.
+     * @param min  The value, prefix or lower bound.
+     * @param max  The upper bound.
+     */
+    private FieldPredicate(String key, PredicateType type, Object min, Object max) {
+        this.key = key;
+        this.type = type;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Creates a predicate that matches the records whose field is equal to the value.
+     *
+     * @param key   The field to compare.
+     * @param value The value of the field.
+     * @return The predicate.
+     */
+    public static FieldPredicate equal(String key, Object value) {
+        return new FieldPredicate(key, PredicateType.Equal, value, value);
+    }
+
+    /**
+     * Creates a predicate that matches the records whose field is between the bounds, inclusive.
+     *
+     * @param key The field to compare.
+     * @param min The lower bound, or null if there is none.
+     * @param max The upper bound, or null if there is none.
+     * @return The predicate.
+     */
+    public static FieldPredicate range(String key, Object min, Object max) {
+        return new FieldPredicate(key, PredicateType.Range, min, max);
+    }
+
+    /**
+     * Creates a predicate that matches the records whose text field starts with the prefix.
+     *
+     * @param key    The field to compare.
+     * @param prefix The prefix of the field.
+     * @return The predicate.
+     */
+    public static FieldPredicate prefix(String key, String prefix) {
+        return new FieldPredicate(key, PredicateType.Prefix, prefix, null);
+    }
+
+    // Public Methods
+
+    /**
+     * Evaluates the predicate on a decoded and decrypted register.
+     *
+     * @param obj The register.
+     * @return True if the register matches the predicate, false otherwise.
+     */
+    public boolean test(Register<?> obj) {
+        Object value = obj.get(this.key);
+
+        switch(this.type) {
+            case Equal: return value != null && compare(value, this.min) == 0;
+            case Range: return value != null && (this.min == null || compare(value, this.min) >= 0) && (this.max == null || compare(value, this.max) <= 0);
+            case Prefix: return value instanceof String && ((String)value).startsWith((String)this.min);
+            default: return false;
+        }
+    }
+
+    /**
+     * Compares two values of a field. Integral numbers are compared by value, whatever their
+     * type, and dates by time, so a date can also be compared with a number of milliseconds.
+     *
+     * @param a The first value.
+     * @param b The second value.
+     * @return A negative number, zero or a positive number as the first value is less than,
+     *         equal to or greater than the second.
+     */
+    @SuppressWarnings("unchecked")
+    public static int compare(Object a, Object b) {
+        if(a instanceof Date)
+            a = ((Date)a).getTime();
+
+        if(b instanceof Date)
+            b = ((Date)b).getTime();
+
+        if(a instanceof Number && b instanceof Number)
+            return Long.compare(((Number)a).longValue(), ((Number)b).longValue());
+
+        return ((Comparable<Object>)a).compareTo(b);
+    }
+
+    /**
+     * Returns a string representation of the predicate.
+     *
+     * @return A string containing the field, the comparison and its values.
+     */
+    @Override
+    public String toString() {
+        return "FieldPredicate [key=" + key + ", type=" + type + ", min=" + min + ", max=" + max + "]";
+    }
+}
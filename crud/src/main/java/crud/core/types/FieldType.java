@@ -0,0 +1,13 @@
+package crud.core.types;
+
+/**
+ * The {@code FieldType} enum represents how a field of a register is written by its
+ * {@code toByteArray}, so the field can be found and compared in the bytes of a record.
+ * A {@code Cipher} field is written as text but holds encrypted data, so it can be
+ * skipped but not compared.
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @version 1.0.0
+ */
+public enum FieldType {
+    Int, Short, Long, Date, Text, Cipher
+}
@@ -0,0 +1,50 @@
+package crud.core.types;
+
+/**
+ * LogEntry class represents an operation read back from the write-ahead log,
+ * with the ID of the record, the addresses it touched and the record bytes.
+ *
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @version 1.0.0
+ */
+public class LogEntry {
+
+    // Attributes
+
+    public final LogType type;      // The logged operation.
+    public final int id;            // The ID of the record.
+    public final long oldAddress;   // The address of the record before the operation.
+    public final long address;      // The address of the record after the operation.
+    public final byte[] body;       // The bytes of the record.
+
+    // Constructor
+
+    /**
+     * Creates a log entry with the given values.
+     *
+     * @param type       The logged operation.
+     * @param id         The ID of the record.
+     * @param oldAddress The address of the record before the operation.
+     * @param address    The address of the record after the operation.
+     * @param body       The bytes of the record.
+     */
+    public LogEntry(LogType type, int id, long oldAddress, long address, byte[] body) {
+        this.type = type;
+        this.id = id;
+        this.oldAddress = oldAddress;
+        this.address = address;
+        this.body = body;
+    }
+
+    // Public Methods
+
+    /**
+     * Returns a string representation of the log entry.
+     *
+     * @return A string containing the entry details.
+     */
+    @Override
+    public String toString() {
+        return "LogEntry [type=" + type + ", id=" + id + ", oldAddress=" + oldAddress + ", address=" + address + "]";
+    }
+}
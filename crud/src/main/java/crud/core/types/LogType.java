@@ -0,0 +1,10 @@
+package crud.core.types;
+
+/**
+ * The {@code LogType} enum represents the operations recorded in the write-ahead log.
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @version 1.0.0
+ */
+public enum LogType {
+    Create, Update, Delete, Restore, Begin, Commit, Discard
+}
@@ -0,0 +1,10 @@
+package crud.core.types;
+
+/**
+ * The {@code PredicateType} enum represents the comparisons a {@link FieldPredicate} can make.
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @version 1.0.0
+ */
+public enum PredicateType {
+    Equal, Range, Prefix
+}
@@ -0,0 +1,63 @@
+package crud.core.types;
+
+/**
+ * RecordId class represents the stable address of a record in a slotted-page table,
+ * made of the page that holds it and its slot in the page. It is packed in a single
+ * {@code long} so it can be stored by the indexes in place of a file offset.
+ *
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @version 1.0.0
+ */
+public class RecordId {
+
+    // Attributes
+
+    private static final int SLOT_BITS = 16; // Bits of the packed value used by the slot.
+
+    public final long page;         // The page that holds the record.
+    public final int slot;          // The slot of the record in the page.
+
+    // Constructor
+
+    /**
+     * Creates a record ID with the given page and slot.
+     *
+     * @param page The page that holds the record.
+     * @param slot The slot of the record in the page.
+     */
+    public RecordId(long page, int slot) {
+        this.page = page;
+        this.slot = slot;
+    }
+
+    /**
+     * Unpacks a record ID packed by {@link #toLong()}.
+     *
+     * @param value The packed record ID.
+     * @return The record ID.
+     */
+    public static RecordId of(long value) {
+        return new RecordId(value >>> SLOT_BITS, (int)(value & ((1 << SLOT_BITS) - 1)));
+    }
+
+    // Public Methods
+
+    /**
+     * Packs the record ID in a single value.
+     *
+     * @return The packed record ID.
+     */
+    public long toLong() {
+        return (this.page << SLOT_BITS) | this.slot;
+    }
+
+    /**
+     * Returns a string representation of the record ID.
+     *
+     * @return A string containing the page and the slot.
+     */
+    @Override
+    public String toString() {
+        return "RecordId [page=" + page + ", slot=" + slot + "]";
+    }
+}
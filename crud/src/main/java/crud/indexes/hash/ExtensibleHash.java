@@ -4,11 +4,14 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.UUID;
 
+import crud.base.BufferPool;
+import crud.base.PagedFile;
 import crud.base.StructureValidation;
 import crud.indexes.types.interfaces.INode;
 import logic.Logic;
@@ -45,7 +48,8 @@ import logic.SystemSpecification;
  * <p>
  * The buckets are the blocks of the index. They store the keys and the
  * addresses of the registers that contain them. The maximum number of keys in a
- * bucket is specified in the constructor.
+ * bucket is specified in the constructor. The buckets are read and written
+ * through the shared {@link crud.base.BufferPool}.
  * </p>
  * 
  * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
@@ -54,7 +58,7 @@ import logic.SystemSpecification;
  * 
  * @version 1.0.0
  */
-public class ExtensibleHash<T extends INode<T>> implements SystemSpecification {
+public class ExtensibleHash<T extends INode<T>> implements SystemSpecification, AutoCloseable {
     
     // Attributes
 
@@ -64,7 +68,7 @@ public class ExtensibleHash<T extends INode<T>> implements SystemSpecification {
     private final Constructor<T> constructor; // Constructor of the keys
     
     private boolean isRedundant = false; // If the index is redundant
-    private RandomAccessFile file; // File of the index
+    private PagedFile file; // File of the index, kept open until close()
     
     public final int BUCKET_BYTES; // Size of a bucket in bytes
 
@@ -147,14 +151,25 @@ public class ExtensibleHash<T extends INode<T>> implements SystemSpecification {
      * @throws IOException
      */
     public void clear() throws IOException {
-        this.file = new RandomAccessFile(this.path, "rw");
-        this.file.setLength(0);
-        this.file.close();
-
+        this.open().truncate(0);
         this.directory.reset();
         this.init();
     }
 
+    /**
+     * Closes the index file, writing its modified buckets back to the disk.
+     * It is reopened by the next operation that needs it.
+     * 
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if(this.file != null) 
+            this.file.close();
+
+        this.file = null;
+    }
+
     /**
      * Inserts a new key in the index using the specified 
      * {@code INode} structure.
@@ -304,6 +319,40 @@ public class ExtensibleHash<T extends INode<T>> implements SystemSpecification {
         return bucket.getKeys();
     }
 
+    /**
+     * Replaces the value of every key by its new address in the given map, visiting
+     * each bucket once. The keys whose value is not in the map point to records that
+     * no longer exist, so they are deleted.
+     * 
+     * @param addresses The new address of each old address
+     * @return The number of keys deleted
+     * @throws Exception
+     */
+    public int remap(HashMap<Long, Long> addresses) throws Exception {
+        HashSet<Long> set = new HashSet<>();
+        long[] directory = this.directory.getDirectory();
+        int stale = 0;
+
+        for(int i = 0; i < directory.length; i++) {
+            if(!set.add(directory[i])) continue;
+
+            Bucket<T> bucket = this.readBucket(directory[i]);
+            Bucket<T> remapped = new Bucket<T>(bucketLength, bucket.getLocalDepth(), constructor);
+            T[] keys = bucket.getKeys();
+
+            for(int j = 0; j < bucket.size(); j++) {
+                Long address = addresses.get(keys[j].getValue());
+
+                if(address != null) remapped.add(keys[j].getKey(), address);
+                else stale++;
+            }
+
+            this.writeBucket(remapped, directory[i]);
+        }
+
+        return stale;
+    }
+
     /**
      * Prints the index in a {@code .json} file.
      * 
@@ -342,11 +391,8 @@ public class ExtensibleHash<T extends INode<T>> implements SystemSpecification {
      * @throws IOException
      */
     private void init() throws IOException {
-        this.file = new RandomAccessFile(this.path, "rw");
-        if(this.file.length() == 0) 
-            this.file.write(new Bucket<T>(bucketLength, (byte)0, constructor).toByteArray());
-        
-        this.file.close();
+        if(this.open().size() == 0) 
+            this.file.write(0, ByteBuffer.wrap(new Bucket<T>(bucketLength, (byte)0, constructor).toByteArray()));
     }
 
     /**
@@ -356,10 +402,7 @@ public class ExtensibleHash<T extends INode<T>> implements SystemSpecification {
      * @throws IOException
      */
     private long length() throws IOException {
-        this.file = new RandomAccessFile(this.path, "rw");
-        long length = this.file.length();
-        this.file.close();
-        return length;
+        return this.open().size();
     }
 
     /**
@@ -372,11 +415,8 @@ public class ExtensibleHash<T extends INode<T>> implements SystemSpecification {
     private Bucket<T> readBucket(long address) throws IOException {
         if(address == -1) return null;
 
-        this.file = new RandomAccessFile(this.path, "rw");
-        this.file.seek(address);
         byte[] buffer = new byte[this.BUCKET_BYTES];
-        this.file.read(buffer);
-        this.file.close();
+        this.open().read(address, ByteBuffer.wrap(buffer));
 
         return new Bucket<T>(bucketLength, buffer, this.constructor);
     }
@@ -389,9 +429,19 @@ public class ExtensibleHash<T extends INode<T>> implements SystemSpecification {
      * @throws IOException
      */
     private void writeBucket(Bucket<T> bucket, long address) throws IOException {
-        this.file = new RandomAccessFile(this.path, "rw");
-        this.file.seek(address);
-        this.file.write(bucket.toByteArray());
-        this.file.close();
+        this.open().write(address, ByteBuffer.wrap(bucket.toByteArray()));
+    }
+
+    /**
+     * Opens the index file through the buffer pool if it is not already open.
+     * 
+     * @return The file of the index
+     * @throws IOException
+     */
+    private synchronized PagedFile open() throws IOException {
+        if(this.file == null) 
+            this.file = BufferPool.getInstance().open(this.path);
+
+        return this.file;
     }
 }
@@ -2,6 +2,7 @@ package crud.indexes.query;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Random;
 
@@ -78,6 +79,15 @@ public class InvertedIndex {
         this.hash.clear();
     }
 
+    /**
+     * Closes the index file.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        this.hash.close();
+    }
+
     /**
      * Inserts a new phrase in the index.
      *
@@ -134,6 +144,41 @@ public class InvertedIndex {
         return true;
     }
 
+    /**
+     * Inserts a phrase again while the write-ahead log is replayed. The words whose bucket
+     * reached the disk before the crash already hold the address, so they are skipped.
+     *
+     * @param pattern Phrase to be inserted
+     * @param address Address of the register that contains the sentence
+     * @return True if some word was inserted, false if every word already held the address
+     * @throws Exception
+     */
+    public boolean redo(String pattern, long address) throws Exception {
+        String[] strs = this.filter(pattern.trim().toLowerCase().split(" "));
+        boolean inserted = false;
+
+        for(int i = 0; i < strs.length; i++) {
+            if(strs[i].length() > 0 && !this.holds(strs[i], address)) {
+                this.hash.insert(SNode.fit(strs[i]), address);
+                inserted = true;
+            }
+        }
+
+        return inserted;
+    }
+
+    /**
+     * Replaces the address of every phrase by its new address in the given map,
+     * deleting the phrases of registers that no longer exist.
+     *
+     * @param addresses New address of each old address
+     * @return Number of entries deleted
+     * @throws Exception
+     */
+    public int remap(HashMap<Long, Long> addresses) throws Exception {
+        return this.hash.remap(addresses);
+    }
+
     /**
      * Searches for a phrase in the index.
      *
@@ -174,6 +219,26 @@ public class InvertedIndex {
 
     // Private methods
 
+    /**
+     * Checks if a word already holds an address. Every node of its bucket is compared, since
+     * the nodes of a word with several addresses are not ordered by their address.
+     *
+     * @param word Word to be checked
+     * @param address Address of the register
+     * @return True if the word holds the address, false otherwise
+     * @throws IOException
+     */
+    private boolean holds(String word, long address) throws IOException {
+        SNode node = new SNode(word, address);
+        INode<SNode>[] keys = this.hash.readAll(node.getKey());
+
+        for(int i = 0; i < keys.length; i++)
+            if(node.equals(keys[i]))
+                return true;
+
+        return false;
+    }
+
     /**
      * Intersects two arrays of SNode.
      *
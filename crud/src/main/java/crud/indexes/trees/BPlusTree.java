@@ -3,9 +3,18 @@ package crud.indexes.trees;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Constructor;
-
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import crud.base.BufferPool;
+import crud.base.PagedFile;
 import crud.base.StructureValidation;
 import crud.indexes.types.interfaces.INode;
 import logic.SystemSpecification;
@@ -22,7 +31,9 @@ import logic.SystemSpecification;
  * <p>
  * The B+ Tree is used to index the data in the database. The B+ Tree is a file
  * that stores the nodes of the tree. The nodes are pages in the file. The pages
- * are blocks of bytes in the disk, so they have a fixed size.
+ * are blocks of bytes in the disk, so they have a fixed size. The pages are
+ * read and written through the shared {@link crud.base.BufferPool}, so the
+ * upper levels of the tree stay in memory while the tree is being used.
  * </p>
  * 
  * <strong> Logic of the B+ Tree </strong>
@@ -46,10 +57,36 @@ import logic.SystemSpecification;
  * </p>
  *
  * <p>
+ * Every leaf keeps the address of the next leaf, so the leaves form a chain in the
+ * order of the keys. A range of keys is read by descending once to the leaf of the
+ * first key and then following the chain, without going back to the root.
+ * </p>
+ *
+ * <p>
+ * A whole tree can be built at once from its nodes by {@link #bulkLoad(List, double)},
+ * which fills the leaves in the order of the keys and then every upper level from the
+ * level below it, writing each page once and in the order of the file.
+ * </p>
+ *
+ * <p>
  * The B+ Tree have a dynamic order that is defined when the tree is created.
  * The order is the maximum number of keys that a node can have. The order must
  * be greater than 2.
  * </p>
+ *
+ * <p>
+ * A tree created with a page size instead of an order has aligned pages. Its order
+ * is the largest one whose page fits in the page size, the file starts with a header
+ * page holding the root and the format of the tree, and every page is at a multiple
+ * of the page size, so reading a page reads whole blocks of the file. Each aligned page
+ * keeps a checksum of its bytes, which is checked when it is read.
+ * </p>
+ *
+ * <p>
+ * Lookups descend the tree through a {@link PageView} of each page, which binary-searches
+ * the keys where they are stored instead of decoding the whole page, and only decode the
+ * node they return. Each thread reuses the buffer of its own view for every level.
+ * </p>
  * 
  * <p>
  * The B+ Tree uses a minumum number of keys to avoid underflow. The minimum
@@ -69,18 +106,23 @@ import logic.SystemSpecification;
  * @version 1.0.0
  */
 
-public class BPlusTree<T extends INode<T>> implements SystemSpecification {
+public class BPlusTree<T extends INode<T>> implements SystemSpecification, AutoCloseable {
 
     // Attributes
 
     private static final int MIN_ORDER = 3; // Minimum order of the tree
+    private static final int MAGIC = 0x42505452; // Signature of the header page of an aligned tree ("BPTR")
     
     private final int order; // Maximum number of children a node can have
+    private final int pageSize; // Size of the aligned pages, or 0 for packed pages
+    private final int headerBytes; // Size of the header before the first page
     private final String path; // Path of the B+ Tree file
     private final Constructor<T> constructor; // Constructor of the node type
+    private final ThreadLocal<PageView<T>> views; // Views used by the lookups of each thread
     
     private long root = -1; // Address of the root node
-    private RandomAccessFile file; // File of the B+ Tree
+    private boolean formatted = false; // If the file was in another format and was rewritten when opened
+    private PagedFile file; // File of the B+ Tree, kept open until close()
 
     // Delete auxiliar variables
 
@@ -99,6 +141,43 @@ public class BPlusTree<T extends INode<T>> implements SystemSpecification {
      * @param constructor The constructor of the node type.
      */
     public BPlusTree(int order, String path, Constructor<T> constructor) {
+        this(order, path, constructor, 0);
+    }
+
+    /**
+     * Creates a new B+ Tree with aligned pages of {@code BPLUS_TREE_PAGE_SIZE} bytes.
+     * 
+     * @param path The path of the B+ Tree file.
+     * @param constructor The constructor of the node type.
+     * @see #BPlusTree(String, Constructor, int)
+     */
+    public BPlusTree(String path, Constructor<T> constructor) {
+        this(path, constructor, BPLUS_TREE_PAGE_SIZE);
+    }
+
+    /**
+     * Creates a new B+ Tree with aligned pages of the given size. The order is the largest
+     * one whose page fits in the page size. A file that is not an aligned tree with the
+     * same page size and order is rewritten as an empty tree, and {@link #wasFormatted()}
+     * tells it so the tree can be rebuilt.
+     * 
+     * @param path The path of the B+ Tree file.
+     * @param constructor The constructor of the node type.
+     * @param pageSize The size of the pages, a multiple of {@code BLOCK_SIZE}.
+     */
+    public BPlusTree(String path, Constructor<T> constructor, int pageSize) {
+        this(BPlusTree.orderFor(pageSize, constructor), path, constructor, pageSize);
+    }
+
+    /**
+     * Creates a new B+ Tree with the given order, path and page size.
+     * 
+     * @param order The maximum number of children a node can have.
+     * @param path The path of the B+ Tree file.
+     * @param constructor The constructor of the node type.
+     * @param pageSize The size of the aligned pages, or 0 for packed pages.
+     */
+    private BPlusTree(int order, String path, Constructor<T> constructor, int pageSize) {
         if(!path.endsWith(".db"))
             throw new IllegalArgumentException("The B+ Tree name must ends with .db");
 
@@ -110,14 +189,23 @@ public class BPlusTree<T extends INode<T>> implements SystemSpecification {
         this.order = order;
         this.constructor = constructor;
         this.path = INDEXES_FILES_DIRECTORY + path;
-        this.PAGE_BYTES = new Page<T>(order, constructor).BYTES;
+        this.pageSize = pageSize;
+        this.headerBytes = (pageSize > 0) ? pageSize : Long.BYTES;
+        this.PAGE_BYTES = this.newPage().BYTES;
+        this.views = ThreadLocal.withInitial(() -> new PageView<T>(this.PAGE_BYTES, this.newPage().keys[0], pageSize > 0));
 
         if(this.length() > 0) {
             try {
-                this.file = new RandomAccessFile(this.path, "rw");
-                this.file.seek(0);
-                this.root = this.file.readLong();
-                this.file.close();
+                ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + 3 * Integer.BYTES);
+                this.open().read(0, buffer);
+                this.root = buffer.getLong(0);
+
+                if(pageSize > 0 && (this.length() % pageSize != 0 || buffer.getInt(Long.BYTES) != MAGIC
+                    || buffer.getInt(Long.BYTES + Integer.BYTES) != pageSize || buffer.getInt(Long.BYTES + 2 * Integer.BYTES) != order)) {
+                    this.open().truncate(0);
+                    this.init();
+                    this.formatted = true;
+                }
             } catch(IOException e) {
                 System.out.println("It was not possible to open the tree, please try reset() method");
                 e.printStackTrace();
@@ -133,15 +221,60 @@ public class BPlusTree<T extends INode<T>> implements SystemSpecification {
      * @throws IOException
      */
     public void clear() throws IOException {
-        this.file = new RandomAccessFile(this.path, "rw");
-        this.file.setLength(0);
-        this.file.close();
-        
+        this.open().truncate(0);
         this.init();
     }
 
+    /**
+     * Closes the B+ Tree file, writing its modified pages back to the disk.
+     * It is reopened by the next operation that needs it.
+     * 
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if(this.file != null) 
+            this.file.close();
+
+        this.file = null;
+    }
+
     // Public Methods
 
+    /**
+     * Returns the path of the B+ Tree file.
+     *
+     * @return The path of the B+ Tree file.
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * Checks if the file was in another format when the tree was opened, so it was
+     * rewritten as an empty tree and its nodes must be inserted again.
+     *
+     * @return True if the file was rewritten, false otherwise.
+     */
+    public boolean wasFormatted() {
+        return this.formatted;
+    }
+
+    /**
+     * Returns the height of the B+ Tree, counting the root and the leaves.
+     * 
+     * @return The number of levels of the B+ Tree.
+     * @throws IOException
+     */
+    public int height() throws IOException {
+        int height = 1;
+
+        for(Page<T> curr = this.readPage(this.root); curr.children[0] != -1; curr = this.readPage(curr.children[0]))
+            height++;
+
+        return height;
+    }
+
     /**
      * Returns the order of the B+ Tree.
      * 
@@ -150,9 +283,7 @@ public class BPlusTree<T extends INode<T>> implements SystemSpecification {
     public long length() {
         long len = -1;
         try {
-            this.file = new RandomAccessFile(this.path, "rw");
-            len = this.file.length();
-            this.file.close();
+            len = this.open().size();
         } catch(IOException e) {
             System.out.println("Is was not possible to open the B+ tree file");
             e.printStackTrace();
@@ -168,7 +299,140 @@ public class BPlusTree<T extends INode<T>> implements SystemSpecification {
      * @throws IOException 
      */
     public T search(Object key) throws IOException {
-        return this.search(key, this.readPage(this.root));
+        PageView<T> view = this.readView(this.root);
+        while(!view.isLeaf())
+            view = this.readView(view.child(view.childIndex(key)));
+
+        int i = view.find(key);
+        return (i == -1) ? null : view.node(i);
+    }
+
+    /**
+     * Returns the nodes whose keys are between the given keys, both included, in the
+     * order of the keys. The iterator descends to the leaf of the first key once and then
+     * reads the next leaves as it is walked, so only the pages of the range are read.
+     * The tree must not be changed while the iterator is being used.
+     * 
+     * @param from The first key, or null to start at the smallest key.
+     * @param to The last key, or null to go to the largest key.
+     * @return An iterator over the nodes of the range.
+     * @throws IOException
+     */
+    public Iterator<T> range(Object from, Object to) throws IOException {
+        return new RangeIterator(this.readPage(this.leaf(from)), from, to);
+    }
+
+    /**
+     * Rewrites the tree with the given nodes, filling its pages up to {@code BPLUS_TREE_FILL_FACTOR}.
+     * 
+     * @param nodes The nodes of the tree.
+     * @return The number of nodes left out because their keys were repeated.
+     * @throws IOException
+     * @see #bulkLoad(List, double)
+     */
+    public int bulkLoad(List<T> nodes) throws IOException {
+        return this.bulkLoad(nodes, BPLUS_TREE_FILL_FACTOR);
+    }
+
+    /**
+     * Rewrites the tree with the given nodes, building it from the leaves up instead of
+     * inserting the nodes one by one. The nodes are sorted by their keys if they are not
+     * already. As {@link #insert(Object, Object)} does, only the first node of a repeated
+     * key is kept, and the number of nodes left out is returned so the caller can tell the
+     * tree does not have all of them. Every page is filled up to the given fraction of its
+     * keys, never below the minimum of the tree, and written once right after the previous one.
+     * 
+     * @param nodes The nodes of the tree.
+     * @param fillFactor The fraction of the keys of a page that is filled, between 0 and 1.
+     * @return The number of nodes left out because their keys were repeated.
+     * @throws IOException
+     */
+    public int bulkLoad(List<T> nodes, double fillFactor) throws IOException {
+        if(fillFactor <= 0 || fillFactor > 1)
+            throw new IllegalArgumentException("The fill factor must be greater than 0 and at most 1.");
+
+        ArrayList<T> keys = new ArrayList<T>(nodes);
+
+        for(int i = 1; i < keys.size(); i++) {
+            if(keys.get(i - 1).compareTo(keys.get(i)) >= 0) {
+                keys.sort((a, b) -> a.compareTo(b));
+                break;
+            }
+        }
+
+        int unique = 0;
+        for(int i = 0; i < keys.size(); i++)
+            if(unique == 0 || keys.get(unique - 1).compareTo(keys.get(i)) != 0)
+                keys.set(unique++, keys.get(i));
+
+        int repeated = keys.size() - unique;
+        keys.subList(unique, keys.size()).clear();
+
+        this.open().truncate(0);
+        this.init();
+        if(keys.isEmpty())
+            return repeated;
+
+        int min = (int)(Math.ceil(this.order / 2.0)) - 1;
+
+        // Leaves
+        int[] sizes = this.distribute(keys.size(), (int)Math.round((this.order - 1) * fillFactor), Math.max(min, 1), this.order - 1);
+        long address = this.headerBytes;
+        int first = 0;
+
+        ArrayList<T> mins = new ArrayList<T>(sizes.length);
+        ArrayList<Long> addresses = new ArrayList<Long>(sizes.length);
+
+        for(int i = 0; i < sizes.length; i++) {
+            Page<T> page = this.newPage();
+
+            for(int j = 0; j < sizes[i]; j++)
+                page.keys[j] = keys.get(first + j);
+
+            page.keyCount = sizes[i];
+            page.next = (i + 1 < sizes.length) ? address + this.PAGE_BYTES : -1;
+
+            this.writePage(page, address);
+            mins.add(page.keys[0]);
+            addresses.add(address);
+
+            first += sizes[i];
+            address += this.PAGE_BYTES;
+        }
+
+        // Internal levels, each one built from the pages of the level below
+        while(addresses.size() > 1) {
+            sizes = this.distribute(addresses.size(), (int)Math.round(this.order * fillFactor), min + 1, this.order);
+            first = 0;
+
+            ArrayList<T> upperMins = new ArrayList<T>(sizes.length);
+            ArrayList<Long> upperAddresses = new ArrayList<Long>(sizes.length);
+
+            for(int i = 0; i < sizes.length; i++) {
+                Page<T> page = this.newPage();
+                page.children[0] = addresses.get(first);
+
+                for(int j = 1; j < sizes[i]; j++) {
+                    page.keys[j - 1] = mins.get(first + j).clone();
+                    page.children[j] = addresses.get(first + j);
+                }
+
+                page.keyCount = sizes[i] - 1;
+
+                this.writePage(page, address);
+                upperMins.add(mins.get(first));
+                upperAddresses.add(address);
+
+                first += sizes[i];
+                address += this.PAGE_BYTES;
+            }
+
+            mins = upperMins;
+            addresses = upperAddresses;
+        }
+
+        this.updateRoot(addresses.get(0));
+        return repeated;
     }
 
     /**
@@ -184,7 +448,7 @@ public class BPlusTree<T extends INode<T>> implements SystemSpecification {
         node.setKey(key);
         node.setValue(value);
 
-        return this.update(node, this.readPage(this.root));
+        return this.update(node, this.readPage(this.leaf(key)));
     }
 
     /**
@@ -202,7 +466,7 @@ public class BPlusTree<T extends INode<T>> implements SystemSpecification {
         Page<T> newPage = this.insert(node, this.readPage(this.root));
 
         if(newPage != null) {
-            Page<T> newRoot = new Page<T>(this.order, this.constructor);
+            Page<T> newRoot = this.newPage();
             newRoot.children[0] = this.root;
             newRoot.keys[0] = newPage.keys[0].clone();
             newRoot.children[1] = newPage.address;
@@ -256,6 +520,25 @@ public class BPlusTree<T extends INode<T>> implements SystemSpecification {
         return newRoot != null;
     }
 
+    /**
+     * Replaces the value of every key by its new address in the given map, in a single
+     * pass over the leaves. The keys whose value is not in the map point to records
+     * that no longer exist, so they are deleted.
+     * 
+     * @param addresses The new address of each old address.
+     * @return The number of keys deleted.
+     * @throws IOException
+     */
+    public int remap(HashMap<Long, Long> addresses) throws IOException {
+        ArrayList<Object> stale = new ArrayList<>();
+        this.remap(addresses, stale, this.readPage(this.root));
+
+        for(Object key : stale)
+            this.delete(key);
+
+        return stale.size();
+    }
+
     /**
      * Converts the B+ tree to JSON format and stores it in the JSON index directory.
      * 
@@ -286,8 +569,12 @@ public class BPlusTree<T extends INode<T>> implements SystemSpecification {
             throw new IllegalAccessError("The archive \"" + this.path + "\" is not empty. If you want to initialize it anyway use the reset() method.");
 
         try {
-            this.updateRoot(Long.BYTES);
-            this.writePage(new Page<T>(this.order, constructor), Long.BYTES);
+            if(this.pageSize > 0)
+                this.open().write(0, ByteBuffer.allocate(this.headerBytes).putInt(Long.BYTES, MAGIC)
+                    .putInt(Long.BYTES + Integer.BYTES, this.pageSize).putInt(Long.BYTES + 2 * Integer.BYTES, this.order));
+
+            this.updateRoot(this.headerBytes);
+            this.writePage(this.newPage(), this.headerBytes);
             return true;
         } catch (IOException e) {
             e.printStackTrace();
@@ -296,56 +583,64 @@ public class BPlusTree<T extends INode<T>> implements SystemSpecification {
     }
 
     /**
-     * Search the node with the given key in the B+ Tree.
+     * Search the leaf where the node with the given key is, or would be inserted.
      * 
-     * @param key The key of the node.
-     * @param curr The current page.
-     * @return The node with the given key.
+     * @param key The key of the node, or null for the first leaf.
+     * @return The address of the leaf of the key.
      * @throws IOException
      */
-    private T search(Object key, Page<T> curr) throws IOException {
-        if(curr.children[0] == -1) {
-            for(int i = 0; i < curr.keyCount; i++) 
-                if(curr.keys[i].compareTo(key) == 0)
-                    return curr.keys[i];
+    private long leaf(Object key) throws IOException {
+        long address = this.root;
 
-            return null;
-        } else {
-            int i = 0;
-            while(i < curr.keyCount && curr.keys[i].compareTo(key) <= 0) {
-                i++;
-            }
+        for(PageView<T> view = this.readView(address); !view.isLeaf(); view = this.readView(address))
+            address = view.child((key == null) ? 0 : view.childIndex(key));
 
-            return this.search(key, this.readPage(curr.children[i]));
-        }
+        return address;
     }
 
     /**
-     * Search and update the node with the given key in the B+ Tree.
+     * Update the node with the given key in its leaf.
      * 
      * @param key The key of the node.
-     * @param curr The current page.
+     * @param curr The leaf of the key.
      * @return True if the node was updated, false otherwise.
      * @throws IOException
      */
     private boolean update(T key, Page<T> curr) throws IOException {
+        for(int i = 0; i < curr.keyCount; i++) {
+            if(curr.keys[i].compareTo(key) == 0) {
+                curr.keys[i] = key;
+                this.writePage(curr, curr.address);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Replaces the values of the keys in the leaves under the given page.
+     * 
+     * @param addresses The new address of each old address.
+     * @param stale The keys whose value is not in the map.
+     * @param curr The current page.
+     * @throws IOException
+     */
+    private void remap(HashMap<Long, Long> addresses, ArrayList<Object> stale, Page<T> curr) throws IOException {
+        if(curr == null) return;
+
         if(curr.children[0] == -1) {
             for(int i = 0; i < curr.keyCount; i++) {
-                if(curr.keys[i].compareTo(key) == 0) {
-                    curr.keys[i] = key;
-                    this.writePage(curr, curr.address);
-                    return true;
-                }
+                Long address = addresses.get(curr.keys[i].getValue());
+
+                if(address != null) curr.keys[i].setValue(address);
+                else stale.add(curr.keys[i].getKey());
             }
 
-            return false;
+            this.writePage(curr, curr.address);
         } else {
-            int i = 0;
-            while(i < curr.keyCount && curr.keys[i].compareTo(key) <= 0) {
-                i++;
-            }
-            
-            return this.update(key, this.readPage(curr.children[i]));
+            for(int i = 0; i <= curr.keyCount; i++)
+                this.remap(addresses, stale, this.readPage(curr.children[i]));
         }
     }
 
@@ -620,6 +915,33 @@ public class BPlusTree<T extends INode<T>> implements SystemSpecification {
         return newPage;
     }
 
+    /**
+     * Creates an empty page in the format of the tree.
+     * 
+     * @return The page.
+     */
+    private Page<T> newPage() {
+        return new Page<T>(this.order, this.constructor, this.pageSize);
+    }
+
+    /**
+     * Returns the largest order of a node whose aligned page fits in the given size.
+     * 
+     * @param pageSize The size of the pages, a multiple of {@code BLOCK_SIZE}.
+     * @param constructor The constructor of the node type.
+     * @return The order of the tree.
+     */
+    private static <T extends INode<T>> int orderFor(int pageSize, Constructor<T> constructor) {
+        if(pageSize <= 0 || pageSize % BLOCK_SIZE != 0)
+            throw new IllegalArgumentException("The page size must be a multiple of " + BLOCK_SIZE + " bytes.");
+
+        try {
+            return Page.orderFor(pageSize, constructor.newInstance().getBytes());
+        } catch(ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Can not make a new instance of " + constructor.getName() + ".", e);
+        }
+    }
+
     /**
      * Split the current page in two.
      * 
@@ -630,7 +952,7 @@ public class BPlusTree<T extends INode<T>> implements SystemSpecification {
     private Page<T> split(Page<T> curr) throws IOException {
         int mid = curr.keyCount / 2;
 
-        Page<T> page = new Page<T>(order, this.constructor);
+        Page<T> page = this.newPage();
         page.address = this.length();
 
         if(curr.children[0] == -1) {
@@ -659,6 +981,40 @@ public class BPlusTree<T extends INode<T>> implements SystemSpecification {
         return page;
     }
 
+    /**
+     * Splits a number of entries in pages of a bulk load. Every page gets the given number
+     * of entries but the last ones, which are balanced so none of them is below the minimum.
+     * 
+     * @param count The number of entries.
+     * @param fill The number of entries of a full page of the load.
+     * @param min The minimum number of entries of a page.
+     * @param max The maximum number of entries of a page.
+     * @return The number of entries of each page.
+     */
+    private int[] distribute(int count, int fill, int min, int max) {
+        fill = Math.max(min, Math.min(max, fill));
+
+        int pages = (count + fill - 1) / fill;
+        int[] sizes = new int[pages];
+
+        for(int i = 0; i < pages; i++)
+            sizes[i] = Math.min(fill, count - i * fill);
+
+        if(pages > 1 && sizes[pages - 1] < min) {
+            int total = sizes[pages - 2] + sizes[pages - 1];
+
+            if(total <= max) {
+                sizes = Arrays.copyOf(sizes, pages - 1);
+                sizes[pages - 2] = total;
+            } else {
+                sizes[pages - 2] = total - total / 2;
+                sizes[pages - 1] = total / 2;
+            }
+        }
+
+        return sizes;
+    }
+
     /**
      * Returns the minimum key for the given page.
      * 
@@ -712,18 +1068,27 @@ public class BPlusTree<T extends INode<T>> implements SystemSpecification {
     private Page<T> readPage(long address) throws IOException {
         if(address == -1) return null;
 
-        this.file = new RandomAccessFile(this.path, "r");
-        this.file.seek(address);
-
         byte[] buffer = new byte[this.PAGE_BYTES];
-        this.file.read(buffer);
-        Page<T> page = new Page<T>(buffer, this.constructor);
+        this.open().read(address, ByteBuffer.wrap(buffer));
+        Page<T> page = new Page<T>(buffer, this.constructor, this.pageSize > 0);
         page.address = address;
 
-        this.file.close();
         return page;
     }
 
+    /**
+     * Read a page from the B+ Tree file into the view of the current thread, without decoding its keys.
+     * 
+     * @param address The address of the page.
+     * @return The view of the current thread over the page.
+     * @throws IOException
+     */
+    private PageView<T> readView(long address) throws IOException {
+        PageView<T> view = this.views.get();
+        this.open().read(address, view.buffer());
+        return view.load();
+    }
+
     /**
      * Write a page in the B+ Tree file.
      * 
@@ -732,13 +1097,8 @@ public class BPlusTree<T extends INode<T>> implements SystemSpecification {
      * @throws IOException
      */
     private void writePage(Page<T> page, long address) throws IOException {
-        this.file = new RandomAccessFile(this.path, "rw");
-        this.file.seek(address);
-
         byte[] buffer = page.toByteArray();
-        this.file.write(buffer);
-
-        this.file.close();
+        this.open().write(address, ByteBuffer.wrap(buffer));
     }
 
     /**
@@ -748,10 +1108,80 @@ public class BPlusTree<T extends INode<T>> implements SystemSpecification {
      * @throws IOException
      */
     private void updateRoot(long address) throws IOException {
-        this.file = new RandomAccessFile(this.path, "rw");
-        this.file.seek(0);
-        this.file.writeLong(address);
-        this.file.close();
+        this.open().write(0, ByteBuffer.allocate(Long.BYTES).putLong(0, address));
         this.root = address;
     }
+
+    /**
+     * Opens the B+ Tree file through the buffer pool if it is not already open.
+     * 
+     * @return The file of the B+ Tree.
+     * @throws IOException
+     */
+    private synchronized PagedFile open() throws IOException {
+        if(this.file == null) 
+            this.file = BufferPool.getInstance().open(this.path);
+
+        return this.file;
+    }
+
+    // Range Iterator
+
+    /**
+     * Iterator over the nodes of a range of keys, following the chain of leaves.
+     */
+    private class RangeIterator implements Iterator<T> {
+        private final Object to; // Last key of the range, or null
+        private Page<T> page; // Current leaf, or null after the end of the range
+        private int index = 0; // Index of the next key in the current leaf
+
+        /**
+         * Starts the iteration at the first key of the leaf not smaller than the first key of the range.
+         * 
+         * @param page The leaf of the first key.
+         * @param from The first key of the range, or null.
+         * @param to The last key of the range, or null.
+         * @throws IOException
+         */
+        RangeIterator(Page<T> page, Object from, Object to) throws IOException {
+            this.page = page;
+            this.to = to;
+
+            while(from != null && this.advance() && this.page.keys[this.index].compareTo(from) < 0) {
+                this.index++;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                return this.advance() && (this.to == null || this.page.keys[this.index].compareTo(this.to) <= 0);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public T next() {
+            if(!this.hasNext())
+                throw new NoSuchElementException();
+
+            return this.page.keys[this.index++];
+        }
+
+        /**
+         * Moves to the next leaf while the current one has no keys left.
+         * 
+         * @return True if there is a key to read, false at the end of the chain.
+         * @throws IOException
+         */
+        private boolean advance() throws IOException {
+            while(this.page != null && this.index >= this.page.keyCount) {
+                this.page = BPlusTree.this.readPage(this.page.next);
+                this.index = 0;
+            }
+
+            return this.page != null;
+        }
+    }
 }
@@ -6,9 +6,12 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.zip.CRC32;
 
 import crud.indexes.types.interfaces.INode;
+import err.DatabaseValidationException;
 
 /**
  * <strong> A generic Page implementation for a B+ tree. </strong>
@@ -25,6 +28,12 @@ import crud.indexes.types.interfaces.INode;
  * the tree.
  * </p>
  * 
+ * <p>
+ * A page can be packed, taking only the bytes of its keys and children, or aligned,
+ * taking a whole block of the file. An aligned page starts with a checksum of the rest
+ * of its bytes, which is checked when it is read, and is padded up to its size.
+ * </p>
+ * 
  * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
  * @see crud.indexes.trees.BPlusTree
  * @see crud.indexes.types.interfaces.INode
@@ -34,8 +43,11 @@ public class Page<T extends INode<T>> {
     
     // Attributes
 
+    public static final int CHECKSUM_BYTES = Integer.BYTES; // Size of the checksum of an aligned page
+
     private int order; // Maximum number of keys
     private final Constructor<T> constructor; // Constructor of the keys
+    private final boolean aligned; // If the page takes a whole block and has a checksum
 
     public T[] keys; // Keys
     public long[] children; // Children
@@ -49,15 +61,27 @@ public class Page<T extends INode<T>> {
     // Constructors
 
     /**
-     * Creates a new page with the specified order and constructor.
+     * Creates a new packed page with the specified order and constructor.
      * 
      * @param order Maximum number of keys
      * @param constructor Constructor of the keys
      */
-    @SuppressWarnings("unchecked")
     public Page(int order, Constructor<T> constructor) {
+        this(order, constructor, 0);
+    }
+
+    /**
+     * Creates a new page with the specified order, constructor and size.
+     * 
+     * @param order Maximum number of keys
+     * @param constructor Constructor of the keys
+     * @param size Size of an aligned page in bytes, or 0 for a packed page
+     */
+    @SuppressWarnings("unchecked")
+    public Page(int order, Constructor<T> constructor, int size) {
         this.order = order;
         this.constructor = constructor;
+        this.aligned = size > 0;
         this.keys = (T[])new INode[order];
         this.children = new long[order + 1];
         this.next = -1;
@@ -74,11 +98,11 @@ public class Page<T extends INode<T>> {
 
         this.children[this.order] = -1;
 
-        this.BYTES = Integer.BYTES + // order
-                     Integer.BYTES + // keyCount
-                     order * this.keys[0].getBytes() + // keys
-                     (order + 1) * Long.BYTES + // children
-                     Long.BYTES; // next
+        int bytes = Page.bytes(order, this.keys[0].getBytes(), this.aligned);
+        if(bytes > size && this.aligned)
+            throw new IllegalArgumentException("A page of order " + order + " does not fit in " + size + " bytes.");
+
+        this.BYTES = this.aligned ? size : bytes;
     }
 
     /**
@@ -89,13 +113,67 @@ public class Page<T extends INode<T>> {
      * @throws IOException
      */
     public Page(byte[] buffer, Constructor<T> constructor) throws IOException {
+        this(buffer, constructor, false);
+    }
+
+    /**
+     * Creates a new page from a byte array with the specified constructor. The checksum
+     * of an aligned page is checked before its keys are read.
+     * 
+     * @param buffer Byte array
+     * @param constructor Constructor of the keys
+     * @param aligned If the page is aligned, taking the whole byte array
+     * @throws IOException
+     * @throws DatabaseValidationException if the checksum of an aligned page does not match its bytes
+     */
+    public Page(byte[] buffer, Constructor<T> constructor, boolean aligned) throws IOException {
         this.constructor = constructor;
+        this.aligned = aligned;
         this.fromByteArray(buffer);
-        this.BYTES = Integer.BYTES + // order
-                     Integer.BYTES + // keyCount
-                     order * this.keys[0].getBytes() + // keys
-                     (order + 1) * Long.BYTES + // children
-                     Long.BYTES; // next
+        this.BYTES = aligned ? buffer.length : Page.bytes(this.order, this.keys[0].getBytes(), false);
+    }
+
+    // Static Methods
+
+    /**
+     * Returns the size in bytes of the keys, children and header of a page.
+     * 
+     * @param order Maximum number of keys
+     * @param keyBytes Size of a key in bytes
+     * @param aligned If the page has a checksum
+     * @return Size of the page in bytes, without padding
+     */
+    public static int bytes(int order, int keyBytes, boolean aligned) {
+        return (aligned ? CHECKSUM_BYTES : 0) + // checksum
+               Integer.BYTES + // order
+               Integer.BYTES + // keyCount
+               order * keyBytes + // keys
+               (order + 1) * Long.BYTES + // children
+               Long.BYTES; // next
+    }
+
+    /**
+     * Returns the checksum of an aligned page, computed over every byte after the checksum.
+     * 
+     * @param buffer Bytes of the page
+     * @param length Size of the page in bytes
+     * @return Checksum of the page
+     */
+    static int checksum(byte[] buffer, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer, CHECKSUM_BYTES, length - CHECKSUM_BYTES);
+        return (int)crc.getValue();
+    }
+
+    /**
+     * Returns the largest order of an aligned page that fits in the given size.
+     * 
+     * @param size Size of the page in bytes
+     * @param keyBytes Size of a key in bytes
+     * @return Maximum number of keys of the page
+     */
+    public static int orderFor(int size, int keyBytes) {
+        return (size - Page.bytes(0, keyBytes, true)) / (keyBytes + Long.BYTES);
     }
 
 
@@ -126,9 +204,12 @@ public class Page<T extends INode<T>> {
      * @throws IOException
      */
     public byte[] toByteArray() throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(this.BYTES);
         DataOutputStream dos = new DataOutputStream(baos);
         
+        if(this.aligned)
+            dos.writeInt(0);
+
         dos.writeInt(this.order);
         dos.writeInt(this.keyCount);
 
@@ -144,6 +225,12 @@ public class Page<T extends INode<T>> {
 
         dos.close();
         baos.close();
+
+        if(this.aligned) {
+            buffer = Arrays.copyOf(buffer, this.BYTES);
+            ByteBuffer.wrap(buffer).putInt(0, Page.checksum(buffer, buffer.length));
+        }
+
         return buffer;
     }
 
@@ -158,6 +245,9 @@ public class Page<T extends INode<T>> {
         ByteArrayInputStream bais = new ByteArrayInputStream(buffer);
         DataInputStream dis = new DataInputStream(bais);
 
+        if(this.aligned && dis.readInt() != Page.checksum(buffer, buffer.length))
+            throw new DatabaseValidationException("The checksum of the B+ Tree page does not match its bytes.");
+
         this.order = dis.readInt();
         this.keyCount = dis.readInt();
 
@@ -0,0 +1,207 @@
+package crud.indexes.trees;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import crud.indexes.types.interfaces.INode;
+import err.DatabaseValidationException;
+
+/**
+ * <strong> A read-only view over the bytes of a B+ tree page. </strong>
+ * 
+ * <p>
+ * A {@link Page} decodes every key of the page when it is read. The view keeps the
+ * page as it is stored and reads its fields at their offsets instead, so a lookup
+ * binary-searches the keys in place through {@link INode#compareTo(ByteBuffer, int, Object)}
+ * and only decodes the node it is looking for. A view can be filled again with another
+ * page, so a single buffer serves every level of a descent.
+ * </p>
+ * 
+ * <p>
+ * The bytes follow the layout of {@link Page#toByteArray()}: the checksum of an aligned
+ * page, the order, the number of keys, the children and keys interleaved, the last child
+ * and the address of the next leaf.
+ * </p>
+ * 
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.indexes.trees.Page
+ * @see crud.indexes.trees.BPlusTree
+ * @version 1.0.0
+ */
+public class PageView<T extends INode<T>> {
+
+    // Attributes
+
+    private final ByteBuffer buffer; // Bytes of the page
+    private final T prototype; // Node used to compare and decode the stored keys
+    private final boolean aligned; // If the page takes a whole block and has a checksum
+    private final int keyBytes; // Size of a key in bytes
+    private final int start; // Position of the first child
+
+    private int order; // Maximum number of keys
+    private int keyCount; // Number of keys
+
+    // Constructors
+
+    /**
+     * Creates a view over pages of the specified size.
+     * 
+     * @param bytes Size of the page in bytes
+     * @param prototype Node used to compare and decode the stored keys
+     * @param aligned If the pages are aligned
+     */
+    public PageView(int bytes, T prototype, boolean aligned) {
+        this.buffer = ByteBuffer.allocate(bytes);
+        this.prototype = prototype;
+        this.aligned = aligned;
+        this.keyBytes = prototype.getBytes();
+        this.start = (aligned ? Page.CHECKSUM_BYTES : 0) + 2 * Integer.BYTES;
+    }
+
+    // Methods
+
+    /**
+     * Returns the buffer that holds the bytes of the page, to be filled by the reader.
+     * 
+     * @return Buffer of the page, cleared
+     */
+    public ByteBuffer buffer() {
+        return this.buffer.clear();
+    }
+
+    /**
+     * Reads the header of the page just written in the buffer, checking the checksum of an aligned page.
+     * 
+     * @return This view
+     * @throws DatabaseValidationException if the checksum of an aligned page does not match its bytes
+     */
+    public PageView<T> load() {
+        int base = this.start - 2 * Integer.BYTES;
+
+        if(this.aligned && this.buffer.getInt(0) != Page.checksum(this.buffer.array(), this.buffer.capacity()))
+            throw new DatabaseValidationException("The checksum of the B+ Tree page does not match its bytes.");
+
+        this.order = this.buffer.getInt(base);
+        this.keyCount = this.buffer.getInt(base + Integer.BYTES);
+        return this;
+    }
+
+    /**
+     * Returns the number of keys of the page.
+     * 
+     * @return Number of keys
+     */
+    public int keyCount() {
+        return this.keyCount;
+    }
+
+    /**
+     * Identifies if the page is a leaf.
+     * 
+     * @return True if the page has no children, false otherwise
+     */
+    public boolean isLeaf() {
+        return this.child(0) == -1;
+    }
+
+    /**
+     * Returns the address of the child at the given index.
+     * 
+     * @param index Index of the child, between 0 and {@code keyCount}
+     * @return Address of the child, or -1
+     */
+    public long child(int index) {
+        return this.buffer.getLong(this.start + index * (Long.BYTES + this.keyBytes));
+    }
+
+    /**
+     * Returns the address of the next leaf.
+     * 
+     * @return Address of the next leaf, or -1
+     */
+    public long next() {
+        return this.buffer.getLong(this.start + this.order * (Long.BYTES + this.keyBytes) + Long.BYTES);
+    }
+
+    /**
+     * Returns the index of the child of an internal page that may hold the given key,
+     * which is the number of keys of the page not greater than it.
+     * 
+     * @param key The key
+     * @return Index of the child
+     * @throws IOException
+     */
+    public int childIndex(Object key) throws IOException {
+        int lo = 0, hi = this.keyCount;
+
+        while(lo < hi) {
+            int mid = (lo + hi) >>> 1;
+
+            if(this.compare(mid, key) <= 0) lo = mid + 1;
+            else hi = mid;
+        }
+
+        return lo;
+    }
+
+    /**
+     * Returns the index of the given key in a leaf.
+     * 
+     * @param key The key
+     * @return Index of the key, or -1 if the leaf does not have it
+     * @throws IOException
+     */
+    public int find(Object key) throws IOException {
+        int lo = 0, hi = this.keyCount - 1;
+
+        while(lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = this.compare(mid, key);
+
+            if(cmp == 0) return mid;
+            else if(cmp < 0) lo = mid + 1;
+            else hi = mid - 1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Decodes the node at the given index.
+     * 
+     * @param index Index of the key
+     * @return A new node with the key and value stored at the index
+     * @throws IOException
+     */
+    public T node(int index) throws IOException {
+        byte[] bytes = new byte[this.keyBytes];
+        this.buffer.get(this.offset(index), bytes);
+
+        T node = this.prototype.clone();
+        node.fromByteArray(bytes);
+        return node;
+    }
+
+    /**
+     * Compares the key at the given index to the specified key.
+     * 
+     * @param index Index of the stored key
+     * @param key The key
+     * @return The comparison of the stored key to the key
+     * @throws IOException
+     */
+    private int compare(int index, Object key) throws IOException {
+        return this.prototype.compareTo(this.buffer, this.offset(index), key);
+    }
+
+    /**
+     * Returns the position of the key at the given index.
+     * 
+     * @param index Index of the key
+     * @return Position of the key in the buffer
+     */
+    private int offset(int index) {
+        return this.start + index * (Long.BYTES + this.keyBytes) + Long.BYTES;
+    }
+
+}
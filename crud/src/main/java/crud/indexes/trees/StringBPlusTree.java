@@ -0,0 +1,768 @@
+package crud.indexes.trees;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+import crud.base.BufferPool;
+import crud.base.PagedFile;
+import crud.base.StructureValidation;
+import logic.SystemSpecification;
+
+/**
+ * <strong> A B+ Tree with variable-length string keys. </strong>
+ *
+ * <p>
+ * The tree maps string keys to {@code long} values, as the addresses of the records
+ * that have them. A key can have several values, so it can index an attribute that is
+ * not unique, and the values of a key are kept in the order they were inserted. Keys are
+ * ordered by their UTF-8 bytes and are stored whole, without padding or truncation, up
+ * to {@link #maxKeyBytes()} bytes.
+ * </p>
+ *
+ * <p>
+ * The pages are {@link StringPage}s of {@code BPLUS_TREE_PAGE_SIZE} bytes at aligned
+ * offsets, after a header page holding the root. A page holds as many keys as fit in
+ * its bytes and writes the prefix shared by its keys only once. When a leaf is split,
+ * the separator moved to its parent is the shortest prefix of the first key on the right
+ * that is still greater than the last key on the left, so the internal pages keep short
+ * keys and a high fan-out.
+ * </p>
+ *
+ * <p>
+ * The leaves form a chain in the order of the keys, so a range of keys, or every key
+ * starting with a prefix, is read by descending once to its first leaf and following the
+ * chain. Deleting a key does not merge its leaf with its neighbours: the pages left
+ * sparse by deletes are packed again when the tree is rebuilt by {@link #bulkLoad(List)}.
+ * </p>
+ *
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.indexes.trees.StringPage
+ * @see crud.indexes.trees.BPlusTree
+ * @version 1.0.0
+ */
+public class StringBPlusTree implements SystemSpecification, AutoCloseable {
+
+    // Attributes
+
+    private static final int MAGIC = 0x53425054; // Signature of the header page ("SBPT")
+
+    private final String path; // Path of the B+ Tree file
+    private final int pageSize; // Size of the pages
+
+    private long root = -1; // Address of the root node
+    private boolean formatted = false; // If the file was in another format and was rewritten when opened
+    private PagedFile file; // File of the B+ Tree, kept open until close()
+
+    // Constructors
+
+    /**
+     * Creates a new B+ Tree with pages of {@code BPLUS_TREE_PAGE_SIZE} bytes.
+     *
+     * @param path The path of the B+ Tree file.
+     */
+    public StringBPlusTree(String path) {
+        this(path, BPLUS_TREE_PAGE_SIZE);
+    }
+
+    /**
+     * Creates a new B+ Tree with pages of the given size. A file that is not a tree of
+     * string keys with the same page size is rewritten as an empty tree, and
+     * {@link #wasFormatted()} tells it so the tree can be rebuilt.
+     *
+     * @param path The path of the B+ Tree file.
+     * @param pageSize The size of the pages, a multiple of {@code BLOCK_SIZE}.
+     */
+    public StringBPlusTree(String path, int pageSize) {
+        if(!path.endsWith(".db"))
+            throw new IllegalArgumentException("The B+ Tree name must ends with .db");
+
+        if(pageSize <= 0 || pageSize % BLOCK_SIZE != 0)
+            throw new IllegalArgumentException("The page size must be a multiple of " + BLOCK_SIZE + " bytes.");
+
+        StructureValidation.createIndexesDirectory();
+
+        this.path = INDEXES_FILES_DIRECTORY + path;
+        this.pageSize = pageSize;
+
+        try {
+            if(this.length() > 0) {
+                ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + 2 * Integer.BYTES);
+                this.open().read(0, buffer);
+                this.root = buffer.getLong(0);
+
+                if(this.length() % pageSize != 0 || buffer.getInt(Long.BYTES) != MAGIC || buffer.getInt(Long.BYTES + Integer.BYTES) != pageSize) {
+                    this.open().truncate(0);
+                    this.init();
+                    this.formatted = true;
+                }
+            } else this.init();
+        } catch(IOException e) {
+            System.out.println("It was not possible to open the tree, please try clear() method");
+            e.printStackTrace();
+        }
+    }
+
+    // Initialize Methods
+
+    /**
+     * Rewrite and initialize the B+ Tree file.
+     *
+     * @throws IOException
+     */
+    public void clear() throws IOException {
+        this.open().truncate(0);
+        this.init();
+    }
+
+    /**
+     * Closes the B+ Tree file, writing its modified pages back to the disk.
+     * It is reopened by the next operation that needs it.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if(this.file != null)
+            this.file.close();
+
+        this.file = null;
+    }
+
+    // Public Methods
+
+    /**
+     * Returns the path of the B+ Tree file.
+     *
+     * @return The path of the B+ Tree file.
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * Checks if the file was in another format when the tree was opened, so it was
+     * rewritten as an empty tree and its keys must be inserted again.
+     *
+     * @return True if the file was rewritten, false otherwise.
+     */
+    public boolean wasFormatted() {
+        return this.formatted;
+    }
+
+    /**
+     * Returns the size of the B+ Tree file.
+     *
+     * @return The size of the file in bytes.
+     */
+    public long length() {
+        long len = -1;
+        try {
+            len = this.open().size();
+        } catch(IOException e) {
+            System.out.println("Is was not possible to open the B+ tree file");
+            e.printStackTrace();
+        }
+        return len;
+    }
+
+    /**
+     * Returns the largest key the tree accepts, so that a split page always fits its halves.
+     *
+     * @return The maximum size of a key in bytes.
+     */
+    public int maxKeyBytes() {
+        return Math.min(Short.MAX_VALUE, (this.pageSize - StringPage.HEADER_BYTES - Long.BYTES) / 4 - StringPage.ENTRY_BYTES);
+    }
+
+    /**
+     * Returns the height of the B+ Tree, counting the root and the leaves.
+     *
+     * @return The number of levels of the B+ Tree.
+     * @throws IOException
+     */
+    public int height() throws IOException {
+        int height = 1;
+
+        for(StringPage curr = this.readPage(this.root); !curr.leaf; curr = this.readPage(curr.values.get(0)))
+            height++;
+
+        return height;
+    }
+
+    /**
+     * Returns the first value of the given key.
+     *
+     * @param key The key.
+     * @return The value inserted first for the key, or null if the tree does not have it.
+     * @throws IOException
+     */
+    public Long search(String key) throws IOException {
+        Iterator<Map.Entry<String, Long>> it = this.range(key, key);
+        return it.hasNext() ? it.next().getValue() : null;
+    }
+
+    /**
+     * Returns the keys between the given keys, both included, with their values, in the
+     * order of the keys. The iterator descends to the leaf of the first key once and then
+     * reads the next leaves as it is walked. The tree must not be changed while the
+     * iterator is being used.
+     *
+     * @param from The first key, or null to start at the smallest key.
+     * @param to The last key, or null to go to the largest key.
+     * @return An iterator over the keys of the range and their values.
+     * @throws IOException
+     */
+    public Iterator<Map.Entry<String, Long>> range(String from, String to) throws IOException {
+        byte[] last = (to == null) ? null : to.getBytes(StandardCharsets.UTF_8);
+        return new RangeIterator(this.bytes(from), (key) -> last == null || StringPage.compare(key, last) <= 0);
+    }
+
+    /**
+     * Returns the keys starting with the given prefix, with their values, in the order of the keys.
+     *
+     * @param prefix The prefix of the keys.
+     * @return An iterator over the keys with the prefix and their values.
+     * @throws IOException
+     * @see #range(String, String)
+     */
+    public Iterator<Map.Entry<String, Long>> prefix(String prefix) throws IOException {
+        byte[] first = prefix.getBytes(StandardCharsets.UTF_8);
+        return new RangeIterator(first, (key) -> StringPage.commonPrefix(key, first) == first.length);
+    }
+
+    /**
+     * Inserts a new value for the given key, after the values the key already has.
+     *
+     * @param key The key.
+     * @param value The value.
+     * @throws IOException
+     */
+    public void insert(String key, long value) throws IOException {
+        byte[] bytes = this.bytes(key);
+
+        ArrayList<StringPage> path = new ArrayList<StringPage>();
+        StringPage curr = this.readPage(this.root);
+
+        while(!curr.leaf) {
+            path.add(curr);
+            curr = this.readPage(curr.values.get(curr.upperBound(bytes)));
+        }
+
+        int idx = curr.upperBound(bytes);
+        curr.keys.add(idx, bytes);
+        curr.values.add(idx, value);
+
+        if(curr.fits()) {
+            this.writePage(curr, curr.address);
+            return;
+        }
+
+        // Split the leaf, then every parent that no longer fits
+        StringPage right = this.split(curr);
+        byte[] separator = StringPage.separator(curr.keys.get(curr.keyCount() - 1), right.keys.get(0));
+
+        for(int level = path.size() - 1; right != null; level--) {
+            if(level < 0) {
+                StringPage newRoot = new StringPage(this.pageSize, false);
+                newRoot.values.add(this.root);
+                newRoot.keys.add(separator);
+                newRoot.values.add(right.address);
+
+                long address = this.length();
+                this.writePage(newRoot, address);
+                this.updateRoot(address);
+                break;
+            }
+
+            StringPage parent = path.get(level);
+            int i = parent.upperBound(separator);
+            parent.keys.add(i, separator);
+            parent.values.add(i + 1, right.address);
+
+            if(parent.fits()) {
+                this.writePage(parent, parent.address);
+                break;
+            }
+
+            int mid = this.half(parent);
+            byte[] promoted = parent.keys.get(mid);
+
+            right = new StringPage(this.pageSize, false);
+            right.keys.addAll(parent.keys.subList(mid + 1, parent.keyCount()));
+            right.values.addAll(parent.values.subList(mid + 1, parent.values.size()));
+            parent.keys.subList(mid, parent.keyCount()).clear();
+            parent.values.subList(mid + 1, parent.values.size()).clear();
+
+            right.address = this.length();
+            this.writePage(right, right.address);
+            this.writePage(parent, parent.address);
+
+            separator = promoted;
+        }
+    }
+
+    /**
+     * Deletes the given value of the given key.
+     *
+     * @param key The key.
+     * @param value The value.
+     * @return True if the key had the value, false otherwise.
+     * @throws IOException
+     */
+    public boolean delete(String key, long value) throws IOException {
+        return this.replace(key, value, null);
+    }
+
+    /**
+     * Replaces the given value of the given key by a new one.
+     *
+     * @param key The key.
+     * @param oldValue The value to be replaced.
+     * @param newValue The new value.
+     * @return True if the key had the old value, false otherwise.
+     * @throws IOException
+     */
+    public boolean update(String key, long oldValue, long newValue) throws IOException {
+        return this.replace(key, oldValue, newValue);
+    }
+
+    /**
+     * Replaces every value by its new address in the given map, in a single pass over
+     * the leaves. The values that are not in the map point to records that no longer
+     * exist, so they are deleted with their keys.
+     *
+     * @param addresses The new address of each old address.
+     * @return The number of keys deleted.
+     * @throws IOException
+     */
+    public int remap(HashMap<Long, Long> addresses) throws IOException {
+        int stale = 0;
+
+        for(StringPage leaf = this.readPage(this.leaf(null)); leaf != null; leaf = this.readPage(leaf.next)) {
+            for(int i = leaf.keyCount() - 1; i >= 0; i--) {
+                Long address = addresses.get(leaf.values.get(i));
+
+                if(address != null) {
+                    leaf.values.set(i, address);
+                } else {
+                    leaf.keys.remove(i);
+                    leaf.values.remove(i);
+                    stale++;
+                }
+            }
+
+            this.writePage(leaf, leaf.address);
+        }
+
+        return stale;
+    }
+
+    /**
+     * Rewrites the tree with the given keys and values, filling its pages up to {@code BPLUS_TREE_FILL_FACTOR}.
+     *
+     * @param entries The keys and their values.
+     * @throws IOException
+     * @see #bulkLoad(List, double)
+     */
+    public void bulkLoad(List<Map.Entry<String, Long>> entries) throws IOException {
+        this.bulkLoad(entries, BPLUS_TREE_FILL_FACTOR);
+    }
+
+    /**
+     * Rewrites the tree with the given keys and values, building it from the leaves up
+     * instead of inserting them one by one. The entries are sorted by their keys, keeping
+     * the order of the values of a key. Every page is filled up to the given fraction of
+     * its bytes and written once right after the previous one.
+     *
+     * @param entries The keys and their values.
+     * @param fillFactor The fraction of the bytes of a page that is filled, between 0 and 1.
+     * @throws IOException
+     */
+    public void bulkLoad(List<Map.Entry<String, Long>> entries, double fillFactor) throws IOException {
+        if(fillFactor <= 0 || fillFactor > 1)
+            throw new IllegalArgumentException("The fill factor must be greater than 0 and at most 1.");
+
+        ArrayList<byte[]> keys = new ArrayList<byte[]>(entries.size());
+        ArrayList<Integer> order = new ArrayList<Integer>(entries.size());
+
+        for(int i = 0; i < entries.size(); i++) {
+            keys.add(this.bytes(entries.get(i).getKey()));
+            order.add(i);
+        }
+
+        order.sort((a, b) -> StringPage.compare(keys.get(a), keys.get(b)));
+
+        this.clear();
+        if(entries.isEmpty())
+            return;
+
+        int fill = Math.min(Math.max((int)(this.pageSize * fillFactor), this.pageSize / 2), this.pageSize - StringPage.ENTRY_BYTES - this.maxKeyBytes());
+        long address = this.pageSize;
+
+        // Leaves, with the separator before each one
+        ArrayList<StringPage> level = new ArrayList<StringPage>();
+        ArrayList<byte[]> separators = new ArrayList<byte[]>();
+
+        StringPage page = new StringPage(this.pageSize, true);
+        int bytes = StringPage.HEADER_BYTES;
+
+        for(int i : order) {
+            byte[] key = keys.get(i);
+
+            if(page.keyCount() > 0 && bytes + StringPage.ENTRY_BYTES + key.length > fill) {
+                level.add(page);
+                page = new StringPage(this.pageSize, true);
+                bytes = StringPage.HEADER_BYTES;
+            }
+
+            if(page.keyCount() == 0 && !level.isEmpty()) {
+                StringPage prev = level.get(level.size() - 1);
+                separators.add(StringPage.separator(prev.keys.get(prev.keyCount() - 1), key));
+            }
+
+            page.keys.add(key);
+            page.values.add(entries.get(i).getValue());
+            bytes += StringPage.ENTRY_BYTES + key.length;
+        }
+
+        level.add(page);
+
+        for(int i = 0; i < level.size(); i++) {
+            level.get(i).address = address;
+            level.get(i).next = (i + 1 < level.size()) ? address + this.pageSize : -1;
+            this.writePage(level.get(i), address);
+            address += this.pageSize;
+        }
+
+        // Internal levels, each one built from the pages of the level below
+        while(level.size() > 1) {
+            ArrayList<StringPage> upper = new ArrayList<StringPage>();
+            ArrayList<byte[]> upperSeparators = new ArrayList<byte[]>();
+
+            page = new StringPage(this.pageSize, false);
+            page.values.add(level.get(0).address);
+            bytes = StringPage.HEADER_BYTES + Long.BYTES;
+
+            for(int i = 1; i < level.size(); i++) {
+                byte[] separator = separators.get(i - 1);
+
+                if(page.keyCount() > 0 && bytes + StringPage.ENTRY_BYTES + separator.length > fill && level.size() - i > 1) {
+                    upper.add(page);
+                    upperSeparators.add(separator);
+
+                    page = new StringPage(this.pageSize, false);
+                    page.values.add(level.get(i).address);
+                    bytes = StringPage.HEADER_BYTES + Long.BYTES;
+                    continue;
+                }
+
+                page.keys.add(separator);
+                page.values.add(level.get(i).address);
+                bytes += StringPage.ENTRY_BYTES + separator.length;
+            }
+
+            upper.add(page);
+
+            for(StringPage p : upper) {
+                p.address = address;
+                this.writePage(p, address);
+                address += this.pageSize;
+            }
+
+            level = upper;
+            separators = upperSeparators;
+        }
+
+        this.updateRoot(level.get(0).address);
+    }
+
+    /**
+     * Converts the B+ tree to JSON format and stores it in the JSON index directory.
+     *
+     * @throws IOException
+     */
+    public void toJsonFile() throws IOException {
+        StructureValidation.createJSONIndexDirectory();
+
+        String[] strs = this.path.split("/");
+
+        StringBuffer sb = new StringBuffer("[\n{\n\t\"root\": " + root + ",\n\t\"pageSize\": " + this.pageSize + "\n},\n");
+        this.toJsonFile(sb, this.readPage(this.root));
+
+        BufferedWriter br = new BufferedWriter(new FileWriter(JSON_INDEXES_DIRECTORY + strs[strs.length - 1].replace(".db", ".json")));
+        br.write(sb.toString().substring(0, sb.length() - 2) + "\n]");
+        br.close();
+    }
+
+    // Private Methods
+
+    /**
+     * Initialize the B+ Tree file with its header page and an empty root.
+     *
+     * @throws IOException
+     */
+    private void init() throws IOException {
+        this.open().write(0, ByteBuffer.allocate(this.pageSize).putInt(Long.BYTES, MAGIC).putInt(Long.BYTES + Integer.BYTES, this.pageSize));
+        this.updateRoot(this.pageSize);
+        this.writePage(new StringPage(this.pageSize, true), this.pageSize);
+    }
+
+    /**
+     * Converts a key to its bytes, checking that it fits in the tree.
+     *
+     * @param key The key, or null.
+     * @return The UTF-8 bytes of the key, or null.
+     */
+    private byte[] bytes(String key) {
+        if(key == null)
+            return null;
+
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        if(bytes.length > this.maxKeyBytes())
+            throw new IllegalArgumentException("The key has " + bytes.length + " bytes, more than the " + this.maxKeyBytes() + " bytes a key of the B+ Tree can have.");
+
+        return bytes;
+    }
+
+    /**
+     * Search the first leaf that may hold the given key.
+     *
+     * @param key The key, or null for the first leaf.
+     * @return The address of the leaf.
+     * @throws IOException
+     */
+    private long leaf(byte[] key) throws IOException {
+        long address = this.root;
+
+        for(StringPage curr = this.readPage(address); !curr.leaf; curr = this.readPage(address))
+            address = curr.values.get((key == null) ? 0 : curr.lowerBound(key));
+
+        return address;
+    }
+
+    /**
+     * Replaces or deletes the given value of the given key, following the chain of leaves
+     * from the first one that may hold the key.
+     *
+     * @param key The key.
+     * @param value The value to be replaced.
+     * @param newValue The new value, or null to delete the key.
+     * @return True if the key had the value, false otherwise.
+     * @throws IOException
+     */
+    private boolean replace(String key, long value, Long newValue) throws IOException {
+        byte[] bytes = this.bytes(key);
+
+        for(StringPage leaf = this.readPage(this.leaf(bytes)); leaf != null; leaf = this.readPage(leaf.next)) {
+            for(int i = leaf.lowerBound(bytes); i < leaf.keyCount(); i++) {
+                if(StringPage.compare(leaf.keys.get(i), bytes) != 0)
+                    return false;
+
+                if(leaf.values.get(i) == value) {
+                    if(newValue != null) {
+                        leaf.values.set(i, newValue);
+                    } else {
+                        leaf.keys.remove(i);
+                        leaf.values.remove(i);
+                    }
+
+                    this.writePage(leaf, leaf.address);
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Moves the second half of the bytes of a leaf to a new leaf, written at the end of the file.
+     *
+     * @param curr The leaf.
+     * @return The new leaf.
+     * @throws IOException
+     */
+    private StringPage split(StringPage curr) throws IOException {
+        int mid = this.half(curr);
+
+        StringPage page = new StringPage(this.pageSize, true);
+        page.keys.addAll(curr.keys.subList(mid, curr.keyCount()));
+        page.values.addAll(curr.values.subList(mid, curr.values.size()));
+        curr.keys.subList(mid, curr.keyCount()).clear();
+        curr.values.subList(mid, curr.values.size()).clear();
+
+        page.address = this.length();
+        page.next = curr.next;
+        curr.next = page.address;
+
+        this.writePage(page, page.address);
+        this.writePage(curr, curr.address);
+        return page;
+    }
+
+    /**
+     * Returns the index of the key that splits the bytes of the keys of a page in two halves.
+     *
+     * @param curr The page.
+     * @return An index between 1 and the number of keys minus 1.
+     */
+    private int half(StringPage curr) {
+        int total = 0;
+        for(byte[] key : curr.keys)
+            total += StringPage.ENTRY_BYTES + key.length;
+
+        int bytes = 0, i = 0;
+        while(i < curr.keyCount() - 1 && bytes + (StringPage.ENTRY_BYTES + curr.keys.get(i).length) / 2 < total / 2)
+            bytes += StringPage.ENTRY_BYTES + curr.keys.get(i++).length;
+
+        return Math.max(1, Math.min(i, curr.keyCount() - 1));
+    }
+
+    /**
+     * Converts the B+ Tree to JSON format.
+     *
+     * @param sb The string buffer.
+     * @param curr The current page.
+     * @throws IOException
+     */
+    private void toJsonFile(StringBuffer sb, StringPage curr) throws IOException {
+        sb.append(curr.toString() + ",\n");
+
+        if(!curr.leaf)
+            for(long child : curr.values)
+                this.toJsonFile(sb, this.readPage(child));
+    }
+
+    // Read and Write
+
+    /**
+     * Read a page from the B+ Tree file.
+     *
+     * @param address The address of the page.
+     * @return The page, or null if the address is -1.
+     * @throws IOException
+     */
+    private StringPage readPage(long address) throws IOException {
+        if(address == -1) return null;
+
+        byte[] buffer = new byte[this.pageSize];
+        this.open().read(address, ByteBuffer.wrap(buffer));
+        StringPage page = new StringPage(buffer);
+        page.address = address;
+
+        return page;
+    }
+
+    /**
+     * Write a page in the B+ Tree file.
+     *
+     * @param page The page.
+     * @param address The address of the page.
+     * @throws IOException
+     */
+    private void writePage(StringPage page, long address) throws IOException {
+        this.open().write(address, ByteBuffer.wrap(page.toByteArray()));
+    }
+
+    /**
+     * Update the root of the B+ Tree.
+     *
+     * @param address The address of the root.
+     * @throws IOException
+     */
+    private void updateRoot(long address) throws IOException {
+        this.open().write(0, ByteBuffer.allocate(Long.BYTES).putLong(0, address));
+        this.root = address;
+    }
+
+    /**
+     * Opens the B+ Tree file through the buffer pool if it is not already open.
+     *
+     * @return The file of the B+ Tree.
+     * @throws IOException
+     */
+    private synchronized PagedFile open() throws IOException {
+        if(this.file == null)
+            this.file = BufferPool.getInstance().open(this.path);
+
+        return this.file;
+    }
+
+    // Range Iterator
+
+    /**
+     * Iterator over the keys of a range, following the chain of leaves.
+     */
+    private class RangeIterator implements Iterator<Map.Entry<String, Long>> {
+        private final Predicate<byte[]> inRange; // If a key, not smaller than the first of the range, is still in it
+        private StringPage page; // Current leaf, or null after the end of the range
+        private int index = 0; // Index of the next key in the current leaf
+
+        /**
+         * Starts the iteration at the first key not smaller than the first key of the range.
+         *
+         * @param from The first key of the range, or null.
+         * @param inRange If a key is still in the range.
+         * @throws IOException
+         */
+        RangeIterator(byte[] from, Predicate<byte[]> inRange) throws IOException {
+            this.inRange = inRange;
+            this.page = readPage(leaf(from));
+            this.index = (from == null) ? 0 : this.page.lowerBound(from);
+            this.advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.page != null;
+        }
+
+        @Override
+        public Map.Entry<String, Long> next() {
+            if(this.page == null)
+                throw new NoSuchElementException();
+
+            Map.Entry<String, Long> entry = new AbstractMap.SimpleImmutableEntry<String, Long>(
+                new String(this.page.keys.get(this.index), StandardCharsets.UTF_8), this.page.values.get(this.index));
+
+            this.index++;
+
+            try {
+                this.advance();
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            return entry;
+        }
+
+        /**
+         * Moves to the next leaf while the current one is over, and ends the iteration
+         * at the first key out of the range.
+         *
+         * @throws IOException
+         */
+        private void advance() throws IOException {
+            while(this.page != null && this.index >= this.page.keyCount()) {
+                this.page = readPage(this.page.next);
+                this.index = 0;
+            }
+
+            if(this.page != null && !this.inRange.test(this.page.keys.get(this.index)))
+                this.page = null;
+        }
+    }
+
+}
@@ -0,0 +1,300 @@
+package crud.indexes.trees;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import err.DatabaseValidationException;
+
+/**
+ * <strong> A page of a B+ tree with variable-length string keys. </strong>
+ *
+ * <p>
+ * The keys are kept as their UTF-8 bytes and ordered by them. A page is not split by
+ * its number of keys but by its size: it takes as many keys as fit in its bytes, so
+ * short keys give a high fan-out. The prefix shared by every key of the page is written
+ * once, and each key only writes the bytes after it.
+ * </p>
+ *
+ * <p>
+ * A leaf holds a value for each key. An internal page holds one more child than keys,
+ * and its keys are separators: every key under the child before a separator is not
+ * greater than it, and every key under the child after it is not smaller. The page
+ * takes a whole block of the file and starts with a checksum of the rest of its bytes.
+ * </p>
+ *
+ * <p>
+ * {@code [checksum][leaf][keyCount][next][prefixLength][prefix]}, followed by
+ * {@code [value][suffixLength][suffix]} for each key of a leaf, or by
+ * {@code [child]} and {@code [suffixLength][suffix][child]} for each key of an internal page.
+ * </p>
+ *
+ * @author Fernando Campos Silva Dal Maria & Rafael Fleury Barcellos Ceolin de Oliveira
+ * @see crud.indexes.trees.StringBPlusTree
+ * @version 1.0.0
+ */
+public class StringPage {
+
+    // Attributes
+
+    public static final int HEADER_BYTES = Page.CHECKSUM_BYTES + // checksum
+                                           Byte.BYTES + // leaf
+                                           Short.BYTES + // keyCount
+                                           Long.BYTES + // next
+                                           Short.BYTES; // prefixLength
+
+    public static final int ENTRY_BYTES = Long.BYTES + Short.BYTES; // Size of an entry without its key
+
+    public boolean leaf; // If the page is a leaf
+    public ArrayList<byte[]> keys = new ArrayList<byte[]>(); // Keys
+    public ArrayList<Long> values = new ArrayList<Long>(); // Values of a leaf, or children of an internal page
+
+    public long address = -1; // Address of the page in the disk
+    public long next = -1; // Address of the next leaf in the disk
+
+    public final int BYTES; // Size of the page in bytes
+
+    // Constructors
+
+    /**
+     * Creates a new empty page with the specified size.
+     *
+     * @param size Size of the page in bytes
+     * @param leaf If the page is a leaf
+     */
+    public StringPage(int size, boolean leaf) {
+        this.BYTES = size;
+        this.leaf = leaf;
+    }
+
+    /**
+     * Creates a new page from a byte array, checking its checksum.
+     *
+     * @param buffer Byte array, with the size of the page
+     * @throws DatabaseValidationException if the checksum does not match the bytes of the page
+     */
+    public StringPage(byte[] buffer) {
+        this.BYTES = buffer.length;
+        this.fromByteArray(buffer);
+    }
+
+    // Static Methods
+
+    /**
+     * Compares two keys by their bytes, as unsigned values.
+     *
+     * @param a A key
+     * @param b Another key
+     * @return 0 if the keys are equal, >0 if the first is greater, <0 if it is smaller
+     */
+    public static int compare(byte[] a, byte[] b) {
+        return Arrays.compareUnsigned(a, b);
+    }
+
+    /**
+     * Returns the length of the prefix shared by two keys.
+     *
+     * @param a A key
+     * @param b Another key
+     * @return Number of leading bytes the keys have in common
+     */
+    public static int commonPrefix(byte[] a, byte[] b) {
+        int i = Arrays.mismatch(a, b);
+        return (i == -1) ? a.length : i;
+    }
+
+    /**
+     * Returns the shortest separator between two consecutive keys: the shortest prefix of
+     * the greater key that is still greater than the smaller one, or the key itself if
+     * they are equal.
+     *
+     * @param left The greatest key on the left
+     * @param right The smallest key on the right
+     * @return A key greater than {@code left}, or equal if both are equal, and not greater than {@code right}
+     */
+    public static byte[] separator(byte[] left, byte[] right) {
+        int len = commonPrefix(left, right);
+        return (len < right.length) ? Arrays.copyOf(right, len + 1) : right;
+    }
+
+    // Methods
+
+    /**
+     * Returns the number of keys of the page.
+     *
+     * @return Number of keys
+     */
+    public int keyCount() {
+        return this.keys.size();
+    }
+
+    /**
+     * Returns the number of keys of the page smaller than the given key, which is the
+     * index of its first occurrence in a leaf and the child where it starts in an internal page.
+     *
+     * @param key The key
+     * @return Index of the first key not smaller than the given one
+     */
+    public int lowerBound(byte[] key) {
+        int lo = 0, hi = this.keys.size();
+
+        while(lo < hi) {
+            int mid = (lo + hi) >>> 1;
+
+            if(compare(this.keys.get(mid), key) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+
+        return lo;
+    }
+
+    /**
+     * Returns the number of keys of the page not greater than the given key, which is the
+     * index after its last occurrence in a leaf and the child where it ends in an internal page.
+     *
+     * @param key The key
+     * @return Index of the first key greater than the given one
+     */
+    public int upperBound(byte[] key) {
+        int lo = 0, hi = this.keys.size();
+
+        while(lo < hi) {
+            int mid = (lo + hi) >>> 1;
+
+            if(compare(this.keys.get(mid), key) <= 0) lo = mid + 1;
+            else hi = mid;
+        }
+
+        return lo;
+    }
+
+    /**
+     * Returns the length of the prefix shared by every key of the page.
+     *
+     * @return Length of the prefix
+     */
+    public int prefixLength() {
+        if(this.keys.isEmpty())
+            return 0;
+
+        return Math.min(Short.MAX_VALUE, commonPrefix(this.keys.get(0), this.keys.get(this.keys.size() - 1)));
+    }
+
+    /**
+     * Returns the number of bytes the page takes once written, before its padding.
+     *
+     * @return Used bytes of the page
+     */
+    public int bytes() {
+        int prefix = this.prefixLength();
+        int bytes = HEADER_BYTES + prefix + (this.leaf ? 0 : Long.BYTES);
+
+        for(byte[] key : this.keys)
+            bytes += ENTRY_BYTES + key.length - prefix;
+
+        return bytes;
+    }
+
+    /**
+     * Identifies if the keys of the page fit in its size.
+     *
+     * @return True if the page can be written, false if it must be split
+     */
+    public boolean fits() {
+        return this.bytes() <= this.BYTES;
+    }
+
+    /**
+     * Converts the page to a byte array that can be written.
+     *
+     * @return Byte array with the byte version of the page
+     */
+    public byte[] toByteArray() {
+        byte[] buffer = new byte[this.BYTES];
+        ByteBuffer bb = ByteBuffer.wrap(buffer);
+
+        int prefix = this.prefixLength();
+
+        bb.position(Page.CHECKSUM_BYTES);
+        bb.put((byte)(this.leaf ? 1 : 0));
+        bb.putShort((short)this.keys.size());
+        bb.putLong(this.next);
+        bb.putShort((short)prefix);
+
+        if(prefix > 0)
+            bb.put(this.keys.get(0), 0, prefix);
+
+        if(!this.leaf)
+            bb.putLong(this.values.get(0));
+
+        for(int i = 0; i < this.keys.size(); i++) {
+            byte[] key = this.keys.get(i);
+
+            if(this.leaf) bb.putLong(this.values.get(i));
+            bb.putShort((short)(key.length - prefix));
+            bb.put(key, prefix, key.length - prefix);
+            if(!this.leaf) bb.putLong(this.values.get(i + 1));
+        }
+
+        bb.putInt(0, Page.checksum(buffer, buffer.length));
+        return buffer;
+    }
+
+    /**
+     * Converts a byte array to a page, checking its checksum.
+     *
+     * @param buffer Byte array with the byte version of the page
+     * @throws DatabaseValidationException if the checksum does not match the bytes of the page
+     */
+    public void fromByteArray(byte[] buffer) {
+        ByteBuffer bb = ByteBuffer.wrap(buffer);
+
+        if(bb.getInt() != Page.checksum(buffer, buffer.length))
+            throw new DatabaseValidationException("The checksum of the B+ Tree page does not match its bytes.");
+
+        this.leaf = bb.get() == 1;
+        int keyCount = bb.getShort();
+        this.next = bb.getLong();
+
+        byte[] prefix = new byte[bb.getShort()];
+        bb.get(prefix);
+
+        this.keys = new ArrayList<byte[]>(keyCount);
+        this.values = new ArrayList<Long>(keyCount + 1);
+
+        if(!this.leaf)
+            this.values.add(bb.getLong());
+
+        for(int i = 0; i < keyCount; i++) {
+            if(this.leaf) this.values.add(bb.getLong());
+
+            byte[] key = Arrays.copyOf(prefix, prefix.length + bb.getShort());
+            bb.get(key, prefix.length, key.length - prefix.length);
+            this.keys.add(key);
+
+            if(!this.leaf) this.values.add(bb.getLong());
+        }
+    }
+
+    /**
+     * Converts the page to a JSON representation.
+     *
+     * @return a String representation for the page
+     */
+    public String toString() {
+        ArrayList<String> keys = new ArrayList<String>(this.keys.size());
+        for(byte[] key : this.keys)
+            keys.add("\"" + new String(key, StandardCharsets.UTF_8).replaceAll("\"", "\'") + "\"");
+
+        StringBuffer sb = new StringBuffer("{\n\t");
+        sb.append("\"address\": ").append(this.address);
+        sb.append(",\n\t\"leaf\": ").append(this.leaf);
+        sb.append(",\n\t\"prefixLength\": ").append(this.prefixLength());
+        sb.append(",\n\t\"keys\": ").append(keys);
+        sb.append(",\n\t\"").append(this.leaf ? "values" : "children").append("\": ").append(this.values);
+        sb.append(",\n\t\"next\": ").append(this.next);
+        return  sb.append("\n}").toString();
+    }
+
+}
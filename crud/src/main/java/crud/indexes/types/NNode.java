@@ -5,6 +5,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import crud.indexes.types.interfaces.INode;
 
@@ -120,6 +121,11 @@ public class NNode implements INode<NNode> {
         return other instanceof Integer ? this.key - ((Integer)other) : this.key - ((NNode)other).key;
     }
 
+    @Override
+    public int compareTo(ByteBuffer buffer, int offset, Object other) {
+        return Integer.compare(buffer.getInt(offset), other instanceof Integer ? (Integer)other : ((NNode)other).key);
+    }
+
     @Override
     public NNode clone() {
         return new NNode(this.key, this.value);
@@ -1,6 +1,7 @@
 package crud.indexes.types.interfaces;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * <strong> An interface to build index nodes. </strong>
@@ -109,6 +110,29 @@ public interface INode<T> {
      */
     public int compareTo(Object other);
 
+    /**
+     * Compares the key of the node stored at the given offset of the buffer to the
+     * specified object, in the same way as {@link #compareTo(Object)}. The default
+     * implementation decodes a copy of the stored node, so the implementations whose
+     * key can be compared in place should override it to avoid the allocation.
+     * 
+     * @param buffer Buffer holding the bytes of a node
+     * @param offset Position of the node in the buffer
+     * @param other Object to be compared
+     * @return 0 if the stored node is equal to the specified object,
+     *         >0 if the stored node is greater than the specified object,
+     *         <0 if the stored node is less than the specified object.
+     * @throws IOException
+     */
+    public default int compareTo(ByteBuffer buffer, int offset, Object other) throws IOException {
+        byte[] bytes = new byte[this.getBytes()];
+        buffer.get(offset, bytes);
+
+        INode<?> node = (INode<?>)this.clone();
+        node.fromByteArray(bytes);
+        return node.compareTo(other);
+    }
+
     /**
      * Returns a new instance of the node.
      * 
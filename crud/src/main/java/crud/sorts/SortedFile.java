@@ -2,7 +2,6 @@ package crud.sorts;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.lang.reflect.Constructor;
 import java.util.Comparator;
 import java.util.UUID;
@@ -174,10 +173,10 @@ public abstract class SortedFile<T extends Register<T>> extends BinaryArchive<T>
 
         for(int i = 0; i < this.originalFiles.length; i++) {
             this.originalFiles[i] = new BinaryArchive<T>(TEMPORARY_FILES_DIRECTORY + UUID.randomUUID().toString() + (i + 1) + ".dat", this.constructor);
-            this.originalFiles[i].file = new RandomAccessFile(this.originalFiles[i].filePath, "rw");
+            this.originalFiles[i].open();
             
             this.tmpFiles[i] = new BinaryArchive<T>(TEMPORARY_FILES_DIRECTORY + UUID.randomUUID().toString() + (i + 1 + NUMBER_OF_BRANCHES) + ".dat", this.constructor);
-            this.tmpFiles[i].file = new RandomAccessFile(this.tmpFiles[i].filePath, "rw");
+            this.tmpFiles[i].open();
         }
     }
 
@@ -189,7 +188,7 @@ public abstract class SortedFile<T extends Register<T>> extends BinaryArchive<T>
     protected void __changeOriginalFiles() throws IOException {
         BinaryArchive<T>[] arr = new BinaryArchive[NUMBER_OF_BRANCHES];
         for(int i = 0; i < this.originalFiles.length; i++) {
-            this.originalFiles[i].file.setLength(0);
+            this.originalFiles[i].clear();
             arr[i] = this.originalFiles[i];
         }
 
@@ -219,8 +218,8 @@ public abstract class SortedFile<T extends Register<T>> extends BinaryArchive<T>
      */
     protected void __close() throws IOException {
         for(int i = 0; i < NUMBER_OF_BRANCHES; i++) {
-            this.originalFiles[i].file.close();
-            this.tmpFiles[i].file.close();
+            this.originalFiles[i].close();
+            this.tmpFiles[i].close();
         }
 
         File[] list = new File(TEMPORARY_FILES_DIRECTORY).listFiles();
@@ -228,6 +227,7 @@ public abstract class SortedFile<T extends Register<T>> extends BinaryArchive<T>
             list[i].delete();
 
         this.database.reset();
+        this.database.close();
     }
 
     // Abstract Methods
@@ -98,6 +98,7 @@ public class IndexesMenu implements SystemSpecification, MenuSpecification {
                     break;
 
                 case 5:
+                    show.close();
                     show = new CRUD<Show>("shows.db", Show.class.getConstructor());
                     StructureValidation.cleanIndexesDirectory();
                     StructureValidation.cleanJsonIndexesDirectory();    
@@ -141,6 +142,7 @@ public class IndexesMenu implements SystemSpecification, MenuSpecification {
 
             watch.reset();
             watch.start();
+            show.close();
             show = new CRUD<Show>("shows.db", Show.class.getConstructor(), params);
             show.rebuildIndex(type);
             result = watch.stop();
@@ -10,6 +10,7 @@ import java.util.Date;
 
 import components.Show;
 import crud.CRUD;
+import crud.base.BufferPool;
 import crud.base.StructureValidation;
 import crud.core.types.IndexType;
 import layout.components.MenuResponse;
@@ -116,11 +117,13 @@ public class MainMenu implements AutoCloseable, SystemSpecification, MenuSpecifi
                             show.read("id", i + 1);
     
                         System.out.println("Tempo de execução para a leitura de " + range + " registros: " + watch.stop() + "ms.");
+                        System.out.println("Buffer pool: " + BufferPool.getInstance());
                     }
                     
                     break;
 
                 case 6:
+                    if(show != null) show.close();
                     show = null;
                     StructureValidation.cleanIndexesDirectory();
                     StructureValidation.cleanJsonIndexesDirectory();
@@ -176,5 +179,6 @@ public class MainMenu implements AutoCloseable, SystemSpecification, MenuSpecifi
     @Override
     public void close() throws Exception {
         br.close();
+        if(show != null) show.close();
     }
 }
\ No newline at end of file
@@ -10,6 +10,14 @@ public interface SystemSpecification {
 
     static final int BLOCK_SIZE = 4096; // 4KB
     static final int PAGE_SIZE = BLOCK_SIZE * 10; // 40KB
+    static final int BUFFER_POOL_SIZE = 2048; // Pages kept in memory by the buffer pool (8MB)
+    static final int SCAN_WINDOW_SIZE = 64 * 1024 * 1024; // Size of the windows mapped by full scans (64MB)
+    static final int WAL_SYNC_INTERVAL = 32; // Operations written to the write-ahead log between two syncs
+    static final long WAL_CHECKPOINT_SIZE = 4 * 1024 * 1024; // Size of the write-ahead log that triggers a checkpoint (4MB)
+    static final int COMPACTION_SEGMENT_SIZE = 1024 * 1024; // Bytes of the database copied by each step of a compaction (1MB)
+    static final double BPLUS_TREE_FILL_FACTOR = 0.9; // Fraction of the keys of a B+ Tree page filled by a bulk load
+    static final int BPLUS_TREE_PAGE_SIZE = BLOCK_SIZE; // Size of the aligned pages of a B+ Tree (4KB)
+    static final int ASYNC_IO_THREADS = 16; // Threads running the asynchronous operations when virtual threads are not available
     static final String PROJECT_PATH = "src/"; // Path of the project
     
     static final String PROJECT_CRUD_PATH = PROJECT_PATH + "data/"; // Path for the CRUD files
@@ -29,4 +37,11 @@ public interface SystemSpecification {
     static final String DATABASE_FILE_PATH = PROJECT_PATH + "data/database.db"; // Path of the database file
     
     static final String TEMPORARY_FILES_EXTENSION = ".dat"; // Extension of the temporary files
+    static final String WAL_FILES_EXTENSION = ".wal"; // Extension of the write-ahead log files
+    static final String FREE_SPACE_FILES_EXTENSION = ".fsm"; // Extension of the free-space map files
+    static final String ID_MAP_FILES_EXTENSION = ".ids"; // Extension of the ID to address map files
+    static final String COMPACTION_FILES_EXTENSION = ".compact"; // Extension of the copies written by a compaction
+    static final String REMAP_FILES_EXTENSION = ".remap"; // Extension of the markers of indexes being remapped by a compaction
+    static final String CIPHER_KEY_FILES_EXTENSION = ".key"; // Extension of the files holding the wrapped data key of a table
+    static final String MIGRATION_FILES_EXTENSION = ".migrate"; // Extension of the copies written by a cipher migration
 }
\ No newline at end of file
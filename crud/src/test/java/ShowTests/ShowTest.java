@@ -72,4 +72,12 @@ public class ShowTest implements ShowInstance {
       assertTrue(s.compare("title", "A Last Samurai") > 0);
    }
 
+   @Test
+   public void testShowDecriptTwice() {
+      Show s = show.encrypt().decript().decript();
+      s.decriptInPlace();
+
+      assertTrue(s.getTitle().equals(show.getTitle()));
+   }
+
 }
@@ -0,0 +1,57 @@
+package components.interfaces;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.Date;
+
+import org.junit.Test;
+
+import components.Show;
+import crud.interfaces.ShowInstance;
+
+public class RegisterTest implements ShowInstance {
+
+   /**
+    * Compares a field the way the registers did before the accessors, reading it by reflection.
+    */
+   @SuppressWarnings("unchecked")
+   private static int reflectiveCompare(Show s, String key, Object obj) throws Exception {
+      Field field;
+
+      try {
+         field = Show.class.getDeclaredField(key);
+      } catch(NoSuchFieldException e) {
+         return (obj instanceof Integer) ? s.getId() - (int)obj : -1;
+      }
+
+      field.setAccessible(true);
+      return ((Comparable<Object>)field.get(s)).compareTo(obj);
+   }
+
+   @Test
+   public void testCompareMatchesTheReflectiveCompare() throws Exception {
+      Show s = newShow("Show", "The description of the show.");
+      s.setId(10);
+
+      Object[][] cases = {
+         { "id", 5 }, { "id", 10 }, { "id", 15 },
+         { "type", "Movie" }, { "type", "TV Show" }, { "type", "A" },
+         { "directors", "Toshiya Shinohara" }, { "directors", "Zoe" }, { "directors", "" },
+         { "dateAdded", new Date(1631674800000l) }, { "dateAdded", new Date(0) }, { "dateAdded", new Date(1731674800000l) },
+         { "releaseYear", (short)2004 }, { "releaseYear", (short)1990 }, { "releaseYear", (short)2020 },
+         { "duration", "88 min" }, { "duration", "100 min" },
+         { "listedIn", "Action & Adventure" }, { "listedIn", "Dramas" },
+         { "description", "The description of the show." }, { "description", "Another description." },
+         { "rating", 4 }, { "rating", "PG" }
+      };
+
+      boolean value = true;
+
+      for(Object[] c : cases)
+         value &= Integer.signum(s.compare((String)c[0], c[1])) == Integer.signum(reflectiveCompare(s, (String)c[0], c[1]));
+
+      assertTrue(value);
+   }
+
+}
@@ -0,0 +1,104 @@
+package crud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import components.Show;
+import crud.base.StructureValidation;
+import crud.interfaces.ShowInstance;
+import logic.SystemSpecification;
+
+public class AsyncCRUDTest implements ShowInstance {
+
+   private static final String path = "async_test.db";
+
+   @BeforeClass
+   public static void createDirectories() {
+      new File(SystemSpecification.PROJECT_CRUD_PATH).mkdirs();
+      StructureValidation.verifyDirectoryStructure();
+   }
+
+   private CRUD<Show> newCRUD() throws Exception {
+      CRUD<Show> crud = new CRUD<Show>(path, Show.class.getConstructor());
+      crud.clear();
+
+      ArrayList<Show> shows = new ArrayList<Show>();
+      for(int i = 1; i <= 5; i++)
+         shows.add(newShow("Show " + i, "The episode number " + i + " of the show."));
+
+      crud.createAll(shows);
+      return crud;
+   }
+
+   @Test
+   public void testReadsInFlightAreShared() throws Exception {
+      CRUD<Show> crud = newCRUD();
+
+      // The tasks only run when the test runs them
+      ArrayList<Runnable> tasks = new ArrayList<Runnable>();
+      AsyncCRUD<Show> async = new AsyncCRUD<Show>(crud, tasks::add);
+
+      CompletableFuture<Show> a = async.read("id", 1);
+      CompletableFuture<Show> b = async.read("id", 1);
+      CompletableFuture<Show> c = async.read("id", 2);
+
+      boolean value = tasks.size() == 2;
+      value &= !a.isDone() && !b.isDone();
+
+      for(Runnable task : tasks)
+         task.run();
+
+      value &= a.get() != b.get();
+      value &= a.get().getDescription().equals("The episode number 1 of the show.");
+      value &= b.get().getDescription().equals("The episode number 1 of the show.");
+      value &= c.get().getId() == 2;
+
+      // Each caller can change its record without changing the other one
+      a.get().setDescription("Changed by the first caller.");
+      value &= b.get().getDescription().equals("The episode number 1 of the show.");
+
+      // The read ended, so a new one runs again
+      async.read("id", 1);
+      value &= tasks.size() == 3;
+
+      assertTrue(value);
+      async.close();
+      crud.close();
+   }
+
+   @Test
+   public void testWriteStopsTheSharing() throws Exception {
+      CRUD<Show> crud = newCRUD();
+      ArrayList<Runnable> tasks = new ArrayList<Runnable>();
+      AsyncCRUD<Show> async = new AsyncCRUD<Show>(crud, tasks::add);
+
+      CompletableFuture<Show> before = async.read("id", 3);
+      CompletableFuture<Boolean> update = async.update(3, newShow("Show 3", "The updated episode."));
+
+      // The write ends while the first read is still in flight
+      tasks.get(1).run();
+      CompletableFuture<Show> after = async.read("id", 3);
+
+      boolean value = update.get();
+      value &= tasks.size() == 3;
+
+      tasks.get(0).run();
+      tasks.get(2).run();
+
+      value &= before.get() != after.get();
+      value &= after.get().getDescription().equals("The updated episode.");
+
+      assertTrue(value);
+      assertEquals("The updated episode.", crud.read("id", 3).getDescription());
+      async.close();
+      crud.close();
+   }
+
+}
@@ -0,0 +1,66 @@
+package crud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import components.Show;
+import crud.base.StructureValidation;
+import crud.core.types.IndexType;
+import logic.SystemSpecification;
+
+public class BatchInsertTest {
+
+   private static final String path = "batch_insert_test.db";
+
+   @BeforeClass
+   public static void createDirectories() {
+      new File(SystemSpecification.PROJECT_CRUD_PATH).mkdirs();
+      StructureValidation.verifyDirectoryStructure();
+   }
+
+   private static ArrayList<Show> batch(int from, int to) {
+      ArrayList<Show> shows = new ArrayList<Show>();
+      for(int i = from; i <= to; i++)
+         shows.add(new Show("Movie", "Show " + i, "Toshiya Shinohara", new Date(1631674800000l), (short)2004, "88 min", "Action & Adventure", "The episode number " + i + " of the show."));
+
+      return shows;
+   }
+
+   private void createAllThenRead(IndexType... indexes) throws Exception {
+      CRUD<Show> crud = new CRUD<Show>(path, Show.class.getConstructor(), indexes);
+      crud.clear();
+
+      // The second batch takes the IDs after the last one of the first
+      boolean value = crud.createAll(batch(1, 40));
+      value &= crud.createAll(batch(41, 100));
+
+      for(int i = 1; i <= 100; i++) {
+         Show s = crud.read("id", i);
+         value &= s != null && s.getId() == i && s.getDescription().equals("The episode number " + i + " of the show.");
+      }
+
+      assertTrue(value);
+      assertNull(crud.read("id", 101));
+      assertEquals(100, crud.count());
+      crud.close();
+   }
+
+   @Test
+   public void testCreateAllThenReadById() throws Exception {
+      this.createAllThenRead();
+   }
+
+   @Test
+   public void testCreateAllThenReadByIdThroughTheTree() throws Exception {
+      this.createAllThenRead(IndexType.BPlusTree);
+   }
+
+}
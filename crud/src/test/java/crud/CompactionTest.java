@@ -0,0 +1,134 @@
+package crud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import components.Show;
+import crud.base.StructureValidation;
+import crud.core.types.IndexType;
+import crud.interfaces.ShowInstance;
+import logic.SystemSpecification;
+
+public class CompactionTest implements ShowInstance {
+
+   private static final String path = "compaction_test.db";
+
+   @BeforeClass
+   public static void createDirectories() {
+      new File(SystemSpecification.PROJECT_CRUD_PATH).mkdirs();
+      StructureValidation.verifyDirectoryStructure();
+   }
+
+   private CRUD<Show> newCrud() throws Exception {
+      CRUD<Show> crud = new CRUD<Show>(path, Show.class.getConstructor(), IndexType.BPlusTree);
+      crud.clear();
+
+      ArrayList<Show> shows = new ArrayList<Show>();
+      for(int i = 1; i <= 60; i++)
+         shows.add(newShow("Show " + i, "The episode number " + i + " of the show."));
+      crud.createAll(shows);
+
+      for(int i = 1; i <= 60; i += 3)
+         crud.delete(i);
+
+      return crud;
+   }
+
+   private static boolean readable(CRUD<Show> crud) throws Exception {
+      boolean value = true;
+
+      for(int i = 1; i <= 60; i++) {
+         Show s = crud.read("id", i);
+         value &= (i % 3 == 1) ? s == null : s != null && s.getDescription().equals("The episode number " + i + " of the show.");
+      }
+
+      return value;
+   }
+
+   @Test
+   public void testCompactRemapsIndexes() throws Exception {
+      CRUD<Show> crud = newCrud();
+      long length = crud.length();
+
+      HashMap<Long, Long> addresses = crud.compact();
+
+      boolean value = addresses.size() == 40;
+      value &= crud.length() < length;
+      value &= readable(crud);
+
+      assertTrue(value);
+      assertEquals(40, crud.count());
+      crud.close();
+   }
+
+   @Test
+   public void testRemapMarkerRebuildsIndexes() throws Exception {
+      CRUD<Show> crud = newCrud();
+      crud.checkpoint();
+
+      Path tree = Paths.get(SystemSpecification.INDEXES_FILES_DIRECTORY + "compaction_test_BplusTree.db");
+      byte[] treeBeforeCompaction = Files.readAllBytes(tree);
+
+      crud.compact();
+      crud.close();
+
+      // A crash after the swap of the archive, before the indexes were remapped
+      Files.write(tree, treeBeforeCompaction);
+      File marker = new File(crud.getFilePath() + SystemSpecification.REMAP_FILES_EXTENSION);
+      marker.createNewFile();
+
+      crud = new CRUD<Show>(path, Show.class.getConstructor(), IndexType.BPlusTree);
+
+      assertTrue(readable(crud));
+      assertFalse(marker.exists());
+      assertEquals(40, crud.count());
+      crud.close();
+   }
+
+   @Test
+   public void testWritesDuringTheCopyAreKept() throws Exception {
+      CRUD<Show> crud = newCrud();
+      crud.startCompaction();
+
+      // Written while the copy runs, so only these records are copied again
+      crud.update(2, newShow("Show 2", "Short."));
+      crud.update(3, newShow("Show 3", "The episode number 3 of the show, now with a much longer description."));
+      crud.delete(5);
+      crud.restore(4);
+      crud.create(newShow("Show 61", "The episode number 61 of the show."));
+
+      HashMap<Long, Long> addresses = crud.finishCompaction();
+
+      boolean value = addresses.size() == 41;
+      value &= crud.read("id", 2).getDescription().equals("Short.");
+      value &= crud.read("id", 3).getDescription().equals("The episode number 3 of the show, now with a much longer description.");
+      value &= crud.read("id", 4).getDescription().equals("The episode number 4 of the show.");
+      value &= crud.read("id", 5) == null;
+      value &= crud.read("id", 61).getDescription().equals("The episode number 61 of the show.");
+
+      for(int i = 6; i <= 60; i++)
+         value &= (i % 3 == 1) ? crud.read("id", i) == null : crud.read("id", i).getDescription().equals("The episode number " + i + " of the show.");
+
+      assertTrue(value);
+      assertEquals(41, crud.count());
+      crud.close();
+
+      crud = new CRUD<Show>(path, Show.class.getConstructor(), IndexType.BPlusTree);
+      assertEquals("Short.", crud.read("id", 2).getDescription());
+      assertEquals("The episode number 61 of the show.", crud.read("id", 61).getDescription());
+      assertEquals(41, crud.count());
+      crud.close();
+   }
+
+}
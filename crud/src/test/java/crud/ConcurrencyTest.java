@@ -0,0 +1,105 @@
+package crud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import components.Show;
+import crud.base.StructureValidation;
+import crud.core.types.FieldPredicate;
+import crud.interfaces.ShowInstance;
+import logic.SystemSpecification;
+
+public class ConcurrencyTest implements ShowInstance {
+
+   private static final String path = "concurrency_test.db";
+
+   @BeforeClass
+   public static void createDirectories() {
+      new File(SystemSpecification.PROJECT_CRUD_PATH).mkdirs();
+      StructureValidation.verifyDirectoryStructure();
+   }
+
+   private static String description(int id, int version) {
+      return "The episode number " + id + " of the show, version " + version + ".";
+   }
+
+   @Test
+   public void testReadersRunWhileOneThreadWrites() throws Exception {
+      CRUD<Show> crud = new CRUD<Show>(path, Show.class.getConstructor());
+      crud.clear();
+
+      ArrayList<Show> shows = new ArrayList<Show>();
+      for(int i = 1; i <= 50; i++)
+         shows.add(newShow("Show " + i, description(i, 0)));
+
+      crud.createAll(shows);
+
+      AtomicBoolean writing = new AtomicBoolean(true);
+      ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<String>();
+      ArrayList<Thread> readers = new ArrayList<Thread>();
+
+      for(int r = 0; r < 4; r++) {
+         final int seed = r;
+
+         readers.add(new Thread(() -> {
+            try {
+               int i = seed;
+
+               // Every record read is one of the versions written, never a mix of two
+               do {
+                  int id = i++ % 50 + 1;
+                  Show s = crud.read("id", id);
+
+                  if(s == null || !s.getDescription().matches("The episode number " + id + " of the show, version [0-9]+\\."))
+                     errors.add("read " + id + ": " + (s == null ? null : s.getDescription()));
+
+                  Show[] found = crud.readAllObj(FieldPredicate.prefix("description", "The episode number " + id + " of"));
+                  if(found.length != 1 || found[0].getId() != id)
+                     errors.add("readAllObj " + id + ": " + found.length);
+
+                  int count = crud.count();
+                  if(count < 50 || count > 70)
+                     errors.add("count: " + count);
+               } while(writing.get());
+            } catch(Exception e) {
+               errors.add(e.toString());
+            }
+         }));
+      }
+
+      for(Thread t : readers)
+         t.start();
+
+      try {
+         for(int version = 1; version <= 20; version++) {
+            for(int id = 1; id <= 50; id += 5)
+               crud.update(id, newShow("Show " + id, description(id, version)));
+
+            crud.createAll(Collections.singletonList(newShow("Show " + (50 + version), description(50 + version, 0))));
+         }
+      } finally {
+         writing.set(false);
+
+         for(Thread t : readers)
+            t.join();
+      }
+
+      boolean value = errors.isEmpty();
+      for(int id = 1; id <= 50; id++)
+         value &= crud.read("id", id).getDescription().equals(description(id, id % 5 == 1 ? 20 : 0));
+
+      assertTrue(errors.toString(), value);
+      assertEquals(70, crud.count());
+      crud.close();
+   }
+
+}
@@ -0,0 +1,76 @@
+package crud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import components.Show;
+import crud.base.StructureValidation;
+import crud.interfaces.ShowInstance;
+import logic.SystemSpecification;
+
+public class FreeSpaceTest implements ShowInstance {
+
+   private static final String path = "free_space_test.db";
+   private static final String longDescription = "A crew meets a creature on a moon far from home, and only the warrant officer and the cat of the ship are left when the rescue finally reaches them.";
+
+   @BeforeClass
+   public static void createDirectories() {
+      new File(SystemSpecification.PROJECT_CRUD_PATH).mkdirs();
+      StructureValidation.verifyDirectoryStructure();
+   }
+
+   @Test
+   public void testDeletedSlotIsReused() throws Exception {
+      CRUD<Show> crud = new CRUD<Show>(path, Show.class.getConstructor());
+      crud.clear();
+      crud.create(newShow("Alien", "A crew meets a creature."));
+      crud.create(newShow("Brave", longDescription));
+      crud.create(newShow("Crash", "Strangers collide in Los Angeles."));
+
+      crud.delete(2);
+      long length = crud.length();
+
+      crud.create(newShow("Drive", "A driver for hire."));
+
+      boolean value = crud.length() == length;
+      value &= crud.read("id", 4).getDescription().equals("A driver for hire.");
+      value &= crud.read("id", 3).getDescription().equals("Strangers collide in Los Angeles.");
+
+      assertTrue(value);
+      assertEquals(3, crud.count());
+      crud.close();
+   }
+
+   @Test
+   public void testFreeSpaceSurvivesReopen() throws Exception {
+      CRUD<Show> crud = new CRUD<Show>(path, Show.class.getConstructor());
+      crud.clear();
+      crud.create(newShow("Alien", longDescription));
+      crud.create(newShow("Brave", "A princess defies a custom."));
+      crud.delete(1);
+      crud.close();
+
+      crud = new CRUD<Show>(path, Show.class.getConstructor());
+      long length = crud.length();
+
+      // The first record takes the slot, the second one finds it taken
+      crud.create(newShow("Up", "An old man and a house of balloons."));
+      boolean value = crud.length() == length;
+
+      crud.create(newShow("Crash", longDescription));
+      value &= crud.length() > length;
+
+      value &= crud.read("id", 3).getDescription().equals("An old man and a house of balloons.");
+      value &= crud.read("id", 4).getDescription().equals(longDescription);
+
+      assertTrue(value);
+      assertEquals(3, crud.count());
+      crud.close();
+   }
+
+}
@@ -0,0 +1,81 @@
+package crud;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import components.Show;
+import crud.base.StructureValidation;
+import crud.interfaces.ShowInstance;
+import logic.SystemSpecification;
+
+public class IdMapTest implements ShowInstance {
+
+   private static final String path = "id_map_test.db";
+
+   @BeforeClass
+   public static void createDirectories() {
+      new File(SystemSpecification.PROJECT_CRUD_PATH).mkdirs();
+      StructureValidation.verifyDirectoryStructure();
+   }
+
+   private CRUD<Show> newCrud() throws Exception {
+      CRUD<Show> crud = new CRUD<Show>(path, Show.class.getConstructor());
+      crud.clear();
+
+      for(int i = 1; i <= 30; i++)
+         crud.create(newShow("Show " + i, "The episode number " + i + " of the show."));
+
+      for(int i = 1; i <= 30; i += 4)
+         crud.delete(i);
+
+      return crud;
+   }
+
+   private static boolean readable(CRUD<Show> crud) throws Exception {
+      boolean value = true;
+
+      for(int i = 1; i <= 30; i++) {
+         Show s = crud.read("id", i);
+         value &= (i % 4 == 1) ? s == null : s != null && s.getDescription().equals("The episode number " + i + " of the show.");
+      }
+
+      return value;
+   }
+
+   @Test
+   public void testIdMapIsRebuiltWhenLost() throws Exception {
+      CRUD<Show> crud = newCrud();
+      crud.close();
+
+      File ids = new File(crud.getFilePath() + SystemSpecification.ID_MAP_FILES_EXTENSION);
+      boolean value = ids.delete();
+
+      crud = new CRUD<Show>(path, Show.class.getConstructor());
+      value &= readable(crud);
+
+      assertTrue(value);
+      crud.close();
+   }
+
+   @Test
+   public void testIdMapIsRebuiltAfterSwap() throws Exception {
+      CRUD<Show> crud = newCrud();
+
+      // The compaction swaps the archive for a copy where every record has a new address
+      crud.compact();
+      boolean value = readable(crud);
+
+      crud.close();
+
+      crud = new CRUD<Show>(path, Show.class.getConstructor());
+      value &= readable(crud);
+
+      assertTrue(value);
+      crud.close();
+   }
+
+}
@@ -0,0 +1,71 @@
+package crud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import components.Show;
+import crud.base.StructureValidation;
+import crud.core.DataBase;
+import crud.core.security.AESCipher;
+import crud.core.types.IndexType;
+import crud.interfaces.ShowInstance;
+import logic.SystemSpecification;
+
+public class RebuildIndexTest implements ShowInstance {
+
+   private static final String path = "rebuild_test.db";
+
+   @BeforeClass
+   public static void createDirectories() {
+      new File(SystemSpecification.PROJECT_CRUD_PATH).mkdirs();
+      StructureValidation.verifyDirectoryStructure();
+   }
+
+   @Test
+   public void testRecordsWithoutAKeyAreLeftOut() throws Exception {
+      // The files of a previous run are encrypted with other RSA keys
+      for(String directory : new String[] { SystemSpecification.PROJECT_CRUD_PATH, SystemSpecification.INDEXES_FILES_DIRECTORY })
+         for(File file : new File(directory).listFiles((dir, name) -> name.startsWith("rebuild_test")))
+            file.delete();
+
+      CRUD<Show> crud = new CRUD<Show>(path, Show.class.getConstructor(), IndexType.InvertedIndex);
+      crud.clear();
+      crud.encryptWithAES();
+
+      crud.create(newShow("Alien", "A crew meets a creature."));
+      crud.create(newShow("Aliens", "The crew comes back."));
+
+      // A record written with another key, so its title cannot be decrypted
+      DataBase<Show> other = new DataBase<Show>(crud.getFilePath(), Show.class.getConstructor());
+      other.setCipher(AESCipher.generate(null));
+      other.create(newShow("Heat", "A thief and a detective."));
+      other.close();
+
+      crud.rebuildIndex(IndexType.InvertedIndex);
+
+      // The array is made as a Register[] by the inverted index, and padded with nulls
+      Object[] found = crud.readAllObj("title", "Alien");
+      int count = 0;
+
+      boolean value = ((Show)found[0]).getId() == 1;
+      for(Object obj : found) {
+         value &= obj == null || ((Show)obj).getId() != 3;
+         count += obj == null ? 0 : 1;
+      }
+
+      value &= count == 2;
+      value &= crud.read("id", 2).getTitle().equals("Aliens");
+
+      assertTrue(value);
+      assertNull(crud.read("id", 3).getTitle());
+      assertEquals(3, crud.count());
+      crud.close();
+   }
+
+}
@@ -0,0 +1,74 @@
+package crud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import components.Show;
+import crud.base.Snapshot;
+import crud.base.StructureValidation;
+import crud.core.types.FieldPredicate;
+import crud.interfaces.ShowInstance;
+import logic.SystemSpecification;
+
+public class SnapshotTest implements ShowInstance {
+
+   private static final String path = "snapshot_test.db";
+
+   @BeforeClass
+   public static void createDirectories() {
+      new File(SystemSpecification.PROJECT_CRUD_PATH).mkdirs();
+      StructureValidation.verifyDirectoryStructure();
+   }
+
+   @Test
+   public void testSnapshotIgnoresConcurrentWrites() throws Exception {
+      CRUD<Show> crud = new CRUD<Show>(path, Show.class.getConstructor());
+      crud.clear();
+      crud.create(newShow("Alien", "A crew meets a creature."));
+      crud.create(newShow("Heat", "A thief and a detective."));
+      crud.create(newShow("Jaws", "A shark in a summer town."));
+
+      Map<Integer, String> seen;
+      Show[] matched;
+
+      try(Snapshot snapshot = crud.snapshot()) {
+         Thread writer = new Thread(() -> {
+            try {
+               Show s = crud.read("id", 2);
+               s.setDescription("A thief and a detective cross paths in Los Angeles, and only one of them walks away.");
+               crud.update(2, s);
+               crud.delete(3);
+               crud.create(newShow("Up", "An old man and a house of balloons."));
+            } catch(Exception e) {
+               throw new RuntimeException(e);
+            }
+         });
+         writer.start();
+         writer.join();
+
+         seen = crud.stream(snapshot).collect(Collectors.toMap(r -> r.body.getId(), r -> r.body.getDescription()));
+         matched = crud.readAllObj(snapshot, FieldPredicate.equal("id", 2));
+      }
+
+      boolean value = seen.size() == 3;
+      value &= seen.get(2).equals("A thief and a detective.");
+      value &= seen.get(3).equals("A shark in a summer town.");
+      value &= !seen.containsKey(4);
+      value &= matched.length == 1 && matched[0].getDescription().equals("A thief and a detective.");
+      value &= crud.read("id", 2).getDescription().startsWith("A thief and a detective cross paths");
+      value &= crud.read("id", 3) == null;
+      value &= crud.read("id", 4).getTitle().equals("Up");
+
+      assertTrue(value);
+      assertEquals(3, crud.count());
+      crud.close();
+   }
+
+}
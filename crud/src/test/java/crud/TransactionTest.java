@@ -0,0 +1,119 @@
+package crud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import components.Show;
+import crud.base.StructureValidation;
+import crud.core.types.IndexType;
+import crud.interfaces.CrashInstance;
+import crud.interfaces.ShowInstance;
+import logic.SystemSpecification;
+
+public class TransactionTest implements ShowInstance, CrashInstance {
+
+   private static final String path = "transaction_test.db";
+
+   @BeforeClass
+   public static void createDirectories() {
+      new File(SystemSpecification.PROJECT_CRUD_PATH).mkdirs();
+      StructureValidation.verifyDirectoryStructure();
+   }
+
+   @Test
+   public void testCommit() throws Exception {
+      CRUD<Show> crud = new CRUD<Show>(path, Show.class.getConstructor(), IndexType.BPlusTree);
+      crud.clear();
+      crud.create(newShow("Alien", "A crew meets a creature."));
+
+      crud.transaction(tx -> {
+         tx.create(newShow("Heat", "A thief and a detective."));
+         tx.update(1, newShow("Aliens", "The crew comes back."));
+      });
+
+      boolean value = crud.read("id", 1).getTitle().equals("Aliens");
+      value &= crud.read("id", 2).getTitle().equals("Heat");
+
+      assertTrue(value);
+      crud.close();
+   }
+
+   @Test
+   public void testRollback() throws Exception {
+      CRUD<Show> crud = new CRUD<Show>(path, Show.class.getConstructor(), IndexType.BPlusTree);
+      crud.clear();
+      crud.create(newShow("Alien", "A crew meets a creature."));
+      crud.create(newShow("Heat", "A thief and a detective."));
+
+      boolean thrown = false;
+      try {
+         crud.transaction(tx -> {
+            tx.create(newShow("Jaws", "A shark in a summer town."));
+            tx.update(1, newShow("Aliens", "The crew comes back to the planet, with marines this time."));
+            tx.delete(2);
+            throw new IllegalStateException("Rolled back");
+         });
+      } catch(IllegalStateException e) {
+         thrown = true;
+      }
+
+      boolean value = crud.read("id", 1).getTitle().equals("Alien");
+      value &= crud.read("id", 1).getDescription().equals("A crew meets a creature.");
+      value &= crud.read("id", 2).getTitle().equals("Heat");
+
+      assertTrue(thrown);
+      assertTrue(value);
+      assertNull(crud.read("id", 3));
+      assertEquals(2, crud.count());
+      assertEquals(0, crud.countTrash());
+      crud.close();
+   }
+
+   @Test
+   public void testTornTransactionIsNotReplayed() throws Exception {
+      CRUD<Show> crud = new CRUD<Show>(path, Show.class.getConstructor(), IndexType.BPlusTree);
+      crud.clear();
+      crud.create(newShow("Alien", "A crew meets a creature."));
+      crud.create(newShow("Heat", "A thief and a detective."));
+      crud.checkpoint();
+
+      String filePath = crud.getFilePath();
+      byte[][] crash = new byte[3][];
+
+      crud.create(newShow("Up", "An old man and a house of balloons."));
+      crud.transaction(tx -> {
+         tx.create(newShow("Jaws", "A shark in a summer town."));
+         tx.update(1, newShow("Aliens", "The crew comes back."));
+         tx.delete(2);
+
+         // The pages of the transaction are held in memory, and its commit is not logged yet
+         crash[0] = Files.readAllBytes(Paths.get(filePath));
+         crash[1] = Files.readAllBytes(Paths.get(filePath + ".trash"));
+         crash[2] = Files.readAllBytes(Paths.get(filePath + SystemSpecification.WAL_FILES_EXTENSION));
+      });
+
+      crud.close();
+      crash(filePath, crash[0], crash[1], crash[2]);
+
+      crud = new CRUD<Show>(path, Show.class.getConstructor(), IndexType.BPlusTree);
+
+      boolean value = crud.read("id", 1).getTitle().equals("Alien");
+      value &= crud.read("id", 2).getTitle().equals("Heat");
+      value &= crud.read("id", 3).getTitle().equals("Up");
+
+      assertTrue(value);
+      assertNull(crud.read("id", 4));
+      assertEquals(3, crud.count());
+      assertEquals(0, crud.countTrash());
+      crud.close();
+   }
+
+}
@@ -0,0 +1,194 @@
+package crud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import components.Show;
+import crud.base.StructureValidation;
+import crud.core.DataBase;
+import crud.core.WriteAheadLog;
+import crud.core.types.IndexType;
+import crud.core.types.LogType;
+import crud.indexes.query.InvertedIndex;
+import crud.indexes.types.SNode;
+import crud.interfaces.CrashInstance;
+import crud.interfaces.ShowInstance;
+import logic.SystemSpecification;
+
+public class WriteAheadLogTest implements ShowInstance, CrashInstance {
+
+   private static final String path = "wal_test.db";
+
+   @BeforeClass
+   public static void createDirectories() {
+      new File(SystemSpecification.PROJECT_CRUD_PATH).mkdirs();
+      StructureValidation.verifyDirectoryStructure();
+   }
+
+   @Test
+   public void testReplayAfterCrash() throws Exception {
+      CRUD<Show> crud = new CRUD<Show>(path, Show.class.getConstructor());
+      crud.clear();
+
+      crud.create(newShow("Alien", "A crew meets a creature."));
+      crud.create(newShow("Heat", "A thief and a detective."));
+      crud.create(newShow("Jaws", "A shark in a summer town."));
+      crud.checkpoint();
+
+      Path base = Paths.get(crud.getFilePath());
+      Path trash = Paths.get(crud.getFilePath() + ".trash");
+      Path log = Paths.get(crud.getFilePath() + SystemSpecification.WAL_FILES_EXTENSION);
+
+      byte[] baseAtCheckpoint = Files.readAllBytes(base);
+      byte[] trashAtCheckpoint = Files.readAllBytes(trash);
+
+      crud.create(newShow("Up", "An old man and a house of balloons."));
+      crud.update(2, newShow("Heat", "A thief and a detective cross paths in Los Angeles, and only one of them walks away."));
+      crud.delete(3);
+
+      // The pages written since the checkpoint are lost, only the log reached the disk
+      byte[] logAtCrash = Files.readAllBytes(log);
+      crud.close();
+      crash(crud.getFilePath(), baseAtCheckpoint, trashAtCheckpoint, logAtCrash);
+
+      crud = new CRUD<Show>(path, Show.class.getConstructor());
+
+      boolean value = crud.read("id", 1).getDescription().equals("A crew meets a creature.");
+      value &= crud.read("id", 2).getDescription().startsWith("A thief and a detective cross paths");
+      value &= crud.read("id", 4).getDescription().equals("An old man and a house of balloons.");
+      value &= crud.count() == 3;
+
+      assertTrue(value);
+      assertNull(crud.read("id", 3));
+      assertEquals(1, crud.countTrash());
+      assertEquals(0, Files.size(log));
+
+      crud.close();
+   }
+
+   @Test
+   public void testReplayIsIdempotent() throws Exception {
+      CRUD<Show> crud = new CRUD<Show>(path, Show.class.getConstructor());
+      crud.clear();
+      crud.checkpoint();
+
+      Path log = Paths.get(crud.getFilePath() + SystemSpecification.WAL_FILES_EXTENSION);
+
+      crud.create(newShow("Alien", "A crew meets a creature."));
+      crud.create(newShow("Heat", "A thief and a detective."));
+      crud.delete(1);
+
+      // Every page reached the disk, but the log was not emptied yet
+      byte[] logAtCrash = Files.readAllBytes(log);
+      crud.close();
+
+      Path base = Paths.get(crud.getFilePath());
+      Path trash = Paths.get(crud.getFilePath() + ".trash");
+      crash(crud.getFilePath(), Files.readAllBytes(base), Files.readAllBytes(trash), logAtCrash);
+
+      crud = new CRUD<Show>(path, Show.class.getConstructor());
+
+      assertNull(crud.read("id", 1));
+      assertTrue(crud.read("id", 2).getDescription().equals("A thief and a detective."));
+      assertEquals(1, crud.count());
+      assertEquals(1, crud.countTrash());
+
+      crud.close();
+   }
+
+   @Test
+   public void testEntriesAreLoggedBeforeTheWrite() throws Exception {
+      DataBase<Show> db = new DataBase<Show>(SystemSpecification.PROJECT_CRUD_PATH + "wal_order_test.db", Show.class.getConstructor());
+      db.clear();
+      db.create(newShow("Alien", "A crew meets a creature."));
+      // Shorter than any other record, so none of the writes below takes its slot
+      db.create(newShow("Heat", "A."));
+      db.delete(2);
+
+      ArrayList<String> seen = new ArrayList<String>();
+
+      // Each entry looks at the archive when it is appended, before the record is written
+      WriteAheadLog log = new WriteAheadLog(SystemSpecification.PROJECT_CRUD_PATH + "wal_order_test.db" + SystemSpecification.WAL_FILES_EXTENSION) {
+         @Override
+         public synchronized void append(LogType type, int id, long oldAddress, long address, byte[] b) throws IOException {
+            Show s = address < db.length() ? db.readObj(address) : null;
+            seen.add(type + " " + id + " " + (s == null ? null : s.getDescription()));
+            super.append(type, id, oldAddress, address, b);
+         }
+      };
+
+      log.truncate();
+      db.setLog(log);
+
+      db.create(newShow("Up", "An old man ties thousands of balloons to his house and flies away."));
+      db.update(1, newShow("Alien", "A crew."));
+      db.update(1, newShow("Alien", "A crew meets a creature, and the ship is lost in space with everyone on board."));
+      db.restore(2);
+
+      boolean value = seen.get(0).equals("Create 3 null");
+      value &= seen.get(1).equals("Update 1 A crew meets a creature.");
+      value &= seen.get(2).equals("Update 1 null");
+      value &= seen.get(3).equals("Restore 2 null");
+      value &= log.read().size() == 4;
+
+      assertTrue(seen.toString(), value);
+      assertEquals("A crew meets a creature, and the ship is lost in space with everyone on board.", db.readObj(db.search("id", 1)).getDescription());
+      assertEquals("A.", db.readObj(db.search("id", 2)).getDescription());
+
+      log.close();
+      db.close();
+   }
+
+   @Test
+   public void testReplayDoesNotRepeatInvertedIndexKeys() throws Exception {
+      CRUD<Show> crud = new CRUD<Show>("inverted_wal_test.db", Show.class.getConstructor(), IndexType.InvertedIndex);
+      crud.clear();
+      crud.checkpoint();
+
+      Path log = Paths.get(crud.getFilePath() + SystemSpecification.WAL_FILES_EXTENSION);
+
+      // A word held by several records, so its nodes share the same key in the bucket
+      for(int i = 1; i <= 8; i++)
+         crud.create(newShow("Alien", "The episode number " + i + " of the show."));
+
+      // The index pages reached the disk, but the log was not emptied yet
+      byte[] logAtCrash = Files.readAllBytes(log);
+      crud.close();
+
+      Path base = Paths.get(crud.getFilePath());
+      Path trash = Paths.get(crud.getFilePath() + ".trash");
+      crash(crud.getFilePath(), Files.readAllBytes(base), Files.readAllBytes(trash), logAtCrash);
+
+      crud = new CRUD<Show>("inverted_wal_test.db", Show.class.getConstructor(), IndexType.InvertedIndex);
+      assertEquals(8, crud.count());
+      crud.close();
+
+      InvertedIndex index = new InvertedIndex("inverted_wal_test_InvertedIndex.db");
+      HashSet<Long> addresses = new HashSet<Long>();
+      int count = 0;
+
+      for(SNode node : index.search("Alien")) {
+         if(node.getKey().equals(SNode.fit("alien"))) {
+            addresses.add((long)node.getValue());
+            count++;
+         }
+      }
+
+      index.close();
+      assertEquals(8, addresses.size());
+      assertEquals(8, count);
+   }
+
+}
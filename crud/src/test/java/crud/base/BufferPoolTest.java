@@ -0,0 +1,139 @@
+package crud.base;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import logic.SystemSpecification;
+
+public class BufferPoolTest {
+
+   private static final int BLOCK_SIZE = SystemSpecification.BLOCK_SIZE;
+
+   @BeforeClass
+   public static void createDirectories() {
+      new File(SystemSpecification.TEMPORARY_FILES_DIRECTORY).mkdirs();
+   }
+
+   private static String newFile(String name, int pages) throws Exception {
+      String path = SystemSpecification.TEMPORARY_FILES_DIRECTORY + name;
+      byte[] b = new byte[pages * BLOCK_SIZE];
+
+      for(int p = 0; p < pages; p++)
+         b[p * BLOCK_SIZE] = (byte)(p + 1);
+
+      Files.write(Paths.get(path), b);
+      return path;
+   }
+
+   private static byte first(PagedFile file, int page) throws Exception {
+      ByteBuffer buffer = ByteBuffer.allocate(1);
+      file.read((long)page * BLOCK_SIZE, buffer);
+      return buffer.get(0);
+   }
+
+   @Test
+   public void testClockGivesReferencedPagesASecondChance() throws Exception {
+      BufferPool pool = new BufferPool(3);
+      PagedFile file = pool.open(newFile("buffer_pool_clock_test.dat", 5));
+
+      boolean value = true;
+      for(int p = 0; p < 4; p++)
+         value &= first(file, p) == p + 1;
+
+      // Every page was referenced, so the sweep cleared them all and evicted the page 0
+      value &= first(file, 1) == 2;
+      value &= first(file, 4) == 5;
+
+      // The page 1 was referenced again after the sweep, so the page 2 was evicted instead
+      value &= pool.getEvictions() == 2;
+      pool.resetStatistics();
+
+      value &= first(file, 1) == 2 && first(file, 3) == 4 && first(file, 4) == 5;
+      value &= pool.getHits() == 3 && pool.getMisses() == 0;
+      value &= first(file, 2) == 3;
+      value &= pool.getMisses() == 1;
+
+      assertTrue(value);
+      file.close();
+   }
+
+   @Test
+   public void testDirtyPageIsWrittenBackOnEviction() throws Exception {
+      BufferPool pool = new BufferPool(1);
+      String path = newFile("buffer_pool_write_back_test.dat", 2);
+      PagedFile file = pool.open(path);
+
+      byte[] written = { 7, 7, 7, 7 };
+      file.write(0, ByteBuffer.wrap(written));
+
+      boolean value = pool.getWriteBacks() == 0;
+      value &= Files.readAllBytes(Paths.get(path))[0] == 1;
+
+      // Reading another page takes the only frame, so the modified page goes to the disk first
+      value &= first(file, 1) == 2;
+      value &= pool.getEvictions() == 1 && pool.getWriteBacks() == 1;
+      value &= Arrays.equals(Arrays.copyOf(Files.readAllBytes(Paths.get(path)), 4), written);
+      value &= first(file, 0) == 7;
+
+      assertTrue(value);
+      file.close();
+   }
+
+   @Test
+   public void testCloseWritesDirtyPagesBack() throws Exception {
+      BufferPool pool = new BufferPool(4);
+      String path = newFile("buffer_pool_close_test.dat", 1);
+      PagedFile file = pool.open(path);
+
+      file.write(BLOCK_SIZE, ByteBuffer.wrap(new byte[] { 9 }));
+      assertEquals(BLOCK_SIZE, Files.size(Paths.get(path)));
+      file.close();
+
+      byte[] b = Files.readAllBytes(Paths.get(path));
+      assertEquals(BLOCK_SIZE + 1, b.length);
+      assertArrayEquals(new byte[] { 1, 9 }, new byte[] { b[0], b[BLOCK_SIZE] });
+   }
+
+   @Test
+   public void testHeldWritesStayInMemoryUntilReleased() throws Exception {
+      BufferPool pool = new BufferPool(2);
+      String held = newFile("buffer_pool_held_test.dat", 1);
+      PagedFile file = pool.open(held);
+      PagedFile other = pool.open(newFile("buffer_pool_other_test.dat", 4));
+
+      pool.holdWrites(held);
+      file.write(0, ByteBuffer.wrap(new byte[] { 7 }));
+      pool.flushAll();
+
+      // The held page is neither flushed nor evicted while the other file takes the pool
+      boolean value = file.isHeld();
+      for(int p = 0; p < 4; p++)
+         value &= first(other, p) == p + 1;
+
+      value &= pool.getWriteBacks() == 0;
+      value &= Files.readAllBytes(Paths.get(held))[0] == 1;
+      value &= first(file, 0) == 7;
+
+      pool.releaseWrites(held);
+      pool.flush(file);
+
+      value &= !file.isHeld();
+      value &= pool.getWriteBacks() == 1;
+      value &= Files.readAllBytes(Paths.get(held))[0] == 7;
+
+      assertTrue(value);
+      other.close();
+      file.close();
+   }
+
+}
@@ -0,0 +1,68 @@
+package crud.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import components.Show;
+import crud.core.DataBase;
+import crud.interfaces.ShowInstance;
+import logic.SystemSpecification;
+
+public class RecordCursorTest implements ShowInstance {
+
+   private static final String path = SystemSpecification.PROJECT_CRUD_PATH + "cursor_test.db";
+
+   @BeforeClass
+   public static void createDirectories() {
+      new File(SystemSpecification.PROJECT_CRUD_PATH).mkdirs();
+      StructureValidation.verifyDirectoryStructure();
+   }
+
+   @Test
+   public void testCursorReusesItsRecord() throws Exception {
+      DataBase<Show> db = new DataBase<Show>(path, Show.class.getConstructor());
+      db.clear();
+
+      ArrayList<Long> addresses = new ArrayList<Long>();
+      for(int i = 1; i <= 10; i++)
+         addresses.add(db.create(newShow("Show " + i, "The episode number " + i + " of the show.")).currentAddress);
+
+      db.delete(4);
+
+      RecordCursor<Show> cursor = db.cursor();
+      ArrayList<Show> copies = new ArrayList<Show>();
+      Show shared = null;
+      boolean value = true;
+
+      while(cursor.next()) {
+         Show s = cursor.get();
+         value &= shared == null || s == shared;
+         value &= cursor.address() == addresses.get(s.getId() - 1);
+         value &= s.getDescription().equals("The episode number " + s.getId() + " of the show.");
+
+         shared = s;
+         copies.add(cursor.copy());
+      }
+
+      // The copies keep their records after the cursor moved past them
+      for(int i = 0; i < copies.size(); i++) {
+         int id = i < 3 ? i + 1 : i + 2;
+         value &= copies.get(i) != shared;
+         value &= copies.get(i).getId() == id && copies.get(i).getDescription().equals("The episode number " + id + " of the show.");
+      }
+
+      shared.setDescription("Changed through the cursor.");
+      value &= !copies.get(copies.size() - 1).getDescription().equals("Changed through the cursor.");
+
+      assertTrue(value);
+      assertEquals(9, copies.size());
+      db.close();
+   }
+
+}
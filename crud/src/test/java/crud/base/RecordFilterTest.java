@@ -0,0 +1,162 @@
+package crud.base;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+
+import org.junit.Test;
+
+import components.Show;
+import crud.core.types.FieldPredicate;
+
+public class RecordFilterTest {
+
+   private static final String[] directors = { "Ab", "Abc", "Abcd", "Abd", "Émile", "Ação", "Zürich", "Zoe", "" };
+
+   private static ArrayList<Show> shows() {
+      ArrayList<Show> shows = new ArrayList<Show>();
+
+      for(int i = 0; i < directors.length; i++) {
+         Show s = new Show("Movie", "Title " + i, directors[i], new Date(1600000000000l + i * 86400000l), (short)(1995 + i * 3), i + "0 min", "Drama", "Description " + i);
+         s.setId(i + 1);
+         shows.add(s);
+      }
+
+      return shows;
+   }
+
+   /**
+    * Checks that the filter of the predicate matches the same shows as the predicate itself.
+    */
+   private static boolean matchesTest(FieldPredicate predicate) throws Exception {
+      RecordFilter filter = RecordFilter.compile(Show.layout, predicate);
+      assertNotNull(predicate.toString(), filter);
+
+      boolean value = true;
+
+      for(Show s : shows()) {
+         byte[] b = s.toByteArray();
+
+         // The body is put after some other bytes, as it is in a block of the archive
+         ByteBuffer buffer = ByteBuffer.allocate(b.length + 10);
+         buffer.position(7);
+         buffer.put(b);
+
+         value &= filter.test(buffer, 7, b.length) == predicate.test(s);
+      }
+
+      return value;
+   }
+
+   @Test
+   public void testCompileRejectsWhatCannotBeReadFromTheBytes() throws Exception {
+      assertNull(RecordFilter.compile(Show.layout, FieldPredicate.equal("title", "Title 1")));
+      assertNull(RecordFilter.compile(Show.layout, FieldPredicate.equal("rating", "PG")));
+      assertNull(RecordFilter.compile(Show.layout, FieldPredicate.equal("id", "1")));
+      assertNull(RecordFilter.compile(Show.layout, FieldPredicate.equal("description", 5)));
+      assertNull(RecordFilter.compile(Show.layout, FieldPredicate.range("dateAdded", 1600000000000l, null)));
+      assertNull(RecordFilter.compile(Show.layout, FieldPredicate.prefix("id", "1")));
+      assertNull(RecordFilter.compile(Show.layout, FieldPredicate.equal("id", 1), FieldPredicate.equal("title", "Title 1")));
+      assertNull(RecordFilter.compile(null, FieldPredicate.equal("id", 1)));
+
+      assertNotNull(RecordFilter.compile(Show.layout, FieldPredicate.equal("id", 1), FieldPredicate.prefix("description", "Desc")));
+   }
+
+   @Test
+   public void testTextComparesTheUnsignedBytes() throws Exception {
+      boolean value = true;
+
+      for(String s : directors) {
+         value &= matchesTest(FieldPredicate.equal("directors", s));
+         value &= matchesTest(FieldPredicate.prefix("directors", s));
+         value &= matchesTest(FieldPredicate.range("directors", s, null));
+         value &= matchesTest(FieldPredicate.range("directors", null, s));
+         value &= matchesTest(FieldPredicate.range("directors", s, "Z"));
+      }
+
+      // Non-ASCII characters are encoded in bytes greater than every ASCII one
+      value &= matchesTest(FieldPredicate.range("directors", "Z", "Zz"));
+      value &= matchesTest(FieldPredicate.range("directors", "z", null));
+      value &= matchesTest(FieldPredicate.prefix("directors", "Ab"));
+      value &= matchesTest(FieldPredicate.prefix("directors", "Z"));
+
+      assertTrue(value);
+   }
+
+   @Test
+   public void testTextOrderOfPrefixes() throws Exception {
+      RecordFilter filter = RecordFilter.compile(Show.layout, FieldPredicate.range("directors", "Abc", "Abcd"));
+      ArrayList<String> matched = new ArrayList<String>();
+
+      for(Show s : shows()) {
+         byte[] b = s.toByteArray();
+         if(filter.test(ByteBuffer.wrap(b), 0, b.length))
+            matched.add(s.getDirectors());
+      }
+
+      boolean value = matched.size() == 2;
+      value &= matched.contains("Abc") && matched.contains("Abcd");
+
+      assertTrue(value);
+   }
+
+   @Test
+   public void testShortAndDateFields() throws Exception {
+      boolean value = matchesTest(FieldPredicate.equal("releaseYear", (short)2001));
+      value &= matchesTest(FieldPredicate.equal("releaseYear", 2004));
+      value &= matchesTest(FieldPredicate.range("releaseYear", (short)2000, (short)2010));
+      value &= matchesTest(FieldPredicate.range("releaseYear", null, 1998));
+
+      value &= matchesTest(FieldPredicate.equal("dateAdded", new Date(1600000000000l + 2 * 86400000l)));
+      value &= matchesTest(FieldPredicate.range("dateAdded", new Date(1600000000000l + 86400000l), new Date(1600000000000l + 5 * 86400000l)));
+      value &= matchesTest(FieldPredicate.range("dateAdded", new Date(1600000000000l + 4 * 86400000l), null));
+
+      value &= matchesTest(FieldPredicate.range("id", 3, 6));
+      value &= matchesTest(FieldPredicate.equal("description", "Description 4"));
+
+      assertTrue(value);
+   }
+
+   @Test
+   public void testDateFieldWithANumberBound() throws Exception {
+      long time = 1600000000000l + 3 * 86400000l;
+      int count = 0;
+
+      // The bound is a number of milliseconds, and it matches as the same date does
+      for(Show s : shows()) {
+         boolean found = FieldPredicate.range("dateAdded", time, null).test(s);
+         count += found ? 1 : 0;
+
+         assertTrue(found == FieldPredicate.range("dateAdded", new Date(time), null).test(s));
+         assertTrue(FieldPredicate.equal("dateAdded", s.getDateAdded().getTime()).test(s));
+      }
+
+      assertTrue(count == shows().size() - 3);
+      assertTrue(FieldPredicate.compare(new Date(time), time) == 0);
+      assertTrue(FieldPredicate.compare(time - 1, new Date(time)) < 0);
+   }
+
+   @Test
+   public void testEveryPredicateMustMatch() throws Exception {
+      RecordFilter filter = RecordFilter.compile(Show.layout, FieldPredicate.range("releaseYear", 2000, null), FieldPredicate.prefix("directors", "A"));
+      int count = 0;
+
+      for(Show s : shows()) {
+         byte[] b = s.toByteArray();
+         if(filter.test(ByteBuffer.wrap(b), 0, b.length))
+            count++;
+      }
+
+      // Only "Abcd", "Abd" and "Ação" are from 2000 on
+      assertTrue(count == 3);
+
+      byte[] b = shows().get(0).toByteArray();
+      assertFalse(filter.test(ByteBuffer.wrap(b), 0, 10));
+   }
+
+}
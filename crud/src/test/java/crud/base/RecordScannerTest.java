@@ -0,0 +1,75 @@
+package crud.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import components.Show;
+import logic.SystemSpecification;
+
+public class RecordScannerTest {
+
+   private static final String path = SystemSpecification.TEMPORARY_FILES_DIRECTORY + "record_scanner_test.db";
+   private static final int BODY = 1000000; // A record does not end at the end of a window
+   private static final int RECORDS = 70;
+
+   @BeforeClass
+   public static void createDirectories() {
+      new File(SystemSpecification.TEMPORARY_FILES_DIRECTORY).mkdirs();
+   }
+
+   private static long address(int i) {
+      return (long)i * (Byte.BYTES + Integer.BYTES + BODY);
+   }
+
+   /**
+    * Writes the records with only their headers and the first and last bytes of their bodies,
+    * so the file is sparse and the scan still maps more than one window.
+    */
+   private static void writeRecords() throws Exception {
+      try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+         for(int i = 0; i < RECORDS; i++) {
+            long address = address(i);
+            ByteBuffer header = ByteBuffer.allocate(Byte.BYTES + 2 * Integer.BYTES);
+            header.put((byte)(i % 5 == 0 ? 0 : 1)).putInt(BODY).putInt(i).flip();
+
+            channel.write(header, address);
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, i), address + Byte.BYTES + Integer.BYTES + BODY - Integer.BYTES);
+         }
+      }
+   }
+
+   @Test
+   public void testScanCrossesWindows() throws Exception {
+      assertTrue(address(RECORDS) > SystemSpecification.SCAN_WINDOW_SIZE);
+      writeRecords();
+
+      BinaryArchive<Show> archive = new BinaryArchive<Show>(path, Show.class.getConstructor());
+      RecordScanner scanner = archive._scan(0);
+
+      boolean value = true;
+      int i = 0;
+
+      for(; scanner.next(); i++) {
+         value &= scanner.address() == address(i);
+         value &= scanner.isValid() == (i % 5 != 0);
+         value &= scanner.length() == BODY;
+
+         ByteBuffer body = ByteBuffer.wrap(scanner.body());
+         value &= body.getInt(0) == i && body.getInt(BODY - Integer.BYTES) == i;
+      }
+
+      assertTrue(value);
+      assertEquals(RECORDS, i);
+      archive.close();
+   }
+
+}
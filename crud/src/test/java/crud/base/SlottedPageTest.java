@@ -0,0 +1,124 @@
+package crud.base;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import logic.SystemSpecification;
+
+public class SlottedPageTest {
+
+   private static SlottedPage newPage() {
+      return SlottedPage.format(ByteBuffer.allocate(SystemSpecification.BLOCK_SIZE));
+   }
+
+   private static byte[] body(int len, int fill) {
+      byte[] b = new byte[len];
+      Arrays.fill(b, (byte)fill);
+      return b;
+   }
+
+   @Test
+   public void testInsertAndDelete() throws Exception {
+      SlottedPage page = newPage();
+      int free = page.freeSpace();
+
+      int a = page.insert(body(100, 1));
+      int b = page.insert(body(200, 2));
+
+      boolean value = a == 0 && b == 1;
+      value &= page.slotCount() == 2;
+      value &= page.isValid(a) && page.isValid(b);
+      value &= Arrays.equals(page.read(b), body(200, 2));
+      value &= page.freeSpace() == free - 2 * SlottedPage.SLOT_BYTES - 2 * Byte.BYTES - 300;
+
+      // A deleted record keeps its bytes and can be restored
+      value &= page.setLapide(a, false);
+      value &= !page.isValid(a) && page.isUsed(a);
+      value &= Arrays.equals(page.read(a), body(100, 1));
+      value &= page.setLapide(a, true) && page.isValid(a);
+
+      value &= !page.setLapide(5, false);
+      value &= page.insert(body(SlottedPage.MAX_RECORD_BYTES, 3)) == -1;
+
+      assertTrue(value);
+   }
+
+   @Test
+   public void testUpdateKeepsTheSlot() throws Exception {
+      SlottedPage page = newPage();
+      page.insert(body(100, 1));
+      int slot = page.insert(body(100, 2));
+      page.insert(body(100, 3));
+
+      boolean value = page.update(slot, body(50, 4));
+      value &= Arrays.equals(page.read(slot), body(50, 4));
+
+      // A larger body is written again in the free bytes of the same page
+      value &= page.update(slot, body(1000, 5));
+      value &= Arrays.equals(page.read(slot), body(1000, 5));
+      value &= Arrays.equals(page.read(0), body(100, 1)) && Arrays.equals(page.read(2), body(100, 3));
+      value &= page.slotCount() == 3;
+
+      value &= !page.update(slot, body(SlottedPage.MAX_RECORD_BYTES, 6));
+      value &= Arrays.equals(page.read(slot), body(1000, 5));
+
+      assertTrue(value);
+   }
+
+   @Test
+   public void testCompactKeepsTheSlots() throws Exception {
+      SlottedPage page = newPage();
+      for(int i = 0; i < 5; i++)
+         page.insert(body(500, i + 1));
+
+      page.setLapide(1, false);
+      page.setLapide(3, false);
+      int free = page.freeSpace();
+
+      page.compact();
+
+      boolean value = page.freeSpace() == free;
+      value &= page.slotCount() == 5;
+      value &= !page.isUsed(1) && !page.isUsed(3);
+      value &= Arrays.equals(page.read(0), body(500, 1));
+      value &= Arrays.equals(page.read(2), body(500, 3));
+      value &= Arrays.equals(page.read(4), body(500, 5));
+
+      assertTrue(value);
+
+      // The freed slots are reused before a new slot is added
+      assertEquals(1, page.insert(body(500, 6)));
+      assertEquals(3, page.insert(body(500, 7)));
+      assertEquals(5, page.slotCount());
+      assertArrayEquals(body(500, 5), page.read(4));
+   }
+
+   @Test
+   public void testInsertCompactsWhenTheFreeBytesAreSplit() throws Exception {
+      SlottedPage page = newPage();
+      for(int i = 0; i < 7; i++)
+         page.insert(body(500, i + 1));
+
+      page.setLapide(2, false);
+      page.setLapide(5, false);
+
+      // The record only fits in the bytes of the two deleted records put together
+      int slot = page.insert(body(900, 8));
+
+      boolean value = slot == 2;
+      value &= Arrays.equals(page.read(slot), body(900, 8));
+      value &= !page.isUsed(5);
+
+      for(int i : new int[] { 0, 1, 3, 4, 6 })
+         value &= Arrays.equals(page.read(i), body(500, i + 1));
+
+      assertTrue(value);
+   }
+
+}
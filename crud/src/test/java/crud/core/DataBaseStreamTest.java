@@ -0,0 +1,70 @@
+package crud.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import components.Show;
+import crud.base.StructureValidation;
+import crud.core.types.Response;
+import crud.interfaces.ShowInstance;
+import logic.SystemSpecification;
+
+public class DataBaseStreamTest implements ShowInstance {
+
+   private static final String path = SystemSpecification.PROJECT_CRUD_PATH + "stream_test.db";
+
+   @BeforeClass
+   public static void createDirectories() {
+      new File(SystemSpecification.PROJECT_CRUD_PATH).mkdirs();
+      StructureValidation.verifyDirectoryStructure();
+   }
+
+   @Test
+   public void testParallelStreamMatchesSequential() throws Exception {
+      DataBase<Show> db = new DataBase<Show>(path, Show.class.getConstructor());
+      db.clear();
+
+      // Enough records for the archive to be split in several ranges
+      for(int i = 1; i <= 300; i++)
+         db.create(newShow("Show " + i, "The episode number " + i + " of the show."));
+
+      for(int i = 1; i <= 300; i += 7)
+         db.delete(i);
+
+      Set<Integer> sequential, parallel;
+      long count;
+
+      try(Stream<Response<Show>> stream = db.stream()) {
+         sequential = stream.map(r -> r.body.getId()).collect(Collectors.toSet());
+      }
+
+      try(Stream<Response<Show>> stream = db.stream()) {
+         count = stream.parallel().count();
+      }
+
+      try(Stream<Response<Show>> stream = db.stream()) {
+         parallel = stream.parallel()
+                          .filter(r -> r.body.getDescription().equals("The episode number " + r.body.getId() + " of the show."))
+                          .map(r -> r.body.getId())
+                          .collect(Collectors.toSet());
+      }
+
+      boolean value = db.length() > 2 * SystemSpecification.BLOCK_SIZE;
+      value &= sequential.equals(parallel);
+      value &= !sequential.contains(1) && !sequential.contains(295);
+
+      assertTrue(value);
+      assertEquals(db.count(), sequential.size());
+      assertEquals(sequential.size(), count);
+      db.close();
+   }
+
+}
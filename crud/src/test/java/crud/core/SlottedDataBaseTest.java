@@ -0,0 +1,202 @@
+package crud.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import components.Show;
+import crud.base.StructureValidation;
+import crud.core.security.AESCipher;
+import crud.core.security.RSA;
+import crud.core.types.RecordId;
+import crud.core.types.Response;
+import crud.interfaces.ShowInstance;
+import logic.SystemSpecification;
+
+public class SlottedDataBaseTest implements ShowInstance {
+
+   private static final String path = SystemSpecification.PROJECT_CRUD_PATH + "slotted_test.db";
+   private static final String sequentialPath = SystemSpecification.PROJECT_CRUD_PATH + "slotted_sequential_test.db";
+   private static final String aesPath = SystemSpecification.PROJECT_CRUD_PATH + "slotted_aes_test.db";
+   private static final String aesSequentialPath = SystemSpecification.PROJECT_CRUD_PATH + "slotted_aes_sequential_test.db";
+
+   @BeforeClass
+   public static void createDirectories() {
+      new File(SystemSpecification.PROJECT_CRUD_PATH).mkdirs();
+      StructureValidation.verifyDirectoryStructure();
+   }
+
+   private SlottedDataBase<Show> newTable(int count) throws Exception {
+      SlottedDataBase<Show> table = new SlottedDataBase<Show>(path, Show.class.getConstructor());
+      table.clear();
+
+      for(int i = 1; i <= count; i++)
+         table.create(newShow("Show " + i, "The episode number " + i + " of the show."));
+
+      return table;
+   }
+
+   @Test
+   public void testCreateReadAndDelete() throws Exception {
+      SlottedDataBase<Show> table = newTable(3);
+      long address = table.search("id", 2);
+
+      boolean value = table.getLastId() == 3;
+      value &= RecordId.of(address).page == 1;
+      value &= table.readObj(address).getDescription().equals("The episode number 2 of the show.");
+
+      value &= table.delete(2);
+      value &= table.readObj(address) == null;
+      value &= table.search("id", 2) == -1;
+      value &= !table.delete(2);
+
+      assertTrue(value);
+      assertEquals(2, table.count());
+      table.close();
+   }
+
+   @Test
+   public void testRestore() throws Exception {
+      SlottedDataBase<Show> table = newTable(3);
+      long address = table.search("id", 3);
+      table.delete(3);
+
+      Response<Show> response = table.restore(3);
+
+      boolean value = response.success;
+      value &= response.currentAddress == address;
+      value &= table.readObj(address).getDescription().equals("The episode number 3 of the show.");
+      value &= !table.restore(4).success;
+
+      assertTrue(value);
+      assertEquals(3, table.count());
+      table.close();
+   }
+
+   @Test
+   public void testUpdateInItsSlot() throws Exception {
+      SlottedDataBase<Show> table = newTable(3);
+      long address = table.search("id", 2);
+
+      Response<Show> response = table.update(2, newShow("Show 2", "A shorter episode."));
+
+      boolean value = response.success;
+      value &= response.currentAddress == address;
+      value &= table.search("id", 2) == address;
+      value &= table.readObj(address).getDescription().equals("A shorter episode.");
+
+      assertTrue(value);
+      assertEquals(3, table.count());
+      table.close();
+   }
+
+   @Test
+   public void testUpdateMovesToAnotherPage() throws Exception {
+      SlottedDataBase<Show> table = newTable(40);
+      long address = table.search("id", 1);
+      String description = "A much longer episode. ".repeat(60);
+
+      // The first page is full, so the larger record does not fit in it anymore
+      Response<Show> response = table.update(1, newShow("Show 1", description));
+      RecordId moved = RecordId.of(response.currentAddress);
+
+      boolean value = table.pageCount() > 2;
+      value &= response.success;
+      value &= response.oldAddress == address;
+      value &= moved.page != RecordId.of(address).page;
+      value &= table.readObj(address) == null;
+      value &= table.search("id", 1) == response.currentAddress;
+      value &= table.readObj(response.currentAddress).getDescription().equals(description);
+
+      for(int i = 2; i <= 40; i++)
+         value &= table.readObj(table.search("id", i)).getDescription().equals("The episode number " + i + " of the show.");
+
+      assertTrue(value);
+      assertEquals(40, table.count());
+      table.close();
+   }
+
+   @Test
+   public void testMigrateKeepsIdsAndAddresses() throws Exception {
+      DataBase<Show> db = new DataBase<Show>(sequentialPath, Show.class.getConstructor());
+      db.clear();
+
+      ArrayList<Long> addresses = new ArrayList<Long>();
+      for(int i = 1; i <= 30; i++)
+         addresses.add(db.create(newShow("Show " + i, "The episode number " + i + " of the show.")).currentAddress);
+
+      for(int i = 1; i <= 30; i += 3)
+         db.delete(i);
+
+      new File(path).delete();
+      HashMap<Long, Long> map = new HashMap<Long, Long>();
+      SlottedDataBase<Show> table = db.migrate(path, map);
+
+      boolean value = map.size() == 20;
+      value &= table.getLastId() == db.getLastId();
+      value &= table.count() == db.count();
+
+      for(Map.Entry<Long, Long> entry : map.entrySet()) {
+         Show s = table.readObj(entry.getValue());
+         int id = addresses.indexOf(entry.getKey()) + 1;
+
+         value &= id % 3 != 1;
+         value &= s.getId() == id && s.getDescription().equals("The episode number " + id + " of the show.");
+         value &= table.search("id", id) == entry.getValue();
+      }
+
+      assertTrue(value);
+      assertEquals(-1, table.search("id", 1));
+      table.close();
+      db.close();
+   }
+
+   @Test
+   public void testMigrateKeepsTheCipher() throws Exception {
+      // The keys of a previous run are wrapped with other RSA keys
+      new File(aesSequentialPath + SystemSpecification.CIPHER_KEY_FILES_EXTENSION).delete();
+      new File(aesPath + SystemSpecification.CIPHER_KEY_FILES_EXTENSION).delete();
+
+      DataBase<Show> db = new DataBase<Show>(aesSequentialPath, Show.class.getConstructor());
+      db.clear();
+
+      RSA rsa = new RSA(1024);
+      AESCipher cipher = AESCipher.generate(rsa);
+      cipher.save(aesSequentialPath + SystemSpecification.CIPHER_KEY_FILES_EXTENSION, rsa);
+      db.setCipher(cipher);
+
+      for(int i = 1; i <= 10; i++)
+         db.create(newShow("Show " + i, "The episode number " + i + " of the show."));
+
+      new File(aesPath).delete();
+      SlottedDataBase<Show> table = db.migrate(aesPath, null);
+      table.create(newShow("Show 11", "The episode number 11 of the show."));
+      table.update(2, newShow("Show 2 updated", "An updated episode."));
+
+      boolean value = table.getCipher() == cipher;
+      for(int i = 1; i <= 11; i++)
+         value &= table.readObj(table.search("id", i)).getTitle().equals(i == 2 ? "Show 2 updated" : "Show " + i);
+
+      assertTrue(value);
+      table.close();
+      db.close();
+
+      // The key is read back from the file copied next to the table
+      table = new SlottedDataBase<Show>(aesPath, Show.class.getConstructor());
+
+      value = table.getCipher() instanceof AESCipher;
+      for(int i = 1; i <= 11; i++)
+         value &= table.readObj(table.search("id", i)).getTitle().equals(i == 2 ? "Show 2 updated" : "Show " + i);
+
+      assertTrue(value);
+      table.close();
+   }
+
+}
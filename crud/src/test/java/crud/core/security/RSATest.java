@@ -0,0 +1,55 @@
+package crud.core.security;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+public class RSATest {
+
+   private static final String[] messages = { "InuYasha the Movie 4", "a", "Ação e Aventura", "Zürich 2004 - ÉMILE", "0123456789" };
+
+   @Test
+   public void testDecryptMatchesThePlainModPow() throws Exception {
+      RSA rsa = new RSA(1024);
+      boolean value = true;
+
+      for(String m : messages) {
+         String c = rsa.encrypt(m);
+         BigInteger plain = new BigInteger(c).modPow(rsa.getPrivateExponent(), rsa.getModulus());
+
+         value &= rsa.decrypt(c).equals(m);
+         value &= new String(plain.toByteArray(), "UTF-8").equals(m);
+      }
+
+      assertTrue(value);
+   }
+
+   @Test
+   public void testPrimesAreKnown() throws Exception {
+      RSA rsa = new RSA(1024);
+
+      Field keys = RSA.class.getDeclaredField("keys");
+      keys.setAccessible(true);
+      Object k = keys.get(rsa);
+
+      Field p = k.getClass().getDeclaredField("p");
+      p.setAccessible(true);
+      BigInteger prime = (BigInteger)p.get(k);
+
+      // The primes are recovered from the exponents when the keys are read from the file
+      Method factor = RSA.class.getDeclaredMethod("factor", BigInteger.class, BigInteger.class, BigInteger.class);
+      factor.setAccessible(true);
+      BigInteger recovered = (BigInteger)factor.invoke(null, rsa.getModulus(), rsa.getPublicExponent(), rsa.getPrivateExponent());
+
+      boolean value = prime != null && rsa.getModulus().mod(prime).signum() == 0;
+      value &= recovered != null && !recovered.equals(BigInteger.ONE) && !recovered.equals(rsa.getModulus());
+      value &= rsa.getModulus().mod(recovered).signum() == 0;
+
+      assertTrue(value);
+   }
+
+}
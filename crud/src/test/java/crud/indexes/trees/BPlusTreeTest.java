@@ -0,0 +1,142 @@
+package crud.indexes.trees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import crud.indexes.types.NNode;
+
+public class BPlusTreeTest {
+
+   private static BPlusTree<NNode> newTree() throws Exception {
+      BPlusTree<NNode> tree = new BPlusTree<NNode>(4, "bplustree_test.db", NNode.class.getConstructor());
+      tree.clear();
+      return tree;
+   }
+
+   private static ArrayList<NNode> nodes(int from, int to) {
+      ArrayList<NNode> nodes = new ArrayList<NNode>();
+      for(int i = from; i <= to; i++)
+         nodes.add(new NNode(i, i * 10L));
+
+      Collections.shuffle(nodes, new Random(7));
+      return nodes;
+   }
+
+   @Test
+   public void testBulkLoadRange() throws Exception {
+      BPlusTree<NNode> tree = newTree();
+      int repeated = tree.bulkLoad(nodes(1, 500));
+
+      boolean value = repeated == 0;
+      value &= tree.height() > 2;
+
+      int expected = 100;
+      for(Iterator<NNode> it = tree.range(100, 300); it.hasNext(); expected++) {
+         NNode node = it.next();
+         value &= (int)node.getKey() == expected && (long)node.getValue() == expected * 10L;
+      }
+      value &= expected == 301;
+
+      for(int i = 1; i <= 500; i++)
+         value &= (long)tree.search(i).getValue() == i * 10L;
+
+      assertTrue(value);
+      tree.close();
+   }
+
+   @Test
+   public void testBulkLoadAlignedPages() throws Exception {
+      BPlusTree<NNode> tree = new BPlusTree<NNode>("bplustree_aligned_test.db", NNode.class.getConstructor());
+      tree.clear();
+      tree.bulkLoad(nodes(1, 20000));
+
+      boolean value = tree.height() > 1;
+      value &= tree.length() % BPlusTree.BPLUS_TREE_PAGE_SIZE == 0;
+
+      int expected = 1;
+      for(Iterator<NNode> it = tree.range(null, null); it.hasNext(); expected++)
+         value &= (int)it.next().getKey() == expected;
+      value &= expected == 20001;
+
+      assertTrue(value);
+      tree.close();
+   }
+
+   @Test
+   public void testPackedFileIsFormatted() throws Exception {
+      BPlusTree<NNode> packed = new BPlusTree<NNode>(4, "bplustree_format_test.db", NNode.class.getConstructor());
+      packed.clear();
+      packed.bulkLoad(nodes(1, 50));
+      packed.close();
+
+      BPlusTree<NNode> tree = new BPlusTree<NNode>("bplustree_format_test.db", NNode.class.getConstructor());
+
+      boolean value = tree.wasFormatted();
+      value &= tree.length() % BPlusTree.BPLUS_TREE_PAGE_SIZE == 0;
+      value &= !tree.range(null, null).hasNext();
+
+      tree.insert(7, 70L);
+      tree.close();
+
+      tree = new BPlusTree<NNode>("bplustree_format_test.db", NNode.class.getConstructor());
+      value &= !tree.wasFormatted();
+      value &= (long)tree.search(7).getValue() == 70L;
+
+      assertTrue(value);
+      tree.close();
+   }
+
+   @Test
+   public void testRangeAfterDeletes() throws Exception {
+      BPlusTree<NNode> tree = newTree();
+      tree.bulkLoad(nodes(1, 500));
+
+      boolean value = true;
+      for(int i = 1; i <= 500; i++)
+         if(i <= 100 || i % 2 == 0)
+            value &= tree.delete(i);
+
+      tree.insert(1000, 10000L);
+
+      int expected = 101;
+      for(Iterator<NNode> it = tree.range(null, 999); it.hasNext(); expected += 2)
+         value &= (int)it.next().getKey() == expected;
+      value &= expected == 501;
+
+      for(int i = 1; i <= 500; i++)
+         value &= (tree.search(i) != null) == (i > 100 && i % 2 == 1);
+
+      Iterator<NNode> last = tree.range(500, null);
+      value &= (int)last.next().getKey() == 1000 && !last.hasNext();
+
+      assertTrue(value);
+      tree.close();
+   }
+
+   @Test
+   public void testBulkLoadRepeatedKeys() throws Exception {
+      BPlusTree<NNode> tree = newTree();
+
+      ArrayList<NNode> nodes = nodes(1, 50);
+      nodes.add(new NNode(10, -1L));
+      nodes.add(new NNode(20, -1L));
+      nodes.add(new NNode(20, -2L));
+
+      assertEquals(3, tree.bulkLoad(nodes));
+
+      int count = 0;
+      for(Iterator<NNode> it = tree.range(null, null); it.hasNext(); it.next())
+         count++;
+
+      assertEquals(50, count);
+      tree.close();
+   }
+
+}
@@ -0,0 +1,92 @@
+package crud.indexes.trees;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import crud.indexes.types.NNode;
+import logic.SystemSpecification;
+
+public class PageViewTest {
+
+   private static Page<NNode> newPage(int order, int size, int keyCount, boolean leaf) throws Exception {
+      Page<NNode> page = new Page<NNode>(order, NNode.class.getConstructor(), size);
+      Object[] keys = page.keys; // The array is created as an array of INode
+
+      // Even keys, so every odd probe falls between two of them
+      for(int i = 0; i < keyCount; i++)
+         keys[i] = new NNode(2 * (i + 1), i * 100L);
+
+      for(int i = 0; i <= keyCount; i++)
+         page.children[i] = leaf ? -1 : 1000L * (i + 1);
+
+      page.keyCount = keyCount;
+      page.next = leaf ? 4242L : -1;
+      return page;
+   }
+
+   private static PageView<NNode> view(Page<NNode> page, boolean aligned) throws Exception {
+      PageView<NNode> view = new PageView<NNode>(page.BYTES, new NNode(), aligned);
+      view.buffer().put(page.toByteArray());
+      return view.load();
+   }
+
+   /**
+    * Checks the view of the page against a linear search of its keys.
+    */
+   private static boolean agrees(Page<NNode> page, boolean aligned) throws Exception {
+      PageView<NNode> view = view(page, aligned);
+      Object[] keys = page.keys;
+
+      boolean value = view.keyCount() == page.keyCount;
+      value &= view.isLeaf() == (page.children[0] == -1);
+      value &= view.isLeaf() ? view.next() == page.next : true;
+
+      for(int i = 0; i <= page.keyCount; i++)
+         value &= view.child(i) == page.children[i];
+
+      for(int i = 0; i < page.keyCount; i++)
+         value &= view.node(i).equals(keys[i]) && view.node(i).getValue().equals(((NNode)keys[i]).getValue());
+
+      for(int probe = -1; probe <= 2 * page.keyCount + 2; probe++) {
+         int found = -1, child = 0;
+
+         for(int i = 0; i < page.keyCount; i++) {
+            if(((NNode)keys[i]).compareTo(probe) == 0) found = i;
+            if(((NNode)keys[i]).compareTo(probe) <= 0) child = i + 1;
+         }
+
+         value &= view.find(probe) == found;
+         value &= view.childIndex(probe) == child;
+      }
+
+      return value;
+   }
+
+   @Test
+   public void testPackedPageAgreesWithThePage() throws Exception {
+      boolean value = true;
+
+      for(int keyCount : new int[] { 0, 1, 2, 3, 4 }) {
+         value &= agrees(newPage(4, 0, keyCount, true), false);
+         value &= agrees(newPage(4, 0, keyCount, false), false);
+      }
+
+      assertTrue(value);
+   }
+
+   @Test
+   public void testAlignedPageAgreesWithThePage() throws Exception {
+      int size = SystemSpecification.BPLUS_TREE_PAGE_SIZE;
+      int order = Page.orderFor(size, NNode.BYTES);
+      boolean value = true;
+
+      for(int keyCount : new int[] { 0, 1, 7, order / 2, order - 1, order }) {
+         value &= agrees(newPage(order, size, keyCount, true), true);
+         value &= agrees(newPage(order, size, keyCount, false), true);
+      }
+
+      assertTrue(value);
+   }
+
+}
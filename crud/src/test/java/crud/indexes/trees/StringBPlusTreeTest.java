@@ -0,0 +1,122 @@
+package crud.indexes.trees;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class StringBPlusTreeTest {
+
+   private static StringBPlusTree newTree() throws Exception {
+      StringBPlusTree tree = new StringBPlusTree("stringbplustree_test.db");
+      tree.clear();
+      return tree;
+   }
+
+   private static String key(int i) {
+      return String.format("Show %05d - The Long Title of an Episode", i);
+   }
+
+   @Test
+   public void testInsertSplits() throws Exception {
+      StringBPlusTree tree = newTree();
+
+      // Inserted out of order, so the splits happen all over the tree
+      for(int i = 0; i < 3000; i++)
+         tree.insert(key((i * 7) % 3000), (i * 7) % 3000);
+
+      boolean value = tree.height() > 1;
+      for(int i = 0; i < 3000; i++)
+         value &= tree.search(key(i)) == i;
+
+      int expected = 0;
+      for(Iterator<Map.Entry<String, Long>> it = tree.range(null, null); it.hasNext(); expected++)
+         value &= it.next().getKey().equals(key(expected));
+      value &= expected == 3000;
+
+      assertTrue(value);
+      assertNull(tree.search("Show"));
+      tree.close();
+   }
+
+   @Test
+   public void testPrefix() throws Exception {
+      StringBPlusTree tree = newTree();
+
+      ArrayList<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>();
+      for(int i = 0; i < 3000; i++)
+         entries.add(Map.entry(key(i), (long)i));
+      entries.add(Map.entry("Show", -1L));
+      entries.add(Map.entry("Shows", -2L));
+      tree.bulkLoad(entries);
+
+      int expected = 1200;
+      boolean value = true;
+      for(Iterator<Map.Entry<String, Long>> it = tree.prefix("Show 012"); it.hasNext(); expected++)
+         value &= it.next().getValue() == expected;
+      value &= expected == 1300;
+
+      int count = 0;
+      for(Iterator<Map.Entry<String, Long>> it = tree.prefix("Show"); it.hasNext(); it.next())
+         count++;
+      value &= count == 3002;
+
+      assertTrue(value);
+      assertTrue(!tree.prefix("Shz").hasNext());
+      tree.close();
+   }
+
+   @Test
+   public void testRepeatedKeys() throws Exception {
+      StringBPlusTree tree = newTree();
+
+      for(int i = 0; i < 500; i++) {
+         tree.insert(key(i), i);
+         tree.insert("Alien", 10000L + i);
+      }
+
+      boolean value = tree.search("Alien") == 10000L;
+
+      long expected = 10000L;
+      for(Iterator<Map.Entry<String, Long>> it = tree.range("Alien", "Alien"); it.hasNext(); expected++)
+         value &= it.next().getValue() == expected;
+      value &= expected == 10500L;
+
+      value &= tree.delete("Alien", 10000L);
+      value &= !tree.delete("Alien", 10000L);
+      value &= tree.search("Alien") == 10001L;
+      value &= tree.update("Alien", 10001L, 1L);
+      value &= tree.search("Alien") == 1L;
+
+      assertTrue(value);
+      tree.close();
+   }
+
+   @Test
+   public void testRemap() throws Exception {
+      StringBPlusTree tree = newTree();
+
+      HashMap<Long, Long> addresses = new HashMap<Long, Long>();
+      for(int i = 0; i < 1000; i++) {
+         tree.insert(key(i), i);
+         if(i % 4 != 0)
+            addresses.put((long)i, i + 100000L);
+      }
+
+      assertEquals(250, tree.remap(addresses));
+
+      boolean value = true;
+      for(int i = 0; i < 1000; i++)
+         value &= (i % 4 == 0) ? tree.search(key(i)) == null : tree.search(key(i)) == i + 100000L;
+
+      assertTrue(value);
+      tree.close();
+   }
+
+}
@@ -0,0 +1,22 @@
+package crud.interfaces;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import logic.SystemSpecification;
+
+public interface CrashInstance {
+
+   /**
+    * Leaves the files of a closed CRUD as a crash would: the archive and the trash as they
+    * were on the disk, the log with the entries written until then, and no maps saved on close.
+    */
+   default void crash(String filePath, byte[] base, byte[] trash, byte[] log) throws IOException {
+      Files.write(Paths.get(filePath), base);
+      Files.write(Paths.get(filePath + ".trash"), trash);
+      Files.write(Paths.get(filePath + SystemSpecification.WAL_FILES_EXTENSION), log);
+      Files.deleteIfExists(Paths.get(filePath + SystemSpecification.FREE_SPACE_FILES_EXTENSION));
+      Files.deleteIfExists(Paths.get(filePath + SystemSpecification.ID_MAP_FILES_EXTENSION));
+   }
+}